@@ -0,0 +1,144 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classydb;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import com.j256.ormlite.logger.Logger;
+
+import au.com.cybersearch2.classylog.LogManager;
+
+/**
+ * Engine settings applied to every new physical connection of a persistence unit. The settings 
+ * start from the {@link TuningProfile} named by the {@link #PROFILE} unit property and are then 
+ * overridden by individual unit properties with the {@link #SETTING_PREFIX}, for example 
+ * "JTA_TUNE_cache_size = -32000". 
+ */
+public class ConnectionTuning {
+
+	/** Unit property naming a tuning profile - durable, balanced or bulk-load */
+	public static final String PROFILE = DatabaseSupport.JTA_PREFIX + "TUNING_PROFILE";
+	/** Prefix of unit property which sets an individual engine setting */
+	public static final String SETTING_PREFIX = DatabaseSupport.JTA_PREFIX + "TUNE_";
+
+	private static Logger logger = LogManager.getLogger(ConnectionTuning.class);
+
+	/** Setting values in order of application */
+	private final Map<String, String> settings;
+
+	/**
+	 * Construct ConnectionTuning object
+	 * @param settings Setting values in order of application
+	 */
+	public ConnectionTuning(Map<String, String> settings) {
+		this.settings = Collections.unmodifiableMap(settings);
+	}
+
+	/**
+	 * Returns SQLite pragmas configured in given unit properties
+	 * @param properties Persistence unit properties. May be null.
+	 * @return ConnectionTuning object
+	 */
+	public static ConnectionTuning sqlite(Properties properties) {
+		TuningProfile profile = getProfile(properties);
+		return new ConnectionTuning(merge(profile != null ? profile.getSqlitePragmas() : null, properties, false));
+	}
+
+	/**
+	 * Returns H2 settings configured in given unit properties
+	 * @param properties Persistence unit properties. May be null.
+	 * @return ConnectionTuning object
+	 */
+	public static ConnectionTuning h2(Properties properties) {
+		TuningProfile profile = getProfile(properties);
+		return new ConnectionTuning(merge(profile != null ? profile.getH2Settings() : null, properties, true));
+	}
+
+	/**
+	 * Returns flag set true if there are no settings
+	 * @return boolean
+	 */
+	public boolean isEmpty() {
+		return settings.isEmpty();
+	}
+
+	/**
+	 * Returns setting values in order of application
+	 * @return unmodifiable map
+	 */
+	public Map<String, String> getSettings() {
+		return settings;
+	}
+
+	/**
+	 * Execute a SQLite PRAGMA statement for each setting on given connection
+	 * @param connection New physical connection
+	 * @return the connection
+	 * @throws SQLException if a pragma is rejected
+	 */
+	public Connection applyPragmas(Connection connection) throws SQLException {
+		if (settings.isEmpty())
+			return connection;
+		try (Statement statement = connection.createStatement()) {
+			for (Entry<String, String> entry: settings.entrySet())
+				statement.execute(String.format("PRAGMA %s = %s", entry.getKey(), entry.getValue()));
+		} catch (SQLException e) {
+			connection.close();
+			throw e;
+		}
+		return connection;
+	}
+
+	/**
+	 * Returns given H2 database URL with settings appended
+	 * @param url Database URL
+	 * @return String
+	 */
+	public String appendTo(String url) {
+		StringBuilder builder = new StringBuilder(url);
+		for (Entry<String, String> entry: settings.entrySet())
+			builder.append(';').append(entry.getKey()).append('=').append(entry.getValue());
+		return builder.toString();
+	}
+
+	private static TuningProfile getProfile(Properties properties) {
+		String key = properties != null ? properties.getProperty(PROFILE) : null;
+		if (key == null)
+			return null;
+		TuningProfile profile = TuningProfile.fromKey(key);
+		if (profile == null)
+			logger.error(String.format("Property %s value '%s' is invalid", PROFILE, key));
+		return profile;
+	}
+
+	private static Map<String, String> merge(Map<String, String> profileSettings, Properties properties, boolean isUpperCase) {
+		Map<String, String> settings = new LinkedHashMap<>();
+		if (profileSettings != null)
+			settings.putAll(profileSettings);
+		if (properties != null)
+			for (String key: properties.stringPropertyNames())
+				if (key.toUpperCase().startsWith(SETTING_PREFIX)) {
+					String name = key.substring(SETTING_PREFIX.length());
+					settings.put(isUpperCase ? name.toUpperCase() : name.toLowerCase(), properties.getProperty(key).trim());
+				}
+		return settings;
+	}
+}
@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.WeakHashMap;
 import java.util.regex.Pattern;
 
 import javax.persistence.PersistenceException;
@@ -78,6 +79,8 @@ public abstract class DatabaseSupportBase implements DatabaseSupport, Connection
 	/** Limit clause validation */
 	protected static final Pattern LIMIT_PATTERN = Pattern.compile("\\s*\\d+\\s*(,\\s*\\d+\\s*)?");
 	public static final boolean CACHE_STORE = true;
+	/** Maximum number of native query statements cached per connection */
+	public static final int STATEMENT_CACHE_SIZE = 32;
 
 	/** ORMLite databaseType */
 	protected final DatabaseType databaseType;
@@ -88,6 +91,8 @@ public abstract class DatabaseSupportBase implements DatabaseSupport, Connection
 	/** Map connectionSource to database name */
 	protected Map<String, ConnectionPair> connectionSourceMap;
 	protected List<OpenHelper> openHelperCallbacksList;
+	/** Compiled native query statements of each connection, which are discarded along with the connection */
+	private final Map<DatabaseConnection, StatementCache> statementCaches;
 
 	/**
 	 * Construct DatabaseSupportBase object
@@ -102,6 +107,7 @@ public abstract class DatabaseSupportBase implements DatabaseSupport, Connection
 		this.logger = logger;
 		connectionSourceMap = new HashMap<>();
 		openHelperCallbacksList = Collections.emptyList();
+		statementCaches = Collections.synchronizedMap(new WeakHashMap<>());
 	}
 
 	abstract protected File getDatabaseLocation();
@@ -167,6 +173,10 @@ public abstract class DatabaseSupportBase implements DatabaseSupport, Connection
 			}
 		}
 		connectionSourceMap.clear();
+		synchronized(statementCaches) {
+			statementCaches.values().forEach(StatementCache::clear);
+			statementCaches.clear();
+		}
 	}
 
 	/**
@@ -221,7 +231,7 @@ public abstract class DatabaseSupportBase implements DatabaseSupport, Connection
 	public void setVersion(int version, String puName, ConnectionSource connectionSource) {
 		DatabaseConnection connection = null;
 		try {
-			connection = connectionSource.getReadOnlyConnection("");
+			connection = connectionSource.getReadWriteConnection(puName + INFO_SUFFIX);
 			int resultFlags = DatabaseConnection.DEFAULT_RESULT_FLAGS;
 			boolean isAutoCommit = connection.isAutoCommitSupported() && connection.isAutoCommit();
 			if (isAutoCommit)
@@ -258,19 +268,46 @@ public abstract class DatabaseSupportBase implements DatabaseSupport, Connection
 		DatabaseConnection connection = null;
 		String databaseName = databaseType.getDatabaseName();
 		try {
-			connection = connectionSource.getReadWriteConnection(queryInfo.getTable());
-			DatabaseResults results = getDatabaseResults(connection, queryInfo, startPosition, maxResults);
-			if (results.first()) {
-				int position = 0;
-				do {
-					ResultRow resultRow = new SqliteResultRow(position, results);
-					resultList.add(queryInfo.getRowMapper().mapRow(resultRow));
-					++position;
-				} while (results.next());
+			connection = connectionSource.getReadOnlyConnection(queryInfo.getTable());
+			String sql = getQueryString(queryInfo, startPosition, maxResults);
+			StatementCache statementCache = getStatementCache(connection);
+			CompiledStatement compiledStatement = statementCache.checkout(sql);
+			if (compiledStatement == null)
+				compiledStatement = compileQuery(connection, sql);
+			boolean isReusable = false;
+			try {
+				bindSelectionArgs(compiledStatement, queryInfo);
+				DatabaseResults results = compiledStatement.runQuery(null /* objectCache */);
+				try {
+					if (results.first()) {
+						int position = 0;
+						do {
+							ResultRow resultRow = new SqliteResultRow(position, results);
+							resultList.add(queryInfo.getRowMapper().mapRow(resultRow));
+							++position;
+						} while (results.next());
+					}
+				} finally {
+					results.closeQuietly();
+				}
+				isReusable = true;
+			} finally {
+				// A statement which fails is closed rather than returned to the cache
+				if (isReusable)
+					statementCache.checkin(sql, compiledStatement);
+				else
+					compiledStatement.closeQuietly();
 			}
 		} catch (SQLException e) {
 			throw new PersistenceException("Error getting database connection for database \"" + databaseName + "\"",
 					e);
+		} finally {
+			if (connection != null)
+				try {
+					connectionSource.releaseConnection(connection);
+				} catch (SQLException e) {
+					logger.warn(e, "Error releasing connection for database {}", databaseName);
+				}
 		}
 		return resultList;
 	}
@@ -389,17 +426,14 @@ public abstract class DatabaseSupportBase implements DatabaseSupport, Connection
 	}
 
 	/**
-	 * Builds a SQL query, compiles and runs it and finally returns result
+	 * Returns SQL of native query
 	 * 
-	 * @param connection    DatabaseConnection object
 	 * @param queryInfo     QueryInfo object containing query elements
 	 * @param startPosition int
 	 * @param maxResults    int
-	 * @return DatabaseResults
-	 * @throws SQLException if database operation fails
+	 * @return SQL text
 	 */
-	protected DatabaseResults getDatabaseResults(DatabaseConnection connection, QueryInfo queryInfo, int startPosition,
-			int maxResults) throws SQLException {
+	protected String getQueryString(QueryInfo queryInfo, int startPosition, int maxResults) {
 		String limitValue = queryInfo.getLimit();
 		if (maxResults > 0) {
 			limitValue = Integer.toString(maxResults);
@@ -409,17 +443,45 @@ public abstract class DatabaseSupportBase implements DatabaseSupport, Connection
 				limitValue = builder.toString();
 			}
 		}
-		String statement = buildQueryString(queryInfo.getTable(), queryInfo.getColumns(), queryInfo.getSelection(),
+		return buildQueryString(queryInfo.getTable(), queryInfo.getColumns(), queryInfo.getSelection(),
 				queryInfo.getGroupBy(), queryInfo.getHaving(), queryInfo.getOrderBy(), limitValue);
-		CompiledStatement compiledStatement = connection.compileStatement(statement, StatementType.SELECT_RAW,
+	}
+
+	/**
+	 * Returns cache of compiled statements belonging to given connection
+	 * 
+	 * @param connection DatabaseConnection object
+	 * @return StatementCache object
+	 * @throws SQLException if database operation fails
+	 */
+	protected StatementCache getStatementCache(DatabaseConnection connection) throws SQLException {
+		synchronized(statementCaches) {
+			StatementCache statementCache = statementCaches.get(connection);
+			if ((statementCache != null) && connection.isClosed()) {
+				// Statements of a closed connection are unusable
+				statementCache.clear();
+				statementCache = null;
+			}
+			if (statementCache == null) {
+				statementCache = new StatementCache(STATEMENT_CACHE_SIZE);
+				statementCaches.put(connection, statementCache);
+			}
+			return statementCache;
+		}
+	}
+
+	private CompiledStatement compileQuery(DatabaseConnection connection, String sql) throws SQLException {
+		return connection.compileStatement(sql, StatementType.SELECT_RAW,
 				new FieldType[] {}, DatabaseConnection.DEFAULT_RESULT_FLAGS, CACHE_STORE);
+	}
+
+	private void bindSelectionArgs(CompiledStatement compiledStatement, QueryInfo queryInfo) throws SQLException {
 		int parameterIndex = 0;
 		for (String arg : queryInfo.getSelectionArgs()) {
 			compiledStatement.setObject(parameterIndex, arg, SqlType.STRING);
 			if (++parameterIndex >= compiledStatement.getColumnCount())
 				break;
 		}
-		return compiledStatement.runQuery(null /* objectCache */);
 	}
 
 	/**
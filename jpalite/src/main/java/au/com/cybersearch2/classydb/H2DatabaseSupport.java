@@ -20,7 +20,6 @@ import java.util.Properties;
 import org.h2.jdbcx.JdbcDataSource;
 
 import com.j256.ormlite.jdbc.DataSourceConnectionSource;
-import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
 import com.j256.ormlite.jdbc.db.H2DatabaseType;
 import com.j256.ormlite.support.ConnectionSource;
 
@@ -89,7 +88,7 @@ public class H2DatabaseSupport extends DatabaseSupportBase {
 			String url = "jdbc:h2:" + fileLocation + "/" + databaseName;
 			return getDataSourceConnectionSource(url, properties);
 		}
-		case pooled: // TODO - Add H2 Connection Pool
+		case pooled:
 			return getPooledConnectionSource(databaseName, fileLocation, properties);
 		case memory:
 		default: {
@@ -102,15 +101,17 @@ public class H2DatabaseSupport extends DatabaseSupportBase {
 	private DataSourceConnectionSource getDataSourceConnectionSource(String url, Properties properties)
 			throws SQLException {
 		JdbcDataSource jdbcDataSource = new JdbcDataSource();
-		String finalUrl = appendProperties(url, properties, jdbcDataSource);
+		String finalUrl = appendProperties(ConnectionTuning.h2(properties).appendTo(url), properties, jdbcDataSource);
 		jdbcDataSource.setURL(finalUrl);
 		return new DataSourceConnectionSource(jdbcDataSource, finalUrl);
 	}
 
-	private JdbcPooledConnectionSource getPooledConnectionSource(String databaseName, String fileLocation,
+	private PooledConnectionSource getPooledConnectionSource(String databaseName, String fileLocation,
 			Properties properties) throws SQLException {
-		String url = appendProperties("jdbc:h2:" + fileLocation + "/" + databaseName, properties);
-		return new JdbcPooledConnectionSource(url);
+		JdbcDataSource jdbcDataSource = new JdbcDataSource();
+		String url = ConnectionTuning.h2(properties).appendTo("jdbc:h2:" + fileLocation + "/" + databaseName);
+		jdbcDataSource.setURL(appendProperties(url, properties, jdbcDataSource));
+		return new PooledConnectionSource(databaseName, jdbcDataSource::getConnection, databaseType, new PoolConfig(properties));
 	}
 
 }
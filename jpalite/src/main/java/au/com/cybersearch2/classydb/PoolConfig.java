@@ -0,0 +1,123 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classydb;
+
+import java.util.Properties;
+
+import com.j256.ormlite.logger.Logger;
+
+import au.com.cybersearch2.classylog.LogManager;
+
+/**
+ * Connection pool configuration, read from persistence unit properties which have the 
+ * {@link DatabaseSupport#JTA_PREFIX} so they are not passed to the JDBC driver
+ */
+public class PoolConfig {
+
+	/** Minimum number of connections kept open */
+	public static final String MIN_SIZE = DatabaseSupport.JTA_PREFIX + "POOL_MIN_SIZE";
+	/** Maximum number of connections open at any time */
+	public static final String MAX_SIZE = DatabaseSupport.JTA_PREFIX + "POOL_MAX_SIZE";
+	/** Milliseconds to wait to acquire a connection when all are in use */
+	public static final String MAX_WAIT = DatabaseSupport.JTA_PREFIX + "POOL_MAX_WAIT";
+	/** Seconds an unused connection above the minimum is kept open */
+	public static final String IDLE_TIMEOUT = DatabaseSupport.JTA_PREFIX + "POOL_IDLE_TIMEOUT";
+	/** Flag set true if a connection is validated before it is borrowed from the pool */
+	public static final String VALIDATE = DatabaseSupport.JTA_PREFIX + "POOL_VALIDATE";
+	/** Seconds a connection can be borrowed before it is reported as a leak. Zero disables leak detection. */
+	public static final String LEAK_THRESHOLD = DatabaseSupport.JTA_PREFIX + "POOL_LEAK_THRESHOLD";
+
+	public static final int DEFAULT_MIN_SIZE = 1;
+	public static final int DEFAULT_MAX_SIZE = 10;
+	public static final long DEFAULT_MAX_WAIT = 30000L;
+	public static final long DEFAULT_IDLE_TIMEOUT = 600L;
+	public static final long DEFAULT_LEAK_THRESHOLD = 0L;
+
+	private static Logger logger = LogManager.getLogger(PoolConfig.class);
+
+	private int minSize;
+	private int maxSize;
+	private long maxWaitMillis;
+	private long idleTimeoutMillis;
+	private boolean validateOnBorrow;
+	private long leakThresholdMillis;
+
+	/**
+	 * Construct PoolConfig object with default values
+	 */
+	public PoolConfig() {
+		minSize = DEFAULT_MIN_SIZE;
+		maxSize = DEFAULT_MAX_SIZE;
+		maxWaitMillis = DEFAULT_MAX_WAIT;
+		idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT * 1000L;
+		validateOnBorrow = true;
+		leakThresholdMillis = DEFAULT_LEAK_THRESHOLD * 1000L;
+	}
+
+	/**
+	 * Construct PoolConfig object from persistence unit properties. Properties which are not set take default values.
+	 * @param properties Persistence unit properties. May be null.
+	 */
+	public PoolConfig(Properties properties) {
+		this();
+		if (properties == null)
+			return;
+		maxSize = (int)getLong(properties, MAX_SIZE, maxSize, 1L);
+		minSize = (int)Math.min(getLong(properties, MIN_SIZE, minSize, 0L), maxSize);
+		maxWaitMillis = getLong(properties, MAX_WAIT, maxWaitMillis, 0L);
+		idleTimeoutMillis = getLong(properties, IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT, 1L) * 1000L;
+		leakThresholdMillis = getLong(properties, LEAK_THRESHOLD, DEFAULT_LEAK_THRESHOLD, 0L) * 1000L;
+		String validate = properties.getProperty(VALIDATE);
+		if (validate != null)
+			validateOnBorrow = Boolean.parseBoolean(validate.trim());
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getMaxWaitMillis() {
+		return maxWaitMillis;
+	}
+
+	public long getIdleTimeoutMillis() {
+		return idleTimeoutMillis;
+	}
+
+	public boolean isValidateOnBorrow() {
+		return validateOnBorrow;
+	}
+
+	public long getLeakThresholdMillis() {
+		return leakThresholdMillis;
+	}
+
+	private static long getLong(Properties properties, String key, long defaultValue, long minValue) {
+		String value = properties.getProperty(key);
+		if (value == null)
+			return defaultValue;
+		try {
+			long number = Long.parseLong(value.trim());
+			if (number >= minValue)
+				return number;
+		} catch (NumberFormatException e) {
+		}
+		logger.error(String.format("Property %s value '%s' is invalid", key, value));
+		return defaultValue;
+	}
+}
@@ -0,0 +1,154 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classydb;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures a connection pool. Wait time is the time taken to acquire a connection and 
+ * utilisation is the proportion of the maximum pool size borrowed at the time of the request.
+ */
+public class PoolMetrics {
+
+	/** Number of connections acquired */
+	private final AtomicLong acquiredCount;
+	/** Number of acquisitions which timed out */
+	private final AtomicLong timeoutCount;
+	/** Number of physical connections opened */
+	private final AtomicLong createdCount;
+	/** Number of physical connections closed because they were idle or failed validation */
+	private final AtomicLong evictedCount;
+	/** Number of connections reported as leaked */
+	private final AtomicLong leakCount;
+	/** Total acquisition wait time in nanoseconds */
+	private final AtomicLong totalWaitNanos;
+	/** Longest acquisition wait time in nanoseconds */
+	private final AtomicLong maxWaitNanos;
+	/** Greatest number of connections borrowed at one time */
+	private final AtomicLong peakBorrowed;
+	/** Source of current pool state */
+	private final PooledConnectionSource pool;
+
+	/**
+	 * Construct PoolMetrics object
+	 * @param pool Connection pool being measured
+	 */
+	public PoolMetrics(PooledConnectionSource pool) {
+		this.pool = pool;
+		acquiredCount = new AtomicLong();
+		timeoutCount = new AtomicLong();
+		createdCount = new AtomicLong();
+		evictedCount = new AtomicLong();
+		leakCount = new AtomicLong();
+		totalWaitNanos = new AtomicLong();
+		maxWaitNanos = new AtomicLong();
+		peakBorrowed = new AtomicLong();
+	}
+
+	/**
+	 * Record acquisition of a connection
+	 * @param waitNanos Time in nanoseconds taken to acquire the connection
+	 * @param borrowed Number of connections borrowed, including this one
+	 */
+	public void onAcquired(long waitNanos, int borrowed) {
+		acquiredCount.incrementAndGet();
+		totalWaitNanos.addAndGet(waitNanos);
+		maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+		peakBorrowed.accumulateAndGet(borrowed, Math::max);
+	}
+
+	/**
+	 * Record acquisition time out
+	 */
+	public void onTimeout() {
+		timeoutCount.incrementAndGet();
+	}
+
+	/**
+	 * Record opening of a physical connection
+	 */
+	public void onCreated() {
+		createdCount.incrementAndGet();
+	}
+
+	/**
+	 * Record closing of a physical connection which was idle or invalid
+	 */
+	public void onEvicted() {
+		evictedCount.incrementAndGet();
+	}
+
+	/**
+	 * Record a connection borrowed for longer than the leak threshold
+	 */
+	public void onLeak() {
+		leakCount.incrementAndGet();
+	}
+
+	public long getAcquiredCount() {
+		return acquiredCount.get();
+	}
+
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+
+	public long getCreatedCount() {
+		return createdCount.get();
+	}
+
+	public long getEvictedCount() {
+		return evictedCount.get();
+	}
+
+	public long getLeakCount() {
+		return leakCount.get();
+	}
+
+	public long getPeakBorrowed() {
+		return peakBorrowed.get();
+	}
+
+	/**
+	 * Returns mean time in milliseconds taken to acquire a connection
+	 * @return double
+	 */
+	public double getMeanWaitMillis() {
+		long acquired = acquiredCount.get();
+		return acquired == 0 ? 0.0 : totalWaitNanos.get() / (acquired * 1000000.0);
+	}
+
+	/**
+	 * Returns longest time in milliseconds taken to acquire a connection
+	 * @return double
+	 */
+	public double getMaxWaitMillis() {
+		return maxWaitNanos.get() / 1000000.0;
+	}
+
+	/**
+	 * Returns proportion of maximum pool size currently borrowed
+	 * @return double between 0 and 1
+	 */
+	public double getUtilisation() {
+		return (double)pool.getBorrowedCount() / pool.getPoolConfig().getMaxSize();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Pool: borrowed %d, idle %d, peak %d, acquired %d, timeouts %d, created %d, evicted %d, leaks %d, wait mean %.3f ms max %.3f ms", 
+				pool.getBorrowedCount(), pool.getIdleCount(), peakBorrowed.get(), acquiredCount.get(), timeoutCount.get(), 
+				createdCount.get(), evictedCount.get(), leakCount.get(), getMeanWaitMillis(), getMaxWaitMillis());
+	}
+}
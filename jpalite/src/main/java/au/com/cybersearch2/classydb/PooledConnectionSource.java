@@ -0,0 +1,365 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classydb;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.jdbc.JdbcDatabaseConnection;
+import com.j256.ormlite.logger.Logger;
+import com.j256.ormlite.support.BaseConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+
+import au.com.cybersearch2.classylog.LogManager;
+
+/**
+ * Connection source which maintains a bounded pool of physical connections. Acquisition waits up 
+ * to a configured time when all connections are borrowed. Idle connections above the minimum size 
+ * are closed by a housekeeping thread, connections can be validated before they are borrowed and 
+ * a connection borrowed for too long is reported along with the stack trace of the borrower. 
+ * Physical connections are opened by a supplied factory, so credentials and driver properties are 
+ * handled by the database-specific data source.
+ */
+public class PooledConnectionSource extends BaseConnectionSource {
+
+	/** Opens a physical database connection */
+	@FunctionalInterface
+	public interface ConnectionFactory {
+		Connection connect() throws SQLException;
+	}
+
+	/** Connection held by the pool along with its usage record */
+	private static class PooledConnection {
+
+		private final DatabaseConnection databaseConnection;
+		/** Time connection was last returned to the pool */
+		private long lastUsed;
+		/** Time connection was borrowed */
+		private long borrowedAt;
+		/** Stack trace of borrower, captured only if leak detection is enabled */
+		private Throwable borrower;
+		/** Flag set true once a leak has been reported */
+		private boolean isLeakReported;
+
+		public PooledConnection(DatabaseConnection databaseConnection) {
+			this.databaseConnection = databaseConnection;
+			lastUsed = System.currentTimeMillis();
+		}
+	}
+
+	private static final String POOL_CLOSED = "Connection pool %s is closed";
+	/** Seconds to wait for a connection to be validated */
+	private static final int VALIDATION_TIMEOUT = 5;
+	private static final long MIN_HOUSEKEEPING_MILLIS = 100L;
+	private static final long MAX_HOUSEKEEPING_MILLIS = 30000L;
+
+	private static Logger logger = LogManager.getLogger(PooledConnectionSource.class);
+
+	/** Pool name used in messages and the housekeeping thread name */
+	private final String name;
+	/** Opens physical connections */
+	private final ConnectionFactory connectionFactory;
+	/** ORMLite database type */
+	private final DatabaseType databaseType;
+	/** Pool sizing, timeouts and validation */
+	private final PoolConfig poolConfig;
+	/** Wait time and utilisation measurements */
+	private final PoolMetrics metrics;
+	/** One permit for each connection which can be borrowed */
+	private final Semaphore permits;
+	/** Connections available to borrow, most recently used first */
+	private final Deque<PooledConnection> idle;
+	/** Connections currently borrowed */
+	private final Map<DatabaseConnection, PooledConnection> borrowed;
+	/** Evicts idle connections and detects leaks */
+	private final ScheduledExecutorService housekeeper;
+	private volatile boolean isOpen;
+
+	/**
+	 * Construct PooledConnectionSource object and open the minimum number of connections
+	 * @param name Pool name
+	 * @param connectionFactory Opens physical connections
+	 * @param databaseType ORMLite database type
+	 * @param poolConfig Pool configuration
+	 * @throws SQLException if opening a connection fails
+	 */
+	public PooledConnectionSource(String name, ConnectionFactory connectionFactory, DatabaseType databaseType, PoolConfig poolConfig) throws SQLException {
+		this.name = name;
+		this.connectionFactory = connectionFactory;
+		this.databaseType = databaseType;
+		this.poolConfig = poolConfig;
+		metrics = new PoolMetrics(this);
+		permits = new Semaphore(poolConfig.getMaxSize(), true);
+		idle = new ArrayDeque<>();
+		borrowed = new ConcurrentHashMap<>();
+		isOpen = true;
+		for (int i = 0; i < poolConfig.getMinSize(); ++i)
+			idle.push(open());
+		long period = poolConfig.getIdleTimeoutMillis();
+		if (poolConfig.getLeakThresholdMillis() > 0)
+			period = Math.min(period, poolConfig.getLeakThresholdMillis());
+		period = Math.max(MIN_HOUSEKEEPING_MILLIS, Math.min(MAX_HOUSEKEEPING_MILLIS, period / 2));
+		housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, name + "-pool");
+			thread.setDaemon(true);
+			return thread;
+		});
+		housekeeper.scheduleWithFixedDelay(this::housekeeping, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns connection from the pool, or the saved special connection of the calling thread. 
+	 * The pool does not distinguish read-only connections.
+	 */
+	@Override
+	public DatabaseConnection getReadOnlyConnection(String tableName) throws SQLException {
+		return getReadWriteConnection(tableName);
+	}
+
+	/**
+	 * Returns connection from the pool, or the saved special connection of the calling thread, 
+	 * waiting up to the maximum wait time if all connections are borrowed
+	 * @throws SQLException if the wait times out or a connection cannot be opened
+	 */
+	@Override
+	public DatabaseConnection getReadWriteConnection(String tableName) throws SQLException {
+		checkOpen();
+		DatabaseConnection savedConnection = getSavedConnection();
+		if (savedConnection != null)
+			return savedConnection;
+		long start = System.nanoTime();
+		try {
+			if (!permits.tryAcquire(poolConfig.getMaxWaitMillis(), TimeUnit.MILLISECONDS)) {
+				metrics.onTimeout();
+				throw new SQLException(String.format("Timed out after %d ms waiting for connection from pool %s", poolConfig.getMaxWaitMillis(), name));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException(String.format("Interrupted waiting for connection from pool %s", name), e);
+		}
+		try {
+			PooledConnection pooled = borrowIdle();
+			if (pooled == null)
+				pooled = open();
+			pooled.borrowedAt = System.currentTimeMillis();
+			pooled.isLeakReported = false;
+			if (poolConfig.getLeakThresholdMillis() > 0)
+				pooled.borrower = new Throwable("Connection borrowed from pool " + name);
+			borrowed.put(pooled.databaseConnection, pooled);
+			metrics.onAcquired(System.nanoTime() - start, borrowed.size());
+			return pooled.databaseConnection;
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Return connection to the pool. The saved special connection is not returned until it is cleared.
+	 */
+	@Override
+	public void releaseConnection(DatabaseConnection connection) throws SQLException {
+		if (isSavedConnection(connection))
+			return;
+		PooledConnection pooled = borrowed.remove(connection);
+		if (pooled == null) {
+			logger.warn("Connection released to pool {} which it did not supply", name);
+			connection.closeQuietly();
+			return;
+		}
+		try {
+			if (!isOpen || connection.isClosed())
+				connection.closeQuietly();
+			else {
+				pooled.lastUsed = System.currentTimeMillis();
+				pooled.borrower = null;
+				synchronized (idle) {
+					idle.push(pooled);
+				}
+			}
+		} finally {
+			permits.release();
+		}
+	}
+
+	@Override
+	public boolean saveSpecialConnection(DatabaseConnection connection) throws SQLException {
+		return saveSpecial(connection);
+	}
+
+	@Override
+	public void clearSpecialConnection(DatabaseConnection connection) {
+		clearSpecial(connection, logger);
+	}
+
+	/**
+	 * Close all connections, including any which are still borrowed
+	 */
+	@Override
+	public void close() throws Exception {
+		if (!isOpen)
+			return;
+		isOpen = false;
+		housekeeper.shutdownNow();
+		List<PooledConnection> connections;
+		synchronized (idle) {
+			connections = new ArrayList<>(idle);
+			idle.clear();
+		}
+		connections.forEach(pooled -> pooled.databaseConnection.closeQuietly());
+		for (PooledConnection pooled: borrowed.values()) {
+			logger.warn("Closing connection still borrowed from pool {}", name);
+			pooled.databaseConnection.closeQuietly();
+		}
+		borrowed.clear();
+		logger.debug("Closed {}", metrics);
+	}
+
+	@Override
+	public void closeQuietly() {
+		try {
+			close();
+		} catch (Exception e) {
+			// ignore
+		}
+	}
+
+	@Override
+	public DatabaseType getDatabaseType() {
+		return databaseType;
+	}
+
+	@Override
+	public boolean isOpen(String tableName) {
+		return isOpen;
+	}
+
+	@Override
+	public boolean isSingleConnection(String tableName) {
+		return false;
+	}
+
+	/**
+	 * Returns wait time and utilisation measurements
+	 * @return PoolMetrics object
+	 */
+	public PoolMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns pool configuration
+	 * @return PoolConfig object
+	 */
+	public PoolConfig getPoolConfig() {
+		return poolConfig;
+	}
+
+	/**
+	 * Returns number of connections currently borrowed
+	 * @return int
+	 */
+	public int getBorrowedCount() {
+		return borrowed.size();
+	}
+
+	/**
+	 * Returns number of connections available to borrow
+	 * @return int
+	 */
+	public int getIdleCount() {
+		synchronized (idle) {
+			return idle.size();
+		}
+	}
+
+	/**
+	 * Close idle connections above the minimum size which have exceeded the idle timeout
+	 * and report connections borrowed for longer than the leak threshold
+	 */
+	protected void housekeeping() {
+		long now = System.currentTimeMillis();
+		List<PooledConnection> expired = new ArrayList<>();
+		synchronized (idle) {
+			Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+			while (oldestFirst.hasNext() && (idle.size() + borrowed.size() > poolConfig.getMinSize())) {
+				PooledConnection pooled = oldestFirst.next();
+				if (now - pooled.lastUsed < poolConfig.getIdleTimeoutMillis())
+					break;
+				oldestFirst.remove();
+				expired.add(pooled);
+			}
+		}
+		for (PooledConnection pooled: expired) {
+			pooled.databaseConnection.closeQuietly();
+			metrics.onEvicted();
+		}
+		long leakThreshold = poolConfig.getLeakThresholdMillis();
+		if (leakThreshold > 0)
+			for (PooledConnection pooled: borrowed.values())
+				if (!pooled.isLeakReported && (now - pooled.borrowedAt > leakThreshold)) {
+					pooled.isLeakReported = true;
+					metrics.onLeak();
+					logger.warn(pooled.borrower, "Connection borrowed from pool {} for more than {} ms, possible leak", name, leakThreshold);
+				}
+	}
+
+	/**
+	 * Returns most recently used idle connection which is valid
+	 * @return PooledConnection object or null if none available
+	 */
+	private PooledConnection borrowIdle() {
+		while (true) {
+			PooledConnection pooled;
+			synchronized (idle) {
+				pooled = idle.poll();
+			}
+			if ((pooled == null) || !poolConfig.isValidateOnBorrow() || isValid(pooled.databaseConnection))
+				return pooled;
+			pooled.databaseConnection.closeQuietly();
+			metrics.onEvicted();
+		}
+	}
+
+	private boolean isValid(DatabaseConnection connection) {
+		try {
+			return connection.getUnderlyingConnection().isValid(VALIDATION_TIMEOUT);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private PooledConnection open() throws SQLException {
+		PooledConnection pooled = new PooledConnection(new JdbcDatabaseConnection(connectionFactory.connect()));
+		metrics.onCreated();
+		return pooled;
+	}
+
+	private void checkOpen() throws SQLException {
+		if (!isOpen)
+			throw new SQLException(String.format(POOL_CLOSED, name));
+	}
+}
@@ -14,6 +14,7 @@
 package au.com.cybersearch2.classydb;
 
 import java.io.File;
+import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Properties;
 
@@ -23,8 +24,8 @@ import au.com.cybersearch2.classylog.LogManager;
 
 import com.j256.ormlite.jdbc.db.SqliteDatabaseType;
 import com.j256.ormlite.jdbc.JdbcConnectionSource;
-import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
 import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
 
 /**
  * SQLiteDatabaseSupport
@@ -36,6 +37,10 @@ public class SQLiteDatabaseSupport extends DatabaseSupportBase
 {
 	private static Logger logger = LogManager.getLogger(SQLiteDatabaseSupport.class);
 	
+    /** Property set true to put a file database in write-ahead log mode with a pool of read connections */
+    public static final String WAL = DatabaseSupport.JTA_PREFIX + "WAL";
+    /** Property set true to give a memory database a pool of connections which share the named database */
+    public static final String SHARED_MEMORY = DatabaseSupport.JTA_PREFIX + "SHARED_MEMORY";
     /** SQLite memory path */
     private static final String IN_MEMORY_PATH = "jdbc:sqlite::memory:";
     
@@ -82,15 +87,51 @@ public class SQLiteDatabaseSupport extends DatabaseSupportBase
 	protected ConnectionSource getConnectionSourceForType(String databaseName, Properties properties) throws SQLException
     {
 		String fileLocation = getDatabaseLocation().getAbsolutePath();
+		// Pragmas of the unit tuning profile are applied to every new connection
+		ConnectionTuning tuning = ConnectionTuning.sqlite(properties);
         switch(connectionType)
 	        {
 	        case file:
-	            return new JdbcConnectionSource("jdbc:sqlite:" + fileLocation  + "/" + databaseName);
+	        {
+	        	String url = "jdbc:sqlite:" + fileLocation  + "/" + databaseName;
+	        	if ((properties != null) && Boolean.parseBoolean(properties.getProperty(WAL)))
+		            return new SqliteWalConnectionSource(databaseName, url, filterProperties(properties), databaseType, new PoolConfig(properties), tuning);
+	            return getJdbcConnectionSource(url, tuning);
+	        }
 	        case pooled:
-	            return new JdbcPooledConnectionSource("jdbc:sqlite:" + fileLocation  + "/" + databaseName); 
+	        {
+	        	String url = "jdbc:sqlite:" + fileLocation  + "/" + databaseName;
+	        	// Properties other than those of jpalite are passed to the driver as connection configuration
+	        	Properties driverProperties = filterProperties(properties);
+	            return new PooledConnectionSource(databaseName, () -> tuning.applyPragmas(DriverManager.getConnection(url, driverProperties)), databaseType, new PoolConfig(properties));
+	        }
 	        case memory: 
 	        default:
-	            return new JdbcConnectionSource(IN_MEMORY_PATH /*+ databaseName*/);
+	        	if ((properties != null) && Boolean.parseBoolean(properties.getProperty(SHARED_MEMORY)))
+	        		return new SqliteSharedMemoryConnectionSource(databaseName, filterProperties(properties), databaseType, new PoolConfig(properties), tuning);
+	            return getJdbcConnectionSource(IN_MEMORY_PATH /*+ databaseName*/, tuning);
 	        }
     }
+
+	/**
+	 * Returns single connection source which applies given pragmas when it opens a connection
+	 * @param url Database URL
+	 * @param tuning Pragmas to apply
+	 * @return JdbcConnectionSource object
+	 * @throws SQLException if database error occurs
+	 */
+	private JdbcConnectionSource getJdbcConnectionSource(String url, ConnectionTuning tuning) throws SQLException
+	{
+		if (tuning.isEmpty())
+			return new JdbcConnectionSource(url);
+		return new JdbcConnectionSource(url) {
+			
+			@Override
+			protected DatabaseConnection makeConnection(Logger logger) throws SQLException {
+				DatabaseConnection connection = super.makeConnection(logger);
+				tuning.applyPragmas(connection.getUnderlyingConnection());
+				return connection;
+			}
+		};
+	}
 }
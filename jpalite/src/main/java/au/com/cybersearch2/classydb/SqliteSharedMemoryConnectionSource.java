@@ -0,0 +1,77 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classydb;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.jdbc.JdbcDatabaseConnection;
+import com.j256.ormlite.support.DatabaseConnection;
+
+/**
+ * Pool of connections to a named SQLite in-memory database in shared-cache mode, so all 
+ * connections, and the threads using them, see the same database. An in-memory database is 
+ * deleted when its last connection closes, so a keeper connection, which is never borrowed, 
+ * is pinned open until the connection source closes.
+ */
+public class SqliteSharedMemoryConnectionSource extends PooledConnectionSource {
+
+	/** URL format of named shared-cache in-memory database */
+	private static final String SHARED_MEMORY_URL = "jdbc:sqlite:file:%s?mode=memory&cache=shared";
+
+	/** Keeps the database alive while the pool has no open connections */
+	private final DatabaseConnection keeperConnection;
+
+	/**
+	 * Construct SqliteSharedMemoryConnectionSource object
+	 * @param name Database name, which is shared by all connection sources in the same process
+	 * @param driverProperties Connection properties passed to the SQLite driver
+	 * @param databaseType ORMLite database type
+	 * @param poolConfig Connection pool configuration
+	 * @param tuning Pragmas to apply to each new connection
+	 * @throws SQLException if opening a connection fails
+	 */
+	public SqliteSharedMemoryConnectionSource(String name, Properties driverProperties, DatabaseType databaseType, PoolConfig poolConfig, ConnectionTuning tuning) throws SQLException {
+		super(name, () -> tuning.applyPragmas(DriverManager.getConnection(getUrl(name), driverProperties)), databaseType, poolConfig);
+		try {
+			keeperConnection = new JdbcDatabaseConnection(DriverManager.getConnection(getUrl(name), driverProperties));
+		} catch (SQLException e) {
+			super.closeQuietly();
+			throw e;
+		}
+	}
+
+	/**
+	 * Close all pooled connections and then the keeper connection, which deletes the database
+	 */
+	@Override
+	public void close() throws Exception {
+		try {
+			super.close();
+		} finally {
+			keeperConnection.closeQuietly();
+		}
+	}
+
+	/**
+	 * Returns URL of named shared-cache in-memory database
+	 * @param name Database name
+	 * @return String
+	 */
+	public static String getUrl(String name) {
+		return String.format(SHARED_MEMORY_URL, name);
+	}
+}
@@ -0,0 +1,185 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classydb;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Properties;
+
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.jdbc.JdbcDatabaseConnection;
+import com.j256.ormlite.logger.Logger;
+import com.j256.ormlite.support.BaseConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+
+import au.com.cybersearch2.classylog.LogManager;
+
+/**
+ * SQLite connection source for a database in write-ahead log (WAL) mode. There is one 
+ * write connection, as SQLite allows only one writer, while read-only connections are borrowed
+ * from a pool so readers do not wait for a write in progress. A thread in a transaction
+ * always uses its transaction connection, so it reads its own uncommitted changes.
+ */
+public class SqliteWalConnectionSource extends BaseConnectionSource {
+
+	/** SQLite driver connection property to set journal mode */
+	public static final String JOURNAL_MODE = "journal_mode";
+	/** SQLite driver connection property to set open mode flags */
+	public static final String OPEN_MODE = "open_mode";
+	/** SQLITE_OPEN_READONLY open mode flag */
+	public static final String OPEN_READONLY = "1";
+
+	private static Logger logger = LogManager.getLogger(SqliteWalConnectionSource.class);
+
+	/** ORMLite database type */
+	private final DatabaseType databaseType;
+	/** Single write connection */
+	private final DatabaseConnection writeConnection;
+	/** Pool of read-only connections */
+	private final PooledConnectionSource readPool;
+	private volatile boolean isOpen;
+
+	/**
+	 * Construct SqliteWalConnectionSource object. The write connection is opened first to put the 
+	 * database in WAL mode, which persists in the database file, before any read connection is opened. 
+	 * @param name Database name
+	 * @param url Database URL
+	 * @param driverProperties Connection properties passed to the SQLite driver
+	 * @param databaseType ORMLite database type
+	 * @param poolConfig Read connection pool configuration
+	 * @throws SQLException if opening a connection fails
+	 */
+	public SqliteWalConnectionSource(String name, String url, Properties driverProperties, DatabaseType databaseType, PoolConfig poolConfig) throws SQLException {
+		this(name, url, driverProperties, databaseType, poolConfig, new ConnectionTuning(Collections.emptyMap()));
+	}
+
+	/**
+	 * Construct SqliteWalConnectionSource object which applies given pragmas to every connection it opens
+	 * @param name Database name
+	 * @param url Database URL
+	 * @param driverProperties Connection properties passed to the SQLite driver
+	 * @param databaseType ORMLite database type
+	 * @param poolConfig Read connection pool configuration
+	 * @param tuning Pragmas to apply to each new connection
+	 * @throws SQLException if opening a connection fails
+	 */
+	public SqliteWalConnectionSource(String name, String url, Properties driverProperties, DatabaseType databaseType, PoolConfig poolConfig, ConnectionTuning tuning) throws SQLException {
+		this.databaseType = databaseType;
+		Properties writeProperties = new Properties();
+		writeProperties.putAll(driverProperties);
+		writeProperties.setProperty(JOURNAL_MODE, "WAL");
+		writeConnection = new JdbcDatabaseConnection(tuning.applyPragmas(DriverManager.getConnection(url, writeProperties)));
+		Properties readProperties = new Properties();
+		readProperties.putAll(driverProperties);
+		readProperties.setProperty(OPEN_MODE, OPEN_READONLY);
+		try {
+			readPool = new PooledConnectionSource(name + "-read", () -> tuning.applyPragmas(DriverManager.getConnection(url, readProperties)), databaseType, poolConfig);
+		} catch (SQLException e) {
+			writeConnection.closeQuietly();
+			throw e;
+		}
+		isOpen = true;
+	}
+
+	/**
+	 * Returns transaction connection of the calling thread, if one is saved, otherwise a connection from the read pool
+	 */
+	@Override
+	public DatabaseConnection getReadOnlyConnection(String tableName) throws SQLException {
+		checkOpen();
+		DatabaseConnection savedConnection = getSavedConnection();
+		if (savedConnection != null)
+			return savedConnection;
+		return readPool.getReadOnlyConnection(tableName);
+	}
+
+	/**
+	 * Returns transaction connection of the calling thread, if one is saved, otherwise the write connection
+	 */
+	@Override
+	public DatabaseConnection getReadWriteConnection(String tableName) throws SQLException {
+		checkOpen();
+		DatabaseConnection savedConnection = getSavedConnection();
+		if (savedConnection != null)
+			return savedConnection;
+		return writeConnection;
+	}
+
+	@Override
+	public void releaseConnection(DatabaseConnection connection) throws SQLException {
+		if ((connection == writeConnection) || isSavedConnection(connection))
+			return;
+		readPool.releaseConnection(connection);
+	}
+
+	@Override
+	public boolean saveSpecialConnection(DatabaseConnection connection) throws SQLException {
+		return saveSpecial(connection);
+	}
+
+	@Override
+	public void clearSpecialConnection(DatabaseConnection connection) {
+		clearSpecial(connection, logger);
+	}
+
+	@Override
+	public void close() throws Exception {
+		if (!isOpen)
+			return;
+		isOpen = false;
+		readPool.close();
+		writeConnection.close();
+	}
+
+	@Override
+	public void closeQuietly() {
+		try {
+			close();
+		} catch (Exception e) {
+			// ignore
+		}
+	}
+
+	@Override
+	public DatabaseType getDatabaseType() {
+		return databaseType;
+	}
+
+	@Override
+	public boolean isOpen(String tableName) {
+		return isOpen;
+	}
+
+	/**
+	 * Writes share one connection
+	 */
+	@Override
+	public boolean isSingleConnection(String tableName) {
+		return true;
+	}
+
+	/**
+	 * Returns read connection pool
+	 * @return PooledConnectionSource object
+	 */
+	public PooledConnectionSource getReadPool() {
+		return readPool;
+	}
+
+	private void checkOpen() throws SQLException {
+		if (!isOpen)
+			throw new SQLException("Connection source is closed");
+	}
+}
@@ -0,0 +1,127 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classydb;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.j256.ormlite.support.CompiledStatement;
+
+/**
+ * Size-bounded cache of compiled statements belonging to one database connection, keyed by SQL 
+ * text, which closes the least recently used statement when full. A statement is checked out 
+ * while it is being executed, so a connection shared by several threads never has one statement 
+ * executed concurrently. A second statement for the same SQL compiled while the first is checked 
+ * out is closed when checked in.
+ */
+public class StatementCache {
+
+	/** Idle statements in access order */
+	private final Map<String, CompiledStatement> statements;
+	private final int maxEntries;
+	private final AtomicLong hitCount;
+	private final AtomicLong missCount;
+	private final AtomicLong evictionCount;
+
+	/**
+	 * Construct StatementCache object
+	 * @param maxEntries Maximum number of statements
+	 */
+	public StatementCache(int maxEntries) {
+		if (maxEntries < 1)
+			throw new IllegalArgumentException("Parameter \"maxEntries\" must be greater than zero");
+		this.maxEntries = maxEntries;
+		hitCount = new AtomicLong();
+		missCount = new AtomicLong();
+		evictionCount = new AtomicLong();
+		statements = new LinkedHashMap<String, CompiledStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CompiledStatement> eldest) {
+				if (size() > StatementCache.this.maxEntries) {
+					evictionCount.incrementAndGet();
+					eldest.getValue().closeQuietly();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Remove statement for given SQL from the cache for exclusive use
+	 * @param sql SQL text
+	 * @return CompiledStatement object or null if none is cached
+	 */
+	public CompiledStatement checkout(String sql) {
+		CompiledStatement statement;
+		synchronized(statements) {
+			statement = statements.remove(sql);
+		}
+		if (statement == null)
+			missCount.incrementAndGet();
+		else
+			hitCount.incrementAndGet();
+		return statement;
+	}
+
+	/**
+	 * Return statement to the cache after use
+	 * @param sql SQL text
+	 * @param statement Statement which has executed without error
+	 */
+	public void checkin(String sql, CompiledStatement statement) {
+		synchronized(statements) {
+			if (!statements.containsKey(sql)) {
+				statements.put(sql, statement);
+				return;
+			}
+		}
+		statement.closeQuietly();
+	}
+
+	/**
+	 * Close all cached statements
+	 */
+	public void clear() {
+		List<CompiledStatement> closing;
+		synchronized(statements) {
+			closing = new ArrayList<>(statements.values());
+			statements.clear();
+		}
+		closing.forEach(CompiledStatement::closeQuietly);
+	}
+
+	public int size() {
+		synchronized(statements) {
+			return statements.size();
+		}
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+}
@@ -0,0 +1,90 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classydb;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Enumerates named engine tuning presets, each giving SQLite pragmas and H2 settings 
+ * to apply to every new physical connection
+ */
+public enum TuningProfile {
+
+	durable("durable", "Every commit is synced to storage",
+			new String[] {"synchronous", "FULL", "temp_store", "DEFAULT", "cache_size", "-2000", "mmap_size", "0"},
+			new String[] {"CACHE_SIZE", "16384", "LOCK_TIMEOUT", "10000", "WRITE_DELAY", "0"}),
+	balanced("balanced", "Commits are synced at checkpoints, with larger caches and memory-mapped I/O",
+			new String[] {"synchronous", "NORMAL", "temp_store", "MEMORY", "cache_size", "-16000", "mmap_size", "268435456"},
+			new String[] {"CACHE_SIZE", "65536", "LOCK_TIMEOUT", "10000", "WRITE_DELAY", "500"}),
+	bulk_load("bulk-load", "Commits are not synced, for data which can be reloaded if the system fails",
+			new String[] {"synchronous", "OFF", "temp_store", "MEMORY", "cache_size", "-64000", "mmap_size", "1073741824", "page_size", "8192"},
+			new String[] {"CACHE_SIZE", "262144", "LOCK_TIMEOUT", "60000", "WRITE_DELAY", "2000"});
+
+	private final String key;
+	private final String description;
+	private final Map<String, String> sqlitePragmas;
+	private final Map<String, String> h2Settings;
+
+	private TuningProfile(String key, String description, String[] sqlitePragmas, String[] h2Settings) {
+		this.key = key;
+		this.description = description;
+		this.sqlitePragmas = toMap(sqlitePragmas);
+		this.h2Settings = toMap(h2Settings);
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * Returns SQLite pragma values in order of application
+	 * @return unmodifiable map
+	 */
+	public Map<String, String> getSqlitePragmas() {
+		return sqlitePragmas;
+	}
+
+	/**
+	 * Returns H2 database settings
+	 * @return unmodifiable map
+	 */
+	public Map<String, String> getH2Settings() {
+		return h2Settings;
+	}
+
+	/**
+	 * Returns profile for given key, case-insensitive
+	 * @param key Profile key
+	 * @return TuningProfile or null if key is unknown
+	 */
+	public static TuningProfile fromKey(String key) {
+		for (TuningProfile profile: values())
+			if (profile.key.equalsIgnoreCase(key.trim()))
+				return profile;
+		return null;
+	}
+
+	private static Map<String, String> toMap(String[] pairs) {
+		Map<String, String> map = new LinkedHashMap<>();
+		for (int i = 0; i < pairs.length; i += 2)
+			map.put(pairs[i], pairs[i + 1]);
+		return Collections.unmodifiableMap(map);
+	}
+}
@@ -13,6 +13,9 @@
     limitations under the License. */
 package au.com.cybersearch2.classyjpa;
 
+import java.util.Collection;
+
+import javax.persistence.EntityExistsException;
 import javax.persistence.EntityNotFoundException;
 import javax.persistence.EntityTransaction;
 import javax.persistence.FlushModeType;
@@ -163,6 +166,19 @@ public interface EntityManagerLite
 	 */
 	public <T extends OrmEntity> T merge(T entity);
 
+	/**
+	 * Merge the state of each of the given entities into the current persistence context.
+	 * Each entity instance becomes managed.
+	 * 
+	 * @param entities
+	 *            the entity instances
+	 * @throws IllegalArgumentException
+	 *             if any instance is not an entity or is a removed entity
+     * @throws IllegalStateException 
+     *             if this EntityManager has been closed.
+	 */
+	public void mergeAll(Collection<? extends OrmEntity> entities);
+
 	/**
 	 * Make an instance managed and persistent.
 	 * 
@@ -175,6 +191,21 @@ public interface EntityManagerLite
 	 */
 	public void persist(OrmEntity entity);
 
+	/**
+	 * Make the given instances managed and persistent. The whole collection is validated
+	 * before any instance is inserted and inserts are performed in bulk for each entity class.
+	 * 
+	 * @param entities
+	 *            the entity instances
+	 * @throws IllegalArgumentException
+	 *             if any instance is not an entity
+	 * @throws EntityExistsException
+	 *             if any instance already exists
+     * @throws IllegalStateException 
+     *             if this EntityManager has been closed.
+	 */
+	public void persistAll(Collection<? extends OrmEntity> entities);
+
 	/**
 	 * Refresh the state of the instance from the database, overwriting changes made to the entity, if any.
 	 * 
@@ -199,6 +230,19 @@ public interface EntityManagerLite
 	 */
 	public void remove(OrmEntity entity);
 
+	/**
+	 * Remove the given entity instances. The whole collection is validated before any 
+	 * instance is removed and deletes are performed by id in bulk for each entity class.
+	 * 
+	 * @param entities
+	 *            the entity instances
+	 * @throws IllegalArgumentException
+	 *             if any instance is not an entity or is a detached entity
+     * @throws IllegalStateException 
+     *             if this EntityManager has been closed.
+	 */
+	public void removeAll(Collection<? extends OrmEntity> entities);
+
 	/**
 	 * Set the flush mode that applies to all objects contained in the persistence context.
 	 * 
@@ -52,6 +52,26 @@ public interface EntityManagerLiteFactory {
 	 */
 	EntityManagerLite createEntityManager(ConnectionSource connectionSource);
 
+	/**
+	 * Create a new EntityManager which has no persistence context. Operations are executed directly
+	 * on entity DAOs and no entity becomes managed.
+	 * 
+	 * @return entity manager instance
+	 * @throws IllegalStateException
+	 *             if the entity manager factory has been closed
+	 */
+	EntityManagerLite createStatelessEntityManager();
+
+	/**
+	 * Create a EntityManager which has no persistence context bound to an existing connectionSource.
+	 * 
+	 * @param connectionSource The existing ConnectionSource object
+	 * @return Entity manager instance
+	 * @throws IllegalStateException
+	 *             if the entity manager factory has been closed
+	 */
+	EntityManagerLite createStatelessEntityManager(ConnectionSource connectionSource);
+
 	/**
 	 * Indicates whether the factory is open. Returns true until the factory has been closed.
 	 * 
@@ -0,0 +1,92 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classyjpa.cache;
+
+import au.com.cybersearch2.classyjpa.entity.OrmEntity;
+
+/**
+ * EntityCache
+ * Second-level entity cache shared by all entity managers of one persistence unit.
+ * Entities are identified by class and primary key. Stored entities are owned by the cache
+ * and callers receive detached copies, so cached state is never modified outside the cache.
+ * Implementations must be thread safe.
+ */
+public interface EntityCache {
+
+	/**
+	 * Returns copy of cached entity
+	 * @param entityClass Entity class
+	 * @param primaryKey Primary key
+	 * @param <T> Entity type
+	 * @return Entity or null if not cached
+	 */
+	<T extends OrmEntity> T get(Class<T> entityClass, int primaryKey);
+
+	/**
+	 * Store entity, replacing any existing entry. The cache takes ownership of the entity.
+	 * @param entity Entity which is not referenced elsewhere
+	 * @param primaryKey Primary key
+	 */
+	void put(OrmEntity entity, int primaryKey);
+
+	/**
+	 * Store entity only if no entry exists. The cache takes ownership of the entity.
+	 * @param entity Entity which is not referenced elsewhere
+	 * @param primaryKey Primary key
+	 * @return true if entity was stored
+	 */
+	boolean putIfAbsent(OrmEntity entity, int primaryKey);
+
+	/**
+	 * Invalidate entry for entity identified by class and primary key
+	 * @param entityClass Entity class
+	 * @param primaryKey Primary key
+	 */
+	void evict(Class<? extends OrmEntity> entityClass, int primaryKey);
+
+	/**
+	 * Remove all entries
+	 */
+	void clear();
+
+	/**
+	 * Returns number of entries
+	 * @return int
+	 */
+	int size();
+
+	/**
+	 * Returns number of lookups which found an entry
+	 * @return long
+	 */
+	long getHitCount();
+
+	/**
+	 * Returns number of lookups which did not find an entry
+	 * @return long
+	 */
+	long getMissCount();
+
+	/**
+	 * Returns number of entries removed by the eviction policy
+	 * @return long
+	 */
+	long getEvictionCount();
+
+	/**
+	 * Returns copier which creates the detached copies held and returned by the cache
+	 * @return EntityCopier object
+	 */
+	EntityCopier getEntityCopier();
+}
@@ -0,0 +1,92 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classyjpa.cache;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.PersistenceException;
+
+import org.apache.commons.beanutils.PropertyUtils;
+
+import au.com.cybersearch2.classyjpa.entity.EntityPropertyCopier;
+import au.com.cybersearch2.classyjpa.entity.OrmEntity;
+
+/**
+ * EntityCopier
+ * Creates detached copies of entities for a second-level cache. The persistence unit registers a 
+ * copier for each entity class it analyses, which copies only persisted columns, using method handles 
+ * built once, and copies mutable column values. Entity classes which are not registered are copied 
+ * using reflection, which is slow and shallow. 
+ * Entity classes are required to have a no-argument constructor.
+ */
+public class EntityCopier {
+
+	/** Copiers mapped by entity class */
+	private final Map<Class<?>, EntityPropertyCopier<?>> copierMap;
+
+	public EntityCopier() {
+		copierMap = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Register copier of persisted columns for an entity class
+	 * @param propertyCopier Copier which creates detached copies
+	 * @param <T> Entity type
+	 */
+	public <T extends OrmEntity> void register(EntityPropertyCopier<T> propertyCopier) {
+		copierMap.put(propertyCopier.getEntityClass(), propertyCopier);
+	}
+
+	/**
+	 * Returns detached copy of given entity
+	 * @param entity Entity to copy
+	 * @param <T> Entity type
+	 * @return new entity instance
+	 * @throws PersistenceException if copy fails
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends OrmEntity> T copy(T entity) {
+		EntityPropertyCopier<T> propertyCopier = (EntityPropertyCopier<T>)copierMap.get(entity.getClass());
+		if (propertyCopier != null)
+			return propertyCopier.newCopy(entity);
+		return reflectiveCopy(entity);
+	}
+
+	/**
+	 * Returns shallow copy of given entity
+	 * @param entity Entity to copy
+	 * @param <T> Entity type
+	 * @return new entity instance
+	 * @throws PersistenceException if a reflection error occurs
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends OrmEntity> T reflectiveCopy(T entity) {
+		try {
+			T copy = (T)entity.getClass().getDeclaredConstructor().newInstance();
+			PropertyUtils.copyProperties(copy, entity);
+			return copy;
+		} catch (InvocationTargetException e) {
+			throw createCopyException(entity, e.getCause() == null ? e.toString() : e.getCause().toString());
+		} catch (ReflectiveOperationException e) {
+			throw createCopyException(entity, e.toString());
+		}
+	}
+
+	private static PersistenceException createCopyException(OrmEntity entity, String details) {
+		return new PersistenceException("Copy of entity class " + entity.getClass().getName() + 
+				" failed due to Java Reflection error: " + details);
+	}
+}
@@ -0,0 +1,45 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classyjpa.cache;
+
+/**
+ * Enumerates second-level entity cache eviction policies
+ */
+public enum EvictionPolicy {
+
+	lru("Least recently used entry evicted when cache is full"),
+	ttl("Entries expire after time-to-live and least recently used entry evicted when cache is full");
+
+	private final String description;
+
+	private EvictionPolicy(String description) {
+		this.description = description;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * Create entity cache for this policy
+	 * @param maxEntries Maximum number of entries
+	 * @param ttlMillis Time-to-live in milliseconds. Ignored unless policy is ttl.
+	 * @return EntityCache
+	 */
+	public EntityCache createEntityCache(int maxEntries, long ttlMillis) {
+		if (this == ttl)
+			return new TtlEntityCache(maxEntries, ttlMillis);
+		return new LruEntityCache(maxEntries);
+	}
+}
@@ -0,0 +1,210 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classyjpa.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import au.com.cybersearch2.classyjpa.entity.OrmEntity;
+
+/**
+ * LruEntityCache
+ * Size-bounded entity cache which evicts the least recently used entry when full.
+ * Subclasses may expire entries by overriding {@link #isExpired(CacheEntry, long)}.
+ */
+public class LruEntityCache implements EntityCache {
+
+	/** Identifies entity by class identity and primary key */
+	private static final class CacheKey {
+		private final Class<?> entityClass;
+		private final int primaryKey;
+
+		CacheKey(Class<?> entityClass, int primaryKey) {
+			this.entityClass = entityClass;
+			this.primaryKey = primaryKey;
+		}
+
+		@Override
+		public int hashCode() {
+			return entityClass.hashCode() * 31 + primaryKey;
+		}
+
+		@Override
+		public boolean equals(Object another) {
+			if (another instanceof CacheKey)
+				return (entityClass == ((CacheKey)another).entityClass) && (primaryKey == ((CacheKey)another).primaryKey);
+			return false;
+		}
+	}
+
+	/** Cached entity and time it was stored */
+	protected static final class CacheEntry {
+		final OrmEntity entity;
+		final long timestamp;
+
+		CacheEntry(OrmEntity entity, long timestamp) {
+			this.entity = entity;
+			this.timestamp = timestamp;
+		}
+
+		public long getTimestamp() {
+			return timestamp;
+		}
+	}
+
+	/** Entries in access order */
+	private final Map<CacheKey, CacheEntry> entries;
+	private final int maxEntries;
+	private final AtomicLong hitCount;
+	private final AtomicLong missCount;
+	private final AtomicLong evictionCount;
+	/** Creates detached copies */
+	private final EntityCopier entityCopier;
+
+	/**
+	 * Construct LruEntityCache object
+	 * @param maxEntries Maximum number of entries
+	 */
+	public LruEntityCache(int maxEntries) {
+		if (maxEntries < 1)
+			throw new IllegalArgumentException("Parameter \"maxEntries\" must be greater than zero");
+		this.maxEntries = maxEntries;
+		hitCount = new AtomicLong();
+		missCount = new AtomicLong();
+		evictionCount = new AtomicLong();
+		entityCopier = new EntityCopier();
+		entries = new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest) {
+				if (size() > LruEntityCache.this.maxEntries) {
+					evictionCount.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends OrmEntity> T get(Class<T> entityClass, int primaryKey) {
+		CacheEntry entry;
+		synchronized(entries) {
+			CacheKey key = new CacheKey(entityClass, primaryKey);
+			entry = entries.get(key);
+			if ((entry != null) && isExpired(entry, currentTimeMillis())) {
+				entries.remove(key);
+				evictionCount.incrementAndGet();
+				entry = null;
+			}
+		}
+		if (entry == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		return entityCopier.copy((T)entry.entity);
+	}
+
+	@Override
+	public void put(OrmEntity entity, int primaryKey) {
+		CacheEntry entry = new CacheEntry(entity, currentTimeMillis());
+		synchronized(entries) {
+			entries.put(new CacheKey(entity.getClass(), primaryKey), entry);
+		}
+	}
+
+	@Override
+	public boolean putIfAbsent(OrmEntity entity, int primaryKey) {
+		long now = currentTimeMillis();
+		CacheKey key = new CacheKey(entity.getClass(), primaryKey);
+		synchronized(entries) {
+			CacheEntry existing = entries.get(key);
+			if ((existing != null) && !isExpired(existing, now))
+				return false;
+			entries.put(key, new CacheEntry(entity, now));
+		}
+		return true;
+	}
+
+	@Override
+	public void evict(Class<? extends OrmEntity> entityClass, int primaryKey) {
+		synchronized(entries) {
+			entries.remove(new CacheKey(entityClass, primaryKey));
+		}
+	}
+
+	@Override
+	public void clear() {
+		synchronized(entries) {
+			entries.clear();
+		}
+	}
+
+	@Override
+	public int size() {
+		synchronized(entries) {
+			return entries.size();
+		}
+	}
+
+	@Override
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	@Override
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	@Override
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	@Override
+	public EntityCopier getEntityCopier() {
+		return entityCopier;
+	}
+
+	/**
+	 * Returns maximum number of entries
+	 * @return int
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * Returns flag set true if given entry has expired
+	 * @param entry Cache entry
+	 * @param now Current time in milliseconds
+	 * @return boolean
+	 */
+	protected boolean isExpired(CacheEntry entry, long now) {
+		return false;
+	}
+
+	/**
+	 * Returns current time in milliseconds. Override to control time in tests.
+	 * @return long
+	 */
+	protected long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+}
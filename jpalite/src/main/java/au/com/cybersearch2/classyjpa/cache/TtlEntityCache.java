@@ -0,0 +1,50 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classyjpa.cache;
+
+/**
+ * TtlEntityCache
+ * Size-bounded entity cache where entries also expire once their time-to-live has elapsed.
+ * Expired entries are removed when next accessed.
+ */
+public class TtlEntityCache extends LruEntityCache {
+
+	/** Time-to-live in milliseconds */
+	private final long ttlMillis;
+
+	/**
+	 * Construct TtlEntityCache object
+	 * @param maxEntries Maximum number of entries
+	 * @param ttlMillis Time-to-live in milliseconds
+	 */
+	public TtlEntityCache(int maxEntries, long ttlMillis) {
+		super(maxEntries);
+		if (ttlMillis < 1)
+			throw new IllegalArgumentException("Parameter \"ttlMillis\" must be greater than zero");
+		this.ttlMillis = ttlMillis;
+	}
+
+	/**
+	 * Returns time-to-live in milliseconds
+	 * @return long
+	 */
+	public long getTtlMillis() {
+		return ttlMillis;
+	}
+
+	@Override
+	protected boolean isExpired(CacheEntry entry, long now) {
+		return now - entry.getTimestamp() >= ttlMillis;
+	}
+}
@@ -0,0 +1,171 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classyjpa.entity;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.jdbc.JdbcCompiledStatement;
+import com.j256.ormlite.stmt.StatementBuilder.StatementType;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.TableInfo;
+
+/**
+ * ColumnUpdate
+ * UPDATE statement by id which writes a selected set of columns. Multiple entities of one class
+ * can be updated using a single JDBC prepared statement batch. Entity classes with a version field, 
+ * which requires per-row handling, are not supported.
+ */
+class ColumnUpdate<T extends OrmEntity>
+{
+    /** UPDATE statement with id in WHERE clause */
+    private final String statement;
+    /** Field types in argument order */
+    private final FieldType[] argFieldTypes;
+
+    /**
+     * Construct ColumnUpdate object
+     * @param statement UPDATE statement
+     * @param argFieldTypes Field types in argument order
+     */
+    private ColumnUpdate(String statement, FieldType[] argFieldTypes)
+    {
+        this.statement = statement;
+        this.argFieldTypes = argFieldTypes;
+    }
+
+    /**
+     * Returns SQL statement
+     * @return String
+     */
+    public String getStatement()
+    {
+        return statement;
+    }
+
+    /**
+     * Execute update for one entity
+     * @param databaseConnection Connection of current transaction
+     * @param entity Entity to update
+     * @return Update count
+     * @throws SQLException if a database error occurs
+     */
+    public int update(DatabaseConnection databaseConnection, OrmEntity entity) throws SQLException
+    {
+        return databaseConnection.update(statement, getArgs(entity), argFieldTypes);
+    }
+
+    /**
+     * Execute update for given entities as a batch
+     * @param connection JDBC connection of current transaction
+     * @param entities Entities to update
+     * @return Update count for each entity in same order as entities
+     * @throws SQLException if a database error occurs
+     */
+    public int[] executeBatch(Connection connection, List<? extends OrmEntity> entities) throws SQLException
+    {
+        PreparedStatement preparedStatement = connection.prepareStatement(statement);
+        // Compiled statement applies ORMLite SQL type mapping to arguments
+        JdbcCompiledStatement compiledStatement = 
+            new JdbcCompiledStatement(preparedStatement, statement, StatementType.UPDATE, false);
+        try
+        {
+            for (OrmEntity entity: entities)
+            {
+                Object[] args = getArgs(entity);
+                for (int i = 0; i < args.length; i++)
+                    compiledStatement.setObject(i, args[i], argFieldTypes[i].getSqlType());
+                preparedStatement.addBatch();
+            }
+            return preparedStatement.executeBatch();
+        }
+        finally
+        {
+            compiledStatement.closeQuietly();
+        }
+    }
+
+    private Object[] getArgs(OrmEntity entity) throws SQLException
+    {
+        Object[] args = new Object[argFieldTypes.length];
+        for (int i = 0; i < args.length; i++)
+            args[i] = argFieldTypes[i].extractJavaFieldToSqlArgValue(entity);
+        return args;
+    }
+
+    /**
+     * Returns fields which can be written by an update, in table order
+     * @param tableInfo Entity table information
+     * @return FieldType array or null if the table is not supported
+     */
+    public static FieldType[] getUpdatableFields(TableInfo<?, Integer> tableInfo)
+    {
+        FieldType idField = tableInfo.getIdField();
+        if (idField == null)
+            return null;
+        List<FieldType> fieldList = new ArrayList<>();
+        for (FieldType fieldType: tableInfo.getFieldTypes())
+        {
+            if ((fieldType == idField) || fieldType.isForeignCollection() || fieldType.isReadOnly())
+                continue;
+            if (fieldType.isVersion())
+                return null;
+            fieldList.add(fieldType);
+        }
+        if (fieldList.isEmpty())
+            return null;
+        return fieldList.toArray(new FieldType[fieldList.size()]);
+    }
+
+    /**
+     * Returns ColumnUpdate which writes selected columns
+     * @param databaseType Database type
+     * @param tableInfo Entity table information
+     * @param updatableFields Fields returned by {@link #getUpdatableFields(TableInfo)}
+     * @param columns Indexes of updatable fields to write
+     * @return ColumnUpdate object
+     */
+    public static <T extends OrmEntity> ColumnUpdate<T> build(DatabaseType databaseType, TableInfo<T, Integer> tableInfo, FieldType[] updatableFields, BitSet columns)
+    {
+        List<FieldType> argFieldList = new ArrayList<>();
+        StringBuilder sb = new StringBuilder("UPDATE ");
+        if ((tableInfo.getSchemaName() != null) && !tableInfo.getSchemaName().isEmpty())
+        {
+            databaseType.appendEscapedEntityName(sb, tableInfo.getSchemaName());
+            sb.append('.');
+        }
+        databaseType.appendEscapedEntityName(sb, tableInfo.getTableName());
+        sb.append(" SET ");
+        for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1))
+        {
+            if (!argFieldList.isEmpty())
+                sb.append(", ");
+            databaseType.appendEscapedEntityName(sb, updatableFields[i].getColumnName());
+            sb.append(" = ?");
+            argFieldList.add(updatableFields[i]);
+        }
+        FieldType idField = tableInfo.getIdField();
+        sb.append(" WHERE ");
+        databaseType.appendEscapedEntityName(sb, idField.getColumnName());
+        sb.append(" = ?");
+        argFieldList.add(idField);
+        return new ColumnUpdate<T>(sb.toString(), argFieldList.toArray(new FieldType[argFieldList.size()]));
+    }
+}
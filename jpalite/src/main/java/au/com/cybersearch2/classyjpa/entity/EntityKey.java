@@ -21,12 +21,10 @@ package au.com.cybersearch2.classyjpa.entity;
  */
 public class EntityKey implements Comparable<EntityKey>
 {
-    /** Entity class hashcode */
-    int entityClassHash;
-    /** Primary key hashcode */
-    int primaryKeyHash;
-    /** Flag set true if updates need to be persisted on the entity identifed by this key */
-    boolean dirty;
+    /** Entity class, compared by identity */
+    final Class<?> entityClass;
+    /** Primary key */
+    final int primaryKey;
   
     /**
      * Create EntityKey object
@@ -35,14 +33,17 @@ public class EntityKey implements Comparable<EntityKey>
      */
     public EntityKey(Class<?> entityClass, int primaryKey)
     {
-        entityClassHash = entityClass.hashCode();
-        primaryKeyHash = primaryKey;
+        if (entityClass == null)
+            throw new IllegalArgumentException("Parameter \"entityClass\" is null");
+        this.entityClass = entityClass;
+        this.primaryKey = primaryKey;
     }
 
     /**
      * Compares this object with the specified object for order.  Returns a
      * negative integer, zero, or a positive integer as this object is less
      * than, equal to, or greater than the specified object.
+     * Keys are ordered by entity class name, then by primary key.
      *
      * @param   another The object to be compared.
      * @return  a negative integer, zero, or a positive integer as this object
@@ -51,25 +52,14 @@ public class EntityKey implements Comparable<EntityKey>
     @Override
     public int compareTo(EntityKey another) 
     {
-        return (entityClassHash < another.entityClassHash) ? -1 : (primaryKeyHash - another.primaryKeyHash);
-    }
-
-    /**
-     * Returns true if updates need to be persisted on the entity identifed by this key
-     * @return boolean
-     */
-    public boolean isDirty() 
-    {
-        return dirty;
-    }
-
-    /**
-     * Set dirty flag
-     * @param dirty boolean
-     */
-    public void setDirty(boolean dirty) 
-    {
-        this.dirty = dirty;
+        if (entityClass != another.entityClass)
+        {
+            int result = entityClass.getName().compareTo(another.entityClass.getName());
+            if (result != 0)
+                return result;
+            return Integer.compare(System.identityHashCode(entityClass), System.identityHashCode(another.entityClass));
+        }
+        return Integer.compare(primaryKey, another.primaryKey);
     }
 
     /**
@@ -84,7 +74,7 @@ public class EntityKey implements Comparable<EntityKey>
     @Override
     public int hashCode()
     {
-        return entityClassHash ^ primaryKeyHash;
+        return 31 * System.identityHashCode(entityClass) + primaryKey;
     }
     
     /**
@@ -100,13 +90,13 @@ public class EntityKey implements Comparable<EntityKey>
     public boolean equals(Object another)
     {
         if (another instanceof EntityKey)
-            return (entityClassHash == ((EntityKey)another).entityClassHash) && (primaryKeyHash == ((EntityKey)another).primaryKeyHash);
+            return (entityClass == ((EntityKey)another).entityClass) && (primaryKey == ((EntityKey)another).primaryKey);
         return false;
     }
 
 	@Override
 	public String toString() {
-		return String.format("Class # %d, Key %d", entityClassHash, primaryKeyHash);
+		return String.format("Class %s, Key %d", entityClass.getName(), primaryKey);
 	}
     
 }
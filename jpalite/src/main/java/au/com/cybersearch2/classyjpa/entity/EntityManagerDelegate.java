@@ -58,7 +58,7 @@ public class EntityManagerDelegate
         OrmDaoHelperFactory<? extends OrmEntity> ormDaoHelperFactory = (OrmDaoHelperFactory<? extends OrmEntity>) helperFactoryMap.get(clazz.getName());
         if (ormDaoHelperFactory == null)
             throw new UnsupportedOperationException("DAO for entity class " + clazz.getName() + " not supported because ormDaoHelper is not set");
-        return ormDaoHelperFactory.getDao(connectionSource);
+        return ormDaoHelperFactory.getRegisteredDao(connectionSource);
     }
 
     /**
@@ -13,6 +13,15 @@
     limitations under the License. */
 package au.com.cybersearch2.classyjpa.entity;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import javax.persistence.EntityExistsException;
 import javax.persistence.EntityNotFoundException;
 import javax.persistence.EntityTransaction;
@@ -22,6 +31,7 @@ import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
 
 import au.com.cybersearch2.classyjpa.persist.PersistenceConfig;
+import au.com.cybersearch2.classyjpa.query.QueryBase;
 import au.com.cybersearch2.classyjpa.transaction.SetRollbackTransaction;
 import au.com.cybersearch2.classyjpa.transaction.UserTransactionSupport;
 
@@ -30,11 +40,16 @@ import au.com.cybersearch2.classyjpa.transaction.UserTransactionSupport;
  * Implementation of EntityManager interface
  * Transaction scoped. Entity objects are managed only while a transaction is active.
  * Except for when the EntityManger has been closed, a new transaction will begin whenever an object needs to be managed and the transaction is not active. 
+ * If the persistence unit sets a flush threshold or flush heap budget, pending updates are written and all managed entities
+ * detached once the limit is reached, without ending the transaction, so memory stays bounded in very large units of work.
  * @author Andrew Bowley
  * 01/05/2014
  */
 public class EntityManagerImpl implements UserTransactionSupport
 {
+    /** Number of operations between checks of used heap against flush heap budget */
+    private static final int HEAP_CHECK_INTERVAL = 256;
+
     /** PersistenceUnitAdmin Unit configuration */
     private final PersistenceConfig persistenceConfig;
     /** Retrieving DaoHelper for an entity class is delegated to OrmEmtityMonitor  */
@@ -47,6 +62,14 @@ public class EntityManagerImpl implements UserTransactionSupport
     private boolean isUserTransaction; 
     /** Flag set when close() is called */
     private volatile boolean isOpen;
+    /** Flush mode applied to queries */
+    private FlushModeType flushMode;
+    /** Managed entity count which triggers flush and clear within the transaction or 0 if not set */
+    private final int flushThreshold;
+    /** Used heap bytes which triggers flush and clear within the transaction or 0 if not set */
+    private final long flushHeapBudget;
+    /** Count of operations since used heap was last checked */
+    private int heapCheckCount;
 
     /**
      * Create EntityManagerImpl object
@@ -60,6 +83,9 @@ public class EntityManagerImpl implements UserTransactionSupport
         this.transaction = transaction;
         this.persistenceConfig = persistenceConfig;
         daoHelperForClass = transaction.getEntityMonitor();
+        flushMode = FlushModeType.COMMIT;
+        flushThreshold = persistenceConfig.getFlushThreshold();
+        flushHeapBudget = persistenceConfig.getFlushHeapBudget();
         isOpen = true;
     }
 
@@ -78,7 +104,7 @@ public class EntityManagerImpl implements UserTransactionSupport
      * Make an entity instance managed and persistent.
      * @param entity The entity instance
      * @throws IllegalArgumentException if not an entity
-     * @throws IllegalStateException if this EntityManager has been closed.
+     * @throws IllegalStateException if this EntityManager has been closed or the transaction is read-only.
      */
     @Override
     public void persist(OrmEntity entity) 
@@ -86,6 +112,7 @@ public class EntityManagerImpl implements UserTransactionSupport
         if (entity == null)
             throw new IllegalArgumentException("Parameter \"entity\" is null");
         checkEntityManagerClosed("persist()");
+        checkFlushThreshold();
         OrmDaoHelper<?> ormDaoHelper = 
         		daoHelperForClass.getOrmDaoHelperForClass(entity.getClass());
         int primaryKey = ormDaoHelper.extractId(entity);
@@ -94,8 +121,7 @@ public class EntityManagerImpl implements UserTransactionSupport
         if ((alreadyManaged != null) || 
             ((primaryKey > 0) && ormDaoHelper.entityExists(entity)))
             throw new EntityExistsException("Entity of class " + entity.getClass() + ", primary key " + primaryKey + " already exists");
-        if (!transaction.isActive())
-            transaction.begin(); // Transaction commit/rollback triggers refresh
+        beginWriteTransaction(); // Transaction commit/rollback triggers refresh
         if (ormDaoHelper.create(entity) == 0)
             throw new PersistenceException("persist operation returned result count 0");
         ormDaoHelper.setForeignCollections(entity);
@@ -108,6 +134,68 @@ public class EntityManagerImpl implements UserTransactionSupport
                                             entity.getClass().getName() + 
                                             ": No Primary key or matches one belonging to managed entity");
         }
+        entityMonitor.captureSnapshot(entity, ormDaoHelper.extractId(entity));
+    }
+
+    /**
+     * Make the given entity instances managed and persistent. The whole collection is validated first,
+     * so nothing is inserted if any entity is already managed or exists in the database. Inserts
+     * are then performed in bulk for each entity class.
+     * @param entities The entity instances
+     * @throws IllegalArgumentException if any instance is not an entity
+     * @throws EntityExistsException if any instance already exists
+     * @throws IllegalStateException if this EntityManager has been closed or the transaction is read-only.
+     */
+    @Override
+    public void persistAll(Collection<? extends OrmEntity> entities) 
+    {
+        if (entities == null)
+            throw new IllegalArgumentException("Parameter \"entities\" is null");
+        checkEntityManagerClosed("persistAll()");
+        checkFlushThreshold();
+        OrmEntityMonitor entityMonitor = transaction.getEntityMonitor();
+        Map<Class<? extends OrmEntity>, List<OrmEntity>> entityGroups = groupByClass(entities);
+        // Validate whole collection before making any change
+        for (Map.Entry<Class<? extends OrmEntity>, List<OrmEntity>> entry: entityGroups.entrySet())
+        {
+            OrmDaoHelper<?> ormDaoHelper = daoHelperForClass.getOrmDaoHelperForClass(entry.getKey());
+            Set<Integer> primaryKeys = new HashSet<>();
+            for (OrmEntity entity: entry.getValue())
+            {
+                int primaryKey = ormDaoHelper.extractId(entity);
+                if (primaryKey > 0)
+                {
+                    if (!primaryKeys.add(primaryKey) || 
+                        (entityMonitor.getManagedEntity(entry.getKey(), primaryKey) != null))
+                        throw createEntityExistsException(entry.getKey(), primaryKey);
+                }
+            }
+            Set<Integer> existingKeys = ormDaoHelper.existingIds(primaryKeys);
+            if (!existingKeys.isEmpty())
+                throw createEntityExistsException(entry.getKey(), existingKeys.iterator().next());
+        }
+        beginWriteTransaction(); // Transaction commit/rollback triggers refresh
+        for (Map.Entry<Class<? extends OrmEntity>, List<OrmEntity>> entry: entityGroups.entrySet())
+        {
+            OrmDaoHelper<?> ormDaoHelper = daoHelperForClass.getOrmDaoHelperForClass(entry.getKey());
+            List<OrmEntity> group = entry.getValue();
+            int count = ormDaoHelper.createAll(group);
+            if (count != group.size())
+                throw new PersistenceException("persist operation returned result count " + count + ", expected " + group.size());
+            for (OrmEntity entity: group)
+            {
+                ormDaoHelper.setForeignCollections(entity);
+                int primaryKey = ormDaoHelper.extractId(entity);
+                if (!entityMonitor.monitorNewEntity(entity, null, primaryKey))
+                {
+                    transaction.rollback();
+                    throw new PersistenceException("Error persisting entity class " + 
+                                                    entity.getClass().getName() + 
+                                                    ": Primary key " + primaryKey + " matches one belonging to managed entity");
+                }
+                entityMonitor.captureSnapshot(entity, primaryKey);
+            }
+        }
     }
     
     /**
@@ -122,6 +210,7 @@ public class EntityManagerImpl implements UserTransactionSupport
     public <T extends OrmEntity> T merge(T entity) 
     {
         checkEntityManagerClosed("merge()");
+        checkFlushThreshold();
         OrmDaoHelper<?> ormDaoHelper = 
         	daoHelperForClass.getOrmDaoHelperForClass(entity.getClass());
         int primaryKey = ormDaoHelper.extractId(entity);
@@ -131,6 +220,31 @@ public class EntityManagerImpl implements UserTransactionSupport
         return (T) managed;
     }
 
+    /**
+     * Merge the state of each of the given entities into the current persistence context.
+     * Each entity instance becomes managed.
+     * @param entities The entity instances
+     * @throws IllegalArgumentException if any instance is not an entity or is a removed entity
+     * @throws IllegalStateException if this EntityManager has been closed.
+     */
+    @Override
+    public void mergeAll(Collection<? extends OrmEntity> entities) 
+    {
+        if (entities == null)
+            throw new IllegalArgumentException("Parameter \"entities\" is null");
+        checkEntityManagerClosed("mergeAll()");
+        checkFlushThreshold();
+        OrmEntityMonitor entityMonitor = transaction.getEntityMonitor();
+        for (Map.Entry<Class<? extends OrmEntity>, List<OrmEntity>> entry: groupByClass(entities).entrySet())
+        {
+            OrmDaoHelper<?> ormDaoHelper = daoHelperForClass.getOrmDaoHelperForClass(entry.getKey());
+            for (OrmEntity entity: entry.getValue())
+                entityMonitor.startManagingEntity(entity, ormDaoHelper.extractId(entity), PersistOp.merge);
+        }
+        if (!transaction.isActive())
+            transaction.begin(); // Transaction commit triggers update and refresh
+    }
+
     /** 
      * Refresh the state of the instance from the database,
      * overwriting changes made to the entity, if any.
@@ -151,8 +265,16 @@ public class EntityManagerImpl implements UserTransactionSupport
             throw new IllegalArgumentException("Entity of class " + entity.getClass() + ", primary key " + primaryKey + " is not managed");
         if (!transaction.isActive())
             transaction.begin(); // Transaction commit/rollback triggers refresh
+        OrmEntityMonitor entityMonitor = transaction.getEntityMonitor();
+        if (entityMonitor.isUnloadedReference(entity.getClass(), primaryKey))
+        {
+            if (!loadReference((OrmEntity)managed, primaryKey))
+                throw createEntityNotFoundException(entity.getClass(), primaryKey);
+            return;
+        }
         if (ormDaoHelper.refresh(managed) == 0)
             throw new PersistenceException("refresh operation returned result count 0");
+        entityMonitor.captureSnapshot((OrmEntity)managed, primaryKey);
     }
 
 
@@ -160,7 +282,7 @@ public class EntityManagerImpl implements UserTransactionSupport
      * Remove the entity instance.
      * @param entity The entity instance
      * @throws IllegalArgumentException if not an entity or if a detached entity
-     * @throws IllegalStateException if this EntityManager has been closed.
+     * @throws IllegalStateException if this EntityManager has been closed or the transaction is read-only.
      */
     @Override
     public void remove(OrmEntity entity) 
@@ -170,15 +292,60 @@ public class EntityManagerImpl implements UserTransactionSupport
         	daoHelperForClass.getOrmDaoHelperForClass(entity.getClass());
         int primaryKey = ormDaoHelper.extractId(entity);
         transaction.getEntityMonitor().markForRemoval(entity.getClass(), primaryKey);
-        if (!transaction.isActive())
-            transaction.begin();
+        beginWriteTransaction();
         if (ormDaoHelper.delete(entity) == 0)
             throw new PersistenceException("remove operation returned result count 0");
     }
 
+    /**
+     * Remove the given entity instances. The whole collection is validated first, so nothing is 
+     * removed if any entity is detached. Deletes are then performed by id in bulk for each entity class.
+     * @param entities The entity instances
+     * @throws IllegalArgumentException if any instance is not an entity
+     * @throws PersistenceException if any instance is detached 
+     * @throws IllegalStateException if this EntityManager has been closed or the transaction is read-only.
+     */
+    @Override
+    public void removeAll(Collection<? extends OrmEntity> entities) 
+    {
+        if (entities == null)
+            throw new IllegalArgumentException("Parameter \"entities\" is null");
+        checkEntityManagerClosed("removeAll()");
+        OrmEntityMonitor entityMonitor = transaction.getEntityMonitor();
+        Map<Class<? extends OrmEntity>, List<OrmEntity>> entityGroups = groupByClass(entities);
+        Map<Class<? extends OrmEntity>, Set<Integer>> primaryKeyGroups = new LinkedHashMap<>();
+        // Validate whole collection before making any change
+        for (Map.Entry<Class<? extends OrmEntity>, List<OrmEntity>> entry: entityGroups.entrySet())
+        {
+            OrmDaoHelper<?> ormDaoHelper = daoHelperForClass.getOrmDaoHelperForClass(entry.getKey());
+            Set<Integer> primaryKeys = new LinkedHashSet<>();
+            for (OrmEntity entity: entry.getValue())
+            {
+                int primaryKey = ormDaoHelper.extractId(entity);
+                if (entityMonitor.getManagedEntity(entry.getKey(), primaryKey) == null)
+                    throw new PersistenceException("remove failed because entity of class " + entry.getKey().getName() + " with primary key " + primaryKey + " is detached");
+                primaryKeys.add(primaryKey);
+            }
+            primaryKeyGroups.put(entry.getKey(), primaryKeys);
+        }
+        beginWriteTransaction();
+        for (Map.Entry<Class<? extends OrmEntity>, Set<Integer>> entry: primaryKeyGroups.entrySet())
+        {
+            Set<Integer> primaryKeys = entry.getValue();
+            for (int primaryKey: primaryKeys)
+                entityMonitor.markForRemoval(entry.getKey(), primaryKey);
+            int count = daoHelperForClass.getOrmDaoHelperForClass(entry.getKey()).deleteIds(primaryKeys);
+            if (count != primaryKeys.size())
+                throw new PersistenceException("remove operation returned result count " + count + ", expected " + primaryKeys.size());
+        }
+    }
+
     /**
      * Find by primary key.
      * Does not require transaction.
+     * An entity already belonging to the persistence context is returned without querying the database, 
+     * as is a copy of an entity held in the second-level cache, if enabled. 
+     * Otherwise the entity loaded from the database becomes managed.
      * @param entityClass The class of the entity
      * @param primaryKey The primary key as Object
      * @return the found entity instance or null if the entity does not exist
@@ -192,17 +359,41 @@ public class EntityManagerImpl implements UserTransactionSupport
     public <T extends OrmEntity> T find(Class<T> entityClass, int primaryKey) 
     {
         checkEntityManagerClosed("find()");
+        checkFlushThreshold();
+        OrmEntityMonitor entityMonitor = transaction.getEntityMonitor();
+        T managed = entityMonitor.getManagedEntity(entityClass, primaryKey);
+        if (managed != null)
+        {
+            if (entityMonitor.isUnloadedReference(entityClass, primaryKey))
+                return loadReference(managed, primaryKey) ? managed : null;
+            return managed;
+        }
+        if (entityMonitor.isRemoved(entityClass, primaryKey))
+            return null;
+        T cached = getCachedEntity(entityMonitor, entityClass, primaryKey);
+        if (cached != null)
+            return cached;
         OrmDaoHelper<T> ormDaoHelper = 
         	daoHelperForClass.getOrmDaoHelperForClass(entityClass);
-        return ormDaoHelper.queryForId((Integer)primaryKey);
+        T entity = ormDaoHelper.queryForId((Integer)primaryKey);
+        if (entity != null)
+        {
+        	entityMonitor.startManagingEntity(entity, primaryKey, PersistOp.find);
+        	entityMonitor.captureSnapshot(entity, primaryKey);
+        }
+        return entity;
     }
 
     /**
      * Javax PersistenceUnitAdmin: "Get an instance, whose state may be lazily fetched".
-     * This implementation is just an alias for find()
-     * If the requested instance does not exist in the database,
-     * throws {@link EntityNotFoundException} when the instance state is
-     * first accessed.
+     * A managed or second-level cached instance is returned when available. Otherwise a placeholder instance
+     * with only the primary key set becomes managed without reading the database. The placeholder can be used 
+     * to set foreign keys. Its state is loaded in place by find() or refresh(), and replaced by merge().
+     * Entities are plain classes without proxies, so accessing a property of a placeholder does not load 
+     * its state: until it is loaded, all fields other than the primary key hold default values.
+     * If the requested instance does not exist in the database, refresh() throws 
+     * {@link EntityNotFoundException}, find() returns null and contains() returns false, 
+     * after which the placeholder is no longer managed.
      *
      * The application should not expect that the instance state will
      * be available upon detachment, unless it was accessed by the
@@ -214,18 +405,25 @@ public class EntityManagerImpl implements UserTransactionSupport
      *    not denote an entity type or the second
      *    argument is not a valid type for that
      *    entity's primary key
-     * @throws EntityNotFoundException if the entity state
-     *    cannot be accessed
+     * @throws EntityNotFoundException if the entity has been removed in this persistence context
      * @throws IllegalStateException if this EntityManager has been closed.
      */
     @Override
     public <T extends OrmEntity> T getReference(Class<T> entityClass, int primaryKey) 
     {
         checkEntityManagerClosed("getReference()");
-        T entity = find(entityClass, primaryKey);
-        if (entity == null)
-            throw new EntityNotFoundException("Not found: class " + entityClass.getName() + ", primary key " + primaryKey);
-        return entity;
+        OrmEntityMonitor entityMonitor = transaction.getEntityMonitor();
+        T managed = entityMonitor.getManagedEntity(entityClass, primaryKey);
+        if (managed != null)
+            return managed;
+        if (entityMonitor.isRemoved(entityClass, primaryKey))
+            throw createEntityNotFoundException(entityClass, primaryKey);
+        T cached = getCachedEntity(entityMonitor, entityClass, primaryKey);
+        if (cached != null)
+            return cached;
+        T reference = daoHelperForClass.getOrmDaoHelperForClass(entityClass).createReference(primaryKey);
+        entityMonitor.monitorReference(reference, primaryKey);
+        return reference;
     }
 
     /**
@@ -244,29 +442,34 @@ public class EntityManagerImpl implements UserTransactionSupport
 
     /**
     * Set the flush mode that applies to all objects contained
-    * in the persistence context.
+    * in the persistence context. In AUTO mode, pending updates of all managed entities are written 
+    * immediately before a named or native query executes, within the current transaction 
+    * and without a commit, as a query may read any table. The flush mode is applied to queries 
+    * when they are created.
     * @param flushMode  The flush mode
+    * @throws IllegalArgumentException if flushMode is null
     * @throws IllegalStateException if this EntityManager has been closed.
     */
     @Override
     public void setFlushMode(FlushModeType flushMode) 
     {
         checkEntityManagerClosed("setFlushMode()");
-        if (FlushModeType.AUTO.equals(flushMode))
-            throw new UnsupportedOperationException("FlushModeType.AUTO not supported");
+        if (flushMode == null)
+            throw new IllegalArgumentException("Parameter \"flushMode\" is null");
+        this.flushMode = flushMode;
     }
 
     /**
     * Get the flush mode that applies to all objects contained
     * in the persistence context.
-    * @return flush mode - always FlushModeType.COMMIT
+    * @return flush mode, which defaults to FlushModeType.COMMIT
      * @throws IllegalStateException if this EntityManager has been closed.
     */
     @Override
     public FlushModeType getFlushMode() 
     {
         checkEntityManagerClosed("getFlushMode()");
-        return FlushModeType.COMMIT;
+        return flushMode;
     }
 
     /**
@@ -300,7 +503,8 @@ public class EntityManagerImpl implements UserTransactionSupport
 
     /**
      * Check if the instance belongs to the current persistence
-     * context.
+     * context. A placeholder returned by getReference() whose state has not been loaded
+     * only belongs if its row exists in the database.
      * @param entity The entity instance
      * @return <code>true</code> if the instance belongs to 
      * the current persistence context.
@@ -313,7 +517,15 @@ public class EntityManagerImpl implements UserTransactionSupport
         checkEntityManagerClosed("contains()");
         OrmDaoHelper<?> ormDaoHelper = daoHelperForClass.getOrmDaoHelperForClass(entity.getClass());
         int primaryKey = ormDaoHelper.extractId(entity);
-        Object alreadyManaged = transaction.getEntityMonitor().startManagingEntity(entity, primaryKey, PersistOp.contains);
+        OrmEntityMonitor entityMonitor = transaction.getEntityMonitor();
+        Object alreadyManaged = entityMonitor.startManagingEntity(entity, primaryKey, PersistOp.contains);
+        if ((alreadyManaged != null) && entityMonitor.isUnloadedReference(entity.getClass(), primaryKey))
+        {
+            if (ormDaoHelper.entityExists(entity))
+                return true;
+            entityMonitor.referenceLoaded(entity.getClass(), primaryKey, false);
+            return false;
+        }
         return (alreadyManaged != null) || 
                 ((primaryKey > 0l) && ormDaoHelper.entityExists(entity));
     }
@@ -345,7 +557,10 @@ public class EntityManagerImpl implements UserTransactionSupport
 	 */
 	public <X> TypedQuery<X> createNamedQuery(String name, Class<X> resultClass) {
         checkEntityManagerClosed("createNamedQuery()");
-        return persistenceConfig.createNamedQuery(name, resultClass, transaction.getConnectionSource());
+        TypedQuery<X> query = persistenceConfig.createNamedQuery(name, resultClass, transaction.getConnectionSource());
+        if (query instanceof QueryBase)
+            ((QueryBase<?>)query).setAutoFlush(flushMode, transaction::flushPending);
+        return query;
 	}
 
     /**
@@ -373,6 +588,9 @@ public class EntityManagerImpl implements UserTransactionSupport
     public Object getDelegate() 
     {
         checkEntityManagerClosed("getDelegate()");
+        // DAOs obtained from the delegate may write, so must use the transaction connection
+        if (transaction.isActive())
+            transaction.acquireConnection();
         return new EntityManagerDelegate(transaction.getConnectionSource(), transaction, persistenceConfig.getHelperFactoryMap());
     }
 
@@ -424,16 +642,133 @@ public class EntityManagerImpl implements UserTransactionSupport
         return transaction;
     }
 
+    /**
+     * Begin transaction if not active and acquire the transaction connection, which is otherwise 
+     * deferred until commit, so DAO writes are performed in the transaction
+     * @throws IllegalStateException if the transaction is read-only
+     */
+    protected void beginWriteTransaction()
+    {
+        if (transaction.isReadOnly())
+            throw new IllegalStateException("Write operation not permitted in read-only transaction");
+        if (!transaction.isActive())
+            transaction.begin();
+        transaction.acquireConnection();
+    }
+
 	protected void setOpen(boolean value) {
 		isOpen = value;
 	}
+
+    /**
+     * Returns DAO helper for given entity class
+     * @param entityClass Entity class
+     * @return OrmDaoHelper object
+     */
+    protected <T extends OrmEntity> OrmDaoHelper<T> getOrmDaoHelper(Class<T> entityClass)
+    {
+        return daoHelperForClass.getOrmDaoHelperForClass(entityClass);
+    }
     
+    /**
+     * Returns given entities grouped by class, preserving order
+     * @param entities Entity instances
+     * @return Map of entity lists by class
+     * @throws IllegalArgumentException if any entity is null
+     */
+    protected static Map<Class<? extends OrmEntity>, List<OrmEntity>> groupByClass(Collection<? extends OrmEntity> entities)
+    {
+        Map<Class<? extends OrmEntity>, List<OrmEntity>> entityGroups = new LinkedHashMap<>();
+        for (OrmEntity entity: entities)
+        {
+            if (entity == null)
+                throw new IllegalArgumentException("Parameter \"entities\" contains null");
+            entityGroups.computeIfAbsent(entity.getClass(), clazz -> new ArrayList<>()).add(entity);
+        }
+        return entityGroups;
+    }
+
+    /**
+     * Write pending updates and detach all managed entities, staying in the current transaction, if the
+     * number of managed entities has reached the flush threshold or used heap exceeds the flush heap budget. 
+     * Called before an operation which may add to the persistence context, so the entity returned by 
+     * the operation remains managed.<br>
+     * Used heap is total memory less free memory, which includes garbage not yet collected, so it 
+     * over-states the memory held by the persistence context. To prevent a flush at every check while 
+     * garbage awaits collection, the heap budget only applies once the persistence context holds at 
+     * least HEAP_CHECK_INTERVAL managed entities.
+     */
+    private void checkFlushThreshold()
+    {
+        if (((flushThreshold == 0) && (flushHeapBudget == 0)) || !transaction.isActive())
+            return;
+        OrmEntityMonitor entityMonitor = transaction.getEntityMonitor();
+        boolean doFlush = (flushThreshold > 0) && (entityMonitor.getManagedCount() >= flushThreshold);
+        if (!doFlush && (flushHeapBudget > 0) && (++heapCheckCount >= HEAP_CHECK_INTERVAL))
+        {
+            heapCheckCount = 0;
+            Runtime runtime = Runtime.getRuntime();
+            doFlush = (runtime.totalMemory() - runtime.freeMemory() > flushHeapBudget) && 
+                      (entityMonitor.getManagedCount() >= HEAP_CHECK_INTERVAL);
+        }
+        if (doFlush)
+        {
+            heapCheckCount = 0;
+            transaction.flushAndClear();
+        }
+    }
+
+    /**
+     * Returns entity from the second-level cache, which becomes managed by this persistence context.
+     * Foreign collections are not cached, so they are assigned as for an entity loaded from the database.
+     * @param entityMonitor Entity monitor of this persistence context
+     * @param entityClass The class of the entity
+     * @param primaryKey The primary key
+     * @return Entity or null if not cached
+     */
+    private <T extends OrmEntity> T getCachedEntity(OrmEntityMonitor entityMonitor, Class<T> entityClass, int primaryKey)
+    {
+        T cached = entityMonitor.getCachedEntity(entityClass, primaryKey);
+        if (cached != null)
+        {
+            daoHelperForClass.getOrmDaoHelperForClass(entityClass).setForeignCollections(cached);
+            entityMonitor.captureSnapshot(cached, primaryKey);
+        }
+        return cached;
+    }
+
+    /**
+     * Load state of managed placeholder entity created by getReference()
+     * @param reference Placeholder entity
+     * @param primaryKey Primary key
+     * @return false if the entity does not exist, in which case the placeholder is detached
+     */
+    private boolean loadReference(OrmEntity reference, int primaryKey)
+    {
+        OrmEntityMonitor entityMonitor = transaction.getEntityMonitor();
+        boolean found = daoHelperForClass.getOrmDaoHelperForClass(reference.getClass()).refresh(reference) != 0;
+        entityMonitor.referenceLoaded(reference.getClass(), primaryKey, found);
+        if (found)
+            entityMonitor.captureSnapshot(reference, primaryKey);
+        return found;
+    }
+
+    protected static EntityNotFoundException createEntityNotFoundException(Class<? extends OrmEntity> clazz, int primaryKey)
+    {
+        return new EntityNotFoundException("Not found: class " + clazz.getName() + ", primary key " + primaryKey);
+    }
+
+    protected static EntityExistsException createEntityExistsException(Class<? extends OrmEntity> clazz, int primaryKey)
+    {
+        return new EntityExistsException("Entity of class " + clazz + ", primary key " + primaryKey + " already exists");
+    }
+
     /**
      * Confirm this Entity Manager is open
      * @param method Name of method being invoked
      * @throws IllegalStateException if this Entity Manager is closed.
      */
-    private void checkEntityManagerClosed(String method)
+    protected void checkEntityManagerClosed(String method)
     {
         if (!isOpen)
             throw new IllegalStateException(method + " called after EntityManager has been closed");
@@ -0,0 +1,368 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classyjpa.entity;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.Id;
+import javax.persistence.PersistenceException;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.field.DatabaseFieldConfig;
+import com.j256.ormlite.table.DatabaseTableConfig;
+
+/**
+ * EntityPropertyCopier
+ * Copies persistent field values from one entity to another of the same class.
+ * A method handle which reads a field of the source and writes it to the destination is built once
+ * for each field when the persistence unit starts, so no introspection is performed on each copy.
+ * A copier for detached copies also copies array and date values, so the copy shares no mutable
+ * column value with the original. A foreign entity is copied down to its id, as loaded from the
+ * database when the foreign field is not refreshed automatically.
+ * @param <T> Entity type
+ */
+public class EntityPropertyCopier<T extends OrmEntity>
+{
+    /** Field copy handle type (Object dest, Object orig) void */
+    private static final MethodType COPY_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    /** Value detach handle type (Object value) Object */
+    private static final MethodType VALUE_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /** Entity class */
+    private final Class<T> entityClass;
+    /** Field copy handles */
+    private final MethodHandle[] fieldCopiers;
+    /** Constructs new entity instances. Null if only copying to existing instances. */
+    private final MethodHandle constructor;
+
+    /**
+     * Create EntityPropertyCopier object
+     * @param entityClass Entity class
+     * @param fieldNames Names of fields to copy, which may be declared in the entity class or a super class
+     * @throws PersistenceException if a field is not found or cannot be accessed
+     */
+    public EntityPropertyCopier(Class<T> entityClass, Collection<String> fieldNames)
+    {
+        this(entityClass, fieldNames, false);
+    }
+
+    /**
+     * Create EntityPropertyCopier object
+     * @param entityClass Entity class
+     * @param fieldNames Names of fields to copy, which may be declared in the entity class or a super class
+     * @param isDetached Flag set true if copies are detached, with array and date values copied 
+     *                   and new instances created by the no-argument constructor
+     * @throws PersistenceException if a field is not found or cannot be accessed
+     */
+    public EntityPropertyCopier(Class<T> entityClass, Collection<String> fieldNames, boolean isDetached)
+    {
+        this(entityClass, fieldNames, isDetached ? Collections.<String, String>emptyMap() : null);
+    }
+
+    /**
+     * Create EntityPropertyCopier object which makes detached copies
+     * @param entityClass Entity class
+     * @param fieldNames Names of fields to copy, which may be declared in the entity class or a super class
+     * @param foreignIdFields Id field names of the foreign entities referenced by fields to copy, mapped by field name,
+     *                        or null if copies are not detached
+     * @throws PersistenceException if a field is not found or cannot be accessed
+     */
+    private EntityPropertyCopier(Class<T> entityClass, Collection<String> fieldNames, Map<String, String> foreignIdFields)
+    {
+        this.entityClass = entityClass;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        boolean isDetached = foreignIdFields != null;
+        MethodHandle detachValue = isDetached ? findDetachValue(lookup) : null;
+        List<MethodHandle> copiers = new ArrayList<>(fieldNames.size());
+        for (String fieldName: fieldNames)
+        {
+            Field field = findField(entityClass, fieldName);
+            if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers()))
+                continue;
+            try
+            {
+                field.setAccessible(true);
+                MethodHandle getter = lookup.unreflectGetter(field).asType(VALUE_TYPE);
+                if (isDetached && foreignIdFields.containsKey(fieldName))
+                    getter = MethodHandles.filterReturnValue(getter, 
+                            findDetachForeign(lookup, field.getType(), foreignIdFields.get(fieldName)));
+                else if (detachValue != null)
+                    getter = MethodHandles.filterReturnValue(getter, detachValue);
+                MethodHandle setter = lookup.unreflectSetter(field).asType(COPY_TYPE);
+                // setter(dest, getter(orig))
+                copiers.add(MethodHandles.filterArguments(setter, 1, getter));
+            }
+            catch (IllegalAccessException | RuntimeException e)
+            {
+                throw new PersistenceException("Cannot access field " + fieldName + " of entity class " + entityClass.getName(), e);
+            }
+        }
+        fieldCopiers = copiers.toArray(new MethodHandle[copiers.size()]);
+        constructor = isDetached ? findConstructor(lookup, entityClass) : null;
+    }
+
+    /**
+     * Create EntityPropertyCopier object for fields of given database field configurations
+     * @param entityClass Entity class
+     * @param fieldConfigs Field configurations
+     * @param <T> Entity type
+     * @return EntityPropertyCopier object
+     */
+    public static <T extends OrmEntity> EntityPropertyCopier<T> fromFieldConfigs(Class<T> entityClass, List<DatabaseFieldConfig> fieldConfigs)
+    {
+        List<String> fieldNames = new ArrayList<>(fieldConfigs.size());
+        for (DatabaseFieldConfig fieldConfig: fieldConfigs)
+            fieldNames.add(fieldConfig.getFieldName());
+        return new EntityPropertyCopier<T>(entityClass, fieldNames);
+    }
+
+    /**
+     * Create EntityPropertyCopier object which makes detached copies of the columns of given database 
+     * field configurations. Foreign collections are not columns, so they are excluded. A foreign entity 
+     * is copied down to its id, so no entity is shared between copies.
+     * @param entityClass Entity class
+     * @param fieldConfigs Field configurations
+     * @param <T> Entity type
+     * @return EntityPropertyCopier object
+     * @throws PersistenceException if a field cannot be accessed or a foreign entity class has no id field
+     */
+    public static <T extends OrmEntity> EntityPropertyCopier<T> forDetachedCopies(Class<T> entityClass, List<DatabaseFieldConfig> fieldConfigs)
+    {
+        List<String> fieldNames = new ArrayList<>(fieldConfigs.size());
+        Map<String, String> foreignIdFields = new HashMap<>();
+        for (DatabaseFieldConfig fieldConfig: fieldConfigs)
+        {
+            if (fieldConfig.isForeignCollection())
+                continue;
+            fieldNames.add(fieldConfig.getFieldName());
+            if (fieldConfig.isForeign())
+                foreignIdFields.put(fieldConfig.getFieldName(), findIdFieldName(entityClass, fieldConfig));
+        }
+        return new EntityPropertyCopier<T>(entityClass, fieldNames, foreignIdFields);
+    }
+
+    /**
+     * Returns new entity with field values copied from given entity
+     * @param orig Source entity
+     * @return new entity instance
+     * @throws UnsupportedOperationException if this copier is not for detached copies
+     * @throws PersistenceException if construction or a field copy fails
+     */
+    @SuppressWarnings("unchecked")
+    public T newCopy(T orig)
+    {
+        if (constructor == null)
+            throw new UnsupportedOperationException("Copier of entity class " + entityClass.getName() + " does not create instances");
+        T dest;
+        try
+        {
+            dest = (T)constructor.invoke();
+        }
+        catch (Error e)
+        {
+            throw e;
+        }
+        catch (Throwable e)
+        {
+            throw new PersistenceException("Construction of entity class " + entityClass.getName() + " failed: " + e.toString(), e);
+        }
+        copy(dest, orig);
+        return dest;
+    }
+
+    /**
+     * Copy field values from one entity to another
+     * @param dest Entity to be updated
+     * @param orig Source entity
+     * @throws PersistenceException if a field copy fails
+     */
+    public void copy(T dest, T orig)
+    {
+        try
+        {
+            for (MethodHandle fieldCopier: fieldCopiers)
+                fieldCopier.invokeExact((Object)dest, (Object)orig);
+        }
+        catch (Error e)
+        {
+            throw e;
+        }
+        catch (Throwable e)
+        {
+            throw new PersistenceException("Copy of entity class " + entityClass.getName() + " failed: " + e.toString(), e);
+        }
+    }
+
+    /**
+     * Returns entity class
+     * @return Class
+     */
+    public Class<T> getEntityClass()
+    {
+        return entityClass;
+    }
+
+    /**
+     * Returns copy of an array or date value, otherwise the value itself, which is immutable
+     * @param value Field value
+     * @return Object
+     */
+    static Object detachValue(Object value)
+    {
+        if (value == null)
+            return null;
+        if (value.getClass().isArray())
+        {
+            int length = Array.getLength(value);
+            Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+            System.arraycopy(value, 0, copy, 0, length);
+            return copy;
+        }
+        if (value instanceof Date)
+            return ((Date)value).clone();
+        return value;
+    }
+
+    /**
+     * Returns new instance of the class of given foreign entity with only the id field copied
+     * @param constructor Constructs foreign entity instances
+     * @param idCopier Copies id field (Object dest, Object orig)
+     * @param value Foreign entity
+     * @return Object
+     * @throws Throwable if construction or copy fails
+     */
+    static Object detachForeign(MethodHandle constructor, MethodHandle idCopier, Object value) throws Throwable
+    {
+        if (value == null)
+            return null;
+        Object copy = constructor.invoke();
+        idCopier.invokeExact(copy, value);
+        return copy;
+    }
+
+    /**
+     * Returns handle which copies a foreign entity down to its id
+     * @param lookup Method handles lookup
+     * @param foreignClass Foreign entity class
+     * @param idFieldName Name of id field of foreign entity class
+     * @return MethodHandle of type (Object value) Object
+     */
+    private static MethodHandle findDetachForeign(MethodHandles.Lookup lookup, Class<?> foreignClass, String idFieldName)
+    {
+        Field idField = findField(foreignClass, idFieldName);
+        try
+        {
+            idField.setAccessible(true);
+            MethodHandle idCopier = MethodHandles.filterArguments(
+                lookup.unreflectSetter(idField).asType(COPY_TYPE), 1, lookup.unreflectGetter(idField).asType(VALUE_TYPE));
+            MethodHandle detachForeign = lookup.findStatic(EntityPropertyCopier.class, "detachForeign", 
+                MethodType.methodType(Object.class, MethodHandle.class, MethodHandle.class, Object.class));
+            return MethodHandles.insertArguments(detachForeign, 0, findConstructor(lookup, foreignClass), idCopier);
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            throw new PersistenceException("Cannot access id field " + idFieldName + " of entity class " + foreignClass.getName(), e);
+        }
+    }
+
+    /**
+     * Returns name of id field of the foreign entity referenced by given foreign field, taken from the
+     * foreign table configuration if set, otherwise from the id annotation of the foreign entity class
+     * @param entityClass Entity class
+     * @param fieldConfig Foreign field configuration
+     * @return String
+     * @throws PersistenceException if id field not found
+     */
+    private static String findIdFieldName(Class<?> entityClass, DatabaseFieldConfig fieldConfig)
+    {
+        DatabaseTableConfig<?> foreignTableConfig = fieldConfig.getForeignTableConfig();
+        if ((foreignTableConfig != null) && (foreignTableConfig.getFieldConfigs() != null))
+            for (DatabaseFieldConfig foreignFieldConfig: foreignTableConfig.getFieldConfigs())
+                if (foreignFieldConfig.isId() || foreignFieldConfig.isGeneratedId())
+                    return foreignFieldConfig.getFieldName();
+        Class<?> foreignClass = findField(entityClass, fieldConfig.getFieldName()).getType();
+        for (Class<?> working = foreignClass; working != null; working = working.getSuperclass())
+            for (Field field: working.getDeclaredFields())
+            {
+                if (field.isAnnotationPresent(Id.class))
+                    return field.getName();
+                DatabaseField databaseField = field.getAnnotation(DatabaseField.class);
+                if ((databaseField != null) && (databaseField.id() || databaseField.generatedId()))
+                    return field.getName();
+            }
+        throw new PersistenceException("Id field of entity class " + foreignClass.getName() + " referenced by field " +
+                fieldConfig.getFieldName() + " of entity class " + entityClass.getName() + " not found");
+    }
+
+    private static MethodHandle findDetachValue(MethodHandles.Lookup lookup)
+    {
+        try
+        {
+            return lookup.findStatic(EntityPropertyCopier.class, "detachValue", VALUE_TYPE);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new PersistenceException("Cannot access value copier", e);
+        }
+    }
+
+    private static MethodHandle findConstructor(MethodHandles.Lookup lookup, Class<?> entityClass)
+    {
+        try
+        {
+            Constructor<?> noArgConstructor = entityClass.getDeclaredConstructor();
+            noArgConstructor.setAccessible(true);
+            return lookup.unreflectConstructor(noArgConstructor).asType(MethodType.methodType(Object.class));
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            throw new PersistenceException("Entity class " + entityClass.getName() + " has no accessible no-argument constructor", e);
+        }
+    }
+
+    /**
+     * Returns field of given name, ascending the super class chain
+     * @param clazz Class
+     * @param fieldName Field name
+     * @return Field object
+     * @throws PersistenceException if field not found
+     */
+    private static Field findField(Class<?> clazz, String fieldName)
+    {
+        for (Class<?> working = clazz; working != null; working = working.getSuperclass())
+        {
+            try
+            {
+                return working.getDeclaredField(fieldName);
+            }
+            catch (NoSuchFieldException e)
+            {
+            }
+        }
+        throw new PersistenceException("Field " + fieldName + " not found in entity class " + clazz.getName());
+    }
+}
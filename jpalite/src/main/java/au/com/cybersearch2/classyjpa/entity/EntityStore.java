@@ -14,84 +14,424 @@
 package au.com.cybersearch2.classyjpa.entity;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import javax.persistence.PersistenceException;
-
 /**
- * Retains entity objects during persistence phases
+ * Retains entity objects during persistence phases.
+ * Entities are held in one open-addressing table per entity class, keyed on primitive primary key,
+ * so lookups do not allocate. Each table keeps a queue of dirty primary keys so collecting the
+ * objects to update visits only dirty entities. A column snapshot may be held with each entity.
+ * Note: This class is not thread safe.
  */
 public class EntityStore {
 
-    /** Map managed entity objects by key. Created only when first object is to be stored. */
-    private Map<EntityKey, OrmEntity> managedObjects;
+	/** Open-addressing table of entities of one class using linear probing */
+	private static final class EntityTable {
 
-    /**
-     * Returns flag set true if given key identifies a contained object
-     * @param key Entity key
-     * @return boolean
-     */
-	public boolean containsKey(EntityKey key) {
-		 if (managedObjects != null)
-			 return managedObjects.containsKey(key);
-		 return false;
+		private static final int INITIAL_CAPACITY = 16;
+
+		/** Primary keys by slot */
+		private int[] keys;
+		/** Entities by slot. A null entry marks an empty slot. */
+		private OrmEntity[] entities;
+		/** Column snapshots by slot. Created only when first snapshot is stored. */
+		private Object[][] snapshots;
+		/** Dirty flags by slot */
+		private boolean[] dirty;
+		/** Capacity - 1, where capacity is a power of 2 */
+		private int mask;
+		/** Number of entities */
+		private int size;
+		/** Primary keys of entities marked dirty in order of marking. May contain stale keys. */
+		private int[] dirtyQueue;
+		/** Number of keys in dirty queue */
+		private int dirtyCount;
+
+		EntityTable() {
+			allocate(INITIAL_CAPACITY);
+			dirtyQueue = new int[INITIAL_CAPACITY];
+		}
+
+		int size() {
+			return size;
+		}
+
+		/**
+		 * Returns slot of given primary key or -1 if not found
+		 * @param primaryKey Primary key
+		 * @return int
+		 */
+		int indexOf(int primaryKey) {
+			int index = home(primaryKey);
+			while (entities[index] != null) {
+				if (keys[index] == primaryKey)
+					return index;
+				index = (index + 1) & mask;
+			}
+			return -1;
+		}
+
+		OrmEntity get(int primaryKey) {
+			int index = indexOf(primaryKey);
+			return index < 0 ? null : entities[index];
+		}
+
+		/**
+		 * Put entity, replacing any entity with same primary key. The dirty flag and snapshot
+		 * of a replaced entity are retained.
+		 * @param primaryKey Primary key
+		 * @param entity Entity
+		 * @return slot
+		 */
+		int put(int primaryKey, OrmEntity entity) {
+			int index = home(primaryKey);
+			while (entities[index] != null) {
+				if (keys[index] == primaryKey) {
+					entities[index] = entity;
+					return index;
+				}
+				index = (index + 1) & mask;
+			}
+			if ((size + 1) * 4 > entities.length * 3) {
+				resize(entities.length << 1);
+				return put(primaryKey, entity);
+			}
+			keys[index] = primaryKey;
+			entities[index] = entity;
+			++size;
+			return index;
+		}
+
+		OrmEntity remove(int primaryKey) {
+			int index = indexOf(primaryKey);
+			if (index < 0)
+				return null;
+			OrmEntity entity = entities[index];
+			removeAt(index);
+			return entity;
+		}
+
+		boolean isDirty(int primaryKey) {
+			int index = indexOf(primaryKey);
+			return (index >= 0) && dirty[index];
+		}
+
+		void setDirty(int primaryKey, boolean isDirty) {
+			int index = indexOf(primaryKey);
+			if (index >= 0)
+				setDirtyAt(index, isDirty);
+		}
+
+		void setDirtyAt(int index, boolean isDirty) {
+			if (isDirty && !dirty[index]) {
+				if (dirtyCount == dirtyQueue.length)
+					dirtyQueue = Arrays.copyOf(dirtyQueue, dirtyCount << 1);
+				dirtyQueue[dirtyCount++] = keys[index];
+			}
+			dirty[index] = isDirty;
+		}
+
+		Object[] getSnapshot(int primaryKey) {
+			if (snapshots == null)
+				return null;
+			int index = indexOf(primaryKey);
+			return index < 0 ? null : snapshots[index];
+		}
+
+		void setSnapshot(int primaryKey, Object[] snapshot) {
+			int index = indexOf(primaryKey);
+			if (index < 0)
+				return;
+			if (snapshots == null) {
+				if (snapshot == null)
+					return;
+				snapshots = new Object[entities.length][];
+			}
+			snapshots[index] = snapshot;
+		}
+
+		void clearSnapshots() {
+			snapshots = null;
+		}
+
+		/**
+		 * Add dirty entities to given list and clear their dirty flags
+		 * @param result List to receive entities
+		 */
+		void drainDirty(List<OrmEntity> result) {
+			for (int i = 0; i < dirtyCount; ++i) {
+				int index = indexOf(dirtyQueue[i]);
+				// Skip keys of entities removed or cleaned since being queued
+				if ((index >= 0) && dirty[index]) {
+					dirty[index] = false;
+					result.add(entities[index]);
+				}
+			}
+			dirtyCount = 0;
+		}
+
+		boolean hasDirty() {
+			return dirtyCount > 0;
+		}
+
+		void clear() {
+			allocate(INITIAL_CAPACITY);
+			dirtyCount = 0;
+		}
+
+		private int home(int primaryKey) {
+			int hash = primaryKey * 0x9E3779B9;
+			return (hash ^ (hash >>> 16)) & mask;
+		}
+
+		/**
+		 * Empty given slot, shifting back any following entries in the same probe sequence
+		 * @param index Slot
+		 */
+		private void removeAt(int index) {
+			int gap = index;
+			int next = index;
+			while (true) {
+				next = (next + 1) & mask;
+				if (entities[next] == null)
+					break;
+				int home = home(keys[next]);
+				// Move entry into gap unless its home slot lies cyclically in (gap, next]
+				boolean stays = (gap <= next) ?
+						((gap < home) && (home <= next)) :
+						((gap < home) || (home <= next));
+				if (!stays) {
+					keys[gap] = keys[next];
+					entities[gap] = entities[next];
+					dirty[gap] = dirty[next];
+					if (snapshots != null)
+						snapshots[gap] = snapshots[next];
+					gap = next;
+				}
+			}
+			entities[gap] = null;
+			dirty[gap] = false;
+			if (snapshots != null)
+				snapshots[gap] = null;
+			--size;
+		}
+
+		private void resize(int capacity) {
+			int[] oldKeys = keys;
+			OrmEntity[] oldEntities = entities;
+			Object[][] oldSnapshots = snapshots;
+			boolean[] oldDirty = dirty;
+			allocate(capacity);
+			if (oldSnapshots != null)
+				snapshots = new Object[capacity][];
+			for (int i = 0; i < oldEntities.length; ++i) {
+				if (oldEntities[i] != null) {
+					int index = home(oldKeys[i]);
+					while (entities[index] != null)
+						index = (index + 1) & mask;
+					keys[index] = oldKeys[i];
+					entities[index] = oldEntities[i];
+					dirty[index] = oldDirty[i];
+					if (oldSnapshots != null)
+						snapshots[index] = oldSnapshots[i];
+					++size;
+				}
+			}
+		}
+
+		private void allocate(int capacity) {
+			keys = new int[capacity];
+			entities = new OrmEntity[capacity];
+			dirty = new boolean[capacity];
+			snapshots = null;
+			mask = capacity - 1;
+			size = 0;
+		}
+	}
+
+	/** Tables by entity class, which compares by identity, in order of creation. Created only when first object is to be stored. */
+	private Map<Class<?>, EntityTable> tables;
+	/** Class of most recently accessed table */
+	private Class<?> lastClass;
+	/** Most recently accessed table */
+	private EntityTable lastTable;
+
+	/**
+	 * Returns flag set true if given class and primary key identify a contained object
+	 * @param clazz Entity class
+	 * @param primaryKey Primary key
+	 * @return boolean
+	 */
+	public boolean containsKey(Class<?> clazz, int primaryKey) {
+		EntityTable table = getTable(clazz, false);
+		return (table != null) && (table.indexOf(primaryKey) >= 0);
+	}
+
+	/**
+	 * Returns object identified by given class and primary key
+	 * @param clazz Entity class
+	 * @param primaryKey Primary key
+	 * @return OrmEntity object or null if not found
+	 */
+	public OrmEntity get(Class<?> clazz, int primaryKey) {
+		EntityTable table = getTable(clazz, false);
+		return table != null ? table.get(primaryKey) : null;
+	}
+
+	/**
+	 * Store object identified by given class and primary key. If an object is already stored with
+	 * the same identity, it is replaced and its dirty flag and snapshot are retained.
+	 * @param clazz Entity class
+	 * @param primaryKey Primary key
+	 * @param ormEntity Object to store
+	 */
+	public void put(Class<?> clazz, int primaryKey, OrmEntity ormEntity) {
+		if (ormEntity == null)
+			throw new IllegalArgumentException("Parameter \"ormEntity\" is null");
+		getTable(clazz, true).put(primaryKey, ormEntity);
+	}
+
+	/**
+	 * Removes object identified by given class and primary key and returns it
+	 * @param clazz Entity class
+	 * @param primaryKey Primary key
+	 * @return OrmEntity object or null if not found
+	 */
+	public OrmEntity remove(Class<?> clazz, int primaryKey) {
+		EntityTable table = getTable(clazz, false);
+		return table != null ? table.remove(primaryKey) : null;
+	}
+
+	/**
+	 * Returns true if updates need to be persisted on the object identified by given class and primary key
+	 * @param clazz Entity class
+	 * @param primaryKey Primary key
+	 * @return boolean
+	 */
+	public boolean isDirty(Class<?> clazz, int primaryKey) {
+		EntityTable table = getTable(clazz, false);
+		return (table != null) && table.isDirty(primaryKey);
+	}
+
+	/**
+	 * Set dirty flag of object identified by given class and primary key. Ignored if object not found.
+	 * @param clazz Entity class
+	 * @param primaryKey Primary key
+	 * @param dirty boolean
+	 */
+	public void setDirty(Class<?> clazz, int primaryKey, boolean dirty) {
+		EntityTable table = getTable(clazz, false);
+		if (table != null)
+			table.setDirty(primaryKey, dirty);
+	}
+
+	/**
+	 * Returns column snapshot of object identified by given class and primary key
+	 * @param clazz Entity class
+	 * @param primaryKey Primary key
+	 * @return Object array or null if none stored
+	 */
+	public Object[] getSnapshot(Class<?> clazz, int primaryKey) {
+		EntityTable table = getTable(clazz, false);
+		return table != null ? table.getSnapshot(primaryKey) : null;
 	}
 
 	/**
-	 * Removes object identified by given key and returns it
-	 * @param key Entity key
-	 * @return OrmEntity object
-	 * @throws PersistenceException if object not found
+	 * Set column snapshot of object identified by given class and primary key. Ignored if object not found.
+	 * The snapshot is discarded when the object is removed.
+	 * @param clazz Entity class
+	 * @param primaryKey Primary key
+	 * @param snapshot Column values
 	 */
-	public OrmEntity remove(EntityKey key) {
-		OrmEntity entity = null;
-        if (managedObjects != null)
- 		    entity = managedObjects.remove(key);
-		if (entity == null)
-			throw new PersistenceException(String.format("Entity object not found with profile %s", key.toString()));
-		return entity;
+	public void setSnapshot(Class<?> clazz, int primaryKey, Object[] snapshot) {
+		EntityTable table = getTable(clazz, false);
+		if (table != null)
+			table.setSnapshot(primaryKey, snapshot);
 	}
 
-	public OrmEntity get(EntityKey key) {
-		if (managedObjects != null)
-			return managedObjects.get(key);
-		return null;
+	/**
+	 * Discard all column snapshots
+	 */
+	public void clearSnapshots() {
+		if (tables != null)
+			for (EntityTable table: tables.values())
+				table.clearSnapshots();
 	}
 
-	public void put(EntityKey key, OrmEntity ormEntity) {
-		if (managedObjects == null)
-			managedObjects = new HashMap<>();
-		managedObjects.put(key, ormEntity);
+	/**
+	 * Returns number of objects stored
+	 * @return int
+	 */
+	public int size() {
+		int size = 0;
+		if (tables != null)
+			for (EntityTable table: tables.values())
+				size += table.size();
+		return size;
 	}
 
     /**
-     * Returns a list of objects which need to be updated
+     * Returns a list of objects which need to be updated and clears their dirty flags
      * @return OrmEntity list
      */
     protected List<OrmEntity> getObjectsToUpdate()
     {
         List<OrmEntity> result = new ArrayList<>();
-        if (managedObjects != null)
-            for (EntityKey key: managedObjects.keySet())
-            {
-                if (key.isDirty())
-                {
-                	OrmEntity entity = managedObjects.get(key);
-                    key.setDirty(false);
-                    result.add(entity);
-                }
-            }
+        if (tables != null)
+            for (EntityTable table: tables.values())
+            	table.drainDirty(result);
         return result;
     }
-    
+
+    /**
+     * Returns flag set true if any object may need to be updated. The flag may be set even though
+     * objects marked dirty have since been removed or cleaned.
+     * @return boolean
+     */
+    public boolean hasObjectsToUpdate()
+    {
+        if (tables != null)
+            for (EntityTable table: tables.values())
+                if (table.hasDirty())
+                    return true;
+        return false;
+    }
+
     /**
      * Remove references to all managed objects
      */
-    public void release() 
+    public void release()
     {
-        if (managedObjects != null) 
-            managedObjects.clear();
+        if (tables != null)
+        	for (EntityTable table: tables.values())
+        		table.clear();
     }
+
+    /**
+     * Returns table for given entity class
+     * @param clazz Entity class
+     * @param create Flag set true if table is to be created if it does not exist
+     * @return EntityTable object or null if not found and create is false
+     */
+	private EntityTable getTable(Class<?> clazz, boolean create) {
+		if (clazz == null)
+			throw new IllegalArgumentException("Parameter \"clazz\" is null");
+		if (clazz == lastClass)
+			return lastTable;
+		EntityTable table = tables != null ? tables.get(clazz) : null;
+		if (table == null) {
+			if (!create)
+				return null;
+			if (tables == null)
+				tables = new LinkedHashMap<>();
+			table = new EntityTable();
+			tables.put(clazz, table);
+		}
+		lastClass = clazz;
+		lastTable = table;
+		return table;
+	}
 }
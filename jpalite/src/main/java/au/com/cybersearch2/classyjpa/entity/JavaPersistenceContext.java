@@ -19,6 +19,7 @@ import javax.persistence.EntityTransaction;
 import javax.persistence.PersistenceException;
 
 import au.com.cybersearch2.classyjpa.EntityManagerLite;
+import au.com.cybersearch2.classyjpa.transaction.EntityTransactionImpl;
 import au.com.cybersearch2.classyjpa.transaction.TransactionInfo;
 import au.com.cybersearch2.classyjpa.transaction.UserTransactionSupport;
 import com.j256.ormlite.logger.Logger;
@@ -41,6 +42,8 @@ public class JavaPersistenceContext {
 		EntityManagerLite entityManagerInstance(ConnectionSource connectionSource);
 	}
 
+	private static final String CANCELLED = "Persistence work cancelled";
+
 	private static Logger logger = LogManager.getLogger(JavaPersistenceContext.class);
 
 	/** Enclosing transaction and associated information */
@@ -56,6 +59,8 @@ public class JavaPersistenceContext {
 	private ExecutionException executionException;
 	/** Execution status - final state will be FINISHED or FAILED */
 	private WorkStatus status;
+	/** Flag set true if the work is abandoned and must not commit */
+	private volatile boolean isCancelled;
 
 	/**
 	 * Construct JavaPersistenceContext object
@@ -68,6 +73,7 @@ public class JavaPersistenceContext {
 		this.persistenceWork = persistenceWork;
 		this.entityManagerProvider = entityManagerProvider;
 		this.transactionInfo = new TransactionInfo();
+		transactionInfo.setReadOnly(persistenceWork instanceof ReadOnlyPersistenceWork);
 		status = WorkStatus.PENDING;
 	}
 
@@ -82,12 +88,14 @@ public class JavaPersistenceContext {
 
 			@Override
 			public EntityManagerLite entityManagerInstance() {
-				return unit.createEntityManager();
+				return persistenceWork instanceof StatelessPersistenceWork ? 
+						unit.createStatelessEntityManager() : unit.createEntityManager();
 			}
 
 			@Override
 			public EntityManagerLite entityManagerInstance(ConnectionSource connectionSource) {
-				return unit.createEntityManager(connectionSource);
+				return persistenceWork instanceof StatelessPersistenceWork ? 
+						unit.createStatelessEntityManager(connectionSource) : unit.createEntityManager(connectionSource);
 			}});
 	}
 
@@ -109,6 +117,24 @@ public class JavaPersistenceContext {
 		return status;
 	}
 
+	/**
+	 * Cancel the work, typically because its submitter has stopped waiting for it. Work not yet 
+	 * commenced is not performed and work in progress is rolled back instead of committed. 
+	 * Has no effect on work which has already committed.
+	 */
+	public void cancel() {
+		isCancelled = true;
+	}
+
+	/**
+	 * Returns flag set true if the work has been cancelled
+	 * 
+	 * @return boolean
+	 */
+	public boolean isCancelled() {
+		return isCancelled;
+	}
+
 	public void setExecutionException(ExecutionException executionException) {
 		this.executionException = executionException;
 	}
@@ -134,6 +160,11 @@ public class JavaPersistenceContext {
 	}
 		
     private Boolean execute(EntityManagerLite entityManager) {
+		if (isCancelled) {
+			transactionInfo.setRollbackException(new PersistenceException(CANCELLED));
+			// Return null as special value indicating work not commenced
+			return null;
+		}
 		status = WorkStatus.RUNNING;
 		// Use UserTransactionSupport interface to safely set user transaction mode
 		UserTransactionSupport userTransactionSupport = null;
@@ -146,6 +177,10 @@ public class JavaPersistenceContext {
 		// This will only be a proxy if not in user transaction mode.
 		EntityTransaction transaction = entityManager.getTransaction();
 		transactionInfo.setEntityTransaction(transaction);
+		if (transaction instanceof EntityTransactionImpl)
+			((EntityTransactionImpl) transaction).setReadOnly(transactionInfo.isReadOnly());
+		else if (transactionInfo.isReadOnly())
+			throw new PersistenceException("EntityManger does not support read-only transactions");
 		// Now set actual enclosing transaction in transactionInfo object so it is
 		// available on commit
 		if (transactionInfo.isUserTransaction()) {
@@ -223,6 +258,18 @@ public class JavaPersistenceContext {
 			status = WorkStatus.FAILED;
 	}
 
+	/**
+	 * Write or discard second-level cache updates of work performed in a transaction nested in 
+	 * an enclosing transaction, such as a group commit, once the enclosing transaction has completed
+	 * 
+	 * @param isCommitted Flag set true if the enclosing transaction committed the work
+	 */
+	public void afterEnclosingTransaction(boolean isCommitted) {
+		EntityTransaction transaction = transactionInfo.getTransaction();
+		if (transaction instanceof MonitoredTransaction)
+			((MonitoredTransaction) transaction).afterEnclosingTransaction(isCommitted);
+	}
+
 	protected WorkStatus getStatus() {
 		return status;
 	}
@@ -254,6 +301,10 @@ public class JavaPersistenceContext {
 			if (transaction.isActive())
 				transaction.rollback();
 		} else {
+			if (success && isCancelled) { // Work abandoned while in progress, so do rollback
+				rollbackException = new PersistenceException(CANCELLED);
+				setRollbackOnly = true;
+			}
 			if (rollbackException != null) { // RuntimeException caught, so do rollback
 				transactionInfo.setRollbackException(rollbackException);
 				transaction.setRollbackOnly();
@@ -1,5 +1,10 @@
 package au.com.cybersearch2.classyjpa.entity;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.RollbackException;
+
 import com.j256.ormlite.support.ConnectionSource;
 import com.j256.ormlite.support.DatabaseConnection;
 
@@ -21,7 +26,7 @@ public class MonitoredTransaction extends EntityTransactionImpl {
         @Override
         public Boolean call(DatabaseConnection databaseConnection) throws Exception 
         {
-        	entityMonitor.updateAllManagedObjects();
+        	entityMonitor.updateAllManagedObjects(databaseConnection);
             return true; // Commit 
         }        
 
@@ -29,6 +34,8 @@ public class MonitoredTransaction extends EntityTransactionImpl {
 
 	private final OrmEntityMonitor entityMonitor;
 	private final ConnectionSource connectionSource;
+	/** Second-level cache writes of nested transactions awaiting the outcome of the enclosing transaction */
+	private final List<Runnable> deferredCacheWrites;
 
 	/**
 	 * Construct a ClassyEntityTransaction instance
@@ -40,6 +47,7 @@ public class MonitoredTransaction extends EntityTransactionImpl {
 		super(tranStateFactory, new OnTransactionPreCommitCallback(entityMonitor));
 		this.entityMonitor = entityMonitor;
 		connectionSource = tranStateFactory.getConnectionSource();
+		deferredCacheWrites = new ArrayList<>();
 	}
 
 	public OrmEntityMonitor getEntityMonitor() {
@@ -50,6 +58,89 @@ public class MonitoredTransaction extends EntityTransactionImpl {
 		return connectionSource;
 	}
 
+	/**
+	 * Commit the current transaction and then notify the entity monitor of the outcome,
+	 * which may be a rollback. When the transaction is nested in an enclosing transaction, 
+	 * such as a group commit, entity state staged for the second-level cache is held until 
+	 * {@link #afterEnclosingTransaction(boolean)} reports the outcome of the enclosing transaction.
+	 */
+	@Override
+	public void commit() throws RollbackException {
+		boolean doRollback = isActive() && getRollbackOnly();
+		boolean isNested = isNested();
+		boolean committed = false;
+		try {
+			super.commit();
+			committed = !doRollback;
+		} finally {
+			if (!committed)
+				entityMonitor.afterRollback();
+			else if (isNested) {
+				Runnable cacheWrites = entityMonitor.deferCacheWrites();
+				if (cacheWrites != null)
+					deferredCacheWrites.add(cacheWrites);
+			} else
+				entityMonitor.afterCommit();
+		}
+	}
+
+	/**
+	 * Write or discard entity state held for the second-level cache by nested transactions
+	 * once the enclosing transaction has completed
+	 * 
+	 * @param isCommitted Flag set true if the enclosing transaction committed the changes of this transaction
+	 */
+	public void afterEnclosingTransaction(boolean isCommitted) {
+		if (isCommitted)
+			deferredCacheWrites.forEach(Runnable::run);
+		deferredCacheWrites.clear();
+	}
+
+	/**
+	 * Roll back the current transaction and notify the entity monitor
+	 */
+	@Override
+	public void rollback() {
+		super.rollback();
+		entityMonitor.afterRollback();
+	}
+
+	/**
+	 * Write pending updates of all managed entities on the connection of the current transaction 
+	 * without committing. Does nothing if the transaction is not active or is read-only.
+	 * 
+	 * @throws PersistenceException if an update fails
+	 */
+	public void flushPending() {
+		if (isActive() && !isReadOnly() && entityMonitor.hasObjectsToUpdate())
+			entityMonitor.updateAllManagedObjects(getDatabaseConnection());
+	}
+
+	/**
+	 * Write pending updates of all managed entities on the connection of the current transaction 
+	 * and then detach them, without committing. Does nothing if the transaction is not active.
+	 * Pending updates are discarded if the transaction is read-only.
+	 * 
+	 * @throws PersistenceException if an update fails
+	 */
+	public void flushAndClear() {
+		if (isActive()) {
+			if (!isReadOnly() && entityMonitor.hasObjectsToUpdate())
+				entityMonitor.updateAllManagedObjects(getDatabaseConnection());
+			entityMonitor.detachAll();
+		}
+	}
+
+	/**
+	 * Returns flag set true if there are entity updates to write on commit
+	 * 
+	 * @return boolean
+	 */
+	@Override
+	protected boolean isPreCommitRequired() {
+		return entityMonitor.hasObjectsToUpdate();
+	}
+
 	protected PreCommit getPreCommit() {
 		return super.getPreCommit();
 	}
@@ -13,10 +13,26 @@
     limitations under the License. */
 package au.com.cybersearch2.classyjpa.entity;
 
+import java.lang.reflect.Array;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.PersistenceException;
 
 import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.field.SqlType;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.support.DatabaseConnection;
 
 /**
  * OrmDaoHelper
@@ -26,11 +42,30 @@ import com.j256.ormlite.field.FieldType;
  */
 public class OrmDaoHelper<T extends OrmEntity>
 {
+    /** Maximum number of IDs in an IN clause. SQLite limits host parameters to 999 by default. */
+    public static final int MAX_IDS_PER_QUERY = 500;
+
     protected PersistenceDao<T> entityDao; 
+    /** Fields which can be written by an update. Null if entity class does not support column updates. */
+    private FieldType[] updatableFields;
+    /** Flag set true once updatable fields have been determined */
+    private volatile boolean updatableFieldsChecked;
+    /** Update statements mapped by set of columns written */
+    private final Map<BitSet, ColumnUpdate<T>> columnUpdates;
     
     public OrmDaoHelper(PersistenceDao<T> entityDao)
     {
         this.entityDao = entityDao;
+        columnUpdates = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns DAO which performs database operations
+     * @return PersistenceDao object
+     */
+    public PersistenceDao<T> getEntityDao()
+    {
+        return entityDao;
     }
     
     /**
@@ -51,6 +86,20 @@ public class OrmDaoHelper<T extends OrmEntity>
         return entityDao.create(entity);
     }
 
+    /**
+     * Persist a collection of objects for the first time, using one batch of inserts.
+     * @see PersistenceDao#create(java.util.Collection)
+     *
+     * @param objects - the entities to be persisted
+     * @return The number of rows updated in the database. This should equal the number of objects.
+     */
+    public int createAll(Collection<? extends OrmEntity> objects)
+    {
+        @SuppressWarnings("unchecked")
+        Collection<T> entities = (Collection<T>)objects;
+        return entityDao.create(entities);
+    }
+
     /**
      * Set every foreign collection object in given entiry as an empty ForeignCollection
      * @param data Entity object
@@ -82,6 +131,26 @@ public class OrmDaoHelper<T extends OrmEntity>
          return entityDao.queryForId(primaryKey);
     }
 
+    /**
+     * Returns new entity instance which has only the ID field set. No database access is performed.
+     * @param primaryKey Primary key
+     * @return Entity instance
+     * @throws PersistenceException if the instance cannot be created
+     */
+    public T createReference(int primaryKey)
+    {
+        try
+        {
+            T entity = entityDao.createObjectInstance();
+            entityDao.getTableInfo().getIdField().assignField(entityDao.getConnectionSource(), entity, primaryKey, false, null);
+            return entity;
+        }
+        catch (SQLException e)
+        {
+            throw new PersistenceException("Create reference of class " + entityDao.getDataClass().getName() + " failed", e);
+        }
+    }
+
     /**
      * Query for a data item in the table that has the same id as the data parameter.
      * @param object Object
@@ -107,6 +176,37 @@ public class OrmDaoHelper<T extends OrmEntity>
          return entityDao.extractId(entity);
      }
 
+     /**
+      * Returns those of the given IDs which match an existing database row. 
+      * Queries are performed in chunks to stay within SQL parameter limits.
+      * @param ids Primary keys
+      * @return Set of IDs which exist
+      */
+     public Set<Integer> existingIds(Collection<Integer> ids)
+     {
+         Set<Integer> existing = new HashSet<>();
+         if (ids.isEmpty())
+             return existing;
+         String idColumn = entityDao.getTableInfo().getIdField().getColumnName();
+         List<Integer> idList = new ArrayList<>(ids);
+         try
+         {
+             for (int start = 0; start < idList.size(); start += MAX_IDS_PER_QUERY)
+             {
+                 List<Integer> chunk = idList.subList(start, Math.min(start + MAX_IDS_PER_QUERY, idList.size()));
+                 QueryBuilder<T, Integer> queryBuilder = entityDao.queryBuilder();
+                 queryBuilder.selectColumns(idColumn).where().in(idColumn, chunk);
+                 for (T entity: entityDao.query(queryBuilder.prepare()))
+                     existing.add(entityDao.extractId(entity));
+             }
+         }
+         catch (SQLException e)
+         {
+             throw new PersistenceException("Query for existing ids failed", e);
+         }
+         return existing;
+     }
+
      /**
       * Returns true if an object exists that matches this ID otherwise false.
       * @param object Object
@@ -141,6 +241,127 @@ public class OrmDaoHelper<T extends OrmEntity>
         return entityDao.update(entity);
     }
 
+    /**
+     * Store all fields from each of the given objects to their corresponding database rows.
+     * @see #updateColumns(DatabaseConnection, List, BitSet)
+     * 
+     * @param databaseConnection Connection of current transaction. May be null.
+     * @param entities Entities of this helper's class to update
+     * @return The number of rows updated for each entity, in the same order as the entities. Each should be 1.
+     * @throws PersistenceException on any SQL problems.
+     */
+    public int[] updateAll(DatabaseConnection databaseConnection, List<? extends OrmEntity> entities)
+    {
+        return updateColumns(databaseConnection, entities, null);
+    }
+
+    /**
+     * Store selected fields from each of the given objects to their corresponding database rows. 
+     * The UPDATE statement for each set of columns is built once and cached. Multiple entities are 
+     * sent as a single JDBC batch on the connection of the current transaction. Falls back to updating
+     * all fields of each entity individually if no connection is available or the entity class has 
+     * a version field.
+     * 
+     * @param databaseConnection Connection of current transaction. May be null.
+     * @param entities Entities of this helper's class to update
+     * @param columns Indexes of columns to write, as returned by {@link #getChangedColumns(Object[], Object[])},
+     *        or null to write all columns
+     * @return The number of rows updated for each entity, in the same order as the entities. Each should be 1.
+     * @throws PersistenceException on any SQL problems.
+     */
+    public int[] updateColumns(DatabaseConnection databaseConnection, List<? extends OrmEntity> entities, BitSet columns)
+    {
+        FieldType[] fields = databaseConnection != null ? getUpdatableFields() : null;
+        int[] results = new int[entities.size()];
+        if (fields == null)
+        {
+            for (int i = 0; i < results.length; i++)
+                results[i] = update(entities.get(i));
+            return results;
+        }
+        if (columns == null)
+        {
+            columns = new BitSet(fields.length);
+            columns.set(0, fields.length);
+        }
+        ColumnUpdate<T> columnUpdate = getColumnUpdate(fields, columns);
+        Connection connection = databaseConnection.getUnderlyingConnection();
+        try
+        {
+            if ((connection != null) && (results.length > 1))
+                return columnUpdate.executeBatch(connection, entities);
+            for (int i = 0; i < results.length; i++)
+                results[i] = columnUpdate.update(databaseConnection, entities.get(i));
+            return results;
+        }
+        catch (SQLException e)
+        {
+            throw new PersistenceException("Update failed: " + columnUpdate.getStatement(), e);
+        }
+    }
+
+    /**
+     * Returns values of updatable fields of given object in SQL argument form. Array values are
+     * copied, so changes made in place to the entity are detected. A serializable field is 
+     * represented by a digest of its serialized form, so the snapshot holds no copy of the object graph.
+     * @param object Entity
+     * @return Object array or null if entity class does not support column updates
+     * @throws PersistenceException on any SQL problems.
+     */
+    public Object[] getColumnSnapshot(Object object)
+    {
+        FieldType[] fields = getUpdatableFields();
+        if (fields == null)
+            return null;
+        Object[] values = new Object[fields.length];
+        try
+        {
+            for (int i = 0; i < values.length; i++)
+            {
+                FieldType field = fields[i];
+                if (field.getSqlType() == SqlType.SERIALIZABLE)
+                    values[i] = SerializedDigest.of(field.extractJavaFieldValue(object));
+                else
+                    values[i] = copyArray(field.extractJavaFieldToSqlArgValue(object));
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new PersistenceException("Failed to read fields of " + object.getClass().getName(), e);
+        }
+        return values;
+    }
+
+    /**
+     * Returns copy of an array value, otherwise the value itself
+     * @param value SQL argument value
+     * @return Object
+     */
+    private static Object copyArray(Object value)
+    {
+        if ((value == null) || !value.getClass().isArray())
+            return value;
+        int length = Array.getLength(value);
+        Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+        System.arraycopy(value, 0, copy, 0, length);
+        return copy;
+    }
+
+    /**
+     * Returns indexes of columns which differ between two snapshots of the same entity
+     * @param snapshot Values when entity became managed or was last written
+     * @param current Current values
+     * @return BitSet, which is empty if no column has changed
+     */
+    public static BitSet getChangedColumns(Object[] snapshot, Object[] current)
+    {
+        BitSet changed = new BitSet(current.length);
+        for (int i = 0; i < current.length; i++)
+            if (!Objects.deepEquals(snapshot[i], current[i]))
+                changed.set(i);
+        return changed;
+    }
+
     /**
      * Does a query for the data parameter's id and copies in each of the field values from the database to refresh the
      * data parameter. Any local object changes to persisted fields will be overwritten. If the database has been
@@ -172,5 +393,53 @@ public class OrmDaoHelper<T extends OrmEntity>
         return entityDao.delete(entity);
     }
 
+    /**
+     * Delete the database rows with the given IDs in chunks to stay within SQL parameter limits.
+     * @see PersistenceDao#deleteIds(Collection)
+     * 
+     * @param ids Primary keys of rows to delete
+     * @return The number of rows deleted in the database. This should equal the number of IDs.
+     * @throws RuntimeException on any SQL problems.
+     */
+    public int deleteIds(Collection<Integer> ids)
+    {
+        List<Integer> idList = new ArrayList<>(ids);
+        int count = 0;
+        for (int start = 0; start < idList.size(); start += MAX_IDS_PER_QUERY)
+            count += entityDao.deleteIds(idList.subList(start, Math.min(start + MAX_IDS_PER_QUERY, idList.size())));
+        return count;
+    }
+
+    /**
+     * Returns fields which can be written by an update, determining them on first call
+     * @return FieldType array or null if entity class does not support column updates
+     */
+    private FieldType[] getUpdatableFields()
+    {
+        if (!updatableFieldsChecked)
+        {
+            updatableFields = ColumnUpdate.getUpdatableFields(entityDao.getTableInfo());
+            updatableFieldsChecked = true;
+        }
+        return updatableFields;
+    }
 
+    /**
+     * Returns update statement for given set of columns, building it on first call
+     * @param fields Updatable fields
+     * @param columns Indexes of fields to write
+     * @return ColumnUpdate object
+     */
+    private ColumnUpdate<T> getColumnUpdate(FieldType[] fields, BitSet columns)
+    {
+        ColumnUpdate<T> columnUpdate = columnUpdates.get(columns);
+        if (columnUpdate == null)
+        {
+            columnUpdate = ColumnUpdate.build(entityDao.getConnectionSource().getDatabaseType(), entityDao.getTableInfo(), fields, columns);
+            ColumnUpdate<T> existing = columnUpdates.putIfAbsent((BitSet)columns.clone(), columnUpdate);
+            if (existing != null)
+                columnUpdate = existing;
+        }
+        return columnUpdate;
+    }
 }
@@ -14,26 +14,104 @@
 package au.com.cybersearch2.classyjpa.entity;
 
 import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.PersistenceException;
 
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.field.DatabaseFieldConfig;
 import com.j256.ormlite.support.ConnectionSource;
 import com.j256.ormlite.table.TableUtils;
 
 /**
  * OrmDaoHelperFactory
+ * Creates DAO helpers for one entity class and keeps a registry of ready-to-use helpers,
+ * one per connection source, so the DAO is built and the entity table checked only once.
  * @author Andrew Bowley
  * 18/08/2014
  */
 public class OrmDaoHelperFactory<T extends OrmEntity>
 {
     private Class<T> entityClass;
+    /** Copies persistent fields on merge. Created when the persistence unit analyses the entity class. */
+    private volatile EntityPropertyCopier<T> propertyCopier;
+    /** Ready-to-use DAO helpers mapped by the connection source to which each is bound */
+    private final Map<ConnectionSource, OrmDaoHelper<T>> helperRegistry;
 
     public OrmDaoHelperFactory(Class<T> entityClass)
     {
         this.entityClass = entityClass;
+        helperRegistry = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns registered DAO helper for given connection source. A connection source
+     * which was not checked on database initialization has its helper created, 
+     * including the entity table check, on first request.
+     * @param connectionSource Open connection source
+     * @return OrmDaoHelper object
+     */
+    public OrmDaoHelper<T> getRegisteredOrmDaoHelper(ConnectionSource connectionSource)
+    {
+        OrmDaoHelper<T> ormDaoHelper = helperRegistry.get(connectionSource);
+        if (ormDaoHelper == null)
+        {
+            ormDaoHelper = getOrmDaoHelper(connectionSource);
+            OrmDaoHelper<T> registered = helperRegistry.putIfAbsent(connectionSource, ormDaoHelper);
+            if (registered != null)
+                ormDaoHelper = registered;
+        }
+        return ormDaoHelper;
+    }
+
+    /**
+     * Returns DAO of registered DAO helper for given connection source
+     * @param connectionSource Open connection source
+     * @return PersistenceDao object
+     */
+    public PersistenceDao<T> getRegisteredDao(ConnectionSource connectionSource)
+    {
+        return getRegisteredOrmDaoHelper(connectionSource).getEntityDao();
+    }
+
+    /**
+     * Remove DAO helper bound to given connection source from the registry. 
+     * Call when the connection source is closed or replaced.
+     * @param connectionSource Connection source
+     */
+    public void release(ConnectionSource connectionSource)
+    {
+        helperRegistry.remove(connectionSource);
+    }
+
+    /**
+     * Create property copier for persistent fields of given field configurations
+     * @param fieldConfigs Field configurations of entity class
+     */
+    public void createPropertyCopier(List<DatabaseFieldConfig> fieldConfigs)
+    {
+        propertyCopier = EntityPropertyCopier.fromFieldConfigs(entityClass, fieldConfigs);
+    }
+
+    /**
+     * Returns entity class
+     * @return Class
+     */
+    public Class<T> getEntityClass()
+    {
+        return entityClass;
+    }
+
+    /**
+     * Returns property copier for persistent fields
+     * @return EntityPropertyCopier object or null if not created
+     */
+    public EntityPropertyCopier<T> getPropertyCopier()
+    {
+        return propertyCopier;
     }
 
     public OrmDaoHelper<T>getOrmDaoHelper(ConnectionSource connectionSource)
@@ -57,10 +135,17 @@ public class OrmDaoHelperFactory<T extends OrmEntity>
         }
     }
 
+    /**
+     * Check entity table exists, creating it if not, and register a DAO helper for given connection source
+     * @param connectionSource Open connection source
+     * @return false if the table had to be created
+     */
     public boolean checkTableExists(ConnectionSource connectionSource) 
     {
         PersistenceDao<T> entityDao = getDao(connectionSource);
-        return checkTableExists(connectionSource, entityDao);
+        boolean tableExists = checkTableExists(connectionSource, entityDao);
+        helperRegistry.put(connectionSource, new OrmDaoHelper<T>(entityDao));
+        return tableExists;
     }
     
     protected boolean checkTableExists(ConnectionSource connectionSource, PersistenceDao<T> entityDao) 
@@ -14,33 +14,66 @@
 package au.com.cybersearch2.classyjpa.entity;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.persistence.PersistenceException;
 
 import org.apache.commons.beanutils.PropertyUtils;
 
 import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
 
+import au.com.cybersearch2.classyjpa.cache.EntityCache;
 import au.com.cybersearch2.classyjpa.persist.PersistenceConfig;
 
 /**
  * ObjectMonitor
  * Delegated by Entity Manager to manage entity objects.
+ * When the persistence unit has a second-level entity cache, entity state known to match the database
+ * is staged for the cache and published only when the transaction commits. Updated and removed entities
+ * are invalidated in the cache immediately.
  * Note: This class is not thread safe. It assumes that the owning EntityManager runs in a single thread 
  * @author Andrew Bowley
  * 06/05/2014
  */
 public class OrmEntityMonitor implements DaoHelperForClass
 {
+    /** Entity copy waiting to be written to the second-level cache on commit */
+    private static class CacheWrite
+    {
+        final OrmEntity entity;
+        final int primaryKey;
+        /** Flag set true if existing cache entry is to be replaced */
+        final boolean replace;
+        
+        CacheWrite(OrmEntity entity, int primaryKey, boolean replace)
+        {
+            this.entity = entity;
+            this.primaryKey = primaryKey;
+            this.replace = replace;
+        }
+    }
+
     /** PersistenceUnitAdmin Unit configuration */
     private final PersistenceConfig persistenceConfig;
     /** Open connection source */
     private final ConnectionSource connectionSource;
     
-    /** Map managed entity objects by key */
+    /** Managed entity objects together with column values when last known to match the database */
     private final EntityStore managedObjects;
     /** Map removed entity objects by key */
     private final EntityStore removedObjects;
+    /** Managed placeholders created by reference which have only the primary key set */
+    private final EntityStore references;
+    /** Second-level entity cache or null if not enabled */
+    private final EntityCache entityCache;
+    /** Cache writes pending commit. Created only when first write is staged. */
+    private Map<EntityKey, CacheWrite> cacheWrites;
 
     /**
      * Create OrmEntityMonitor object
@@ -54,6 +87,8 @@ public class OrmEntityMonitor implements DaoHelperForClass
     	this.persistenceConfig = persistenceConfig;
     	managedObjects = new EntityStore();
     	removedObjects = new EntityStore();
+    	references = new EntityStore();
+    	entityCache = persistenceConfig.getEntityCache();
    }
 
     /**
@@ -68,13 +103,15 @@ public class OrmEntityMonitor implements DaoHelperForClass
     	this.persistenceConfig = persistenceConfig;
     	this.managedObjects = managedObjects;
     	this.removedObjects = removedObjects;
+    	references = new EntityStore();
+    	entityCache = persistenceConfig.getEntityCache();
    }
 
     /**
      * Start Managing entity
      * @param entity Object to be managed
      * @param primaryKey Entity primary key
-     * @param persistOp persist, merge, refresh or contains
+     * @param persistOp persist, merge, refresh, contains or find
      * @param <T> Entity type
      * @return null if first time this method is called for this entity, otherwise, the existing managed object
      * @throws IllegalArgumentException if any parameter is invalid
@@ -87,48 +124,143 @@ public class OrmEntityMonitor implements DaoHelperForClass
             throw new IllegalArgumentException("Parameter \"entity\" is null");
         if (persistOp == null)
             throw new IllegalArgumentException("Parameter \"persistOp\" is null");
-        EntityKey key = new EntityKey(entity.getClass(), primaryKey);
+        Class<? extends OrmEntity> clazz = entity.getClass();
+        OrmEntity managed = null;
         // Check if this is a removed object. Throw an exception if attempting to merge or refresh a removed object.
-        if (removedObjects.containsKey(key))
+        if (removedObjects.containsKey(clazz, primaryKey))
         {
             if ((persistOp == PersistOp.merge) || (persistOp == PersistOp.refresh))
-                throw new PersistenceException("Entity of class " + entity.getClass().getName() + ", primary key " + primaryKey + " is removed");
+                throw new PersistenceException("Entity of class " + clazz.getName() + ", primary key " + primaryKey + " is removed");
             else if (persistOp == PersistOp.persist) // Unexpected. Unlikely a primary key will be recycled.
-                removedObjects.remove(key);
+                removedObjects.remove(clazz, primaryKey);
             else if (persistOp == PersistOp.contains) // Do removed objects qualify as "belongs to the current persistence context"?
-                return (T)removedObjects.get(key);
+                return (T)removedObjects.get(clazz, primaryKey);
         }
-        // Map of managed objects is lazily created
-        else if (managedObjects.containsKey(key))
+        else
+            managed = managedObjects.get(clazz, primaryKey);
+        if (managed != null)
         {   // This is an existing managed object
-            if ((persistOp == PersistOp.persist) || (persistOp == PersistOp.contains))
-                return (T) managedObjects.get(key);
+            if ((persistOp == PersistOp.persist) || (persistOp == PersistOp.contains) || (persistOp == PersistOp.find))
+                return (T)managed;
             // persistOp == PersistOp.merge) || (persistOp == PersistOp.refresh)
+            invalidate(clazz, primaryKey);
             if (persistOp == PersistOp.merge)
-            { // Update previously managed object before detaching it
-                T toDetach = (T) managedObjects.get(key);
-                mergeObjects(toDetach, entity);
+            {   // Update previously managed object before detaching it
+                mergeObjects(managed, entity);
+                // A reference now has the state of the merged entity
+                references.remove(clazz, primaryKey);
             }
-            // Must set/clear dirty flag. Quickest way is with a swap
-            managedObjects.remove(key);
-            if (persistOp == PersistOp.merge)
-                key.setDirty(true);
-            managedObjects.put(key, entity);
+            // Replace in place, retaining the column snapshot, then set/clear dirty flag
+            managedObjects.put(clazz, primaryKey, entity);
+            managedObjects.setDirty(clazz, primaryKey, persistOp == PersistOp.merge);
             return (T)entity;
         }
         if (persistOp == PersistOp.merge) 
         {
-            key.setDirty(true);
+            invalidate(clazz, primaryKey);
             // merge allows previously unmanaged objects to be managed
-            managedObjects.put(key, entity);
+            managedObjects.put(clazz, primaryKey, entity);
+            managedObjects.setDirty(clazz, primaryKey, true);
         } 
-        else if (persistOp == PersistOp.persist)
-            // persist objects are managed
-            managedObjects.put(key, entity);
+        else if ((persistOp == PersistOp.persist) || (persistOp == PersistOp.find))
+        {
+            // persist and find objects are managed
+            managedObjects.put(clazz, primaryKey, entity);
+            if (persistOp == PersistOp.find)
+                // Entity has just been loaded from the database, but may be stale by the time of commit
+                stageCacheWrite(clazz, entity, primaryKey, false);
+        }
         // Returning null indicates this is a previously unmanaged object
         return (T)null;
     }
 
+    /**
+     * Returns managed entity identified by class and primary key
+     * @param clazz Class of entity
+     * @param primaryKey Primary key of entity
+     * @param <T> Entity type
+     * @return Entity belonging to the persistence context or null if none is managed
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends OrmEntity> T getManagedEntity(Class<T> clazz, int primaryKey)
+    {
+        if (clazz == null)
+            throw new IllegalArgumentException("Parameter \"clazz\" is null");
+        return (T)managedObjects.get(clazz, primaryKey);
+    }
+
+    /**
+     * Returns entity identified by class and primary key from the second-level cache.
+     * A cached entity is a copy which becomes managed by this persistence context. 
+     * @param clazz Class of entity
+     * @param primaryKey Primary key of entity
+     * @param <T> Entity type
+     * @return Entity or null if the cache is not enabled or has no entry 
+     */
+    public <T extends OrmEntity> T getCachedEntity(Class<T> clazz, int primaryKey)
+    {
+        if (clazz == null)
+            throw new IllegalArgumentException("Parameter \"clazz\" is null");
+        if (entityCache == null)
+            return null;
+        T entity = entityCache.get(clazz, primaryKey);
+        if (entity != null)
+            managedObjects.put(clazz, primaryKey, entity);
+        return entity;
+    }
+
+    /**
+     * Start managing a placeholder entity which has only the primary key set. Its state is loaded
+     * when first accessed through the entity manager.
+     * @param reference Placeholder entity
+     * @param primaryKey Primary key of entity
+     */
+    public void monitorReference(OrmEntity reference, int primaryKey)
+    {
+        if (reference == null)
+            throw new IllegalArgumentException("Parameter \"reference\" is null");
+        Class<? extends OrmEntity> clazz = reference.getClass();
+        managedObjects.put(clazz, primaryKey, reference);
+        references.put(clazz, primaryKey, reference);
+    }
+
+    /**
+     * Returns flag set true if entity identified by class and primary key is a managed placeholder 
+     * whose state has not been loaded
+     * @param clazz Class of entity
+     * @param primaryKey Primary key of entity
+     * @return boolean
+     */
+    public boolean isUnloadedReference(Class<? extends OrmEntity> clazz, int primaryKey)
+    {
+        return references.containsKey(clazz, primaryKey);
+    }
+
+    /**
+     * Update monitor state after the state of a placeholder entity is loaded
+     * @param clazz Class of entity
+     * @param primaryKey Primary key of entity
+     * @param found Flag set true if the entity was found in the database, otherwise the placeholder is detached
+     */
+    public void referenceLoaded(Class<? extends OrmEntity> clazz, int primaryKey, boolean found)
+    {
+        if ((references.remove(clazz, primaryKey) != null) && !found)
+            managedObjects.remove(clazz, primaryKey);
+    }
+
+    /**
+     * Returns flag set true if entity identified by class and primary key has been removed
+     * @param clazz Class of entity
+     * @param primaryKey Primary key of entity
+     * @return boolean
+     */
+    public boolean isRemoved(Class<? extends OrmEntity> clazz, int primaryKey)
+    {
+        if (clazz == null)
+            throw new IllegalArgumentException("Parameter \"clazz\" is null");
+        return removedObjects.containsKey(clazz, primaryKey);
+    }
+
     /**
      * Update monitor state after database operation to persist a new entity
      * @param entity  Object being managed
@@ -141,21 +273,21 @@ public class OrmEntityMonitor implements DaoHelperForClass
     {
         boolean applyPostCreateKey = false;
         if (postCreateKey != null) {
-	        EntityKey key = new EntityKey(entity.getClass(), postCreateKey);
-	    	if (!managedObjects.containsKey(key)) {
+	        Class<? extends OrmEntity> clazz = entity.getClass();
+	    	if (!managedObjects.containsKey(clazz, postCreateKey)) {
 	    		// DAO has not created same key as existing managed entity
 		        if (preCreateKey == null) {
 		            applyPostCreateKey = true;
 		        } else if (!preCreateKey.equals(postCreateKey)) {
 		            // Remove pre-create key from monitored objects
-		            key = new EntityKey(entity.getClass(), preCreateKey);
-		            if (managedObjects.containsKey(key))
-		                managedObjects.remove(key);
+		            managedObjects.remove(clazz, preCreateKey);
 		            applyPostCreateKey = true;
 		        }
 	    	}
-	        if (applyPostCreateKey) 
+	        if (applyPostCreateKey) {
 	        	startManagingEntity(entity, postCreateKey, PersistOp.persist);
+	        	stageCacheWrite(clazz, entity, postCreateKey, true);
+	        }
         }
         return applyPostCreateKey; // True primary key from start or valid primary key created by DAO
     }
@@ -170,32 +302,164 @@ public class OrmEntityMonitor implements DaoHelperForClass
     {
         if (clazz == null)
             throw new IllegalArgumentException("Parameter \"clazz\" is null");
-        EntityKey key = new EntityKey(clazz, primaryKey);
-        if (!managedObjects.containsKey(key))
+        // Removal from managed objects also discards the column snapshot
+        OrmEntity entity = managedObjects.remove(clazz, primaryKey);
+        if (entity == null)
             throw new PersistenceException("remove failed because entity of class " + clazz.getName() + " with primary key " + primaryKey + " is detached");
-        removedObjects.put(key, managedObjects.remove(key));
+        removedObjects.put(clazz, primaryKey, entity);
+        references.remove(clazz, primaryKey);
+        invalidate(clazz, primaryKey);
+    }
+
+    /**
+     * Perform outstanding updates on all managed objects. When a column snapshot is available, only
+     * columns changed since the snapshot are written and unchanged entities are skipped. Entities are 
+     * grouped by class and set of columns written, and each group is sent as a batch on the given 
+     * transaction connection.
+     * @param databaseConnection Connection of current transaction. May be null.
+     * @throws PersistenceException if the update of any entity returns result count 0
+     */
+    public void updateAllManagedObjects(DatabaseConnection databaseConnection)
+    {
+        updateObjects(managedObjects.getObjectsToUpdate(), databaseConnection);
+    }
+
+    /**
+     * Returns flag set true if there may be pending updates of managed entities to write
+     * @return boolean
+     */
+    public boolean hasObjectsToUpdate()
+    {
+        return managedObjects.hasObjectsToUpdate();
     }
 
     /**
-     * Perform outstanding updates on all managed objects
+     * Write given entities, each only of the columns changed since its snapshot
+     * @param objectsToUpdate Dirty entities
+     * @param databaseConnection Connection of current transaction. May be null.
+     * @throws PersistenceException if the update of any entity returns result count 0
      */
-    public void updateAllManagedObjects()
+    private void updateObjects(List<OrmEntity> objectsToUpdate, DatabaseConnection databaseConnection)
     {
-        for (OrmEntity entity: managedObjects.getObjectsToUpdate())
+        // Group entities by class then by set of changed columns, where null means all columns
+        Map<Class<? extends OrmEntity>, Map<BitSet, List<OrmEntity>>> entityGroups = new LinkedHashMap<>();
+        Map<OrmEntity, Object[]> currentValues = new HashMap<>();
+        for (OrmEntity entity: objectsToUpdate)
         {
-            OrmDaoHelper<? extends OrmEntity> ormDaoHelper = getOrmDaoHelperForClass(entity.getClass());
-            if (ormDaoHelper.update(entity) == 0)
-                throw new PersistenceException("update operation returned result count 0");
+            BitSet columns = null;
+            Object[] snapshot = managedObjects.getSnapshot(entity.getClass(), extractId(entity));
+            if (snapshot != null)
+            {
+                Object[] current = getOrmDaoHelperForClass(entity.getClass()).getColumnSnapshot(entity);
+                columns = OrmDaoHelper.getChangedColumns(snapshot, current);
+                if (columns.isEmpty())
+                    continue; // Nothing to write
+                currentValues.put(entity, current);
+            }
+            entityGroups.computeIfAbsent(entity.getClass(), clazz -> new LinkedHashMap<>())
+                        .computeIfAbsent(columns, key -> new ArrayList<>()).add(entity);
+        }
+        for (Map.Entry<Class<? extends OrmEntity>, Map<BitSet, List<OrmEntity>>> classEntry: entityGroups.entrySet())
+        {
+            OrmDaoHelper<? extends OrmEntity> ormDaoHelper = getOrmDaoHelperForClass(classEntry.getKey());
+            for (Map.Entry<BitSet, List<OrmEntity>> columnsEntry: classEntry.getValue().entrySet())
+            {
+                List<OrmEntity> entities = columnsEntry.getValue();
+                int[] results = ormDaoHelper.updateColumns(databaseConnection, entities, columnsEntry.getKey());
+                for (int i = 0; i < results.length; i++)
+                    if (results[i] == 0)
+                        throw new PersistenceException("update operation returned result count 0");
+                for (OrmEntity entity: entities)
+                {
+                    int primaryKey = ormDaoHelper.extractId(entity);
+                    Object[] current = currentValues.get(entity);
+                    if (current == null) // All columns written
+                        current = ormDaoHelper.getColumnSnapshot(entity);
+                    managedObjects.setSnapshot(entity.getClass(), primaryKey, current);
+                    stageCacheWrite(entity.getClass(), entity, primaryKey, true);
+                }
+            }
         }
     }
+
+    /**
+     * Record values of updatable columns of a managed entity known to match the database. 
+     * Subsequent updates to the entity then only write changed columns.
+     * @param entity Managed entity
+     * @param primaryKey Primary key of entity
+     */
+    public void captureSnapshot(OrmEntity entity, int primaryKey)
+    {
+        managedObjects.setSnapshot(entity.getClass(), 
+                                   primaryKey, 
+                                   getOrmDaoHelperForClass(entity.getClass()).getColumnSnapshot(entity));
+    }
+
+    /**
+     * Write entity state staged during the transaction to the second-level cache.
+     * Call only after the transaction has committed.
+     */
+    public void afterCommit()
+    {
+        if ((entityCache == null) || (cacheWrites == null))
+            return;
+        publish(cacheWrites);
+        cacheWrites = null;
+    }
+
+    /**
+     * Remove entity state staged during a transaction nested in an enclosing transaction, which 
+     * does not make its changes durable. The state is to be written to the second-level cache 
+     * only once the enclosing transaction has committed. 
+     * @return Action to write the staged state to the cache or null if there is none
+     */
+    public Runnable deferCacheWrites()
+    {
+        if ((entityCache == null) || (cacheWrites == null))
+            return null;
+        Map<EntityKey, CacheWrite> deferred = cacheWrites;
+        cacheWrites = null;
+        return () -> publish(deferred);
+    }
+
+    /**
+     * Discard entity state staged for the second-level cache and column snapshots, which may no 
+     * longer match the database. Call when the transaction rolls back.
+     */
+    public void afterRollback()
+    {
+        cacheWrites = null;
+        managedObjects.clearSnapshots();
+    }
     
+    /**
+     * Returns number of managed entities
+     * @return int
+     */
+    public int getManagedCount()
+    {
+        return managedObjects.size();
+    }
+
+    /**
+     * Detach all managed entities while the transaction continues. Pending updates must already
+     * have been written. Removed entities and entity state staged for the second-level cache are retained.
+     */
+    public void detachAll()
+    {
+        managedObjects.release();
+        references.release();
+    }
+
     /**
      * Remove references to all managed objects
      */
     public void release() 
     {
+        cacheWrites = null;
         removedObjects.release();
         managedObjects.release();
+        references.release();
     }
  
     /**
@@ -206,7 +470,7 @@ public class OrmEntityMonitor implements DaoHelperForClass
      */
     public <T extends OrmEntity> OrmDaoHelper<T> getOrmDaoHelperForClass(Class<T> clazz)
     {
-        return getOrmDaoHelperFactoryForClass(clazz).getOrmDaoHelper(connectionSource);
+        return getOrmDaoHelperFactoryForClass(clazz).getRegisteredOrmDaoHelper(connectionSource);
     }
 
     /**
@@ -224,12 +488,76 @@ public class OrmEntityMonitor implements DaoHelperForClass
     }
 
     /**
-     * Merge entity objects. Performs copy using reflection.
+     * Returns primary key of given entity
+     * @param entity Entity
+     * @return int
+     */
+    private int extractId(OrmEntity entity)
+    {
+        return getOrmDaoHelperForClass(entity.getClass()).extractId(entity);
+    }
+
+    /**
+     * Stage copy of entity to be written to the second-level cache on commit
+     * @param clazz Class of entity
+     * @param entity Entity with state matching the database
+     * @param primaryKey Primary key
+     * @param replace Flag set true if an existing cache entry is to be replaced
+     */
+    private void stageCacheWrite(Class<? extends OrmEntity> clazz, OrmEntity entity, int primaryKey, boolean replace)
+    {
+        if (entityCache == null)
+            return;
+        if (cacheWrites == null)
+            cacheWrites = new LinkedHashMap<>();
+        cacheWrites.put(new EntityKey(clazz, primaryKey), new CacheWrite(entityCache.getEntityCopier().copy(entity), primaryKey, replace));
+    }
+
+    /**
+     * Write given staged entity state to the second-level cache
+     * @param stagedWrites Entity copies by key
+     */
+    private void publish(Map<EntityKey, CacheWrite> stagedWrites)
+    {
+        for (CacheWrite cacheWrite: stagedWrites.values())
+        {
+            if (cacheWrite.replace)
+                entityCache.put(cacheWrite.entity, cacheWrite.primaryKey);
+            else // Do not overwrite state committed by another entity manager
+                entityCache.putIfAbsent(cacheWrite.entity, cacheWrite.primaryKey);
+        }
+    }
+
+    /**
+     * Remove entity from second-level cache and discard any staged write 
+     * @param clazz Class of entity
+     * @param primaryKey Primary key
+     */
+    private void invalidate(Class<? extends OrmEntity> clazz, int primaryKey)
+    {
+        if (entityCache == null)
+            return;
+        entityCache.evict(clazz, primaryKey);
+        if (cacheWrites != null)
+            cacheWrites.remove(new EntityKey(clazz, primaryKey));
+    }
+
+    /**
+     * Merge entity objects. Uses the property copier built for the entity class when the persistence 
+     * unit started, otherwise performs copy using reflection.
      * @param dest Entity to be updated
      * @param orig Source entity
      */
-    private static <T extends OrmEntity> void mergeObjects(T dest, T orig)
+    @SuppressWarnings("unchecked")
+    private <T extends OrmEntity> void mergeObjects(T dest, T orig)
     {
+        OrmDaoHelperFactory<T> ormDaoHelperFactory = getOrmDaoHelperFactoryForClass((Class<T>)dest.getClass());
+        EntityPropertyCopier<T> propertyCopier = ormDaoHelperFactory.getPropertyCopier();
+        if (propertyCopier != null)
+        {
+            propertyCopier.copy(dest, orig);
+            return;
+        }
         try
         {
             PropertyUtils.copyProperties(dest, orig);
@@ -24,5 +24,6 @@ public enum PersistOp
     persist,
     merge,
     refresh,
-    contains
+    contains,
+    find
 }
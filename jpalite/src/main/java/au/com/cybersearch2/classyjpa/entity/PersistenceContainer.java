@@ -68,16 +68,19 @@ public class PersistenceContainer {
 	 * @return JavaPersistenceContext object
 	 */
 	public JavaPersistenceContext getPersistenceTask(PersistenceWork persistenceWork) {
+		final boolean isStateless = persistenceWork instanceof StatelessPersistenceWork;
 		return getPersistenceTask(persistenceWork, new EntityManagerProvider() {
 
 			@Override
 			public EntityManagerLite entityManagerInstance() {
-				return entityManagerFactory.createEntityManager();
+				return isStateless ? entityManagerFactory.createStatelessEntityManager() : entityManagerFactory.createEntityManager();
 			}
 
 			@Override
 			public EntityManagerLite entityManagerInstance(ConnectionSource connectionSource) {
-				return entityManagerFactory.createEntityManager(connectionSource);
+				return isStateless ? 
+						entityManagerFactory.createStatelessEntityManager(connectionSource) : 
+						entityManagerFactory.createEntityManager(connectionSource);
 			}
 		});
 	}
@@ -0,0 +1,92 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classyjpa.entity;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import javax.persistence.PersistenceException;
+
+/**
+ * SerializedDigest
+ * Stands in for the value of a serializable column in a column snapshot. The value is serialized
+ * into a message digest, so no serialized copy is allocated and the snapshot holds only the digest.
+ */
+final class SerializedDigest
+{
+    private static final String ALGORITHM = "SHA-256";
+
+    /** Sink for serialized bytes which are only digested */
+    private static final OutputStream NULL_STREAM = new OutputStream()
+    {
+        @Override
+        public void write(int b)
+        {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+        }
+    };
+
+    private final byte[] digest;
+
+    private SerializedDigest(byte[] digest)
+    {
+        this.digest = digest;
+    }
+
+    /**
+     * Returns digest of serialized form of given value
+     * @param value Field value
+     * @return SerializedDigest object or null if value is null
+     * @throws PersistenceException if value cannot be serialized
+     */
+    static SerializedDigest of(Object value)
+    {
+        if (value == null)
+            return null;
+        try
+        {
+            MessageDigest messageDigest = MessageDigest.getInstance(ALGORITHM);
+            try (ObjectOutputStream out = new ObjectOutputStream(new DigestOutputStream(NULL_STREAM, messageDigest)))
+            {
+                out.writeObject(value);
+            }
+            return new SerializedDigest(messageDigest.digest());
+        }
+        catch (IOException | NoSuchAlgorithmException e)
+        {
+            throw new PersistenceException("Failed to serialize value of class " + value.getClass().getName(), e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        return (other instanceof SerializedDigest) && Arrays.equals(digest, ((SerializedDigest)other).digest);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(digest);
+    }
+}
@@ -0,0 +1,293 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classyjpa.entity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityExistsException;
+import javax.persistence.PersistenceException;
+
+import au.com.cybersearch2.classyjpa.cache.EntityCache;
+import au.com.cybersearch2.classyjpa.persist.PersistenceConfig;
+
+/**
+ * StatelessEntityManager
+ * Entity manager without a persistence context, intended for bulk loading and other batch work.
+ * Each operation is executed directly on the entity DAO inside the enclosing transaction.
+ * No entity becomes managed, so there is no dirty tracking, no snapshots, no second-level cache
+ * reads or writes and memory use does not grow with the number of entities processed. Entities 
+ * returned by find() and merge() are detached and changes made to them are only written by a further merge().
+ * Entities updated or deleted are evicted from the second-level cache, if configured, so other
+ * entity managers of the persistence unit do not load stale state.
+ */
+public class StatelessEntityManager extends EntityManagerImpl
+{
+    /** Second-level cache shared by the persistence unit or null if not enabled */
+    private final EntityCache entityCache;
+
+    /**
+     * Create StatelessEntityManager object
+     * @param transaction Manages transactions. The entity monitor of the transaction is not used.
+     * @param persistenceConfig PersistenceUnitAdmin Unit configuration
+     */
+    public StatelessEntityManager(
+            MonitoredTransaction transaction,
+            PersistenceConfig persistenceConfig)
+    {
+        super(transaction, persistenceConfig);
+        entityCache = persistenceConfig.getEntityCache();
+    }
+
+    /**
+     * Insert an entity instance.
+     * @param entity The entity instance
+     * @throws IllegalArgumentException if not an entity
+     * @throws EntityExistsException if the entity has a primary key which exists in the database
+     * @throws IllegalStateException if this EntityManager has been closed.
+     */
+    @Override
+    public void persist(OrmEntity entity)
+    {
+        if (entity == null)
+            throw new IllegalArgumentException("Parameter \"entity\" is null");
+        checkEntityManagerClosed("persist()");
+        OrmDaoHelper<?> ormDaoHelper = getOrmDaoHelper(entity.getClass());
+        int primaryKey = ormDaoHelper.extractId(entity);
+        beginWriteTransaction();
+        if ((primaryKey > 0) && ormDaoHelper.entityExists(entity))
+            throw createEntityExistsException(entity.getClass(), primaryKey);
+        if (ormDaoHelper.create(entity) == 0)
+            throw new PersistenceException("persist operation returned result count 0");
+        ormDaoHelper.setForeignCollections(entity);
+    }
+
+    /**
+     * Insert the given entity instances in bulk for each entity class.
+     * Existence is not checked beforehand, so an entity with a primary key which exists in the
+     * database causes the database constraint violation to be reported.
+     * @param entities The entity instances
+     * @throws IllegalArgumentException if any instance is not an entity
+     * @throws IllegalStateException if this EntityManager has been closed.
+     */
+    @Override
+    public void persistAll(Collection<? extends OrmEntity> entities)
+    {
+        if (entities == null)
+            throw new IllegalArgumentException("Parameter \"entities\" is null");
+        checkEntityManagerClosed("persistAll()");
+        Map<Class<? extends OrmEntity>, List<OrmEntity>> entityGroups = groupByClass(entities);
+        beginWriteTransaction();
+        for (Map.Entry<Class<? extends OrmEntity>, List<OrmEntity>> entry: entityGroups.entrySet())
+        {
+            OrmDaoHelper<?> ormDaoHelper = getOrmDaoHelper(entry.getKey());
+            List<OrmEntity> group = entry.getValue();
+            int count = ormDaoHelper.createAll(group);
+            if (count != group.size())
+                throw new PersistenceException("persist operation returned result count " + count + ", expected " + group.size());
+            for (OrmEntity entity: group)
+                ormDaoHelper.setForeignCollections(entity);
+        }
+    }
+
+    /**
+     * Write the state of the given entity to the database, inserting it if it does not exist.
+     * @param entity The entity instance
+     * @return The given entity, which remains detached
+     * @throws IllegalArgumentException if instance is not an entity
+     * @throws IllegalStateException if this EntityManager has been closed.
+     */
+    @Override
+    public <T extends OrmEntity> T merge(T entity)
+    {
+        if (entity == null)
+            throw new IllegalArgumentException("Parameter \"entity\" is null");
+        checkEntityManagerClosed("merge()");
+        OrmDaoHelper<?> ormDaoHelper = getOrmDaoHelper(entity.getClass());
+        beginWriteTransaction();
+        if ((ormDaoHelper.update(entity) == 0) && (ormDaoHelper.create(entity) == 0))
+            throw new PersistenceException("merge operation returned result count 0");
+        evict(entity.getClass(), ormDaoHelper.extractId(entity));
+        return entity;
+    }
+
+    /**
+     * Write the state of each of the given entities to the database, inserting any which do not exist.
+     * @param entities The entity instances
+     * @throws IllegalArgumentException if any instance is not an entity
+     * @throws IllegalStateException if this EntityManager has been closed.
+     */
+    @Override
+    public void mergeAll(Collection<? extends OrmEntity> entities)
+    {
+        if (entities == null)
+            throw new IllegalArgumentException("Parameter \"entities\" is null");
+        checkEntityManagerClosed("mergeAll()");
+        Map<Class<? extends OrmEntity>, List<OrmEntity>> entityGroups = groupByClass(entities);
+        beginWriteTransaction();
+        for (Map.Entry<Class<? extends OrmEntity>, List<OrmEntity>> entry: entityGroups.entrySet())
+        {
+            OrmDaoHelper<?> ormDaoHelper = getOrmDaoHelper(entry.getKey());
+            List<OrmEntity> group = entry.getValue();
+            int[] results = ormDaoHelper.updateAll(null, group);
+            List<OrmEntity> inserts = new ArrayList<>();
+            for (int i = 0; i < results.length; ++i)
+                if (results[i] == 0)
+                    inserts.add(group.get(i));
+            if (!inserts.isEmpty())
+            {
+                int count = ormDaoHelper.createAll(inserts);
+                if (count != inserts.size())
+                    throw new PersistenceException("merge operation returned result count " + count + ", expected " + inserts.size());
+            }
+            for (OrmEntity entity: group)
+                evict(entry.getKey(), ormDaoHelper.extractId(entity));
+        }
+    }
+
+    /**
+     * Refresh the state of the instance from the database,
+     * overwriting changes made to the entity, if any. Does not require transaction.
+     * @param entity The entity instance
+     * @throws IllegalArgumentException if not an entity
+     * @throws PersistenceException if the entity does not exist in the database
+     * @throws IllegalStateException if this EntityManager has been closed.
+     */
+    @Override
+    public void refresh(OrmEntity entity)
+    {
+        checkEntityManagerClosed("refresh()");
+        OrmDaoHelper<?> ormDaoHelper = getOrmDaoHelper(entity.getClass());
+        if (ormDaoHelper.refresh(entity) == 0)
+            throw new PersistenceException("refresh operation returned result count 0");
+    }
+
+    /**
+     * Delete the entity instance.
+     * @param entity The entity instance
+     * @throws IllegalArgumentException if not an entity
+     * @throws PersistenceException if the entity does not exist in the database
+     * @throws IllegalStateException if this EntityManager has been closed.
+     */
+    @Override
+    public void remove(OrmEntity entity)
+    {
+        checkEntityManagerClosed("remove()");
+        OrmDaoHelper<?> ormDaoHelper = getOrmDaoHelper(entity.getClass());
+        beginWriteTransaction();
+        if (ormDaoHelper.delete(entity) == 0)
+            throw new PersistenceException("remove operation returned result count 0");
+        evict(entity.getClass(), ormDaoHelper.extractId(entity));
+    }
+
+    /**
+     * Delete the given entity instances by id in bulk for each entity class.
+     * @param entities The entity instances
+     * @throws IllegalArgumentException if any instance is not an entity
+     * @throws PersistenceException if any instance does not exist in the database
+     * @throws IllegalStateException if this EntityManager has been closed.
+     */
+    @Override
+    public void removeAll(Collection<? extends OrmEntity> entities)
+    {
+        if (entities == null)
+            throw new IllegalArgumentException("Parameter \"entities\" is null");
+        checkEntityManagerClosed("removeAll()");
+        Map<Class<? extends OrmEntity>, List<OrmEntity>> entityGroups = groupByClass(entities);
+        beginWriteTransaction();
+        for (Map.Entry<Class<? extends OrmEntity>, List<OrmEntity>> entry: entityGroups.entrySet())
+        {
+            OrmDaoHelper<?> ormDaoHelper = getOrmDaoHelper(entry.getKey());
+            Set<Integer> primaryKeys = new LinkedHashSet<>();
+            for (OrmEntity entity: entry.getValue())
+                primaryKeys.add(ormDaoHelper.extractId(entity));
+            int count = ormDaoHelper.deleteIds(primaryKeys);
+            if (count != primaryKeys.size())
+                throw new PersistenceException("remove operation returned result count " + count + ", expected " + primaryKeys.size());
+            for (int primaryKey: primaryKeys)
+                evict(entry.getKey(), primaryKey);
+        }
+    }
+
+    /**
+     * Find by primary key. Always queries the database and the returned entity is detached.
+     * Does not require transaction.
+     * @param entityClass The class of the entity
+     * @param primaryKey The primary key
+     * @return the found entity instance or null if the entity does not exist
+     * @throws IllegalStateException if this EntityManager has been closed.
+     * @throws IllegalArgumentException if the first argument does not denote an entity type
+     */
+    @Override
+    public <T extends OrmEntity> T find(Class<T> entityClass, int primaryKey)
+    {
+        checkEntityManagerClosed("find()");
+        return getOrmDaoHelper(entityClass).queryForId(primaryKey);
+    }
+
+    /**
+     * Returns a detached placeholder instance with only the primary key set, without reading the database.
+     * The placeholder can be used to set foreign keys. Its state is never loaded implicitly,
+     * but refresh() can be used to load it.
+     * @param entityClass The class of the entity
+     * @param primaryKey The primary key
+     * @return placeholder entity instance
+     * @throws IllegalArgumentException if the first argument does not denote an entity type
+     * @throws IllegalStateException if this EntityManager has been closed.
+     */
+    @Override
+    public <T extends OrmEntity> T getReference(Class<T> entityClass, int primaryKey)
+    {
+        checkEntityManagerClosed("getReference()");
+        return getOrmDaoHelper(entityClass).createReference(primaryKey);
+    }
+
+    /**
+     * There is no persistence context to clear, so only confirms the entity manager is open
+     * @throws IllegalStateException if this EntityManager has been closed.
+     */
+    @Override
+    public void clear()
+    {
+        checkEntityManagerClosed("clear()");
+    }
+
+    /**
+     * There is no persistence context, so no instance is ever contained
+     * @param entity The entity instance
+     * @return false
+     * @throws IllegalStateException if this EntityManager has been closed.
+     */
+    @Override
+    public boolean contains(OrmEntity entity)
+    {
+        checkEntityManagerClosed("contains()");
+        return false;
+    }
+
+    /**
+     * Remove entity written by this entity manager from the second-level cache, if enabled
+     * @param entityClass Class of entity
+     * @param primaryKey Primary key
+     */
+    private void evict(Class<? extends OrmEntity> entityClass, int primaryKey)
+    {
+        if (entityCache != null)
+            entityCache.evict(entityClass, primaryKey);
+    }
+}
@@ -20,6 +20,7 @@ import au.com.cybersearch2.classyjpa.EntityManagerLiteFactory;
 import au.com.cybersearch2.classyjpa.entity.EntityManagerImpl;
 import au.com.cybersearch2.classyjpa.entity.MonitoredTransaction;
 import au.com.cybersearch2.classyjpa.entity.OrmEntityMonitor;
+import au.com.cybersearch2.classyjpa.entity.StatelessEntityManager;
 import au.com.cybersearch2.classyjpa.transaction.TransactionStateFactory;
 
 /**
@@ -68,16 +69,42 @@ public class EntityManagerFactoryImpl implements EntityManagerLiteFactory
 	/**
 	 * Create a EntityManager bound to an existing connectionSource. Use only for
 	 * special case of database creation or update.
+	 * The entity manager is stateless if the persistence unit is configured that way.
 	 * 
 	 * @param connectionSource The existing ConnectionSource object
 	 * @return Entity manager instance
 	 */
 	public EntityManagerLite createEntityManager(ConnectionSource connectionSource) {
         checkEntityManagerFactoryClosed("createEntityManager");
-        MonitoredTransaction transaction = 
-            	new MonitoredTransaction(new TransactionStateFactory(connectionSource),
-            			                 new OrmEntityMonitor(connectionSource, persistenceConfig));
-        return new EntityManagerImpl(transaction, persistenceConfig);
+        if (persistenceConfig.isStateless())
+        	return new StatelessEntityManager(createTransaction(connectionSource), persistenceConfig);
+        return new EntityManagerImpl(createTransaction(connectionSource), persistenceConfig);
+	}
+
+    /**
+     * Create a new EntityManager which has no persistence context
+     * 
+     * @return entity manager instance
+     * @throws IllegalStateException
+     *             if the entity manager factory has been closed
+     */
+    @Override
+    public EntityManagerLite createStatelessEntityManager() 
+    {
+        checkEntityManagerFactoryClosed("createStatelessEntityManager");
+        return createStatelessEntityManager(connectionSourceProvider.getConnectionSource());
+    }
+
+	/**
+	 * Create a EntityManager which has no persistence context bound to an existing connectionSource
+	 * 
+	 * @param connectionSource The existing ConnectionSource object
+	 * @return Entity manager instance
+	 */
+	@Override
+	public EntityManagerLite createStatelessEntityManager(ConnectionSource connectionSource) {
+        checkEntityManagerFactoryClosed("createStatelessEntityManager");
+        return new StatelessEntityManager(createTransaction(connectionSource), persistenceConfig);
 	}
 
     /**
@@ -106,6 +133,17 @@ public class EntityManagerFactoryImpl implements EntityManagerLiteFactory
         return isOpen;
     }
     
+    /**
+     * Returns new transaction for given connection source
+     * @param connectionSource Connection source
+     * @return MonitoredTransaction object
+     */
+    private MonitoredTransaction createTransaction(ConnectionSource connectionSource)
+    {
+    	return new MonitoredTransaction(new TransactionStateFactory(connectionSource, persistenceConfig.getTransactionMetrics()),
+    			                        new OrmEntityMonitor(connectionSource, persistenceConfig));
+    }
+
     /**
      * Confirm this Entity Manager is open
      * @param method Name of method being invoked
@@ -82,9 +82,12 @@ public class PersistenceAdminImpl implements PersistenceAdmin {
 	 */
 	@Override
 	public ConnectionSource getConnectionSource() {
-		if ((connectionSource == null) || !connectionSource.isOpen(""))
+		if ((connectionSource == null) || !connectionSource.isOpen("")) {
+			if (connectionSource != null) // Replacing closed connection source invalidates its DAOs
+				config.releaseDaoHelpers(connectionSource);
 			connectionSource = 
 			    ((ConnectionSourceFactory)databaseSupport).getConnectionSource(puName, databaseName, puInfo.getProperties());
+		}
 		return connectionSource;
 	}
 
@@ -162,6 +165,8 @@ public class PersistenceAdminImpl implements PersistenceAdmin {
 	 */
 	@Override
 	public void close() {
+		if (connectionSource != null)
+			config.releaseDaoHelpers(connectionSource);
 		databaseSupport.close();
 	}
 
@@ -38,11 +38,16 @@ import java.util.Set;
 import javax.persistence.TypedQuery;
 
 import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.db.BaseSqliteDatabaseType;
 import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.field.DatabaseFieldConfig;
 import com.j256.ormlite.support.ConnectionSource;
 import com.j256.ormlite.table.DatabaseTableConfig;
 
+import au.com.cybersearch2.classyjpa.cache.EntityCache;
+import au.com.cybersearch2.classyjpa.cache.EvictionPolicy;
 import au.com.cybersearch2.classyjpa.entity.EntityClassLoader;
+import au.com.cybersearch2.classyjpa.entity.EntityPropertyCopier;
 import au.com.cybersearch2.classyjpa.entity.OrmDaoHelperFactory;
 import au.com.cybersearch2.classyjpa.entity.OrmEntity;
 import au.com.cybersearch2.classyjpa.entity.PersistenceDao;
@@ -52,8 +57,12 @@ import au.com.cybersearch2.classyjpa.query.NamedDaoQuery;
 import au.com.cybersearch2.classyjpa.query.NamedSqlQuery;
 import au.com.cybersearch2.classyjpa.query.QueryInfo;
 import au.com.cybersearch2.classyjpa.query.SqlQueryFactory;
+import au.com.cybersearch2.classyjpa.transaction.TransactionMetrics;
+import au.com.cybersearch2.service.BackpressurePolicy;
 import com.j256.ormlite.logger.Logger;
 import au.com.cybersearch2.classylog.LogManager;
+import au.com.cybersearch2.container.JpaSetting;
+import au.com.cybersearch2.container.SettingsMap;
 
 /**
  * PersistenceConfig Configuration information for one PersistenceUnitAdmin Unit
@@ -64,6 +73,20 @@ public class PersistenceConfig {
 	private static Logger logger = LogManager.getLogger(PersistenceConfig.class);
 
 	private static final String NAME_EXISTS_MESSAGE = "Query name already exists: ";
+	/** Default second-level entity cache maximum entries */
+	public static final int DEFAULT_ENTITY_CACHE_SIZE = 1000;
+	/** Default second-level entity cache time-to-live in seconds */
+	public static final int DEFAULT_ENTITY_CACHE_TTL = 300;
+	/** Default group commit window in milliseconds */
+	public static final int DEFAULT_GROUP_COMMIT_WINDOW = 5;
+	/** Default group commit maximum batch size */
+	public static final int DEFAULT_GROUP_COMMIT_MAX_BATCH = 64;
+	/** Default time in seconds to wait for persistence work performed in a worker thread */
+	public static final int DEFAULT_PROCESS_TIMEOUT = 30;
+	/** Default maximum persistence work performed concurrently on virtual threads when the unit does not have a connection pool */
+	public static final int DEFAULT_MAX_CONCURRENT_WORK = 5;
+	/** Default maximum persistence work waiting in a unit work queue */
+	public static final int DEFAULT_WORK_QUEUE_CAPACITY = 100;
 
 	/** Maps ORM query to name of query */
 	private final Map<String, NamedDaoQuery<? extends OrmEntity>> namedQueryMap;
@@ -71,12 +94,40 @@ public class PersistenceConfig {
 	private final Map<String, NamedSqlQuery> nativeQueryMap;
 	/** Maps ORM DAO helper factory object to entity class name */
 	private final Map<String, OrmDaoHelperFactory<? extends OrmEntity>> helperFactoryMap;
+	/** Transaction counts shared by all entity managers */
+	private final TransactionMetrics transactionMetrics;
 	/** PU info from persistence.xml */
 	private PersistenceUnitInfo puInfo;
 	/** Database type */
 	private DatabaseType databaseType;
 	/** Class loader to instantiate entity classes (optional) */
 	private EntityClassLoader entityClassLoader;
+	/** Second-level entity cache shared by all entity managers (optional) */
+	private EntityCache entityCache;
+	/** Flag set true if entity managers are to be stateless */
+	private boolean isStateless;
+	/** Managed entity count which triggers flush and clear or 0 if not set */
+	private int flushThreshold;
+	/** Used heap bytes which triggers flush and clear or 0 if not set */
+	private long flushHeapBudget;
+	/** Flag set true if persistence work is to be committed in groups */
+	private boolean isGroupCommit;
+	/** Group commit window in milliseconds */
+	private int groupCommitWindow;
+	/** Group commit maximum batch size */
+	private int groupCommitMaxBatch;
+	/** Time in seconds to wait for persistence work performed in a worker thread */
+	private int processTimeout;
+	/** Maximum persistence work performed concurrently on virtual threads */
+	private int maxConcurrentWork;
+	/** Number of threads in unit worker pool or zero if the shared worker service is used */
+	private int workerThreads;
+	/** Maximum persistence work waiting in unit work queue */
+	private int workQueueCapacity;
+	/** Policy when unit work queue is full */
+	private BackpressurePolicy backpressurePolicy;
+	/** Flag set true if SQLite write transactions are performed by a single writer thread */
+	private boolean isSingleWriter;
 
 	/**
 	 * Construct a PersistenceConfig instance
@@ -88,6 +139,7 @@ public class PersistenceConfig {
 		namedQueryMap = new HashMap<>();
 		nativeQueryMap = new HashMap<>();
 		helperFactoryMap = new HashMap<>();
+		transactionMetrics = new TransactionMetrics();
 	}
 
 	/**
@@ -130,7 +182,7 @@ public class PersistenceConfig {
 	 * @return PersistenceDao object
 	 */
 	public <T extends OrmEntity> PersistenceDao<T> getDao(Class<T> entityClass, ConnectionSource connectionSource) {
-		return getOrmDaoHelperFactoryForClass(entityClass).getDao(connectionSource);
+		return getOrmDaoHelperFactoryForClass(entityClass).getRegisteredDao(connectionSource);
 	}
 
 	/**
@@ -187,15 +239,170 @@ public class PersistenceConfig {
 	 */
 	public void setPuInfo(PersistenceUnitInfo puInfo) {
 		this.puInfo = puInfo;
+		SettingsMap settingsMap = puInfo.getSettingsMap();
+		entityCache = createEntityCache(settingsMap);
+		isStateless = Boolean.parseBoolean(settingsMap.get(JpaSetting.stateless));
+		flushThreshold = getOptionalPositiveInt(settingsMap, JpaSetting.flush_threshold);
+		flushHeapBudget = getOptionalPositiveInt(settingsMap, JpaSetting.flush_heap_budget) * 1024L * 1024L;
+		isGroupCommit = Boolean.parseBoolean(settingsMap.get(JpaSetting.group_commit));
+		groupCommitWindow = getPositiveInt(settingsMap, JpaSetting.group_commit_window, DEFAULT_GROUP_COMMIT_WINDOW);
+		groupCommitMaxBatch = getPositiveInt(settingsMap, JpaSetting.group_commit_max_batch, DEFAULT_GROUP_COMMIT_MAX_BATCH);
+		processTimeout = getPositiveInt(settingsMap, JpaSetting.process_timeout, DEFAULT_PROCESS_TIMEOUT);
+		maxConcurrentWork = getOptionalPositiveInt(settingsMap, JpaSetting.max_concurrent_work);
+		workerThreads = getOptionalPositiveInt(settingsMap, JpaSetting.worker_threads);
+		workQueueCapacity = getPositiveInt(settingsMap, JpaSetting.work_queue_capacity, DEFAULT_WORK_QUEUE_CAPACITY);
+		backpressurePolicy = getBackpressurePolicy(settingsMap);
+		isSingleWriter = Boolean.parseBoolean(settingsMap.get(JpaSetting.single_writer));
+		if (isSingleWriter && !(databaseType instanceof BaseSqliteDatabaseType)) {
+			logger.warn(JpaSetting.single_writer.getKey() + " setting ignored as database is not SQLite");
+			isSingleWriter = false;
+		}
 		Set<String> managedClassNames = puInfo.getManagedClassNames();
 		if (!managedClassNames.isEmpty())
 			registerClasses(managedClassNames);
 	}
 
+	/**
+	 * Returns second-level entity cache
+	 * 
+	 * @return EntityCache object or null if the cache is not enabled for this unit
+	 */
+	public EntityCache getEntityCache() {
+		return entityCache;
+	}
+
+	/**
+	 * Returns counts of transactions of this unit by path taken - top-level, savepoint or read-only
+	 * 
+	 * @return TransactionMetrics object
+	 */
+	public TransactionMetrics getTransactionMetrics() {
+		return transactionMetrics;
+	}
+
+	/**
+	 * Returns flag set true if entity managers created for this unit have no persistence context
+	 * 
+	 * @return boolean
+	 */
+	public boolean isStateless() {
+		return isStateless;
+	}
+
+	/**
+	 * Returns number of managed entities at which an entity manager writes pending updates and 
+	 * clears its persistence context without ending the transaction
+	 * 
+	 * @return int or 0 if not set
+	 */
+	public int getFlushThreshold() {
+		return flushThreshold;
+	}
+
+	/**
+	 * Returns used heap size in bytes at which an entity manager writes pending updates and 
+	 * clears its persistence context without ending the transaction. Used heap includes garbage 
+	 * not yet collected, so this is an upper bound, checked periodically, rather than a measure 
+	 * of persistence context size.
+	 * 
+	 * @return long or 0 if not set
+	 */
+	public long getFlushHeapBudget() {
+		return flushHeapBudget;
+	}
+
+	/**
+	 * Returns flag set true if concurrently submitted persistence work is committed in groups
+	 * 
+	 * @return boolean
+	 */
+	public boolean isGroupCommit() {
+		return isGroupCommit;
+	}
+
+	/**
+	 * Returns time in milliseconds to collect persistence work for a group commit
+	 * 
+	 * @return int
+	 */
+	public int getGroupCommitWindow() {
+		return groupCommitWindow;
+	}
+
+	/**
+	 * Returns maximum number of persistence work items in a group commit
+	 * 
+	 * @return int
+	 */
+	public int getGroupCommitMaxBatch() {
+		return groupCommitMaxBatch;
+	}
+
+	/**
+	 * Returns time in seconds to wait for persistence work performed in a worker thread to complete
+	 * 
+	 * @return int
+	 */
+	public int getProcessTimeout() {
+		return processTimeout;
+	}
+
+	/**
+	 * Returns maximum number of persistence work items performed concurrently on virtual threads.
+	 * This should not exceed the number of database connections available to the unit.
+	 * 
+	 * @return int or 0 if not set, in which case the unit applies a default
+	 */
+	public int getMaxConcurrentWork() {
+		return maxConcurrentWork;
+	}
+
+	/**
+	 * Returns number of threads in a worker pool dedicated to this unit
+	 * 
+	 * @return int or zero if work is submitted to the shared worker service
+	 */
+	public int getWorkerThreads() {
+		return workerThreads;
+	}
+
+	/**
+	 * Returns maximum number of persistence work items waiting in the unit work queue
+	 * 
+	 * @return int
+	 */
+	public int getWorkQueueCapacity() {
+		return workQueueCapacity;
+	}
+
+	/**
+	 * Returns policy applied when the unit work queue is full
+	 * 
+	 * @return BackpressurePolicy
+	 */
+	public BackpressurePolicy getBackpressurePolicy() {
+		return backpressurePolicy;
+	}
+
+	/**
+	 * Returns flag set true if write transactions of this SQLite unit are performed in batches by a single writer thread
+	 * 
+	 * @return boolean
+	 */
+	public boolean isSingleWriter() {
+		return isSingleWriter;
+	}
+
 	public void setEntityClassLoader(EntityClassLoader entityClassLoader) {
 		this.entityClassLoader = entityClassLoader;
 	}
 
+	/**
+	 * Check all entity tables exist, creating any which are missing, and register
+	 * ready-to-use DAO helpers for given connection source
+	 * 
+	 * @param connectionSource Open connection source
+	 */
 	public void checkEntityTablesExist(ConnectionSource connectionSource) {
 		for (Map.Entry<String, OrmDaoHelperFactory<? extends OrmEntity>> entry : helperFactoryMap.entrySet()) {
 			if (!entry.getValue().checkTableExists(connectionSource))
@@ -203,6 +410,16 @@ public class PersistenceConfig {
 		}
 	}
 
+	/**
+	 * Remove all DAO helpers bound to given connection source from the registry.
+	 * Call when the connection source is closed or replaced.
+	 * 
+	 * @param connectionSource Connection source
+	 */
+	public void releaseDaoHelpers(ConnectionSource connectionSource) {
+		helperFactoryMap.values().forEach(helperFactory -> helperFactory.release(connectionSource));
+	}
+
 	@SuppressWarnings("unchecked")
 	public <X> TypedQuery<X> createNamedQuery(String name, Class<X> resultClass, ConnectionSource connectionSource) {
 		NamedDaoQuery<? extends OrmEntity> namedDaoQuery = getNamedQuery(name);
@@ -244,6 +461,76 @@ public class PersistenceConfig {
 		List<DatabaseTableConfig<?>> configs = classAnlyser.getDatabaseTableConfigList(managedClassNames);
 		if (!configs.isEmpty())
 			DaoManager.addCachedDatabaseConfigs(configs);
+		// Build field copiers used on merge and by the entity cache once, from the analysed field configurations
+		configs.forEach(config -> {
+			OrmDaoHelperFactory<? extends OrmEntity> helperFactory = helperFactoryMap.get(config.getDataClass().getName());
+			if (helperFactory != null) {
+				helperFactory.createPropertyCopier(config.getFieldConfigs());
+				if (entityCache != null)
+					registerCacheCopier(helperFactory, config.getFieldConfigs());
+			}
+		});
+	}
+
+	/**
+	 * Register copier of persisted columns with the entity cache
+	 * @param helperFactory Helper factory of entity class
+	 * @param fieldConfigs Field configurations of entity class
+	 */
+	private <T extends OrmEntity> void registerCacheCopier(OrmDaoHelperFactory<T> helperFactory, List<DatabaseFieldConfig> fieldConfigs) {
+		entityCache.getEntityCopier().register(EntityPropertyCopier.forDetachedCopies(helperFactory.getEntityClass(), fieldConfigs));
+	}
+
+	/**
+	 * Returns second-level entity cache configured by unit settings. The cache is
+	 * enabled by setting the eviction policy. Invalid settings are logged and
+	 * replaced by defaults.
+	 * 
+	 * @param settingsMap Settings map
+	 * @return EntityCache object or null if no eviction policy is set
+	 */
+	public static EntityCache createEntityCache(SettingsMap settingsMap) {
+		if (!settingsMap.hasSetting(JpaSetting.entity_cache))
+			return null;
+		EvictionPolicy evictionPolicy;
+		try {
+			evictionPolicy = EvictionPolicy.valueOf(settingsMap.get(JpaSetting.entity_cache).toLowerCase());
+		} catch (IllegalArgumentException e) {
+			logger.error(JpaSetting.entity_cache.getDescription() + " is invalid ");
+			return null;
+		}
+		int maxEntries = getPositiveInt(settingsMap, JpaSetting.entity_cache_size, DEFAULT_ENTITY_CACHE_SIZE);
+		int ttlSeconds = getPositiveInt(settingsMap, JpaSetting.entity_cache_ttl, DEFAULT_ENTITY_CACHE_TTL);
+		return evictionPolicy.createEntityCache(maxEntries, ttlSeconds * 1000L);
+	}
+
+	private static BackpressurePolicy getBackpressurePolicy(SettingsMap settingsMap) {
+		if (settingsMap.hasSetting(JpaSetting.backpressure))
+			try {
+				return BackpressurePolicy.valueOf(settingsMap.get(JpaSetting.backpressure).toLowerCase());
+			} catch (IllegalArgumentException e) {
+				logger.error(JpaSetting.backpressure.getDescription() + " is invalid ");
+			}
+		return BackpressurePolicy.block;
+	}
+
+	private static int getOptionalPositiveInt(SettingsMap settingsMap, JpaSetting jpaSetting) {
+		return settingsMap.hasSetting(jpaSetting) ? getPositiveInt(settingsMap, jpaSetting, 0) : 0;
+	}
+
+	private static int getPositiveInt(SettingsMap settingsMap, JpaSetting jpaSetting, int defaultValue) {
+		int value = defaultValue;
+		try {
+			if (settingsMap.hasSetting(jpaSetting))
+				value = Integer.parseInt(settingsMap.get(jpaSetting));
+		} catch (NumberFormatException e) {
+			logger.error(jpaSetting.getDescription() + " is invalid ");
+		}
+		if (value < 1) {
+			logger.error(jpaSetting.getDescription() + " is invalid ");
+			value = defaultValue;
+		}
+		return value;
 	}
 
 	/**
@@ -41,11 +41,33 @@ public class EntityQuery<T extends OrmEntity> extends QueryBase<T> {
 
 	/** OrmLite query for generic entity class */
 	private final DaoQuery<T> daoQuery;
+	/** Entity class or null if not known */
+	private final Class<T> entityClass;
 
 	public EntityQuery(DaoQuery<T> daoQuery) {
+		this(null, daoQuery);
+	}
+
+	/**
+	 * Construct EntityQuery object
+	 * 
+	 * @param entityClass Entity class queried
+	 * @param daoQuery    OrmLite query
+	 */
+	public EntityQuery(Class<T> entityClass, DaoQuery<T> daoQuery) {
+		this.entityClass = entityClass;
 		this.daoQuery = daoQuery;
 	}
 
+	/**
+	 * Returns entity class queried
+	 * 
+	 * @return Class or null if not known
+	 */
+	public Class<T> getEntityClass() {
+		return entityClass;
+	}
+
 	/**
 	 * Execute an update or delete statement. NOT implemented.
 	 * 
@@ -67,6 +89,7 @@ public class EntityQuery<T extends OrmEntity> extends QueryBase<T> {
 		if (isClosed) // Only perform query once
 			return new ArrayList<T>();
 		try {
+			flushIfAuto();
 			return daoQuery.getResultList(startPosition, maxResults);
 		} finally {
 			release();
@@ -84,6 +107,12 @@ public class EntityQuery<T extends OrmEntity> extends QueryBase<T> {
 		T result = null;
 		if (isClosed) // Only perform query once
 			throw new NoResultException("getSingleResult() called when query already executed");
+		try {
+			flushIfAuto();
+		} catch (RuntimeException e) {
+			release();
+			throw e;
+		}
 		try {
 			result = daoQuery.getSingleResult();
 		} catch (PersistenceException e) {
@@ -60,7 +60,7 @@ public class NamedDaoQuery<T extends OrmEntity> implements Comparable<NamedDaoQu
         try
         {
 			DaoQuery<T> daoQuery = (DaoQuery<T>) daoQueryFactory.generateQuery(connectionSource);
-            return new EntityQuery<T>(daoQuery);
+            return new EntityQuery<T>(entityClass, daoQuery);
         }
         catch (SQLException e)
         {
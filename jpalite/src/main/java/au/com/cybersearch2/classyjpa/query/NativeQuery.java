@@ -70,6 +70,7 @@ public class NativeQuery<T> extends QueryBase<T> {
 		if (isClosed) // Only perform query once
 			return new ArrayList<>();
 		try {
+			flushIfAuto();
 			return sqlQuery.getResultObjectList(startPosition, maxResults);
 		} finally {
 			release();
@@ -88,6 +89,12 @@ public class NativeQuery<T> extends QueryBase<T> {
 		if (isClosed) // Only perform query once
 			throw new NoResultException("getSingleResult() called when query already executed");
 		String message = sqlQuery.toString();
+		try {
+			flushIfAuto();
+		} catch (RuntimeException e) {
+			release();
+			throw e;
+		}
 		try {
 			result = sqlQuery.getResultObject();
 		} catch (PersistenceException e) {
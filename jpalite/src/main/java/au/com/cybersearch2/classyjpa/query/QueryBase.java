@@ -42,6 +42,22 @@ abstract public class QueryBase<T> implements TypedQuery<T>
     protected int startPosition;
     /** Flag for query closed */
     protected volatile boolean isClosed;
+    /** Flush mode for query execution */
+    protected FlushModeType flushMode = FlushModeType.COMMIT;
+    /** Writes pending updates of the persistence context to the database. Null if not available. */
+    private Runnable autoFlush;
+
+    /**
+     * Set flush mode and action to flush pending updates of the persistence context. When the flush 
+     * mode is AUTO, the action is performed immediately before the query is executed.
+     * @param flushMode Flush mode of the entity manager
+     * @param autoFlush Action to write pending updates
+     */
+    public void setAutoFlush(FlushModeType flushMode, Runnable autoFlush)
+    {
+        this.flushMode = flushMode;
+        this.autoFlush = autoFlush;
+    }
 
     /**
      * Set the maximum number of results to retrieve.
@@ -74,13 +90,14 @@ abstract public class QueryBase<T> implements TypedQuery<T>
      }
 
     /**
-     * Set the flush mode type to be used for the query execution not supported.
-     * @param type Not used
+     * Set the flush mode type to be used for the query execution.
+     * @param type Flush mode
      * @return The same query instance
      */
     @Override
     public TypedQuery<T> setFlushMode(FlushModeType type) 
     {
+        flushMode = type;
         return this;
     }
 
@@ -109,15 +126,24 @@ abstract public class QueryBase<T> implements TypedQuery<T>
     }
 
     /**
-     * Get the flush mode in effect for the query execution. Always returns the flush mode
-     * in effect for the entity manager.
+     * Get the flush mode in effect for the query execution, which is initially the flush mode
+     * of the entity manager.
      * 
      * @return flush mode
      */
     @Override
     public FlushModeType getFlushMode() 
     {
-        return FlushModeType.COMMIT;
+        return flushMode;
+    }
+
+    /**
+     * Write pending updates of the persistence context if the flush mode is AUTO
+     */
+    protected void flushIfAuto()
+    {
+        if ((flushMode == FlushModeType.AUTO) && (autoFlush != null))
+            autoFlush.run();
     }
 
     /**
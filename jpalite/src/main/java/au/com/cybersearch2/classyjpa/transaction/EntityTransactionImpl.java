@@ -45,6 +45,8 @@ public class EntityTransactionImpl implements EntityTransaction {
 
 	private volatile boolean rollbackOnly;
 	private TransactionState transactionState;
+	/** Flag set true if transactions only read */
+	private boolean isReadOnly;
 
 	/**
 	 * Construct a ClassyEntityTransaction instance
@@ -95,7 +97,7 @@ public class EntityTransactionImpl implements EntityTransaction {
 	public void begin() {
 		if (isActive())
 			throw new IllegalStateException("begin() called while active");
-		transactionState = transactionStateFactory.transactionStateInstance();
+		transactionState = transactionStateFactory.transactionStateInstance(isReadOnly);
 	}
 
 	/**
@@ -114,8 +116,10 @@ public class EntityTransactionImpl implements EntityTransaction {
 		transactionState = null;
 		boolean doRollback = rollbackOnly;
 		rollbackOnly = false;
-		DatabaseConnection connection = commitTransactionState.getDatabaseConnection();
-		if (!doRollback && (onPreCommit != null)) {
+		if (!doRollback && !isReadOnly && (onPreCommit != null) && 
+				(commitTransactionState.isConnected() || isPreCommitRequired())) {
+			// Acquires the transaction connection if not already done
+			DatabaseConnection connection = commitTransactionState.getDatabaseConnection();
 			// Delegate pre-commit call to PreCommit class. This will capture error details
 			// if the call fails.
 			PreCommit preCommit = new PreCommit(onPreCommit);
@@ -224,6 +228,73 @@ public class EntityTransactionImpl implements EntityTransaction {
 		rollbackOnly = true;
 	}
 
+	/**
+	 * Set read-only mode for transactions begun thereafter. A read-only transaction uses a
+	 * read-only connection without a savepoint and does not call the pre-commit callable, 
+	 * so nothing is written on commit.
+	 * 
+	 * @param isReadOnly Flag set true if transactions only read
+	 * @throws IllegalStateException if {@link #isActive()} is true.
+	 */
+	public void setReadOnly(boolean isReadOnly) {
+		if (isActive())
+			throw new IllegalStateException("setReadOnly() called while active");
+		this.isReadOnly = isReadOnly;
+	}
+
+	/**
+	 * Returns flag set true if transactions only read
+	 * 
+	 * @return boolean
+	 */
+	public boolean isReadOnly() {
+		return isReadOnly;
+	}
+
+	/**
+	 * Acquire the database connection of the current transaction, if not already done, so 
+	 * subsequent DAO operations are performed in the transaction. The connection is otherwise
+	 * acquired only when required on commit.
+	 * 
+	 * @throws IllegalStateException if {@link #isActive()} is false.
+	 * @throws PersistenceException if error occurs while acquiring the connection
+	 */
+	public void acquireConnection() {
+		if (!isActive())
+			throw new IllegalStateException("acquireConnection() called while not active");
+		transactionState.connect();
+	}
+
+	/**
+	 * Returns connection of the current transaction, acquiring it if not already done
+	 * 
+	 * @return DatabaseConnection object or null if not active
+	 */
+	protected DatabaseConnection getDatabaseConnection() {
+		return isActive() ? transactionState.getDatabaseConnection() : null;
+	}
+
+	/**
+	 * Returns flag set true if the current transaction is nested in an enclosing transaction 
+	 * on the same connection, so committing it only releases its savepoint
+	 * 
+	 * @return boolean
+	 */
+	protected boolean isNested() {
+		return isActive() && transactionState.isNested();
+	}
+
+	/**
+	 * Returns flag set true if the pre-commit callable has work to do on commit when the
+	 * transaction connection has not been acquired. Override to avoid acquiring a connection
+	 * just to call the pre-commit callable when there is nothing to write.
+	 * 
+	 * @return boolean
+	 */
+	protected boolean isPreCommitRequired() {
+		return true;
+	}
+
 	protected PreCommit getPreCommit() {
 		return new PreCommit(onPreCommit);
 	}
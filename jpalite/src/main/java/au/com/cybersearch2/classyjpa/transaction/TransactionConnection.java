@@ -34,7 +34,14 @@ public class TransactionConnection {
 
 	/** Open connection source */
 	private final ConnectionSource connectionSource;
+	/** Flag set true if the connection is only used to read */
+	private final boolean isReadOnly;
+	/** Optional counts of transactions by path taken on activation */
+	private final TransactionMetrics transactionMetrics;
 	private boolean savedSpecialConnection;
+	/** Flag set true once the connection is passed to saveSpecialConnection(). The connection source counts 
+	 *  each call, including nested calls which return false, so each must be matched by clearSpecialConnection(). */
+	private boolean isSpecialConnectionHeld;
 	private boolean isNestedSavePointsSupported;
 	private DatabaseConnection connection;
 	private Boolean hasSavePoint;
@@ -49,10 +56,49 @@ public class TransactionConnection {
 	 * @throws SQLException if error occurs during savepoint or autocommit operation
 	 */
 	public TransactionConnection(ConnectionSource connectionSource, int transactionId) throws SQLException {
-		this.connectionSource = connectionSource;
+		this(connectionSource);
 		activate(transactionId);
 	}
 
+	/**
+	 * Construct TransactionConnection object which does not open a database connection until activated
+	 * @param connectionSource Open connection source
+	 */
+	public TransactionConnection(ConnectionSource connectionSource) {
+		this(connectionSource, false);
+	}
+
+	/**
+	 * Construct TransactionConnection object which does not open a database connection until activated.
+	 * A read-only connection is not saved as the special connection, nor given a savepoint, 
+	 * so readers do not serialize behind writers.
+	 * @param connectionSource Open connection source
+	 * @param isReadOnly Flag set true if the connection is only used to read
+	 */
+	public TransactionConnection(ConnectionSource connectionSource, boolean isReadOnly) {
+		this(connectionSource, isReadOnly, null);
+	}
+
+	/**
+	 * Construct TransactionConnection object which does not open a database connection until activated.
+	 * @param connectionSource Open connection source
+	 * @param isReadOnly Flag set true if the connection is only used to read
+	 * @param transactionMetrics Counts transactions by path taken on activation. May be null.
+	 */
+	public TransactionConnection(ConnectionSource connectionSource, boolean isReadOnly, TransactionMetrics transactionMetrics) {
+		this.connectionSource = connectionSource;
+		this.isReadOnly = isReadOnly;
+		this.transactionMetrics = transactionMetrics;
+	}
+
+	/**
+	 * Returns flag set true if the connection is only used to read
+	 * @return boolean
+	 */
+	public boolean isReadOnly() {
+		return isReadOnly;
+	}
+
 	/**
 	 * Returns flag set true if autocommit needs to be turned off
 	 * @return boolean
@@ -62,15 +108,36 @@ public class TransactionConnection {
 	}
 
 	/**
-	 * Returns read/write connection provided by the connection source
+	 * Returns flag set true if the transaction is nested in an enclosing transaction on the same 
+	 * connection, so its changes are not durable until the enclosing transaction commits. Until the
+	 * connection is activated, this is the case if a connection is already saved as the special 
+	 * connection of the current thread.
+	 * @return boolean
+	 */
+	public boolean isNested() {
+		if (connection == null)
+			return (connectionSource != null) && (connectionSource.getSpecialConnection("") != null);
+		return !isReadOnly && !savedSpecialConnection;
+	}
+
+	/**
+	 * Returns connection provided by the connection source
 	 * @return DatabaseConnection object
 	 */
 	public DatabaseConnection getDatabaseConnection() {
 		return connection;
 	}
 
+	/**
+	 * Commit the transaction. A transaction nested in an enclosing transaction on the same 
+	 * connection releases its savepoint, leaving the enclosing transaction to commit the changes.
+	 * @throws SQLException if database error occurs
+	 */
 	public void commit() throws SQLException {
-		connection.commit(savePoint);
+		if ((savePoint != null) && !savedSpecialConnection)
+			connection.releaseSavePoint(savePoint);
+		else
+			connection.commit(savePoint);
 	}
 	
 	public void rollback() throws SQLException {
@@ -82,10 +149,15 @@ public class TransactionConnection {
 	 */
 	public void release() {
 		if (connection != null) {
+			if (isReadOnly) {
+				releaseConnection();
+				connection = null;
+				return;
+			}
 			// try to restore if we are in auto-commit mode
 			if ((autoCommitAtStart != null) && autoCommitAtStart)
 				restoreAutoCommit();
-			if (savedSpecialConnection)
+			if (isSpecialConnectionHeld)
 			    clearSpecialConnection();
 			savePoint = null;
 			hasSavePoint = null;
@@ -99,8 +171,7 @@ public class TransactionConnection {
 	 */
 	public boolean isActive() {
 		return (connection != null) && 
-				(!excludeAutoCommit() ||
-			        (savePoint != null && hasSavePoint != null));
+				(isReadOnly || !excludeAutoCommit() || (hasSavePoint != null));
 	}
 
 	/**
@@ -113,25 +184,43 @@ public class TransactionConnection {
 	}
 
 	/**
-	 * Open the database connection and prepare it to perform transactions
+	 * Open the database connection and prepare it to perform transactions. 
+	 * A read-only connection is opened without further preparation. A savepoint is only set
+	 * if the transaction is nested in another transaction on the same connection. Otherwise,
+	 * plain commit and rollback are used, saving a statement per transaction.
 	 * @param transactionId Transaction id used to create unique savepoint name
 	 * @throws SQLException if error occurs during savepoint or autocommit operation
 	 */
 	public void activate(int transactionId) throws SQLException {
 		if (connectionSource == null)
 			throw new IllegalStateException("Connection source is null");
+		if (isReadOnly) {
+			connection = connectionSource.getReadOnlyConnection("");
+			if (transactionMetrics != null)
+				transactionMetrics.onReadOnly();
+			return;
+		}
 		try {
 			connection = connectionSource.getReadWriteConnection("");
 			savedSpecialConnection = connectionSource.saveSpecialConnection(connection);
+			isSpecialConnectionHeld = true;
 			isNestedSavePointsSupported = connectionSource.getDatabaseType().isNestedSavePointsSupported();
 			if (excludeAutoCommit()) {
 				if (connection.isAutoCommitSupported())
 					ensureAutoCommitOff();
-				setSavePoint(transactionId);
+				if (isTopLevel())
+					hasSavePoint = Boolean.FALSE;
+				else
+					setSavePoint(transactionId);
+			}
+			if (transactionMetrics != null) {
+				if (savePoint != null)
+					transactionMetrics.onSavePoint();
+				else
+					transactionMetrics.onTopLevel();
 			}
 		} finally {
-			if ((excludeAutoCommit() && 
-			        (savePoint == null || hasSavePoint == null)))
+			if (excludeAutoCommit() && (hasSavePoint == null))
 				try {
 					release();
 				} catch (Throwable t) {
@@ -140,6 +229,22 @@ public class TransactionConnection {
 		}
 	}
 
+	/**
+	 * Returns flag set true if the transaction is not nested in another transaction on the 
+	 * same connection. This is the case if this transaction saved the special connection and
+	 * found auto commit on, which means no transaction was in progress.
+	 * 
+	 * @return boolean
+	 */
+	private boolean isTopLevel() {
+		return savedSpecialConnection && Boolean.TRUE.equals(autoCommitAtStart);
+	}
+
+	/**
+	 * Returns TRUE if a savepoint is set, FALSE for a top-level transaction without a savepoint 
+	 * or null if not active
+	 * @return Boolean
+	 */
 	protected Boolean getHasSavePoint() {
 		return hasSavePoint;
 	}
@@ -206,6 +311,14 @@ public class TransactionConnection {
 	 */
 	private void clearSpecialConnection() {
 		connectionSource.clearSpecialConnection(connection);
+		isSpecialConnectionHeld = false;
+		releaseConnection();
+	}
+
+	/**
+	 * Return connection to the connection source
+	 */
+	private void releaseConnection() {
 		try {
 			connectionSource.releaseConnection(connection);
 		} catch (SQLException e) {
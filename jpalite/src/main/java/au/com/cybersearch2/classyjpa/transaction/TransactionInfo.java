@@ -27,6 +27,8 @@ public class TransactionInfo
     private Throwable rollbackException;
     /** Flag for user transaction. If true, then entityTransaction and userTransaction will be the same object */ 
     private boolean isUserTransaction;
+    /** Flag for read-only transaction */
+    private boolean isReadOnly;
     /** The enclosing entity transaction */
     private EntityTransaction entityTransaction;
     
@@ -84,4 +86,22 @@ public class TransactionInfo
         this.isUserTransaction = isUserTransaction;
     }
 
+    /**
+     * Returns true if read-only transaction
+     * @return boolean
+     */
+    public boolean isReadOnly() 
+    {
+        return isReadOnly;
+    }
+
+    /**
+     * Set read-only transaction flag
+     * @param isReadOnly boolean
+     */
+    public void setReadOnly(boolean isReadOnly) 
+    {
+        this.isReadOnly = isReadOnly;
+    }
+
 }
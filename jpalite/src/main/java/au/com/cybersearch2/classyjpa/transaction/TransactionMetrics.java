@@ -0,0 +1,124 @@
+/** Copyright 2023 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classyjpa.transaction;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts transactions by the path taken when the transaction connection is activated. 
+ * A top-level transaction uses plain commit and rollback, while a transaction nested 
+ * in another on the same connection requires a savepoint. A read-only transaction needs neither.
+ * Group commits, which coalesce many units of work into one transaction, are also counted. 
+ * One instance is shared by all transactions of a persistence unit.
+ */
+public class TransactionMetrics {
+
+	/** Number of top-level transactions, which do not set a savepoint */
+	private final AtomicLong topLevelCount;
+	/** Number of nested transactions, which set a savepoint */
+	private final AtomicLong savePointCount;
+	/** Number of read-only transactions */
+	private final AtomicLong readOnlyCount;
+	/** Number of group commits */
+	private final AtomicLong groupCommitCount;
+	/** Number of units of work committed in groups */
+	private final AtomicLong groupedWorkCount;
+
+	/**
+	 * Construct TransactionMetrics object
+	 */
+	public TransactionMetrics() {
+		topLevelCount = new AtomicLong();
+		savePointCount = new AtomicLong();
+		readOnlyCount = new AtomicLong();
+		groupCommitCount = new AtomicLong();
+		groupedWorkCount = new AtomicLong();
+	}
+
+	/**
+	 * Record activation of a top-level transaction
+	 */
+	public void onTopLevel() {
+		topLevelCount.incrementAndGet();
+	}
+
+	/**
+	 * Record activation of a nested transaction which sets a savepoint
+	 */
+	public void onSavePoint() {
+		savePointCount.incrementAndGet();
+	}
+
+	/**
+	 * Record activation of a read-only transaction
+	 */
+	public void onReadOnly() {
+		readOnlyCount.incrementAndGet();
+	}
+
+	/**
+	 * Record a group commit
+	 * @param workCount Number of units of work in the group
+	 */
+	public void onGroupCommit(int workCount) {
+		groupCommitCount.incrementAndGet();
+		groupedWorkCount.addAndGet(workCount);
+	}
+
+	/**
+	 * Returns number of top-level transactions, which do not set a savepoint
+	 * @return long
+	 */
+	public long getTopLevelCount() {
+		return topLevelCount.get();
+	}
+
+	/**
+	 * Returns number of nested transactions, which set a savepoint
+	 * @return long
+	 */
+	public long getSavePointCount() {
+		return savePointCount.get();
+	}
+
+	/**
+	 * Returns number of read-only transactions
+	 * @return long
+	 */
+	public long getReadOnlyCount() {
+		return readOnlyCount.get();
+	}
+
+	/**
+	 * Returns number of group commits
+	 * @return long
+	 */
+	public long getGroupCommitCount() {
+		return groupCommitCount.get();
+	}
+
+	/**
+	 * Returns number of units of work committed in groups
+	 * @return long
+	 */
+	public long getGroupedWorkCount() {
+		return groupedWorkCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Transactions: top-level %d, savepoint %d, read-only %d, group commits %d of %d units of work", 
+				topLevelCount.get(), savePointCount.get(), readOnlyCount.get(), groupCommitCount.get(), groupedWorkCount.get());
+	}
+}
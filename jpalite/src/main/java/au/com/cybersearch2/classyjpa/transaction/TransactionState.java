@@ -15,6 +15,8 @@ package au.com.cybersearch2.classyjpa.transaction;
 
 import java.sql.SQLException;
 
+import javax.persistence.PersistenceException;
+
 import com.j256.ormlite.logger.Level;
 import com.j256.ormlite.logger.Logger;
 import com.j256.ormlite.support.DatabaseConnection;
@@ -22,36 +24,95 @@ import com.j256.ormlite.support.DatabaseConnection;
 import au.com.cybersearch2.classylog.LogManager;
 
 /**
- * Manages transaction connection for commit and rollback
+ * Manages transaction connection for commit and rollback.
+ * The transaction connection may be acquired lazily, when first required, in which case
+ * commit and rollback do nothing if it was never acquired.
  * 
  * @author Andrew Bowley 09/05/2014
  */
 public class TransactionState {
 	private static Logger logger = LogManager.getLogger(TransactionState.class);
 
+	private static final String SQL_ERROR = "SQL error while creating transaction %d connection";
+
 	/** Database connection with special connection, save point and auto commit features */
 	private final TransactionConnection transConnection;
 	/** Unique transaction identity */
 	private final int transactionId;
+	/** Flag set true once the transaction connection has been activated */
+	private boolean isConnected;
 
 	/**
-	 * Construct a TransactionState instance
+	 * Construct a TransactionState instance for an active transaction connection
 	 * 
 	 * @param trandConnection Database connection with special connection, save point and auto commit features
 	 * @param transactionId Unique transaction identity
-	 * @throws SQLException if ConnectionSource error occurs
 	 */
 	public TransactionState(TransactionConnection transConnection, int transactionId) {
+		this(transConnection, transactionId, true);
+	}
+
+	/**
+	 * Construct a TransactionState instance
+	 * 
+	 * @param trandConnection Database connection with special connection, save point and auto commit features
+	 * @param transactionId Unique transaction identity
+	 * @param isConnected Flag set true if the transaction connection is active, otherwise it is activated when first required
+	 */
+	public TransactionState(TransactionConnection transConnection, int transactionId, boolean isConnected) {
 		this.transConnection = transConnection;
 		this.transactionId = transactionId;
+		this.isConnected = isConnected;
 	}
 
+	/**
+	 * Returns transaction connection, activating it if not already done
+	 * 
+	 * @return DatabaseConnection object
+	 * @throws PersistenceException if error occurs while activating the connection
+	 */
 	public DatabaseConnection getDatabaseConnection() {
+		connect();
 		return transConnection.getDatabaseConnection();
 	}
 
+	/**
+	 * Activate the transaction connection if not already done. Thereafter, DAO operations 
+	 * on the connection source use the transaction connection.
+	 * 
+	 * @throws PersistenceException if error occurs while activating the connection
+	 */
+	public void connect() {
+		if (!isConnected) {
+			try {
+				transConnection.activate(transactionId);
+			} catch (SQLException e) {
+				throw new PersistenceException(String.format(SQL_ERROR, transactionId), e);
+			}
+			isConnected = true;
+		}
+	}
+
+	/**
+	 * Returns flag set true if the transaction connection has been activated
+	 * 
+	 * @return boolean
+	 */
+	public boolean isConnected() {
+		return isConnected;
+	}
+
 	public boolean isActive() {
-		return transConnection.isActive();
+		return !isConnected || transConnection.isActive();
+	}
+
+	/**
+	 * Returns flag set true if the transaction is nested in an enclosing transaction on the same connection
+	 * 
+	 * @return boolean
+	 */
+	public boolean isNested() {
+		return transConnection.isNested();
 	}
 	
 	/**
@@ -60,6 +121,12 @@ public class TransactionState {
 	 * @throws SQLException if database error occurs
 	 */
 	public void doCommit() throws SQLException {
+		if (!isConnected)
+			return; // Nothing to commit
+		if (transConnection.isReadOnly()) {
+			transConnection.release();
+			return;
+		}
 		try {
 			// Perform check for release state.
 			if (!transConnection.canCommit()) {
@@ -73,7 +140,7 @@ public class TransactionState {
 			if (logger.isLevelEnabled(Level.DEBUG))
 				logger.debug(String.format("Committed transaction id %d", transactionId));
 		} catch (SQLException e) {
-			if (transConnection.getHasSavePoint()) {
+			if (transConnection.getHasSavePoint() != null) {
 				try {
 					transConnection.rollback();
 				} catch (SQLException e2) {
@@ -96,6 +163,12 @@ public class TransactionState {
 	 * @throws SQLException if database error occurs
 	 */
 	public void doRollback() throws SQLException {
+		if (!isConnected)
+			return; // Nothing to roll back
+		if (transConnection.isReadOnly()) {
+			transConnection.release();
+			return;
+		}
 		try {
 			// Perform check for release state.
 			if (!transConnection.canCommit()) {
@@ -13,20 +13,17 @@
     limitations under the License. */
 package au.com.cybersearch2.classyjpa.transaction;
 
-import java.sql.SQLException;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.persistence.PersistenceException;
-
 import com.j256.ormlite.support.ConnectionSource;
 
 /**
- * Creates TransactionState instances, generating a unique transaction id for each one
+ * Creates TransactionState instances, generating a unique transaction id for each one.
+ * The database connection of a transaction is not acquired until the transaction first needs it, 
+ * so work which only reads is served by the connection source without holding a transaction connection.
  */
 public class TransactionStateFactory {
 
-	private static final String SQL_ERROR = "SQL error while creating transaction %d connection";
-
 	/** Each transaction is uniquely identified using this generator */
 	// Counter values provide unique savepoint identifiers
 	// Note SQLite does not support nested save points
@@ -34,29 +31,47 @@ public class TransactionStateFactory {
 
 	/** Open connection source */
 	private final ConnectionSource connectionSource;
+	/** Optional counts of transactions by path taken on activation */
+	private final TransactionMetrics transactionMetrics;
 	/** Current transaction identifier. Used only to generate unique savepoint name */
 	private int transactionId;
-	/** Transaction connect - recycled, if possible */
+	/** Transaction connect - recycled, if possible. Created when first transaction begins. */
 	private TransactionConnection transConnection;
 
 	/**
-	 * Construct TransactionStateFactory object
+	 * Construct TransactionStateFactory object. No database connection is opened.
 	 * @param connectionSource Open connection source
-	 * @throws PersistenceException if error occurs while creating the database connection
 	 */
 	public TransactionStateFactory(ConnectionSource connectionSource) {
+		this(connectionSource, null);
+	}
+	
+	/**
+	 * Construct TransactionStateFactory object. No database connection is opened.
+	 * @param connectionSource Open connection source
+	 * @param transactionMetrics Counts transactions by path taken on activation. May be null.
+	 */
+	public TransactionStateFactory(ConnectionSource connectionSource, TransactionMetrics transactionMetrics) {
 		this.connectionSource = connectionSource;
+		this.transactionMetrics = transactionMetrics;
 		transactionId = savePointCounter.incrementAndGet();
-		// Create connection before the first transaction begins for early detection of trouble
-		createConnection();
 	}
 	
 	/**
-	 * Returns a new TransactionState instance
+	 * Returns a new TransactionState instance, the connection of which is activated when first required
 	 * @return TransactionState object
 	 */
 	public TransactionState transactionStateInstance() {
-		return createTransactionState();
+		return createTransactionState(false);
+	}
+	
+	/**
+	 * Returns a new TransactionState instance, the connection of which is activated when first required
+	 * @param isReadOnly Flag set true if the transaction only reads, in which case a read-only connection is used
+	 * @return TransactionState object
+	 */
+	public TransactionState transactionStateInstance(boolean isReadOnly) {
+		return createTransactionState(isReadOnly);
 	}
 	
 	public ConnectionSource getConnectionSource() {
@@ -67,29 +82,15 @@ public class TransactionStateFactory {
 		return transactionId;
 	}
 
-	private TransactionState createTransactionState() {
-		if (transConnection.isActive()) 
-			// This is not expected, but a new transaction is allowed while the previous one
-			// is rolled back 
-			createConnection();
-		else
-			// Recycle the transaction connection
-			try {
-			    transConnection.activate(transactionId);
-			} catch (SQLException e) {
-				throw new PersistenceException(String.format(SQL_ERROR, transactionId), e);
-			}
-		TransactionState transState = new TransactionState(transConnection, transactionId);
+	private TransactionState createTransactionState(boolean isReadOnly) {
+		if ((transConnection == null) || transConnection.isActive() || (transConnection.isReadOnly() != isReadOnly)) 
+			// A new connection is not expected to be needed after the first transaction, 
+			// but a new transaction is allowed while the previous one is rolled back 
+			transConnection = new TransactionConnection(connectionSource, isReadOnly, transactionMetrics);
+		// Otherwise recycle the transaction connection
+		TransactionState transState = new TransactionState(transConnection, transactionId, false);
 		// Increment transaction id to next value
 		transactionId = savePointCounter.incrementAndGet();
 		return transState;
 	}
-
-	private void createConnection() {
-		try {
-			transConnection = new TransactionConnection(connectionSource, transactionId);
-		} catch (SQLException e) {
-			throw new PersistenceException(String.format(SQL_ERROR, transactionId), e);
-		}
-	}
 }
@@ -0,0 +1,374 @@
+/** Copyright 2023 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.container;
+
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.persistence.PersistenceException;
+
+import com.j256.ormlite.logger.Logger;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+
+import au.com.cybersearch2.classyjpa.entity.JavaPersistenceContext;
+import au.com.cybersearch2.classyjpa.transaction.TransactionConnection;
+import au.com.cybersearch2.classyjpa.transaction.TransactionMetrics;
+import au.com.cybersearch2.classylog.LogManager;
+
+/**
+ * Coalesces persistence work submitted concurrently to a persistence unit into one database
+ * transaction, so many small units of work share a single commit. The first thread to submit work
+ * while no group is being collected leads the group. It waits for the group commit window to elapse 
+ * or the maximum batch to be reached, then performs each work item in turn on one connection, isolating 
+ * each with a savepoint so a failed item is rolled back alone. Every submitting thread blocks until 
+ * the group containing its work has committed and its work has been notified of its own outcome.
+ * Once the group containing its own work has completed, the leader hands leadership to the submitter 
+ * of the oldest pending work, so no thread is held leading groups under steady load.
+ */
+public class GroupCommitScheduler {
+
+	/** Persistence work waiting for group commit along with its outcome */
+	private static class GroupEntry {
+
+		/** Executes the work in a persistence context */
+		private final JavaPersistenceContext persistenceContext;
+		/** Executor to lead groups on behalf of the submitter or null if the submitting thread waits */
+		private final Executor leaderExecutor;
+		/** Completes with final work status */
+		private final CompletableFuture<WorkStatus> completion;
+		/** Work result - TRUE = success, FALSE = rollback or null if not commenced */
+		private Boolean success;
+		/** Flag set true when the waiting submitter is to lead the next group. Guarded by scheduler lock. */
+		private boolean isPromoted;
+
+		public GroupEntry(JavaPersistenceContext persistenceContext, Executor leaderExecutor) {
+			this.persistenceContext = persistenceContext;
+			this.leaderExecutor = leaderExecutor;
+			completion = new CompletableFuture<>();
+		}
+
+		/**
+		 * Perform work within given savepoint, rolling back to the savepoint if the work fails
+		 * @param connection Group transaction connection
+		 * @param savePointName Savepoint name unique to this work
+		 * @throws SQLException if database error occurs
+		 */
+		public void execute(DatabaseConnection connection, String savePointName) throws SQLException {
+			Savepoint savePoint = connection.setSavePoint(savePointName);
+			try {
+				success = persistenceContext.doTask();
+			} catch (RuntimeException e) {
+				persistenceContext.setExecutionException(new ExecutionException(e));
+			}
+			if (Boolean.TRUE.equals(success))
+				connection.releaseSavePoint(savePoint);
+			else
+				connection.rollback(savePoint);
+		}
+
+		/**
+		 * Notify the work of its outcome after the group has committed or rolled back. Second-level 
+		 * cache updates held by the work are only written if both the work and the group committed.
+		 * @param groupException Exception which caused the group to roll back or null if committed
+		 */
+		public void complete(Throwable groupException) {
+			try {
+				persistenceContext.afterEnclosingTransaction((groupException == null) && Boolean.TRUE.equals(success));
+				if (groupException != null)
+					persistenceContext.setExecutionException(new ExecutionException(groupException));
+				persistenceContext.onPostExecute(success);
+				completion.complete(persistenceContext.getWorkStatus());
+			} catch (RuntimeException e) {
+				completion.completeExceptionally(e);
+			}
+		}
+
+		/**
+		 * Wait for the group containing this work to complete
+		 * @return final work status
+		 */
+		public WorkStatus awaitCompletion() {
+			try {
+				return completion.join();
+			} catch (CompletionException e) {
+				throw new JpaliteException("Persistence work terminated with an error", e.getCause());
+			}
+		}
+	}
+
+	private static final String SAVE_POINT_PREFIX = "GROUP";
+	private static final String GROUP_ERROR = "Group commit %d failed";
+
+	private static Logger logger = LogManager.getLogger(GroupCommitScheduler.class);
+
+	/** Group identifiers, which also make savepoint names unique */
+	private static AtomicInteger groupCounter = new AtomicInteger();
+
+	/** Open connection source */
+	private final ConnectionSource connectionSource;
+	/** Time to collect work for a group */
+	private final long windowNanos;
+	/** Maximum number of work items in a group */
+	private final int maxBatch;
+	/** Optional counts of transactions */
+	private final TransactionMetrics transactionMetrics;
+	/** Guards pending work and leadership */
+	private final ReentrantLock lock;
+	/** Signalled when pending work reaches maximum batch */
+	private final Condition batchFull;
+	/** Signalled when a group has completed or leadership is handed to a waiting submitter */
+	private final Condition handOff;
+	/** Work waiting for the next group */
+	private final List<GroupEntry> pending;
+	/** Flag set true while a thread is leading groups */
+	private boolean hasLeader;
+
+	/**
+	 * Construct GroupCommitScheduler object
+	 * @param connectionSource Open connection source
+	 * @param windowMillis Time in milliseconds to collect work for a group
+	 * @param maxBatch Maximum number of work items in a group
+	 * @param transactionMetrics Counts transactions. May be null.
+	 */
+	public GroupCommitScheduler(ConnectionSource connectionSource, int windowMillis, int maxBatch, TransactionMetrics transactionMetrics) {
+		this.connectionSource = connectionSource;
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+		this.maxBatch = maxBatch;
+		this.transactionMetrics = transactionMetrics;
+		lock = new ReentrantLock();
+		batchFull = lock.newCondition();
+		handOff = lock.newCondition();
+		pending = new ArrayList<>();
+	}
+
+	/**
+	 * Perform work in the next group commit, waiting until the group has completed
+	 * @param persistenceContext Executes a task in a persistence context
+	 * @return final work status
+	 */
+	public WorkStatus execute(JavaPersistenceContext persistenceContext) {
+		GroupEntry entry = new GroupEntry(persistenceContext, null);
+		if (enqueue(entry))
+			lead(entry, true);
+		else if (awaitTurn(entry))
+			lead(entry, false);
+		return entry.awaitCompletion();
+	}
+
+	/**
+	 * Submit work for the next group commit without waiting. When no group is being collected, 
+	 * the given executor leads the next group, so all groups can be committed by a dedicated thread.
+	 * @param persistenceContext Executes a task in a persistence context
+	 * @param leaderExecutor Executor to lead groups
+	 * @return future which completes with final work status once the group has completed
+	 * @throws RejectedExecutionException if the executor does not accept the leader task, in which case
+	 *         all pending work fails with the same exception
+	 */
+	public CompletableFuture<WorkStatus> submit(JavaPersistenceContext persistenceContext, Executor leaderExecutor) {
+		GroupEntry entry = new GroupEntry(persistenceContext, leaderExecutor);
+		if (enqueue(entry))
+			try {
+				leaderExecutor.execute(() -> lead(entry, true));
+			} catch (RejectedExecutionException e) {
+				// Work submitted by other threads may already be waiting for this leader
+				failPending(e);
+				throw e;
+			}
+		return entry.completion;
+	}
+
+	/**
+	 * Add work to pending group
+	 * @param entry Work item
+	 * @return flag set true if the caller is to lead the group
+	 */
+	private boolean enqueue(GroupEntry entry) {
+		lock.lock();
+		try {
+			pending.add(entry);
+			if (!hasLeader) 
+				return hasLeader = true;
+			if (pending.size() >= maxBatch)
+				batchFull.signal();
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Wait until the group containing given work has completed or the submitter is promoted to lead
+	 * @param entry Work item
+	 * @return flag set true if the caller is to lead the next group
+	 */
+	private boolean awaitTurn(GroupEntry entry) {
+		lock.lock();
+		try {
+			while (!entry.isPromoted && !entry.completion.isDone())
+				handOff.awaitUninterruptibly();
+			return entry.isPromoted;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Commit groups until the group containing given work has completed, then hand leadership 
+	 * to the submitter of the oldest pending work. Work which arrives while a group is being 
+	 * committed forms the next group without further waiting.
+	 * @param ownEntry Work of the leader
+	 * @param doWait Flag set true if waiting for the group commit window
+	 */
+	private void lead(GroupEntry ownEntry, boolean doWait) {
+		List<GroupEntry> batch = nextBatch(doWait);
+		while (!batch.isEmpty()) {
+			commitBatch(batch);
+			signalCompletion();
+			if (batch.contains(ownEntry)) {
+				handOffLeadership();
+				return;
+			}
+			batch = nextBatch(false);
+		}
+	}
+
+	/**
+	 * Wake submitters waiting for their group to complete
+	 */
+	private void signalCompletion() {
+		lock.lock();
+		try {
+			handOff.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Pass leadership to the submitter of the oldest pending work or relinquish it if there is none.
+	 * Work submitted without waiting is led by the executor given on submission.
+	 */
+	private void handOffLeadership() {
+		GroupEntry next;
+		lock.lock();
+		try {
+			if (pending.isEmpty()) {
+				hasLeader = false;
+				return;
+			}
+			next = pending.get(0);
+			if (next.leaderExecutor == null) {
+				next.isPromoted = true;
+				handOff.signalAll();
+				return;
+			}
+		} finally {
+			lock.unlock();
+		}
+		try {
+			next.leaderExecutor.execute(() -> lead(next, false));
+		} catch (RejectedExecutionException e) {
+			failPending(e);
+		}
+	}
+
+	/**
+	 * Fail all pending work with given exception and relinquish leadership
+	 * @param exception Cause of failure
+	 */
+	private void failPending(RuntimeException exception) {
+		lock.lock();
+		try {
+			for (GroupEntry entry: pending)
+				entry.completion.completeExceptionally(exception);
+			pending.clear();
+			hasLeader = false;
+			handOff.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns next group of work, relinquishing leadership if there is none
+	 * @param doWait Flag set true if waiting for the group commit window
+	 * @return list of work items, which may be empty
+	 */
+	private List<GroupEntry> nextBatch(boolean doWait) {
+		lock.lock();
+		try {
+			long remaining = windowNanos;
+			while (doWait && (pending.size() < maxBatch) && (remaining > 0))
+				try {
+					remaining = batchFull.awaitNanos(remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			List<GroupEntry> head = pending.subList(0, Math.min(maxBatch, pending.size()));
+			List<GroupEntry> batch = new ArrayList<>(head);
+			head.clear();
+			if (batch.isEmpty())
+				hasLeader = false;
+			return batch;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Perform given work in one transaction and notify each item of its outcome
+	 * @param batch Work items
+	 */
+	private void commitBatch(List<GroupEntry> batch) {
+		int groupId = groupCounter.incrementAndGet();
+		TransactionConnection transConnection = new TransactionConnection(connectionSource, false, transactionMetrics);
+		Throwable groupException = null;
+		try {
+			transConnection.activate(groupId);
+			DatabaseConnection connection = transConnection.getDatabaseConnection();
+			int index = 0;
+			for (GroupEntry entry: batch)
+				entry.execute(connection, String.format("%s%d_%d", SAVE_POINT_PREFIX, groupId, ++index));
+			transConnection.commit();
+			if (transactionMetrics != null)
+				transactionMetrics.onGroupCommit(batch.size());
+		} catch (SQLException | RuntimeException e) {
+			groupException = new PersistenceException(String.format(GROUP_ERROR, groupId), e);
+			logger.error(String.format(GROUP_ERROR, groupId), e);
+			if (transConnection.isActive())
+				try {
+					transConnection.rollback();
+				} catch (SQLException e2) {
+					logger.error("Group rollback also threw exception", e2);
+				}
+		} finally {
+			transConnection.release();
+		}
+		for (GroupEntry entry: batch)
+			entry.complete(groupException);
+	}
+}
@@ -187,16 +187,45 @@ public class JpaContainer {
 	public JpaProcess execute(String unitName, PersistenceWork jpaliteWork) {
 		PersistenceUnit unit = getUnit(unitName);
 		boolean isSyncMode = jpaOptions.contains(JpaOption.synchronous_mode);
-		boolean isUserTransactions = 
-				unit.getPersistenceAdmin().hasSetting(JpaSetting.user_transactions);
-		JpaProcess jpaProcess = 
-			new JpaProcess(unit, jpaliteWork, isSyncMode);
-		if (isUserTransactions)
-			jpaProcess.setUserTransactions(true);
+		JpaProcess jpaProcess = createProcess(unit, jpaliteWork, isSyncMode);
+		SingleWriterScheduler singleWriterScheduler = unit.getSingleWriterScheduler();
+		if ((singleWriterScheduler != null) && !jpaProcess.isReadOnly())
+			// Writes are performed on the writer thread, whether or not in synchronous mode
+			return jpaProcess.waitFor(singleWriterScheduler);
+		// Reads bypass group commit when there is a single writer
+		GroupCommitScheduler groupCommitScheduler = singleWriterScheduler == null ? unit.getGroupCommitScheduler() : null;
+		if (groupCommitScheduler != null)
+			// The calling thread takes part in the group commit, whether or not in synchronous mode
+			return jpaProcess.waitFor(groupCommitScheduler);
 		if (isSyncMode) 
 		    return jpaProcess.waitFor();
 		else
-		    return execute(new JpaProcess(unit, jpaliteWork));
+		    return await(startProcess(unit, jpaProcess));
+	}
+
+	/**
+	 * Execute given persistence work in a worker thread without blocking the caller, 
+	 * regardless of synchronous mode
+	 * @param unitName Persistence unit name
+	 * @param jpaliteWork Function to perform with entity manager
+	 * @return future which is completed by the worker thread. It completes exceptionally with
+	 *         a TimeoutException if the work does not complete within the unit process timeout, 
+	 *         in which case the work is cancelled. Cancelled work is rolled back unless it has 
+	 *         already committed.
+	 * @throws java.util.concurrent.RejectedExecutionException if the unit work queue is full and the backpressure policy is to fail
+	 */
+	public CompletableFuture<JpaProcess> executeAsync(String unitName, PersistenceWork jpaliteWork) {
+		PersistenceUnit unit = getUnit(unitName);
+		return startProcess(unit, createProcess(unit, jpaliteWork, false));
+	}
+
+	/**
+	 * Execute given persistence work on prime persistence unit in a worker thread without blocking the caller
+	 * @param jpaliteWork Function to perform with entity manager
+	 * @return future which is completed by the worker thread
+	 */
+	public CompletableFuture<JpaProcess> executeAsync(PersistenceWork jpaliteWork) {
+		return executeAsync(primeUnit, jpaliteWork);
 	}
 	
 	/**
@@ -218,11 +247,36 @@ public class JpaContainer {
         WorkerService.await();
     }
     
-	private JpaProcess execute(JpaProcess jpaProcess) {
-	    CompletableFuture<JpaProcess> processFuture = jpaProcess.onExit();
+	private JpaProcess createProcess(PersistenceUnit unit, PersistenceWork jpaliteWork, boolean isSyncMode) {
+		JpaProcess jpaProcess = new JpaProcess(unit, jpaliteWork, isSyncMode);
+		if (unit.getPersistenceAdmin().hasSetting(JpaSetting.user_transactions))
+			jpaProcess.setUserTransactions(true);
+		return jpaProcess;
+	}
+
+	private CompletableFuture<JpaProcess> startProcess(PersistenceUnit unit, JpaProcess jpaProcess) {
+		SingleWriterScheduler singleWriterScheduler = unit.getSingleWriterScheduler();
+		GroupCommitScheduler groupCommitScheduler = singleWriterScheduler == null ? unit.getGroupCommitScheduler() : null;
+		CompletableFuture<JpaProcess> processFuture;
+		if ((singleWriterScheduler != null) && !jpaProcess.isReadOnly())
+			processFuture = jpaProcess.start(singleWriterScheduler);
+		else if (groupCommitScheduler != null)
+			processFuture = jpaProcess.start(groupCommitScheduler);
+		else
+			processFuture = jpaProcess.start();
+		processFuture.orTimeout(unit.getProcessTimeout(), TimeUnit.SECONDS);
+		// The future fails on timeout, but the work continues unless it is cancelled
+		processFuture.whenComplete((process, throwable) -> {
+			if (throwable instanceof TimeoutException)
+				jpaProcess.cancel();
+		});
+		return processFuture;
+	}
+
+	private JpaProcess await(CompletableFuture<JpaProcess> processFuture) {
 	    try {
-			return processFuture.get(30, TimeUnit.SECONDS);
-		} catch (InterruptedException | ExecutionException | TimeoutException e) {
+			return processFuture.get();
+		} catch (InterruptedException | ExecutionException e) {
 	    	throw new PersistenceException("Jpa process failed to terminate normally", e);
 		}
 	}
@@ -300,6 +354,8 @@ public class JpaContainer {
 		});
 		if (!optionList.isEmpty()) {
 			jpaOptions = EnumSet.copyOf(optionList);
+			if (jpaOptions.contains(JpaOption.virtual_threads))
+				WorkerService.setVirtualThreads(true);
 			if (jpaOptions.contains(JpaOption.use_double_long_bits)) {
 		        DataPersisterManager.registerDataPersisters(
 		        		JavaDoubleType.getSingleton(), PrimitiveJavaDoubleType.getSingleton());
@@ -18,7 +18,8 @@ package au.com.cybersearch2.container;
  */
 public enum JpaOption {
 	use_double_long_bits("useDoubleLongBits", "Persist double values as bit-encode long values"),
-	synchronous_mode("synchronousMode", "Perform all transactions in caller thread");
+	synchronous_mode("synchronousMode", "Perform all transactions in caller thread"),
+	virtual_threads("virtualThreads", "Perform persistence work on virtual threads, where supported, limited by unit maxConcurrentWork setting");
 	
 	private final String key;
 	private final String description;
@@ -15,11 +15,18 @@ package au.com.cybersearch2.container;
 
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import au.com.cybersearch2.classyjpa.entity.JavaPersistenceContext;
 import au.com.cybersearch2.classyjpa.entity.PersistenceWork;
+import au.com.cybersearch2.service.UnitWorkerPool;
 import au.com.cybersearch2.service.WorkerService;
 
  /**
@@ -32,17 +39,29 @@ public class JpaProcess {
 
 		@Override
 		public WorkStatus call() throws Exception {
-			persistenceContext.onPostExecute(persistenceContext.doTask());
-			return persistenceContext.getWorkStatus();
+			// Virtual threads are not throttled, so the unit limits concurrent use of its connections
+			Semaphore workPermits = 
+				(unit.getWorkerPool() == null) && WorkerService.isVirtualThreads() ? unit.getWorkPermits() : null;
+			if (workPermits != null)
+				workPermits.acquire();
+			try {
+				persistenceContext.onPostExecute(persistenceContext.doTask());
+				return persistenceContext.getWorkStatus();
+			} finally {
+				if (workPermits != null)
+					workPermits.release();
+			}
 		}
 	}
 	
+	/** Persistence unit selected to provide the context */
+	private final PersistenceUnit unit;
 	/** Flag set true if operating in synchronous mode */
 	private final boolean isSynchronous;
 	/**  Executes a task in a persistence context */
 	private final JavaPersistenceContext persistenceContext;
 	/** Final work status */
-	private WorkStatus workStatus;
+	private volatile WorkStatus workStatus;
 	
 	/**
 	 * Construct JpaProcess object
@@ -60,6 +79,7 @@ public class JpaProcess {
 	 * @param isSynchronous Flag set true if operating in synchronous mode
 	 */
 	public JpaProcess(PersistenceUnit unit, PersistenceWork persistenceWork, boolean isSynchronous) {
+		this.unit = unit;
 		this.isSynchronous = isSynchronous;
 		persistenceContext = new JavaPersistenceContext(persistenceWork, unit);
 		workStatus = WorkStatus.PENDING;
@@ -82,6 +102,44 @@ public class JpaProcess {
 		return this;
     }
     
+    /**
+     * Causes the current thread to wait until the persistence work has been performed
+     * and committed as part of a group by the given scheduler
+     * 
+     * @param groupCommitScheduler Coalesces concurrently submitted work into group commits
+     * @return the exit value of the process represented by this
+     *         {@code JpaProcess} object which is the final status value {@link au.com.cybersearch2.container.WorkStatus}
+     */
+    public JpaProcess waitFor(GroupCommitScheduler groupCommitScheduler) {
+		workStatus = groupCommitScheduler.execute(persistenceContext);
+		return this;
+    }
+
+    /**
+     * Causes the current thread to wait until the persistence work has been performed
+     * by the single writer thread of the given scheduler. The wait is bounded by the process 
+     * timeout of the unit. Work which times out remains queued for the writer thread.
+     * 
+     * @param singleWriterScheduler Funnels write transactions through a single writer thread
+     * @return the exit value of the process represented by this
+     *         {@code JpaProcess} object which is the final status value {@link au.com.cybersearch2.container.WorkStatus}
+     * @throws JpaliteException if the work fails, the wait times out or the thread is interrupted
+     */
+    public JpaProcess waitFor(SingleWriterScheduler singleWriterScheduler) {
+    	int timeout = unit.getProcessTimeout();
+    	try {
+    		workStatus = singleWriterScheduler.submit(persistenceContext).get(timeout, TimeUnit.SECONDS);
+    	} catch (ExecutionException e) {
+			throw new JpaliteException("Persistence work terminated with an error", e.getCause());
+    	} catch (TimeoutException e) {
+			throw new JpaliteException(String.format("Persistence work timed out after %d seconds", timeout), e);
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+			throw new JpaliteException("Interrupted while waiting for persistence work", e);
+    	}
+		return this;
+    }
+
     /**
      * Returns future which waits for process termination
      * @return CompletableFuture object
@@ -89,9 +147,84 @@ public class JpaProcess {
     public CompletableFuture<JpaProcess> onExit() {
     	if (isSynchronous)
     		throw new UnsupportedOperationException();
+    	if (WorkerService.isVirtualThreads())
+    		// Blocking a virtual thread is cheap, so there is no need to block a common pool thread
+    		return start();
         return CompletableFuture.supplyAsync(this::waitForInternal);
     }
 
+    /**
+     * Starts the process in a worker thread without blocking the caller
+     * 
+     * @return future which is completed by the worker thread when the process terminates
+     */
+    public CompletableFuture<JpaProcess> start() {
+    	if (isSynchronous)
+    		throw new UnsupportedOperationException();
+    	return complete(submitAsync(new JpaProcessWorker()));
+    }
+
+    /**
+     * Starts the process by submitting it to be performed and committed as part of a group 
+     * by the given scheduler, without blocking the caller. A worker thread is only engaged 
+     * to lead a group, so no worker thread waits for its group to commit.
+     * 
+     * @param groupCommitScheduler Coalesces concurrently submitted work into group commits
+     * @return future which is completed by the group leader when the process terminates
+     */
+    public CompletableFuture<JpaProcess> start(GroupCommitScheduler groupCommitScheduler) {
+    	Executor leaderExecutor = command -> submitAsync(Executors.callable(command));
+    	return complete(groupCommitScheduler.submit(persistenceContext, leaderExecutor));
+    }
+
+    /**
+     * Starts the process by submitting it to the single writer thread of the given scheduler, without blocking the caller
+     * 
+     * @param singleWriterScheduler Funnels write transactions through a single writer thread
+     * @return future which is completed by the writer thread when the process terminates
+     */
+    public CompletableFuture<JpaProcess> start(SingleWriterScheduler singleWriterScheduler) {
+    	return complete(singleWriterScheduler.submit(persistenceContext));
+    }
+
+    /**
+     * Cancel the process. Work not yet commenced is not performed and work in progress is rolled 
+     * back instead of committed. Work which has already committed is not undone.
+     */
+    public void cancel() {
+    	persistenceContext.cancel();
+    }
+
+    /**
+     * Submit work to the worker pool of the unit, if it has one, otherwise to the shared worker service
+     * @param worker Work to perform
+     * @return CompletableFuture object which is completed by the worker thread
+     * @throws java.util.concurrent.RejectedExecutionException if the unit work queue is full and the policy is to fail
+     */
+    private <T> CompletableFuture<T> submitAsync(Callable<T> worker) {
+    	UnitWorkerPool workerPool = unit.getWorkerPool();
+    	return workerPool != null ? workerPool.submit(worker) : WorkerService.submitWorkAsync(worker);
+    }
+
+    /**
+     * Returns future which completes with this process once the given work status is available
+     * @param statusFuture Future to complete with final work status
+     * @return CompletableFuture object
+     */
+    private CompletableFuture<JpaProcess> complete(CompletableFuture<WorkStatus> statusFuture) {
+    	CompletableFuture<JpaProcess> processFuture = new CompletableFuture<>();
+    	statusFuture.whenComplete((status, throwable) -> {
+    		if (throwable != null) {
+    			Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+    			processFuture.completeExceptionally(new JpaliteException("Persistence work terminated with an error", cause));
+    		} else {
+    			workStatus = status;
+    			processFuture.complete(this);
+    		}
+    	});
+    	return processFuture;
+    }
+
     /**
      * Wait for the process to exit by calling {@code waitFor}.
      * If the thread is interrupted, remember the interrupted state to
@@ -109,7 +242,10 @@ public class JpaProcess {
                     @Override
                     public boolean block() throws InterruptedException {
                 		try {
-                			workStatus = WorkerService.submitWork(new JpaProcessWorker());
+                			UnitWorkerPool workerPool = unit.getWorkerPool();
+                			workStatus = workerPool != null ? 
+                					workerPool.submit(new JpaProcessWorker()).get() :
+                					WorkerService.submitWork(new JpaProcessWorker());
                 		} catch (ExecutionException e) {
                 			throw new JpaliteException("Persistence work terminated with an error", e.getCause());
                 		}
@@ -181,4 +317,21 @@ public class JpaProcess {
 		persistenceContext.getTransactionInfo().setUserTransaction(value);
 	}
 
+    /**
+     * Set read-only transaction flag. Defaults to true if the persistence work is 
+     * marked as {@link au.com.cybersearch2.classyjpa.entity.ReadOnlyPersistenceWork}.
+     * @param value boolean
+     */
+	public void setReadOnly(boolean value) {
+		persistenceContext.getTransactionInfo().setReadOnly(value);
+	}
+
+    /**
+     * Returns read-only transaction flag
+     * @return boolean
+     */
+	public boolean isReadOnly() {
+		return persistenceContext.getTransactionInfo().isReadOnly();
+	}
+
 }
@@ -25,7 +25,22 @@ public enum JpaSetting {
 	database_version("databaseVersion", "Database version"),
 	database_name("databaseName", "Database name"),
 	user_transactions("userTransations", "Transactions performed by user"),
-	open_helper_class("openHelperClass", "Open helper callback classname");
+	open_helper_class("openHelperClass", "Open helper callback classname"),
+	entity_cache("entityCache", "Second-level entity cache eviction policy - lru or ttl"),
+	entity_cache_size("entityCacheSize", "Second-level entity cache maximum entries"),
+	entity_cache_ttl("entityCacheTtl", "Second-level entity cache time-to-live in seconds"),
+	stateless("stateless", "Entity managers execute directly on DAOs without a persistence context - true or false"),
+	flush_threshold("flushThreshold", "Managed entity count at which the persistence context is flushed and cleared within the transaction"),
+	flush_heap_budget("flushHeapBudget", "Used heap megabytes at which the persistence context is flushed and cleared within the transaction"),
+	group_commit("groupCommit", "Concurrently submitted persistence work is committed together in one database transaction - true or false"),
+	group_commit_window("groupCommitWindow", "Group commit window in milliseconds to collect persistence work"),
+	group_commit_max_batch("groupCommitMaxBatch", "Group commit maximum number of persistence work items in one database transaction"),
+	process_timeout("processTimeout", "Seconds to wait for persistence work performed in a worker thread to complete"),
+	max_concurrent_work("maxConcurrentWork", "Maximum number of persistence work items performed concurrently on virtual threads, defaulting to connection pool size"),
+	worker_threads("workerThreads", "Number of threads in a worker pool dedicated to the unit. If not set, the shared worker service is used"),
+	work_queue_capacity("workQueueCapacity", "Maximum number of persistence work items waiting in the unit work queue"),
+	backpressure("backpressure", "Policy when the unit work queue is full - block, fail or caller"),
+	single_writer("singleWriter", "SQLite write transactions are performed in batches by a single writer thread - true or false");
 	
 	private final String key;
 	private final String description;
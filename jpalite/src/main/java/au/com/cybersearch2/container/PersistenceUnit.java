@@ -13,14 +13,18 @@
     limitations under the License. */
 package au.com.cybersearch2.container;
 
+import java.util.concurrent.Semaphore;
+
 import com.j256.ormlite.support.ConnectionSource;
 
 import au.com.cybersearch2.classydb.DatabaseAdmin;
+import au.com.cybersearch2.classydb.PooledConnectionSource;
 import au.com.cybersearch2.classyjpa.EntityManagerLite;
 import au.com.cybersearch2.classyjpa.EntityManagerLiteFactory;
 import au.com.cybersearch2.classyjpa.persist.EntityManagerFactoryImpl;
 import au.com.cybersearch2.classyjpa.persist.PersistenceAdmin;
 import au.com.cybersearch2.classyjpa.persist.PersistenceConfig;
+import au.com.cybersearch2.service.UnitWorkerPool;
 
 /**
  * JPA persistence unit which provides a context for executing persistence work
@@ -32,6 +36,14 @@ public class PersistenceUnit {
 	private final PersistenceAdmin persistenceAdmin;
 	private final PersistenceConfig persistenceConfig;
 	private final EntityManagerLiteFactory entityManagerFactory;
+	/** Coalesces concurrent work into group commits, if enabled */
+	private GroupCommitScheduler groupCommitScheduler;
+	/** Limits persistence work performed concurrently on virtual threads */
+	private Semaphore workPermits;
+	/** Worker pool dedicated to this unit, if configured */
+	private UnitWorkerPool workerPool;
+	/** Performs SQLite write transactions on a single thread, if enabled */
+	private SingleWriterScheduler singleWriterScheduler;
 	
 	/**
 	 * Construct PersistenceUnit object
@@ -96,12 +108,114 @@ public class PersistenceUnit {
 	public EntityManagerLite createEntityManager(ConnectionSource connectionSource) {
         return entityManagerFactory.createEntityManager(connectionSource);
 	}
+
+	/**
+	 * Create a EntityManager which has no persistence context
+	 * 
+	 * @return Entity manager instance
+	 */
+	public EntityManagerLite createStatelessEntityManager() {
+        return entityManagerFactory.createStatelessEntityManager();
+	}
+
+	/**
+	 * Create a EntityManager which has no persistence context bound to an existing connectionSource
+	 * 
+	 * @param connectionSource The existing ConnectionSource object
+	 * @return Entity manager instance
+	 */
+	public EntityManagerLite createStatelessEntityManager(ConnectionSource connectionSource) {
+        return entityManagerFactory.createStatelessEntityManager(connectionSource);
+	}
+	
+	/**
+	 * Returns scheduler which coalesces concurrently submitted work into group commits
+	 * 
+	 * @return GroupCommitScheduler object or null if group commit is not enabled for this unit
+	 */
+	public synchronized GroupCommitScheduler getGroupCommitScheduler() {
+		if ((groupCommitScheduler == null) && persistenceConfig.isGroupCommit())
+			groupCommitScheduler = new GroupCommitScheduler(
+					persistenceAdmin.getConnectionSource(),
+					persistenceConfig.getGroupCommitWindow(),
+					persistenceConfig.getGroupCommitMaxBatch(),
+					persistenceConfig.getTransactionMetrics());
+		return groupCommitScheduler;
+	}
 	
+	/**
+	 * Returns time in seconds to wait for persistence work performed in a worker thread to complete
+	 * 
+	 * @return int
+	 */
+	public int getProcessTimeout() {
+		return persistenceConfig.getProcessTimeout();
+	}
+
+	/**
+	 * Returns semaphore which limits the persistence work of this unit performed concurrently 
+	 * on virtual threads, sized by the maxConcurrentWork setting. If not set, the size defaults
+	 * to the maximum number of connections when the unit has a connection pool.
+	 *
+	 * @return Semaphore object
+	 */
+	public synchronized Semaphore getWorkPermits() {
+		if (workPermits == null) {
+			int maxConcurrentWork = persistenceConfig.getMaxConcurrentWork();
+			if (maxConcurrentWork == 0) {
+				ConnectionSource connectionSource = persistenceAdmin.getConnectionSource();
+				maxConcurrentWork = connectionSource instanceof PooledConnectionSource ?
+						((PooledConnectionSource)connectionSource).getPoolConfig().getMaxSize() :
+						PersistenceConfig.DEFAULT_MAX_CONCURRENT_WORK;
+			}
+			workPermits = new Semaphore(maxConcurrentWork, true);
+		}
+		return workPermits;
+	}
+
+	/**
+	 * Returns worker pool dedicated to this unit, fed by a bounded work queue
+	 * 
+	 * @return UnitWorkerPool object or null if work is submitted to the shared worker service
+	 */
+	public synchronized UnitWorkerPool getWorkerPool() {
+		if ((workerPool == null) && (persistenceConfig.getWorkerThreads() > 0))
+			workerPool = new UnitWorkerPool(
+					persistenceUnitName,
+					persistenceConfig.getWorkerThreads(),
+					persistenceConfig.getWorkQueueCapacity(),
+					persistenceConfig.getBackpressurePolicy());
+		return workerPool;
+	}
+
+	/**
+	 * Returns scheduler which funnels write transactions through a single writer thread. 
+	 * Batches are collected for the group commit window only if group commit is also enabled.
+	 * 
+	 * @return SingleWriterScheduler object or null if not enabled for this unit
+	 */
+	public synchronized SingleWriterScheduler getSingleWriterScheduler() {
+		if ((singleWriterScheduler == null) && persistenceConfig.isSingleWriter())
+			singleWriterScheduler = new SingleWriterScheduler(
+					persistenceUnitName,
+					persistenceAdmin.getConnectionSource(),
+					persistenceConfig.isGroupCommit() ? persistenceConfig.getGroupCommitWindow() : 0,
+					persistenceConfig.getGroupCommitMaxBatch(),
+					persistenceConfig.getTransactionMetrics());
+		return singleWriterScheduler;
+	}
+
     /**
-     * Close all database connections
+     * Complete queued work and close all database connections
      */
     public void close()
     {
+    	synchronized(this) {
+    		if (workerPool != null)
+    			workerPool.close(persistenceConfig.getProcessTimeout());
+    		if (singleWriterScheduler != null)
+    			singleWriterScheduler.close(persistenceConfig.getProcessTimeout());
+    	}
     	persistenceAdmin.close();
     }
 
@@ -26,6 +26,21 @@ public class SettingsMap {
 	private String databaseName;
 	private String userTransations;
 	private String openHelperClass;
+	private String entityCache;
+	private String entityCacheSize;
+	private String entityCacheTtl;
+	private String stateless;
+	private String flushThreshold;
+	private String flushHeapBudget;
+	private String groupCommit;
+	private String groupCommitWindow;
+	private String groupCommitMaxBatch;
+	private String processTimeout;
+	private String maxConcurrentWork;
+	private String workerThreads;
+	private String workQueueCapacity;
+	private String backpressure;
+	private String singleWriter;
 	
 	public SettingsMap() {
 	    this.settingsSet = EnumSet.noneOf(JpaSetting.class);
@@ -43,6 +58,21 @@ public class SettingsMap {
 		case database_name: databaseName = value; break;
 		case user_transactions: userTransations = value; break;
 		case open_helper_class: openHelperClass = value; break;
+		case entity_cache: entityCache = value; break;
+		case entity_cache_size: entityCacheSize = value; break;
+		case entity_cache_ttl: entityCacheTtl = value; break;
+		case stateless: stateless = value; break;
+		case flush_threshold: flushThreshold = value; break;
+		case flush_heap_budget: flushHeapBudget = value; break;
+		case group_commit: groupCommit = value; break;
+		case group_commit_window: groupCommitWindow = value; break;
+		case group_commit_max_batch: groupCommitMaxBatch = value; break;
+		case process_timeout: processTimeout = value; break;
+		case max_concurrent_work: maxConcurrentWork = value; break;
+		case worker_threads: workerThreads = value; break;
+		case work_queue_capacity: workQueueCapacity = value; break;
+		case backpressure: backpressure = value; break;
+		case single_writer: singleWriter = value; break;
 		}
 		if (!settingsSet.contains(key))
 		    settingsSet.add(key);
@@ -63,6 +93,21 @@ public class SettingsMap {
 			case database_name: return databaseName;
 			case user_transactions: return userTransations;
 			case open_helper_class: return openHelperClass;
+			case entity_cache: return entityCache;
+			case entity_cache_size: return entityCacheSize;
+			case entity_cache_ttl: return entityCacheTtl;
+			case stateless: return stateless;
+			case flush_threshold: return flushThreshold;
+			case flush_heap_budget: return flushHeapBudget;
+			case group_commit: return groupCommit;
+			case group_commit_window: return groupCommitWindow;
+			case group_commit_max_batch: return groupCommitMaxBatch;
+			case process_timeout: return processTimeout;
+			case max_concurrent_work: return maxConcurrentWork;
+			case worker_threads: return workerThreads;
+			case work_queue_capacity: return workQueueCapacity;
+			case backpressure: return backpressure;
+			case single_writer: return singleWriter;
 			}
 		return "";
 	}
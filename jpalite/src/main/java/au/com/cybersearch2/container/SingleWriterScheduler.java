@@ -0,0 +1,80 @@
+/** Copyright 2023 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.container;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.j256.ormlite.support.ConnectionSource;
+
+import au.com.cybersearch2.classyjpa.entity.JavaPersistenceContext;
+import au.com.cybersearch2.classyjpa.transaction.TransactionMetrics;
+
+/**
+ * Funnels write transactions of a SQLite persistence unit through a single dedicated writer thread.
+ * SQLite allows only one writer at a time, so concurrent writers otherwise contend for the database 
+ * lock and fail with SQLITE_BUSY. Work which arrives while the writer is busy is committed together 
+ * in the next batch, using a {@link GroupCommitScheduler} which the writer thread always leads.
+ * Read-only work is not submitted to this scheduler and so runs in parallel with the writer.
+ */
+public class SingleWriterScheduler {
+
+	/** Batches write work into group commits */
+	private final GroupCommitScheduler writeBatcher;
+	/** Single writer thread */
+	private final ExecutorService writer;
+
+	/**
+	 * Construct SingleWriterScheduler object
+	 * @param unitName Persistence unit name
+	 * @param connectionSource Open connection source
+	 * @param windowMillis Time in milliseconds to collect work for a batch. Zero to batch only work which arrives while the writer is busy.
+	 * @param maxBatch Maximum number of work items in a batch
+	 * @param transactionMetrics Counts transactions. May be null.
+	 */
+	public SingleWriterScheduler(String unitName, ConnectionSource connectionSource, int windowMillis, int maxBatch, TransactionMetrics transactionMetrics) {
+		writeBatcher = new GroupCommitScheduler(connectionSource, windowMillis, maxBatch, transactionMetrics);
+		writer = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, unitName + "-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Submit write work to be performed by the writer thread in the next batch
+	 * @param persistenceContext Executes a task in a persistence context
+	 * @return future which completes with final work status once the batch has committed
+	 */
+	public CompletableFuture<WorkStatus> submit(JavaPersistenceContext persistenceContext) {
+		return writeBatcher.submit(persistenceContext, writer);
+	}
+
+	/**
+	 * Stop accepting work and wait for pending work to complete
+	 * @param timeout Maximum time in seconds to wait
+	 */
+	public void close(long timeout) {
+		writer.shutdown();
+		try {
+			if (!writer.awaitTermination(timeout, TimeUnit.SECONDS))
+				writer.shutdownNow();
+		} catch (InterruptedException e) {
+			writer.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+}
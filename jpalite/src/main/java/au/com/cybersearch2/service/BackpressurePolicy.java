@@ -0,0 +1,34 @@
+/** Copyright 2023 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.service;
+
+/**
+ * Enumerates policies applied when work is submitted to a persistence unit work queue which is full
+ */
+public enum BackpressurePolicy {
+
+	block("Submitter waits until there is space in the queue"),
+	fail("Submission is rejected immediately"),
+	caller("Work is performed in the submitter thread");
+
+	private final String description;
+
+	private BackpressurePolicy(String description) {
+		this.description = description;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+}
@@ -0,0 +1,171 @@
+/** Copyright 2023 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker pool dedicated to one persistence unit, fed by a bounded submission queue. 
+ * Isolates the unit from work submitted to other units, which is otherwise shared by 
+ * the {@link WorkerService}. When the queue is full, the configured {@link BackpressurePolicy} applies.
+ */
+public class UnitWorkerPool {
+
+	/** Work waiting in the queue to be performed by a worker thread */
+	private class QueuedWork<T> implements Runnable {
+		
+		private final Callable<T> worker;
+		private final CompletableFuture<T> future;
+		private final long submitNanos;
+
+		public QueuedWork(Callable<T> worker) {
+			this.worker = worker;
+			future = new CompletableFuture<>();
+			submitNanos = System.nanoTime();
+		}
+
+		@Override
+		public void run() {
+			metrics.onStart(System.nanoTime() - submitNanos);
+			perform();
+		}
+
+		public void perform() {
+			try {
+				future.complete(worker.call());
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		}
+	}
+
+	/** Applies backpressure policy when the queue is full */
+	private class BackpressureHandler implements RejectedExecutionHandler {
+
+		@Override
+		public void rejectedExecution(Runnable work, ThreadPoolExecutor executor) {
+			if (executor.isShutdown())
+				throw new RejectedExecutionException(String.format("Worker pool of persistence unit '%s' is closed", unitName));
+			switch (policy) {
+			case block:
+				try {
+					queue.put(work);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RejectedExecutionException(String.format("Interrupted waiting for work queue of persistence unit '%s'", unitName));
+				}
+				break;
+			case caller:
+				metrics.onCallerRuns();
+				((QueuedWork<?>)work).perform();
+				break;
+			case fail:
+			default:
+				metrics.onRejected();
+				throw new RejectedExecutionException(String.format("Work queue of persistence unit '%s' is full", unitName));
+			}
+		}
+	}
+
+	/** Persistence unit name */
+	private final String unitName;
+	/** Bounded submission queue */
+	private final BlockingQueue<Runnable> queue;
+	/** Policy applied when the queue is full */
+	private final BackpressurePolicy policy;
+	/** Queue depth and wait time measurements */
+	private final WorkQueueMetrics metrics;
+	/** Fixed size pool of worker threads */
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Construct UnitWorkerPool object
+	 * @param unitName Persistence unit name
+	 * @param threads Number of worker threads
+	 * @param capacity Maximum number of work items waiting in the queue
+	 * @param policy Policy applied when the queue is full
+	 */
+	public UnitWorkerPool(String unitName, int threads, int capacity, BackpressurePolicy policy) {
+		this.unitName = unitName;
+		this.policy = policy;
+		queue = new ArrayBlockingQueue<>(capacity);
+		metrics = new WorkQueueMetrics();
+		AtomicInteger threadCount = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue, runnable -> {
+			Thread thread = new Thread(runnable, unitName + "-worker-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}, new BackpressureHandler());
+	}
+
+	/**
+	 * Submit work to be performed by a worker thread of this pool
+	 * @param worker Work to perform
+	 * @return CompletableFuture object which is completed when the work is done
+	 * @throws RejectedExecutionException if the queue is full and the policy is to fail, or the pool is closed
+	 */
+	public <T> CompletableFuture<T> submit(Callable<T> worker) {
+		metrics.onSubmit(queue.size());
+		QueuedWork<T> work = new QueuedWork<>(worker);
+		executor.execute(work);
+		return work.future;
+	}
+
+	/**
+	 * Returns queue depth and wait time measurements
+	 * @return WorkQueueMetrics object
+	 */
+	public WorkQueueMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns number of work items currently waiting in the queue
+	 * @return int
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * Returns policy applied when the queue is full
+	 * @return BackpressurePolicy
+	 */
+	public BackpressurePolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Stop accepting work and wait for queued work to complete
+	 * @param timeout Maximum time in seconds to wait
+	 */
+	public void close(long timeout) {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(timeout, TimeUnit.SECONDS))
+				executor.shutdownNow();
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+}
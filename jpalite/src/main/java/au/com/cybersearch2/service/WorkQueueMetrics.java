@@ -0,0 +1,139 @@
+/** Copyright 2023 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the work queue of a persistence unit. Wait time is the time between submission 
+ * of work and the start of its execution by a worker thread. 
+ */
+public class WorkQueueMetrics {
+
+	/** Number of work items submitted */
+	private final AtomicLong submittedCount;
+	/** Number of work items rejected because the queue was full */
+	private final AtomicLong rejectedCount;
+	/** Number of work items performed in the submitter thread because the queue was full */
+	private final AtomicLong callerRunsCount;
+	/** Number of work items started by a worker thread */
+	private final AtomicLong startedCount;
+	/** Total wait time in nanoseconds of started work items */
+	private final AtomicLong totalWaitNanos;
+	/** Longest wait time in nanoseconds */
+	private final AtomicLong maxWaitNanos;
+	/** Greatest queue depth observed on submission */
+	private final AtomicLong peakDepth;
+
+	/**
+	 * Construct WorkQueueMetrics object
+	 */
+	public WorkQueueMetrics() {
+		submittedCount = new AtomicLong();
+		rejectedCount = new AtomicLong();
+		callerRunsCount = new AtomicLong();
+		startedCount = new AtomicLong();
+		totalWaitNanos = new AtomicLong();
+		maxWaitNanos = new AtomicLong();
+		peakDepth = new AtomicLong();
+	}
+
+	/**
+	 * Record submission of work
+	 * @param depth Queue depth at time of submission
+	 */
+	public void onSubmit(int depth) {
+		submittedCount.incrementAndGet();
+		peakDepth.accumulateAndGet(depth, Math::max);
+	}
+
+	/**
+	 * Record rejection of work because the queue is full
+	 */
+	public void onRejected() {
+		rejectedCount.incrementAndGet();
+	}
+
+	/**
+	 * Record work performed in the submitter thread because the queue is full
+	 */
+	public void onCallerRuns() {
+		callerRunsCount.incrementAndGet();
+	}
+
+	/**
+	 * Record start of work 
+	 * @param waitNanos Time in nanoseconds the work waited in the queue
+	 */
+	public void onStart(long waitNanos) {
+		startedCount.incrementAndGet();
+		totalWaitNanos.addAndGet(waitNanos);
+		maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+	}
+
+	/**
+	 * Returns number of work items submitted
+	 * @return long
+	 */
+	public long getSubmittedCount() {
+		return submittedCount.get();
+	}
+
+	/**
+	 * Returns number of work items rejected because the queue was full
+	 * @return long
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * Returns number of work items performed in the submitter thread because the queue was full
+	 * @return long
+	 */
+	public long getCallerRunsCount() {
+		return callerRunsCount.get();
+	}
+
+	/**
+	 * Returns greatest queue depth observed on submission
+	 * @return long
+	 */
+	public long getPeakDepth() {
+		return peakDepth.get();
+	}
+
+	/**
+	 * Returns mean time in milliseconds work waited in the queue
+	 * @return double
+	 */
+	public double getMeanWaitMillis() {
+		long started = startedCount.get();
+		return started == 0 ? 0.0 : totalWaitNanos.get() / (started * 1000000.0);
+	}
+
+	/**
+	 * Returns longest time in milliseconds work waited in the queue
+	 * @return double
+	 */
+	public double getMaxWaitMillis() {
+		return maxWaitNanos.get() / 1000000.0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Work queue: submitted %d, rejected %d, caller runs %d, peak depth %d, wait mean %.3f ms max %.3f ms", 
+				submittedCount.get(), rejectedCount.get(), callerRunsCount.get(), peakDepth.get(), getMeanWaitMillis(), getMaxWaitMillis());
+	}
+}
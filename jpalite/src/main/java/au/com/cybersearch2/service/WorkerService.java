@@ -12,7 +12,13 @@
     See the License for the specific language governing permissions and
     limitations under the License. */
 package au.com.cybersearch2.service;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -20,10 +26,14 @@ import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 import au.com.cybersearch2.classyjpa.global.Singleton;
+import au.com.cybersearch2.classylog.LogManager;
 import au.com.cybersearch2.container.WorkStatus;
 
 /**
- * Maintains a pool of work threads scaled according to available processors 
+ * Maintains a pool of work threads scaled according to available processors.
+ * Alternatively, work can be performed on virtual threads, one per task, where the 
+ * Java runtime supports them. Concurrency is then limited by each persistence unit instead
+ * and work submitted synchronously is performed on the calling thread.
  */
 public class WorkerService {
 
@@ -31,24 +41,72 @@ public class WorkerService {
 
     /** Semaphore to throttle work submissions */
     private final Semaphore semaphore;
+    /** Work submitted asynchronously which has not yet completed */
+    private final Set<CompletableFuture<?>> asyncWork;
 	/** Execution service */
     private ExecutorService executorService;
 	private volatile boolean isActive;
+	/** Flag set true if virtual threads are requested */
+	private volatile boolean useVirtualThreads;
+	/** Flag set true if the execution service runs each task on a virtual thread */
+	private volatile boolean isVirtual;
 
  
 	public WorkerService() {
+		this(false);
+	}
+
+	/**
+	 * Construct WorkerService object
+	 * @param useVirtualThreads Flag set true if virtual threads are requested
+	 */
+	WorkerService(boolean useVirtualThreads) {
+		this.useVirtualThreads = useVirtualThreads;
 		semaphore = new Semaphore(MAX_THREADS);
+		asyncWork = ConcurrentHashMap.newKeySet();
 	}
 
     public static WorkStatus submitWork(Callable<WorkStatus> worker) throws InterruptedException, ExecutionException {
     	return getSingleton().submit(worker);
     }
 
+    /**
+     * Submit work to be performed in a worker thread without waiting for it to complete
+     * @param worker Work to perform
+     * @return CompletableFuture object which is completed by the worker thread
+     */
+    public static <T> CompletableFuture<T> submitWorkAsync(Callable<T> worker) {
+    	return getSingleton().submitAsync(worker);
+    }
+
+	/**
+	 * Request work be performed on virtual threads. Takes effect when the service 
+	 * is next activated, so needs to be set before any work is submitted.
+	 * @param value boolean
+	 */
+	public static void setVirtualThreads(boolean value) {
+		((WorkerService)Singleton.worker_service.getObject()).useVirtualThreads = value;
+	}
+
+	/**
+	 * Returns flag set true if work is performed on virtual threads
+	 * @return boolean
+	 */
+	public static boolean isVirtualThreads() {
+		return getSingleton().isVirtual;
+	}
+
 	public static void await() throws InterruptedException {
 		WorkerService singleton = (WorkerService)Singleton.worker_service.getObject();
 		if (singleton.isActive) {
 			singleton.semaphore.acquire(MAX_THREADS);
 			singleton.semaphore.release(MAX_THREADS);
+			for (CompletableFuture<?> work: new ArrayList<>(singleton.asyncWork))
+				try {
+					work.get();
+				} catch (ExecutionException e) {
+					// Failure is reported to the work submitter
+				}
 		}
 	}
 	
@@ -59,9 +117,15 @@ public class WorkerService {
 		return singleton;
 	}
 	
-	synchronized private void  activate() {
+	synchronized void activate() {
     	if ((executorService == null) || executorService.isShutdown()) {
-		    executorService = Executors.newFixedThreadPool(MAX_THREADS, Executors.defaultThreadFactory());	
+    		isVirtual = false;
+    		if (useVirtualThreads) {
+    			executorService = newVirtualThreadExecutor();
+    			isVirtual = executorService != null;
+    		}
+    		if (!isVirtual)
+		        executorService = Executors.newFixedThreadPool(MAX_THREADS, Executors.defaultThreadFactory());	
 			Runtime.getRuntime().addShutdownHook(new Thread() {
 			      public void run() {
 			    	  shutdown(2L);
@@ -71,7 +135,19 @@ public class WorkerService {
    	    }
     }
     
-    private WorkStatus submit(Callable<WorkStatus> worker) throws InterruptedException, ExecutionException {
+    /**
+     * Returns flag set true if the execution service runs each task on a virtual thread
+     * @return boolean
+     */
+    boolean isVirtual() {
+    	return isVirtual;
+    }
+
+    WorkStatus submit(Callable<WorkStatus> worker) throws InterruptedException, ExecutionException {
+    	if (isVirtual)
+    		// Handing the work to a new virtual thread only leaves the caller blocked waiting for it,
+    		// so perform it on the calling thread. Concurrency is limited by the unit work permits.
+    	    return call(worker);
     	try {
     		semaphore.acquire();
     	    return executorService.submit(worker).get();
@@ -80,7 +156,49 @@ public class WorkerService {
     	}
     }
     
-    private void shutdown(long timeout) {
+    private WorkStatus call(Callable<WorkStatus> worker) throws InterruptedException, ExecutionException {
+    	try {
+    		return worker.call();
+    	} catch (InterruptedException e) {
+    		throw e;
+    	} catch (Exception e) {
+    		// Failure is reported the same as for work performed in a worker thread
+    		throw new ExecutionException(e);
+    	}
+    }
+
+    <T> CompletableFuture<T> submitAsync(Callable<T> worker) {
+    	CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+    		try {
+				return worker.call();
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+    	}, executorService);
+    	asyncWork.add(future);
+    	future.whenComplete((result, throwable) -> asyncWork.remove(future));
+    	return future;
+    }
+    
+    /**
+     * Returns executor which starts a new virtual thread for each task. 
+     * Obtained by reflection as virtual threads are not available on all supported Java runtimes.
+     * @return ExecutorService object or null if virtual threads are not supported
+     */
+    ExecutorService newVirtualThreadExecutor() {
+    	try {
+			Method factoryMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService)factoryMethod.invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			LogManager.getLogger(WorkerService.class).warn("Virtual threads not supported by Java runtime {} - using platform threads", 
+					System.getProperty("java.version"));
+			return null;
+		}
+    }
+    
+    void shutdown(long timeout) {
     	if (timeout < 2L)
     		timeout = 20L;
     	executorService.shutdown(); // Disable new tasks from being submitted
@@ -0,0 +1,107 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classydb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+
+import au.com.cybersearch2.classydb.DatabaseSupport.ConnectionType;
+
+/**
+ * ConnectionTuningTest
+ */
+public class ConnectionTuningTest
+{
+    @Test
+    public void test_no_profile()
+    {
+        assertThat(ConnectionTuning.sqlite(null).isEmpty()).isTrue();
+        assertThat(ConnectionTuning.h2(new Properties()).appendTo("jdbc:h2:mem:test")).isEqualTo("jdbc:h2:mem:test");
+    }
+
+    @Test
+    public void test_profile_with_override()
+    {
+        Properties properties = new Properties();
+        properties.setProperty(ConnectionTuning.PROFILE, "Bulk-Load");
+        properties.setProperty(ConnectionTuning.SETTING_PREFIX + "CACHE_SIZE", "-32000");
+        ConnectionTuning tuning = ConnectionTuning.sqlite(properties);
+        assertThat(tuning.getSettings()).containsEntry("synchronous", "OFF").containsEntry("cache_size", "-32000");
+        tuning = ConnectionTuning.h2(properties);
+        assertThat(tuning.getSettings()).containsEntry("CACHE_SIZE", "-32000").containsEntry("WRITE_DELAY", "2000");
+    }
+
+    @Test
+    public void test_invalid_profile()
+    {
+        Properties properties = new Properties();
+        properties.setProperty(ConnectionTuning.PROFILE, "fastest");
+        assertThat(ConnectionTuning.sqlite(properties).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void test_sqlite_pragmas_applied() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty(ConnectionTuning.PROFILE, "bulk-load");
+        SQLiteDatabaseSupport databaseSupport = new SQLiteDatabaseSupport(ConnectionType.memory);
+        ConnectionSource connectionSource = databaseSupport.getConnectionSourceForType("tuning", properties);
+        try
+        {
+            DatabaseConnection connection = connectionSource.getReadWriteConnection("");
+            // synchronous OFF = 0
+            assertThat(queryInt(connection.getUnderlyingConnection(), "PRAGMA synchronous")).isEqualTo(0);
+            assertThat(queryInt(connection.getUnderlyingConnection(), "PRAGMA cache_size")).isEqualTo(-64000);
+            connectionSource.releaseConnection(connection);
+        }
+        finally
+        {
+            connectionSource.closeQuietly();
+        }
+    }
+
+    @Test
+    public void test_h2_settings_accepted() throws Exception
+    {
+        for (TuningProfile profile: TuningProfile.values())
+        {
+            Properties properties = new Properties();
+            properties.setProperty(ConnectionTuning.PROFILE, profile.getKey());
+            String url = ConnectionTuning.h2(properties).appendTo("jdbc:h2:mem:tuning_" + profile.name());
+            try (Connection connection = DriverManager.getConnection(url))
+            {
+                assertThat(connection.isValid(1)).isTrue();
+            }
+        }
+    }
+
+    private int queryInt(Connection connection, String sql) throws Exception
+    {
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql))
+        {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+}
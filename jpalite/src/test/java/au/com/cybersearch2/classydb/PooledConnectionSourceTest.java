@@ -0,0 +1,170 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classydb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.j256.ormlite.jdbc.db.H2DatabaseType;
+import com.j256.ormlite.support.DatabaseConnection;
+
+/**
+ * PooledConnectionSourceTest
+ */
+public class PooledConnectionSourceTest
+{
+    private static final String URL = "jdbc:h2:mem:pool_test";
+
+    private Properties properties;
+    private PooledConnectionSource pool;
+
+    @Before
+    public void setUp()
+    {
+        properties = new Properties();
+        properties.setProperty(PoolConfig.MIN_SIZE, "1");
+        properties.setProperty(PoolConfig.MAX_SIZE, "2");
+        properties.setProperty(PoolConfig.MAX_WAIT, "50");
+    }
+
+    @After
+    public void tearDown()
+    {
+        if (pool != null)
+            pool.closeQuietly();
+    }
+
+    @Test
+    public void test_pool_config() throws Exception
+    {
+        properties.setProperty(PoolConfig.IDLE_TIMEOUT, "60");
+        properties.setProperty(PoolConfig.VALIDATE, "false");
+        properties.setProperty(PoolConfig.LEAK_THRESHOLD, "bad");
+        PoolConfig poolConfig = new PoolConfig(properties);
+        assertThat(poolConfig.getMinSize()).isEqualTo(1);
+        assertThat(poolConfig.getMaxSize()).isEqualTo(2);
+        assertThat(poolConfig.getMaxWaitMillis()).isEqualTo(50L);
+        assertThat(poolConfig.getIdleTimeoutMillis()).isEqualTo(60000L);
+        assertThat(poolConfig.isValidateOnBorrow()).isFalse();
+        assertThat(poolConfig.getLeakThresholdMillis()).isEqualTo(PoolConfig.DEFAULT_LEAK_THRESHOLD * 1000L);
+        assertThat(new PoolConfig(null).getMaxSize()).isEqualTo(PoolConfig.DEFAULT_MAX_SIZE);
+    }
+
+    @Test
+    public void test_borrow_release() throws Exception
+    {
+        pool = createPool();
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+        DatabaseConnection connection1 = pool.getReadWriteConnection("");
+        assertThat(pool.getBorrowedCount()).isEqualTo(1);
+        assertThat(pool.getMetrics().getUtilisation()).isEqualTo(0.5);
+        pool.releaseConnection(connection1);
+        assertThat(pool.getReadOnlyConnection("")).isSameAs(connection1);
+        assertThat(pool.getMetrics().getCreatedCount()).isEqualTo(1);
+        assertThat(pool.getMetrics().getAcquiredCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void test_acquire_timeout() throws Exception
+    {
+        pool = createPool();
+        pool.getReadWriteConnection("");
+        pool.getReadWriteConnection("");
+        try
+        {
+            pool.getReadWriteConnection("");
+            failBecauseExceptionWasNotThrown(SQLException.class);
+        }
+        catch (SQLException e)
+        {
+            assertThat(e.getMessage()).isEqualTo("Timed out after 50 ms waiting for connection from pool pool_test");
+        }
+        assertThat(pool.getMetrics().getTimeoutCount()).isEqualTo(1);
+        assertThat(pool.getMetrics().getPeakBorrowed()).isEqualTo(2);
+    }
+
+    @Test
+    public void test_special_connection() throws Exception
+    {
+        pool = createPool();
+        DatabaseConnection connection = pool.getReadWriteConnection("");
+        assertThat(pool.saveSpecialConnection(connection)).isTrue();
+        assertThat(pool.getReadWriteConnection("")).isSameAs(connection);
+        pool.releaseConnection(connection);
+        assertThat(pool.getBorrowedCount()).isEqualTo(1);
+        pool.clearSpecialConnection(connection);
+        pool.releaseConnection(connection);
+        assertThat(pool.getBorrowedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_validate_on_borrow() throws Exception
+    {
+        pool = createPool();
+        DatabaseConnection connection = pool.getReadWriteConnection("");
+        pool.releaseConnection(connection);
+        connection.getUnderlyingConnection().close();
+        DatabaseConnection replacement = pool.getReadWriteConnection("");
+        assertThat(replacement).isNotSameAs(connection);
+        assertThat(pool.getMetrics().getEvictedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_leak_detection_and_idle_eviction() throws Exception
+    {
+        properties.setProperty(PoolConfig.IDLE_TIMEOUT, "1");
+        properties.setProperty(PoolConfig.LEAK_THRESHOLD, "1");
+        pool = createPool();
+        DatabaseConnection connection1 = pool.getReadWriteConnection("");
+        DatabaseConnection connection2 = pool.getReadWriteConnection("");
+        pool.releaseConnection(connection2);
+        Thread.sleep(1100L);
+        pool.housekeeping();
+        assertThat(pool.getMetrics().getLeakCount()).isEqualTo(1);
+        // Borrowed connection satisfies minimum size, so the idle one is closed
+        assertThat(pool.getIdleCount()).isEqualTo(0);
+        assertThat(pool.getMetrics().getEvictedCount()).isEqualTo(1);
+        pool.releaseConnection(connection1);
+    }
+
+    @Test
+    public void test_closed() throws Exception
+    {
+        pool = createPool();
+        pool.close();
+        assertThat(pool.isOpen("")).isFalse();
+        try
+        {
+            pool.getReadWriteConnection("");
+            failBecauseExceptionWasNotThrown(SQLException.class);
+        }
+        catch (SQLException e)
+        {
+            assertThat(e.getMessage()).isEqualTo("Connection pool pool_test is closed");
+        }
+    }
+
+    private PooledConnectionSource createPool() throws SQLException
+    {
+        return new PooledConnectionSource("pool_test", () -> DriverManager.getConnection(URL), new H2DatabaseType(), new PoolConfig(properties));
+    }
+}
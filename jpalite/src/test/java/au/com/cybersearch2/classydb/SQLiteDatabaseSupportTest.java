@@ -86,6 +86,7 @@ public class SQLiteDatabaseSupportTest
         results = mock(DatabaseResults.class);
         sqlException = new SQLException("Database error");
         when(connectionSource.getReadWriteConnection(any(String.class))).thenReturn(dbConnection);
+        when(connectionSource.getReadOnlyConnection(any(String.class))).thenReturn(dbConnection);
     }
 
     @Test
@@ -133,6 +134,64 @@ public class SQLiteDatabaseSupportTest
         assertThat(resultList.size()).isEqualTo(0);
     }
  
+    @Test
+    public void test_SQLiteDatabaseSupport_getResultList_statement_cached() throws SQLException
+    {
+        QueryInfo queryInfo = getTestQueryInfo();
+        CompiledStatement compiledStatement = mock(CompiledStatement.class);
+        when(dbConnection.compileStatement(
+                isA(String.class),
+                eq(StatementType.SELECT_RAW),
+                eq(fieldTypes),
+                eq(DatabaseConnection.DEFAULT_RESULT_FLAGS),
+                eq(true))).thenReturn(compiledStatement);
+        when(compiledStatement.runQuery(isNull())).thenReturn(results);
+        when(compiledStatement.getColumnCount()).thenReturn(2);
+        when(results.first()).thenReturn(false);
+        sqLiteDatabaseSupport.getResultList(connectionSource, queryInfo, 0, 0);
+        sqLiteDatabaseSupport.getResultList(connectionSource, queryInfo, 0, 0);
+        verify(dbConnection, times(1)).compileStatement(
+                isA(String.class),
+                eq(StatementType.SELECT_RAW),
+                eq(fieldTypes),
+                eq(DatabaseConnection.DEFAULT_RESULT_FLAGS),
+                eq(true));
+        verify(compiledStatement, times(2)).runQuery(isNull());
+        verify(results, times(2)).closeQuietly();
+        verify(connectionSource, times(2)).releaseConnection(dbConnection);
+        verify(compiledStatement, never()).closeQuietly();
+        StatementCache statementCache = sqLiteDatabaseSupport.getStatementCache(dbConnection);
+        assertThat(statementCache.getHitCount()).isEqualTo(1);
+        assertThat(statementCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_SQLiteDatabaseSupport_getResultList_error() throws SQLException
+    {
+        QueryInfo queryInfo = getTestQueryInfo();
+        CompiledStatement compiledStatement = mock(CompiledStatement.class);
+        when(dbConnection.compileStatement(
+                isA(String.class),
+                eq(StatementType.SELECT_RAW),
+                eq(fieldTypes),
+                eq(DatabaseConnection.DEFAULT_RESULT_FLAGS),
+                eq(true))).thenReturn(compiledStatement);
+        when(compiledStatement.getColumnCount()).thenReturn(2);
+        when(compiledStatement.runQuery(isNull())).thenThrow(sqlException);
+        try
+        {
+            sqLiteDatabaseSupport.getResultList(connectionSource, queryInfo, 0, 0);
+            failBecauseExceptionWasNotThrown(PersistenceException.class);
+        }
+        catch (PersistenceException e)
+        {
+            assertThat(e.getCause()).isEqualTo(sqlException);
+        }
+        verify(compiledStatement).closeQuietly();
+        verify(connectionSource).releaseConnection(dbConnection);
+        assertThat(sqLiteDatabaseSupport.getStatementCache(dbConnection).size()).isEqualTo(0);
+    }
+
     @Test
     public void test_SQLiteDatabaseSupport_getSingleResult() throws SQLException
     {
@@ -177,9 +236,8 @@ public class SQLiteDatabaseSupportTest
     }
     
     @Test
-    public void test_SQLiteDatabaseSupport_getDatabaseResults() throws SQLException
+    public void test_SQLiteDatabaseSupport_getResultList_query() throws SQLException
     {
-        DatabaseResults databaseResults = mock(DatabaseResults.class);
         QueryInfo queryInfo = getTestQueryInfo();
         CompiledStatement compiledStatement = mock(CompiledStatement.class);
         String sqlStatement = SQL_STATEMENT + " LIMIT " + SQL_LIMIT;
@@ -191,14 +249,16 @@ public class SQLiteDatabaseSupportTest
                 eq(DatabaseConnection.DEFAULT_RESULT_FLAGS),
                 eq(true))).thenReturn(compiledStatement);
 
-        when(compiledStatement.runQuery(isNull())).thenReturn(databaseResults);
+        when(compiledStatement.runQuery(isNull())).thenReturn(results);
         when(compiledStatement.getColumnCount()).thenReturn(2);
-        sqLiteDatabaseSupport.getDatabaseResults(dbConnection, queryInfo, 0, 0);
+        when(results.first()).thenReturn(false);
+        sqLiteDatabaseSupport.getResultList(connectionSource, queryInfo, 0, 0);
         assertThat(statementArg.getValue()).isEqualTo(sqlStatement);
         ArgumentCaptor<String> arguments = ArgumentCaptor.forClass(String.class);
         verify(compiledStatement, times(2)).setObject(anyInt(), arguments.capture(), eq(SqlType.STRING));
         assertThat(arguments.getAllValues().get(0)).isEqualTo("Brown");
         assertThat(arguments.getAllValues().get(1)).isEqualTo("Smith");
+        verify(results).closeQuietly();
     }
 
     @Test
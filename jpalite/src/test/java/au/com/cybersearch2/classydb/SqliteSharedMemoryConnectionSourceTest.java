@@ -0,0 +1,134 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classydb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import com.j256.ormlite.jdbc.db.SqliteDatabaseType;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+
+import au.com.cybersearch2.classydb.DatabaseSupport.ConnectionType;
+
+/**
+ * SqliteSharedMemoryConnectionSourceTest
+ */
+public class SqliteSharedMemoryConnectionSourceTest
+{
+    @Test
+    public void test_connections_share_database() throws Exception
+    {
+        SqliteSharedMemoryConnectionSource connectionSource = createConnectionSource("shared_test");
+        try
+        {
+            DatabaseConnection connection1 = connectionSource.getReadWriteConnection("");
+            DatabaseConnection connection2 = connectionSource.getReadWriteConnection("");
+            assertThat(connection1).isNotSameAs(connection2);
+            execute(connection1.getUnderlyingConnection(), "CREATE TABLE item (id INTEGER PRIMARY KEY, name TEXT)");
+            execute(connection1.getUnderlyingConnection(), "INSERT INTO item (name) VALUES ('first')");
+            assertThat(queryString(connection2.getUnderlyingConnection(), "SELECT name FROM item")).isEqualTo("first");
+            connectionSource.releaseConnection(connection1);
+            connectionSource.releaseConnection(connection2);
+        }
+        finally
+        {
+            connectionSource.close();
+        }
+    }
+
+    @Test
+    public void test_keeper_pins_database() throws Exception
+    {
+        SqliteSharedMemoryConnectionSource connectionSource = createConnectionSource("keeper_test");
+        try
+        {
+            DatabaseConnection connection = connectionSource.getReadWriteConnection("");
+            execute(connection.getUnderlyingConnection(), "CREATE TABLE item (id INTEGER PRIMARY KEY)");
+            // Discard the only pooled connection so the keeper connection alone holds the database open
+            connection.close();
+            connectionSource.releaseConnection(connection);
+            connection = connectionSource.getReadWriteConnection("");
+            assertThat(queryString(connection.getUnderlyingConnection(), "SELECT count(*) FROM item")).isEqualTo("0");
+            connectionSource.releaseConnection(connection);
+        }
+        finally
+        {
+            connectionSource.close();
+        }
+        // Database is deleted when the connection source closes
+        connectionSource = createConnectionSource("keeper_test");
+        try
+        {
+            DatabaseConnection connection = connectionSource.getReadWriteConnection("");
+            assertThat(queryString(connection.getUnderlyingConnection(), 
+                "SELECT count(*) FROM sqlite_master WHERE name = 'item'")).isEqualTo("0");
+            connectionSource.releaseConnection(connection);
+        }
+        finally
+        {
+            connectionSource.close();
+        }
+    }
+
+    @Test
+    public void test_database_support_shared_memory() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty(SQLiteDatabaseSupport.SHARED_MEMORY, "true");
+        SQLiteDatabaseSupport databaseSupport = new SQLiteDatabaseSupport(ConnectionType.memory);
+        ConnectionSource connectionSource = databaseSupport.getConnectionSourceForType("support_test", properties);
+        try
+        {
+            assertThat(connectionSource).isInstanceOf(SqliteSharedMemoryConnectionSource.class);
+            assertThat(connectionSource.isSingleConnection("")).isFalse();
+        }
+        finally
+        {
+            connectionSource.closeQuietly();
+        }
+    }
+
+    private SqliteSharedMemoryConnectionSource createConnectionSource(String name) throws SQLException
+    {
+        return new SqliteSharedMemoryConnectionSource(name, new Properties(), new SqliteDatabaseType(), 
+            new PoolConfig(), new ConnectionTuning(Collections.emptyMap()));
+    }
+
+    private void execute(Connection connection, String sql) throws SQLException
+    {
+        try (Statement statement = connection.createStatement())
+        {
+            statement.executeUpdate(sql);
+        }
+    }
+
+    private String queryString(Connection connection, String sql) throws SQLException
+    {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql))
+        {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classydb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.j256.ormlite.jdbc.db.SqliteDatabaseType;
+import com.j256.ormlite.support.DatabaseConnection;
+
+/**
+ * SqliteWalConnectionSourceTest
+ */
+public class SqliteWalConnectionSourceTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SqliteWalConnectionSource connectionSource;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        String url = "jdbc:sqlite:" + new File(folder.getRoot(), "wal_test.db").getAbsolutePath();
+        Properties properties = new Properties();
+        properties.setProperty(PoolConfig.MAX_SIZE, "2");
+        connectionSource = new SqliteWalConnectionSource("wal_test", url, new Properties(), new SqliteDatabaseType(), new PoolConfig(properties));
+    }
+
+    @After
+    public void tearDown()
+    {
+        connectionSource.closeQuietly();
+    }
+
+    @Test
+    public void test_journal_mode() throws Exception
+    {
+        Connection writer = connectionSource.getReadWriteConnection("").getUnderlyingConnection();
+        assertThat(queryString(writer, "PRAGMA journal_mode")).isEqualToIgnoringCase("wal");
+        assertThat(connectionSource.getReadWriteConnection("")).isSameAs(connectionSource.getReadWriteConnection(""));
+    }
+
+    @Test
+    public void test_read_during_write() throws Exception
+    {
+        DatabaseConnection writeConnection = connectionSource.getReadWriteConnection("");
+        Connection writer = writeConnection.getUnderlyingConnection();
+        try (Statement statement = writer.createStatement())
+        {
+            statement.executeUpdate("CREATE TABLE item (id INTEGER PRIMARY KEY, name TEXT)");
+            statement.executeUpdate("INSERT INTO item (name) VALUES ('first')");
+        }
+        writer.setAutoCommit(false);
+        try (Statement statement = writer.createStatement())
+        {
+            statement.executeUpdate("INSERT INTO item (name) VALUES ('second')");
+        }
+        // Reader sees last committed state and is not blocked by the write in progress
+        DatabaseConnection readConnection = connectionSource.getReadOnlyConnection("");
+        assertThat(readConnection).isNotSameAs(writeConnection);
+        assertThat(queryString(readConnection.getUnderlyingConnection(), "SELECT count(*) FROM item")).isEqualTo("1");
+        writer.commit();
+        writer.setAutoCommit(true);
+        assertThat(queryString(readConnection.getUnderlyingConnection(), "SELECT count(*) FROM item")).isEqualTo("2");
+        connectionSource.releaseConnection(readConnection);
+        assertThat(connectionSource.getReadPool().getBorrowedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_read_connection_is_read_only() throws Exception
+    {
+        DatabaseConnection readConnection = connectionSource.getReadOnlyConnection("");
+        try (Statement statement = readConnection.getUnderlyingConnection().createStatement())
+        {
+            statement.executeUpdate("CREATE TABLE item (id INTEGER PRIMARY KEY)");
+            failBecauseExceptionWasNotThrown(SQLException.class);
+        }
+        catch (SQLException e)
+        {
+            assertThat(e.getMessage()).containsIgnoringCase("readonly");
+        }
+        finally
+        {
+            connectionSource.releaseConnection(readConnection);
+        }
+    }
+
+    @Test
+    public void test_transaction_reads_own_writes() throws Exception
+    {
+        DatabaseConnection writeConnection = connectionSource.getReadWriteConnection("");
+        assertThat(connectionSource.saveSpecialConnection(writeConnection)).isTrue();
+        assertThat(connectionSource.getReadOnlyConnection("")).isSameAs(writeConnection);
+        connectionSource.clearSpecialConnection(writeConnection);
+        connectionSource.releaseConnection(writeConnection);
+        assertThat(connectionSource.getReadPool().getBorrowedCount()).isEqualTo(0);
+    }
+
+    private String queryString(Connection connection, String sql) throws SQLException
+    {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql))
+        {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classydb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+
+import com.j256.ormlite.support.CompiledStatement;
+
+/**
+ * StatementCacheTest
+ */
+public class StatementCacheTest
+{
+    @Test
+    public void test_checkout_and_checkin()
+    {
+        CompiledStatement statement = mock(CompiledStatement.class);
+        StatementCache statementCache = new StatementCache(10);
+        assertThat(statementCache.checkout("SELECT 1")).isNull();
+        statementCache.checkin("SELECT 1", statement);
+        assertThat(statementCache.checkout("SELECT 1")).isSameAs(statement);
+        // Checked out statement is not available to another user
+        assertThat(statementCache.checkout("SELECT 1")).isNull();
+        assertThat(statementCache.getHitCount()).isEqualTo(1);
+        assertThat(statementCache.getMissCount()).isEqualTo(2);
+        verify(statement, never()).closeQuietly();
+    }
+
+    @Test
+    public void test_duplicate_closed_on_checkin()
+    {
+        CompiledStatement statement1 = mock(CompiledStatement.class);
+        CompiledStatement statement2 = mock(CompiledStatement.class);
+        StatementCache statementCache = new StatementCache(10);
+        statementCache.checkin("SELECT 1", statement1);
+        statementCache.checkin("SELECT 1", statement2);
+        verify(statement2).closeQuietly();
+        assertThat(statementCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_least_recently_used_evicted()
+    {
+        CompiledStatement statement1 = mock(CompiledStatement.class);
+        CompiledStatement statement2 = mock(CompiledStatement.class);
+        CompiledStatement statement3 = mock(CompiledStatement.class);
+        StatementCache statementCache = new StatementCache(2);
+        statementCache.checkin("SELECT 1", statement1);
+        statementCache.checkin("SELECT 2", statement2);
+        statementCache.checkin("SELECT 3", statement3);
+        verify(statement1).closeQuietly();
+        assertThat(statementCache.getEvictionCount()).isEqualTo(1);
+        assertThat(statementCache.size()).isEqualTo(2);
+        statementCache.clear();
+        verify(statement2).closeQuietly();
+        verify(statement3).closeQuietly();
+        assertThat(statementCache.size()).isEqualTo(0);
+    }
+}
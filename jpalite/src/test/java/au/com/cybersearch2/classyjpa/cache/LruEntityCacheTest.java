@@ -0,0 +1,128 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classyjpa.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import au.com.cybersearch2.classyfy.data.alfresco.RecordCategory;
+
+/**
+ * LruEntityCacheTest
+ */
+public class LruEntityCacheTest
+{
+    private RecordCategory entity1;
+    private RecordCategory entity2;
+    private RecordCategory entity3;
+
+    @Before
+    public void setUp()
+    {
+        entity1 = createEntity(1, "one");
+        entity2 = createEntity(2, "two");
+        entity3 = createEntity(3, "three");
+    }
+
+    @Test
+    public void test_get_returns_copy()
+    {
+        LruEntityCache entityCache = new LruEntityCache(10);
+        entityCache.put(entity1, 1);
+        RecordCategory cached = entityCache.get(RecordCategory.class, 1);
+        assertThat(cached).isNotSameAs(entity1);
+        assertThat(cached.getDescription()).isEqualTo("one");
+        cached.setDescription("changed");
+        cached = entityCache.get(RecordCategory.class, 1);
+        assertThat(cached.getDescription()).isEqualTo("one");
+        assertThat(entityCache.getHitCount()).isEqualTo(2);
+        assertThat(entityCache.getMissCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_miss_and_evict()
+    {
+        LruEntityCache entityCache = new LruEntityCache(10);
+        RecordCategory cached = entityCache.get(RecordCategory.class, 1);
+        assertThat(cached).isNull();
+        entityCache.put(entity1, 1);
+        entityCache.evict(RecordCategory.class, 1);
+        cached = entityCache.get(RecordCategory.class, 1);
+        assertThat(cached).isNull();
+        assertThat(entityCache.getMissCount()).isEqualTo(2);
+        // Invalidation is not counted as eviction
+        assertThat(entityCache.getEvictionCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_least_recently_used_evicted()
+    {
+        LruEntityCache entityCache = new LruEntityCache(2);
+        entityCache.put(entity1, 1);
+        entityCache.put(entity2, 2);
+        // Access entity 1 so entity 2 becomes least recently used
+        assertThat(entityCache.get(RecordCategory.class, 1)).isNotNull();
+        entityCache.put(entity3, 3);
+        assertThat(entityCache.size()).isEqualTo(2);
+        assertThat(entityCache.getEvictionCount()).isEqualTo(1);
+        RecordCategory cached = entityCache.get(RecordCategory.class, 2);
+        assertThat(cached).isNull();
+        assertThat(entityCache.get(RecordCategory.class, 1)).isNotNull();
+        assertThat(entityCache.get(RecordCategory.class, 3)).isNotNull();
+    }
+
+    @Test
+    public void test_put_if_absent()
+    {
+        LruEntityCache entityCache = new LruEntityCache(10);
+        assertThat(entityCache.putIfAbsent(entity1, 1)).isTrue();
+        assertThat(entityCache.putIfAbsent(createEntity(1, "stale"), 1)).isFalse();
+        RecordCategory cached = entityCache.get(RecordCategory.class, 1);
+        assertThat(cached.getDescription()).isEqualTo("one");
+    }
+
+    @Test
+    public void test_ttl_expiry()
+    {
+        final long[] now = new long[] { 1000L };
+        TtlEntityCache entityCache = new TtlEntityCache(10, 500L) {
+            @Override
+            protected long currentTimeMillis() {
+                return now[0];
+            }
+        };
+        entityCache.put(entity1, 1);
+        now[0] += 499L;
+        assertThat(entityCache.get(RecordCategory.class, 1)).isNotNull();
+        now[0] += 1L;
+        RecordCategory cached = entityCache.get(RecordCategory.class, 1);
+        assertThat(cached).isNull();
+        assertThat(entityCache.getEvictionCount()).isEqualTo(1);
+        assertThat(entityCache.size()).isEqualTo(0);
+        // Expired entry may be replaced by putIfAbsent
+        entityCache.put(entity2, 2);
+        now[0] += 500L;
+        assertThat(entityCache.putIfAbsent(createEntity(2, "fresh"), 2)).isTrue();
+    }
+
+    private RecordCategory createEntity(int id, String description)
+    {
+        RecordCategory entity = new RecordCategory();
+        entity.set_id(id);
+        entity.setDescription(description);
+        return entity;
+    }
+}
@@ -15,12 +15,20 @@ package au.com.cybersearch2.classyjpa.entity;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.persistence.EntityExistsException;
 import javax.persistence.EntityNotFoundException;
@@ -42,6 +50,7 @@ import com.j256.ormlite.support.DatabaseConnection;
 
 import au.com.cybersearch2.classyfy.data.alfresco.RecordCategory;
 import au.com.cybersearch2.classyjpa.persist.PersistenceConfig;
+import au.com.cybersearch2.classyjpa.query.DaoQuery;
 import au.com.cybersearch2.classyjpa.query.EntityQuery;
 import au.com.cybersearch2.classyjpa.transaction.TransactionState;
 import au.com.cybersearch2.classyjpa.transaction.TransactionStateFactory;
@@ -86,6 +95,8 @@ public class EntityManagerImplTest
     @Mock
     private EntityQuery<RecordCategory> entityQuery;
     @Mock
+    private DaoQuery<RecordCategory> daoQuery;
+    @Mock
     private TypedQuery<TestReturnType> query;
     private EntityManagerImpl entityManagerImpl;
      
@@ -118,6 +129,173 @@ public class EntityManagerImplTest
         when(entityMonitor.monitorNewEntity(entity, id, id)).thenReturn(true);
         entityManagerImpl.persist(entity);
         verify(transaction, times(0)).begin();
+        verify(transaction).acquireConnection();
+    }
+
+    @Test 
+    public void test_persist_read_only() throws Exception
+    { 
+        RecordCategory entity = prepareHelperMap();
+        Integer id = Integer.valueOf(1);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.extractId(entity)).thenReturn(id);
+        when(entityMonitor.startManagingEntity(entity, id, PersistOp.persist)).thenReturn(null);
+        when(ormDaoHelper.entityExists(entity)).thenReturn(false);
+        when(transaction.isReadOnly()).thenReturn(true);
+        try
+        {
+            entityManagerImpl.persist(entity);
+            failBecauseExceptionWasNotThrown(IllegalStateException.class);
+        }
+        catch (IllegalStateException e)
+        {
+            assertThat(e.getMessage()).isEqualTo("Write operation not permitted in read-only transaction");
+        }
+        verify(transaction, times(0)).acquireConnection();
+        verify(ormDaoHelper, times(0)).create(entity);
+    }
+
+    @Test 
+    public void test_persist_flush_threshold() throws Exception
+    { 
+        when(persistenceConfig.getFlushThreshold()).thenReturn(2);
+        entityManagerImpl = new EntityManagerImpl(transaction, persistenceConfig);
+        RecordCategory entity = new RecordCategory();
+        Integer id = Integer.valueOf(0);
+        when(transaction.isActive()).thenReturn(true);
+        when(entityMonitor.getManagedCount()).thenReturn(1, 2);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.extractId(entity)).thenReturn(id, 1);
+        when(entityMonitor.startManagingEntity(entity, id, PersistOp.persist)).thenReturn(null);
+        when(ormDaoHelper.create(entity)).thenReturn(1);
+        when(entityMonitor.monitorNewEntity(entity, id, 1)).thenReturn(true);
+        entityManagerImpl.persist(entity);
+        verify(transaction, never()).flushAndClear();
+        when(ormDaoHelper.extractId(entity)).thenReturn(id, 1);
+        entityManagerImpl.persist(entity);
+        verify(transaction).flushAndClear();
+        verify(transaction, never()).commit();
+    }
+
+    @Test 
+    public void test_merge_flush_heap_budget() throws Exception
+    { 
+        // Budget of 1 byte is always exceeded, so only the managed entity count bounds the flush
+        when(persistenceConfig.getFlushHeapBudget()).thenReturn(1L);
+        entityManagerImpl = new EntityManagerImpl(transaction, persistenceConfig);
+        RecordCategory entity = new RecordCategory();
+        when(transaction.isActive()).thenReturn(true);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.extractId(entity)).thenReturn(1);
+        when(entityMonitor.startManagingEntity(entity, 1, PersistOp.merge)).thenReturn(entity);
+        when(entityMonitor.getManagedCount()).thenReturn(255);
+        for (int i = 0; i < 512; ++i)
+            entityManagerImpl.merge(entity);
+        verify(transaction, never()).flushAndClear();
+        when(entityMonitor.getManagedCount()).thenReturn(256);
+        for (int i = 0; i < 256; ++i)
+            entityManagerImpl.merge(entity);
+        verify(transaction).flushAndClear();
+        verify(transaction, never()).commit();
+    }
+
+    @Test 
+    public void test_persist_all() throws Exception
+    { 
+        RecordCategory entity1 = new RecordCategory();
+        RecordCategory entity2 = new RecordCategory();
+        List<RecordCategory> entities = Arrays.asList(entity1, entity2);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.extractId(entity1)).thenReturn(0, 1);
+        when(ormDaoHelper.extractId(entity2)).thenReturn(0, 2);
+        when(ormDaoHelper.existingIds(Collections.emptySet())).thenReturn(Collections.emptySet());
+        when(transaction.isActive()).thenReturn(false);
+        when(ormDaoHelper.createAll(entities)).thenReturn(2);
+        when(entityMonitor.monitorNewEntity(entity1, null, 1)).thenReturn(true);
+        when(entityMonitor.monitorNewEntity(entity2, null, 2)).thenReturn(true);
+        entityManagerImpl.persistAll(entities);
+        verify(transaction).begin();
+        verify(ormDaoHelper).setForeignCollections(entity1);
+        verify(ormDaoHelper).setForeignCollections(entity2);
+        verify(entityMonitor).captureSnapshot(entity2, 2);
+    }
+
+    @Test 
+    public void test_persist_all_entity_exists() throws Exception
+    { 
+        RecordCategory entity1 = new RecordCategory();
+        RecordCategory entity2 = new RecordCategory();
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.extractId(entity1)).thenReturn(1);
+        when(ormDaoHelper.extractId(entity2)).thenReturn(2);
+        Set<Integer> primaryKeys = new HashSet<>(Arrays.asList(1, 2));
+        when(ormDaoHelper.existingIds(primaryKeys)).thenReturn(Collections.singleton(2));
+        try
+        {
+            entityManagerImpl.persistAll(Arrays.asList(entity1, entity2));
+            failBecauseExceptionWasNotThrown(EntityExistsException.class);
+        }
+        catch (EntityExistsException e)
+        {
+            assertThat(e.getMessage()).isEqualTo("Entity of class " + RecordCategory.class + ", primary key 2 already exists");
+        }
+        verify(ormDaoHelper, never()).createAll(anyCollection());
+        verify(transaction, never()).begin();
+    }
+
+    @Test 
+    public void test_merge_all() throws Exception
+    { 
+        RecordCategory entity1 = new RecordCategory();
+        RecordCategory entity2 = new RecordCategory();
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.extractId(entity1)).thenReturn(1);
+        when(ormDaoHelper.extractId(entity2)).thenReturn(2);
+        when(transaction.isActive()).thenReturn(true);
+        entityManagerImpl.mergeAll(Arrays.asList(entity1, entity2));
+        verify(entityMonitor).startManagingEntity(entity1, 1, PersistOp.merge);
+        verify(entityMonitor).startManagingEntity(entity2, 2, PersistOp.merge);
+        verify(transaction, never()).begin();
+    }
+
+    @Test 
+    public void test_remove_all() throws Exception
+    { 
+        RecordCategory entity1 = new RecordCategory();
+        RecordCategory entity2 = new RecordCategory();
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.extractId(entity1)).thenReturn(1);
+        when(ormDaoHelper.extractId(entity2)).thenReturn(2);
+        when(entityMonitor.getManagedEntity(RecordCategory.class, 1)).thenReturn(entity1);
+        when(entityMonitor.getManagedEntity(RecordCategory.class, 2)).thenReturn(entity2);
+        when(transaction.isActive()).thenReturn(true);
+        Set<Integer> primaryKeys = new HashSet<>(Arrays.asList(1, 2));
+        when(ormDaoHelper.deleteIds(primaryKeys)).thenReturn(2);
+        entityManagerImpl.removeAll(Arrays.asList(entity1, entity2));
+        verify(entityMonitor).markForRemoval(RecordCategory.class, 1);
+        verify(entityMonitor).markForRemoval(RecordCategory.class, 2);
+    }
+
+    @Test 
+    public void test_remove_all_detached() throws Exception
+    { 
+        RecordCategory entity1 = new RecordCategory();
+        RecordCategory entity2 = new RecordCategory();
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.extractId(entity1)).thenReturn(1);
+        when(ormDaoHelper.extractId(entity2)).thenReturn(2);
+        when(entityMonitor.getManagedEntity(RecordCategory.class, 1)).thenReturn(entity1);
+        try
+        {
+            entityManagerImpl.removeAll(Arrays.asList(entity1, entity2));
+            failBecauseExceptionWasNotThrown(PersistenceException.class);
+        }
+        catch (PersistenceException e)
+        {
+            assertThat(e.getMessage()).contains("with primary key 2 is detached");
+        }
+        verify(entityMonitor, never()).markForRemoval(RecordCategory.class, 1);
+        verify(ormDaoHelper, never()).deleteIds(anyCollection());
     }
 
     @Test 
@@ -196,7 +374,36 @@ public class EntityManagerImplTest
         assertThat(entityManagerImpl.contains(entity)).isEqualTo(false);
     }
     
-    @Test 
+    @Test
+    public void test_contains_reference_exists() throws Exception
+    {
+        RecordCategory entity = prepareHelperMap();
+        Integer id = Integer.valueOf(1);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.extractId(entity)).thenReturn(id);
+        when(entityMonitor.startManagingEntity(entity, id, PersistOp.contains)).thenReturn(entity);
+        when(entityMonitor.isUnloadedReference(RecordCategory.class, id)).thenReturn(true);
+        when(ormDaoHelper.entityExists(entity)).thenReturn(true);
+        assertThat(entityManagerImpl.contains(entity)).isEqualTo(true);
+        verify(entityMonitor, never()).referenceLoaded(RecordCategory.class, id, false);
+    }
+
+    @Test
+    public void test_contains_reference_not_exists() throws Exception
+    {
+        RecordCategory entity = prepareHelperMap();
+        Integer id = Integer.valueOf(1);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.extractId(entity)).thenReturn(id);
+        when(entityMonitor.startManagingEntity(entity, id, PersistOp.contains)).thenReturn(entity);
+        when(entityMonitor.isUnloadedReference(RecordCategory.class, id)).thenReturn(true);
+        when(ormDaoHelper.entityExists(entity)).thenReturn(false);
+        assertThat(entityManagerImpl.contains(entity)).isEqualTo(false);
+        // Placeholder of a missing row is no longer managed
+        verify(entityMonitor).referenceLoaded(RecordCategory.class, id, false);
+    }
+
+    @Test
     public void test_contains_extract_null_id() throws Exception
     { 
         RecordCategory entity = prepareHelperMap();
@@ -610,6 +817,66 @@ public class EntityManagerImplTest
         when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
         when(ormDaoHelper.queryForId(primaryKey)).thenReturn(entity);
         assertThat(entityManagerImpl.find(RecordCategory.class, primaryKey)).isEqualTo(entity);
+        // Read does not acquire transaction connection
+        verify(transaction, never()).acquireConnection();
+    }
+
+    @Test
+    public void test_find_managed() throws Exception
+    {
+        RecordCategory entity = new RecordCategory();
+        Integer primaryKey = Integer.valueOf(1);
+        when(entityMonitor.getManagedEntity(RecordCategory.class, primaryKey)).thenReturn(entity);
+        assertThat(entityManagerImpl.find(RecordCategory.class, primaryKey)).isSameAs(entity);
+        verify(entityMonitor, never()).getOrmDaoHelperForClass(RecordCategory.class);
+    }
+
+    @Test
+    public void test_find_registers_loaded_entity() throws Exception
+    {
+        RecordCategory entity = new RecordCategory();
+        Integer primaryKey = Integer.valueOf(1);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.queryForId(primaryKey)).thenReturn(entity);
+        assertThat(entityManagerImpl.find(RecordCategory.class, primaryKey)).isSameAs(entity);
+        verify(entityMonitor).startManagingEntity(entity, primaryKey, PersistOp.find);
+        verify(entityMonitor).captureSnapshot(entity, primaryKey);
+    }
+
+    @Test
+    public void test_find_removed() throws Exception
+    {
+        Integer primaryKey = Integer.valueOf(1);
+        when(entityMonitor.isRemoved(RecordCategory.class, primaryKey)).thenReturn(true);
+        assertThat(entityManagerImpl.find(RecordCategory.class, primaryKey)).isNull();
+        verify(entityMonitor, never()).getOrmDaoHelperForClass(RecordCategory.class);
+    }
+
+    @Test
+    public void test_find_cached() throws Exception
+    {
+        Integer primaryKey = Integer.valueOf(1);
+        RecordCategory cached = new RecordCategory();
+        when(entityMonitor.getCachedEntity(RecordCategory.class, primaryKey)).thenReturn(cached);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        assertThat(entityManagerImpl.find(RecordCategory.class, primaryKey)).isSameAs(cached);
+        // Foreign collections are not cached, so they are assigned as on loading from the database
+        verify(ormDaoHelper).setForeignCollections(cached);
+        verify(entityMonitor).captureSnapshot(cached, primaryKey);
+        verify(ormDaoHelper, never()).queryForId(anyInt());
+    }
+
+    @Test
+    public void test_get_reference_cached() throws Exception
+    {
+        Integer primaryKey = Integer.valueOf(1);
+        RecordCategory cached = new RecordCategory();
+        when(entityMonitor.getCachedEntity(RecordCategory.class, primaryKey)).thenReturn(cached);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        assertThat(entityManagerImpl.getReference(RecordCategory.class, primaryKey)).isSameAs(cached);
+        verify(ormDaoHelper).setForeignCollections(cached);
+        verify(ormDaoHelper, never()).createReference(anyInt());
+        verify(entityMonitor, never()).monitorReference(any(), anyInt());
     }
 
     @Test
@@ -624,19 +891,31 @@ public class EntityManagerImplTest
     @Test
     public void test_get_reference() throws Exception
     {
-        RecordCategory entity = prepareHelperMap();
+        RecordCategory entity = new RecordCategory();
         Integer primaryKey = Integer.valueOf(1);
         when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
-        when(ormDaoHelper.queryForId(primaryKey)).thenReturn(entity);
-        assertThat(entityManagerImpl.getReference(RecordCategory.class, primaryKey)).isEqualTo(entity);
+        when(ormDaoHelper.createReference(primaryKey)).thenReturn(entity);
+        assertThat(entityManagerImpl.getReference(RecordCategory.class, primaryKey)).isSameAs(entity);
+        verify(entityMonitor).monitorReference(entity, primaryKey);
+        verify(ormDaoHelper, never()).queryForId(anyInt());
+        verify(ormDaoHelper, never()).refresh(any());
     }
     
     @Test
-    public void test_get_reference_not_found() throws Exception
+    public void test_get_reference_managed() throws Exception
     {
+        RecordCategory entity = new RecordCategory();
         Integer primaryKey = Integer.valueOf(1);
-        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
-        when(ormDaoHelper.queryForId(primaryKey)).thenReturn(null);
+        when(entityMonitor.getManagedEntity(RecordCategory.class, primaryKey)).thenReturn(entity);
+        assertThat(entityManagerImpl.getReference(RecordCategory.class, primaryKey)).isSameAs(entity);
+        verify(entityMonitor, never()).monitorReference(any(), anyInt());
+    }
+    
+    @Test
+    public void test_get_reference_removed() throws Exception
+    {
+        Integer primaryKey = Integer.valueOf(1);
+        when(entityMonitor.isRemoved(RecordCategory.class, primaryKey)).thenReturn(true);
         try
         {
             entityManagerImpl.getReference(RecordCategory.class, primaryKey);
@@ -649,6 +928,56 @@ public class EntityManagerImplTest
         }
     }
 
+    @Test
+    public void test_find_loads_reference() throws Exception
+    {
+        RecordCategory entity = new RecordCategory();
+        Integer primaryKey = Integer.valueOf(1);
+        when(entityMonitor.getManagedEntity(RecordCategory.class, primaryKey)).thenReturn(entity);
+        when(entityMonitor.isUnloadedReference(RecordCategory.class, primaryKey)).thenReturn(true);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.refresh(entity)).thenReturn(1);
+        assertThat(entityManagerImpl.find(RecordCategory.class, primaryKey)).isSameAs(entity);
+        verify(entityMonitor).referenceLoaded(RecordCategory.class, primaryKey, true);
+        verify(entityMonitor).captureSnapshot(entity, primaryKey);
+    }
+
+    @Test
+    public void test_find_reference_not_found() throws Exception
+    {
+        RecordCategory entity = new RecordCategory();
+        Integer primaryKey = Integer.valueOf(1);
+        when(entityMonitor.getManagedEntity(RecordCategory.class, primaryKey)).thenReturn(entity);
+        when(entityMonitor.isUnloadedReference(RecordCategory.class, primaryKey)).thenReturn(true);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.refresh(entity)).thenReturn(0);
+        assertThat(entityManagerImpl.find(RecordCategory.class, primaryKey)).isNull();
+        verify(entityMonitor).referenceLoaded(RecordCategory.class, primaryKey, false);
+        verify(entityMonitor, never()).captureSnapshot(any(), anyInt());
+    }
+
+    @Test
+    public void test_refresh_reference_not_found() throws Exception
+    {
+        RecordCategory entity = new RecordCategory();
+        Integer primaryKey = Integer.valueOf(1);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.extractId(entity)).thenReturn(primaryKey);
+        when(entityMonitor.startManagingEntity(entity, primaryKey, PersistOp.refresh)).thenReturn(entity);
+        when(entityMonitor.isUnloadedReference(RecordCategory.class, primaryKey)).thenReturn(true);
+        when(ormDaoHelper.refresh(entity)).thenReturn(0);
+        try
+        {
+            entityManagerImpl.refresh(entity);
+            failBecauseExceptionWasNotThrown(EntityNotFoundException.class);
+        }
+        catch(EntityNotFoundException e)
+        {
+            assertThat(e.getMessage()).contains(RecordCategory.class.getName());
+        }
+        verify(entityMonitor).referenceLoaded(RecordCategory.class, primaryKey, false);
+    }
+
     @Test
     public void test_flush_active() throws Exception
     {
@@ -779,18 +1108,34 @@ public class EntityManagerImplTest
     @Test
     public void test_set_flush_mode()
     {
+        assertThat(entityManagerImpl.getFlushMode()).isEqualTo(FlushModeType.COMMIT);
+        entityManagerImpl.setFlushMode(FlushModeType.AUTO);
+        assertThat(entityManagerImpl.getFlushMode()).isEqualTo(FlushModeType.AUTO);
         entityManagerImpl.setFlushMode(FlushModeType.COMMIT);
         assertThat(entityManagerImpl.getFlushMode()).isEqualTo(FlushModeType.COMMIT);
         try
         {
-            entityManagerImpl.setFlushMode(FlushModeType.AUTO);
-            failBecauseExceptionWasNotThrown(UnsupportedOperationException.class);
+            entityManagerImpl.setFlushMode(null);
+            failBecauseExceptionWasNotThrown(IllegalArgumentException.class);
         }
-        catch(UnsupportedOperationException e)
+        catch(IllegalArgumentException e)
         {
-            assertThat(e.getMessage()).isEqualTo("FlushModeType.AUTO not supported");
+            assertThat(e.getMessage()).isEqualTo("Parameter \"flushMode\" is null");
         }
     }
+
+    @Test
+    public void test_create_named_query_auto_flush() 
+    {
+        String QUERY_NAME = "my_query";
+        EntityQuery<RecordCategory> namedQuery = new EntityQuery<RecordCategory>(RecordCategory.class, daoQuery);
+        when(persistenceConfig.createNamedQuery(QUERY_NAME, RecordCategory.class, connectionSource)).thenReturn(namedQuery);
+        entityManagerImpl.setFlushMode(FlushModeType.AUTO);
+        TypedQuery<RecordCategory> result = entityManagerImpl.createNamedQuery(QUERY_NAME, RecordCategory.class);
+        assertThat(result.getFlushMode()).isEqualTo(FlushModeType.AUTO);
+        result.getResultList();
+        verify(transaction).flushPending();
+    }
     
     @Test 
     public void test_set_flush_mode_after_close() throws Exception
@@ -0,0 +1,182 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classyjpa.entity;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import au.com.cybersearch2.classyfy.data.alfresco.RecordCategory;
+
+/**
+ * EntityStoreTest
+ */
+public class EntityStoreTest
+{
+    static class Item implements OrmEntity
+    {
+        final int id;
+        
+        Item(int id)
+        {
+            this.id = id;
+        }
+    }
+
+    static class OtherItem implements OrmEntity
+    {
+    }
+
+    @Test
+    public void test_put_get_remove()
+    {
+        EntityStore store = new EntityStore();
+        assertThat(store.containsKey(Item.class, 1)).isFalse();
+        assertThat(store.get(Item.class, 1)).isNull();
+        assertThat(store.remove(Item.class, 1)).isNull();
+        Item item = new Item(1);
+        store.put(Item.class, 1, item);
+        assertThat(store.containsKey(Item.class, 1)).isTrue();
+        assertThat(store.get(Item.class, 1)).isSameAs(item);
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.remove(Item.class, 1)).isSameAs(item);
+        assertThat(store.containsKey(Item.class, 1)).isFalse();
+        assertThat(store.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_class_identity()
+    {
+        EntityStore store = new EntityStore();
+        Item item = new Item(1);
+        OtherItem otherItem = new OtherItem();
+        store.put(Item.class, 1, item);
+        store.put(OtherItem.class, 1, otherItem);
+        assertThat(store.get(Item.class, 1)).isSameAs(item);
+        assertThat(store.get(OtherItem.class, 1)).isSameAs(otherItem);
+        assertThat(store.containsKey(RecordCategory.class, 1)).isFalse();
+        store.remove(Item.class, 1);
+        assertThat(store.get(OtherItem.class, 1)).isSameAs(otherItem);
+    }
+
+    @Test
+    public void test_many_entities()
+    {
+        EntityStore store = new EntityStore();
+        int count = 10000;
+        // Include negative and widely spaced keys
+        for (int i = 0; i < count; ++i)
+            store.put(Item.class, key(i), new Item(key(i)));
+        assertThat(store.size()).isEqualTo(count);
+        for (int i = 0; i < count; ++i)
+            assertThat(((Item)store.get(Item.class, key(i))).id).isEqualTo(key(i));
+        // Remove every third entity and confirm the remainder are still found
+        for (int i = 0; i < count; i += 3)
+            assertThat(store.remove(Item.class, key(i))).isNotNull();
+        for (int i = 0; i < count; ++i)
+        {
+            if (i % 3 == 0)
+                assertThat(store.containsKey(Item.class, key(i))).isFalse();
+            else
+                assertThat(((Item)store.get(Item.class, key(i))).id).isEqualTo(key(i));
+        }
+        store.release();
+        assertThat(store.size()).isEqualTo(0);
+        assertThat(store.get(Item.class, key(1))).isNull();
+    }
+
+    @Test
+    public void test_dirty()
+    {
+        EntityStore store = new EntityStore();
+        Item item1 = new Item(1);
+        Item item2 = new Item(2);
+        Item item3 = new Item(3);
+        store.put(Item.class, 1, item1);
+        store.put(Item.class, 2, item2);
+        store.put(Item.class, 3, item3);
+        store.setDirty(Item.class, 3, true);
+        store.setDirty(Item.class, 1, true);
+        store.setDirty(Item.class, 1, true);
+        store.setDirty(Item.class, 2, true);
+        store.setDirty(Item.class, 2, false);
+        assertThat(store.isDirty(Item.class, 1)).isTrue();
+        assertThat(store.isDirty(Item.class, 2)).isFalse();
+        List<OrmEntity> toUpdate = store.getObjectsToUpdate();
+        assertThat(toUpdate).containsExactly(item3, item1);
+        assertThat(store.isDirty(Item.class, 1)).isFalse();
+        assertThat(store.getObjectsToUpdate()).isEmpty();
+        // Removed entity is not updated, and replacement retains dirty flag
+        store.setDirty(Item.class, 1, true);
+        store.setDirty(Item.class, 2, true);
+        store.remove(Item.class, 1);
+        Item item2a = new Item(2);
+        store.put(Item.class, 2, item2a);
+        assertThat(store.getObjectsToUpdate()).containsExactly(item2a);
+        // Setting dirty flag of unknown entity is ignored
+        store.setDirty(Item.class, 99, true);
+        assertThat(store.getObjectsToUpdate()).isEmpty();
+    }
+
+    @Test
+    public void test_dirty_many_entities()
+    {
+        EntityStore store = new EntityStore();
+        int count = 1000;
+        for (int i = 0; i < count; ++i)
+        {
+            store.put(Item.class, key(i), new Item(key(i)));
+            if (i % 2 == 0)
+                store.setDirty(Item.class, key(i), true);
+        }
+        List<OrmEntity> toUpdate = store.getObjectsToUpdate();
+        assertThat(toUpdate).hasSize(count / 2);
+        // Only entities with even index, and so positive key, are dirty
+        for (OrmEntity entity: toUpdate)
+            assertThat(((Item)entity).id).isNotNegative();
+        assertThat(store.getObjectsToUpdate()).isEmpty();
+    }
+
+    @Test
+    public void test_snapshot()
+    {
+        EntityStore store = new EntityStore();
+        Object[] snapshot = new Object[] { "George" };
+        store.setSnapshot(Item.class, 1, snapshot);
+        assertThat(store.getSnapshot(Item.class, 1)).isNull();
+        store.put(Item.class, 1, new Item(1));
+        store.setSnapshot(Item.class, 1, snapshot);
+        assertThat(store.getSnapshot(Item.class, 1)).isSameAs(snapshot);
+        // Replacement retains snapshot
+        store.put(Item.class, 1, new Item(1));
+        assertThat(store.getSnapshot(Item.class, 1)).isSameAs(snapshot);
+        // Snapshot survives table resize
+        for (int i = 2; i < 100; ++i)
+            store.put(Item.class, i, new Item(i));
+        assertThat(store.getSnapshot(Item.class, 1)).isSameAs(snapshot);
+        store.clearSnapshots();
+        assertThat(store.getSnapshot(Item.class, 1)).isNull();
+        store.setSnapshot(Item.class, 1, snapshot);
+        store.remove(Item.class, 1);
+        store.put(Item.class, 1, new Item(1));
+        assertThat(store.getSnapshot(Item.class, 1)).isNull();
+    }
+
+    private static int key(int i)
+    {
+        return (i % 2 == 0 ? i : -i) * 1024;
+    }
+}
@@ -17,6 +17,7 @@ import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -31,6 +32,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -73,6 +75,14 @@ public class JavaPersistenceContextTest
         }
     }
 
+    class ReadOnlyWork extends TestPersistenceWork implements ReadOnlyPersistenceWork
+    {
+        public ReadOnlyWork(Transcript transcript)
+        {
+            super(transcript);
+        }
+    }
+
     class FlushModeWork extends TestPersistenceWork
     {
         RecordCategory entity;
@@ -134,6 +144,22 @@ public class JavaPersistenceContextTest
         assertThat(jpaContext.getTransactionInfo().isUserTransaction()).isFalse();
      }
 
+    @Test 
+    public void test_doTask_read_only()
+    {
+        Transcript transcript = new Transcript();
+        PersistenceWork persistenceWork = new ReadOnlyWork(transcript);
+        JavaPersistenceContext jpaContext = new JavaPersistenceContext(persistenceWork, entityManagerProvider);
+        assertThat(jpaContext.getTransactionInfo().isReadOnly()).isTrue();
+        Boolean success = jpaContext.doTask();
+        transcript.assertEventsSoFar("background task");
+        InOrder inOrder = inOrder(transaction);
+        inOrder.verify(transaction).setReadOnly(true);
+        inOrder.verify(transaction).begin();
+        verify(entityManager).close();
+        assertThat(success).isTrue();
+    }
+
     @Test 
     public void test_onPostExecute()
     {
@@ -469,6 +495,42 @@ public class JavaPersistenceContextTest
         assertThat(jpaContext.getTransactionInfo().isUserTransaction()).isTrue();
     }    
     
+    @Test 
+    public void test_doTask_cancelled()
+    {
+        Transcript transcript = new Transcript();
+        PersistenceWork persistenceWork = new TestPersistenceWork(transcript);
+        JavaPersistenceContext jpaContext = new JavaPersistenceContext(persistenceWork, entityManagerProvider);
+        jpaContext.cancel();
+        assertThat(jpaContext.isCancelled()).isTrue();
+        Boolean success = jpaContext.doTask();
+        assertThat(success).isNull();
+        verify(transaction, times(0)).begin();
+        jpaContext.onPostExecute(success);
+        transcript.assertEventsSoFar("onRollback javax.persistence.PersistenceException: Persistence work cancelled");
+        assertThat(jpaContext.getStatus()).isEqualTo(WorkStatus.FAILED);
+    }
+
+    @Test 
+    public void test_doTask_cancelled_in_progress()
+    {
+        Transcript transcript = new Transcript();
+        JavaPersistenceContext[] jpaContext = new JavaPersistenceContext[1];
+        PersistenceWork persistenceWork = new TestPersistenceWork(transcript, entityManager -> {
+            jpaContext[0].cancel();
+            return Boolean.TRUE;
+        });
+        when(transaction.isActive()).thenReturn(true, false);
+        jpaContext[0] = new JavaPersistenceContext(persistenceWork, entityManagerProvider);
+        Boolean success = jpaContext[0].doTask();
+        assertThat(success).isFalse();
+        verify(transaction).setRollbackOnly();
+        verify(entityManager).close();
+        jpaContext[0].onPostExecute(success);
+        transcript.assertEventsSoFar("background task", "onRollback javax.persistence.PersistenceException: Persistence work cancelled");
+        assertThat(jpaContext[0].getStatus()).isEqualTo(WorkStatus.FAILED);
+    }
+
     @Test 
     public void test_user_transaction_rollbackonly() throws InterruptedException
     {
@@ -17,6 +17,8 @@ import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -28,14 +30,15 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
 
 import au.com.cybersearch2.classyfy.data.alfresco.RecordCategory;
+import au.com.cybersearch2.classyjpa.cache.EntityCache;
+import au.com.cybersearch2.classyjpa.cache.LruEntityCache;
 import au.com.cybersearch2.classyjpa.persist.PersistenceConfig;
 import au.com.cybersearch2.classyjpa.transaction.TransactionConnection;
 import au.com.cybersearch2.log.LogRecordHandler;
@@ -62,8 +65,8 @@ public class ObjectMonitorTest
     private ConnectionSource connectionSource;
     @Mock
     private PersistenceConfig persistenceConfig;
-    @Captor
-    private ArgumentCaptor<EntityKey> entityKeyCaptor;   
+    @Mock
+    private DatabaseConnection databaseConnection;
     private RecordCategory entity1;
     private RecordCategory entity2;
     private Date created;
@@ -94,50 +97,69 @@ public class ObjectMonitorTest
     public void test_start_managing_persist()
     {
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
-        Integer id = Integer.valueOf(1);
-        EntityKey key = new EntityKey(RecordCategory.class, id);
-        when(removedObjects.containsKey(key)).thenReturn(false);
-        when(managedObjects.containsKey(key)).thenReturn(false);
+        int id = 1;
+        when(removedObjects.containsKey(RecordCategory.class, id)).thenReturn(false);
+        when(managedObjects.get(RecordCategory.class, id)).thenReturn(null);
         assertThat(monitor.startManagingEntity(entity1, id, PersistOp.persist) == null);
-        verify( managedObjects).put(entityKeyCaptor.capture(), eq(entity1));
-        assertThat(entityKeyCaptor.getValue().isDirty()).isFalse();
+        verify(managedObjects).put(RecordCategory.class, id, entity1);
+        verify(managedObjects, never()).setDirty(eq(RecordCategory.class), eq(id), anyBoolean());
     }
 
     @Test 
     public void test_start_managing_merge()
     {
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
-        Integer id = Integer.valueOf(1);
-        EntityKey key = new EntityKey(RecordCategory.class, id);
-        when(removedObjects.containsKey(key)).thenReturn(false);
-        when(managedObjects.containsKey(key)).thenReturn(false);
+        int id = 1;
+        when(removedObjects.containsKey(RecordCategory.class, id)).thenReturn(false);
+        when(managedObjects.get(RecordCategory.class, id)).thenReturn(null);
         assertThat(monitor.startManagingEntity(entity1, id, PersistOp.merge) == null);
-        verify( managedObjects).put(entityKeyCaptor.capture(), eq(entity1));
-        assertThat(entityKeyCaptor.getValue().isDirty()).isTrue();
+        verify(managedObjects).put(RecordCategory.class, id, entity1);
+        verify(managedObjects).setDirty(RecordCategory.class, id, true);
     }
     
     @Test 
     public void test_start_managing_refresh()
     {
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
-        Integer id = Integer.valueOf(1);
-        EntityKey key = new EntityKey(RecordCategory.class, id);
-        when(removedObjects.containsKey(key)).thenReturn(false);
-        when(managedObjects.containsKey(key)).thenReturn(true);
+        int id = 1;
+        when(removedObjects.containsKey(RecordCategory.class, id)).thenReturn(false);
+        when(managedObjects.get(RecordCategory.class, id)).thenReturn(entity2);
         assertThat(monitor.startManagingEntity(entity1, id, PersistOp.refresh) == null);
-        verify( managedObjects).put(entityKeyCaptor.capture(), eq(entity1));
-        assertThat(entityKeyCaptor.getValue().isDirty()).isFalse();
+        verify(managedObjects).put(RecordCategory.class, id, entity1);
+        verify(managedObjects).setDirty(RecordCategory.class, id, false);
     }
     
+    @Test 
+    public void test_start_managing_find()
+    {
+        OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
+        int id = 1;
+        when(removedObjects.containsKey(RecordCategory.class, id)).thenReturn(false);
+        when(managedObjects.get(RecordCategory.class, id)).thenReturn(null);
+        RecordCategory managed = monitor.startManagingEntity(entity1, id, PersistOp.find);
+        assertThat(managed).isNull();
+        verify(managedObjects).put(RecordCategory.class, id, entity1);
+        verify(managedObjects, never()).setDirty(eq(RecordCategory.class), eq(id), anyBoolean());
+    }
+
+    @Test 
+    public void test_get_managed_entity()
+    {
+        OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
+        int id = 1;
+        when(managedObjects.get(RecordCategory.class, id)).thenReturn(entity1);
+        when(removedObjects.containsKey(RecordCategory.class, id)).thenReturn(true);
+        assertThat(monitor.getManagedEntity(RecordCategory.class, id)).isSameAs(entity1);
+        assertThat(monitor.isRemoved(RecordCategory.class, id)).isTrue();
+    }
+
     @Test 
     public void test_start_managing_contains()
     {
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
-        Integer id = Integer.valueOf(1);
-        EntityKey key = new EntityKey(RecordCategory.class, id);
-        when(removedObjects.containsKey(key)).thenReturn(false);
-        when(managedObjects.containsKey(key)).thenReturn(true);
-        when(managedObjects.get(key)).thenReturn(entity1);
+        int id = 1;
+        when(removedObjects.containsKey(RecordCategory.class, id)).thenReturn(false);
+        when(managedObjects.get(RecordCategory.class, id)).thenReturn(entity1);
         assertThat(monitor.startManagingEntity(entity1, id, PersistOp.contains) == entity1);
     }
 
@@ -145,33 +167,45 @@ public class ObjectMonitorTest
     public void test_start_managing_persist_already_managed()
     {
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
-        Integer id1 = Integer.valueOf(1);
-        EntityKey key = new EntityKey(RecordCategory.class, id1);
-        when(removedObjects.containsKey(key)).thenReturn(false);
-        when(managedObjects.containsKey(entityKeyCaptor.capture())).thenReturn(true);
-        when(managedObjects.get(key)).thenReturn(entity2);
+        int id1 = 1;
+        when(removedObjects.containsKey(RecordCategory.class, id1)).thenReturn(false);
+        when(managedObjects.get(RecordCategory.class, id1)).thenReturn(entity2);
         assertThat(monitor.startManagingEntity(entity1, id1, PersistOp.persist).equals(entity2));
-        assertThat(entityKeyCaptor.getValue().entityClassHash).isEqualTo(RecordCategory.class.hashCode());
-        assertThat(entityKeyCaptor.getValue().primaryKeyHash).isEqualTo(id1.hashCode());
-        assertThat(entityKeyCaptor.getValue().isDirty()).isFalse();
+        verify(managedObjects, never()).put(any(), anyInt(), any());
+        verify(managedObjects, never()).setDirty(any(), anyInt(), anyBoolean());
     }
     
     @Test 
     public void test_start_managing_merge_already_managed()
     {
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
-        Integer id1 = Integer.valueOf(1);
+        int id1 = 1;
         prepareMerge();
-        EntityKey key = new EntityKey(RecordCategory.class, id1);
-        when(removedObjects.containsKey(key)).thenReturn(false);
-        when(managedObjects.containsKey(entityKeyCaptor.capture())).thenReturn(true);
-        when(managedObjects.get(key)).thenReturn(entity1);
+        when(persistenceConfig.getHelperFactory(RecordCategory.class)).thenReturn(ormDaoHelperFactory);
+        when(removedObjects.containsKey(RecordCategory.class, id1)).thenReturn(false);
+        when(managedObjects.get(RecordCategory.class, id1)).thenReturn(entity1);
         assertThat(monitor.startManagingEntity(entity2, id1, PersistOp.merge).equals(entity2));
-        verify(managedObjects).remove(entityKeyCaptor.getValue());
-        assertThat(entityKeyCaptor.getValue().entityClassHash).isEqualTo(RecordCategory.class.hashCode());
-        assertThat(entityKeyCaptor.getValue().primaryKeyHash).isEqualTo(id1.hashCode());
-        assertThat(entityKeyCaptor.getValue().isDirty()).isTrue();
-        verify(managedObjects).put(entityKeyCaptor.getValue(), entity2);
+        verify(managedObjects).put(RecordCategory.class, id1, entity2);
+        verify(managedObjects).setDirty(RecordCategory.class, id1, true);
+        verify(managedObjects, never()).remove(any(), anyInt());
+        verifyMerge();
+    }
+    
+    @Test 
+    public void test_start_managing_merge_property_copier()
+    {
+        OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
+        int id1 = 1;
+        prepareMerge();
+        EntityPropertyCopier<RecordCategory> propertyCopier = new EntityPropertyCopier<>(RecordCategory.class, 
+                Arrays.asList("_id", "node_id", "description", "created", "creator", "modified", "modifier", "identifier"));
+        when(persistenceConfig.getHelperFactory(RecordCategory.class)).thenReturn(ormDaoHelperFactory);
+        when(ormDaoHelperFactory.getPropertyCopier()).thenReturn(propertyCopier);
+        when(removedObjects.containsKey(RecordCategory.class, id1)).thenReturn(false);
+        when(managedObjects.get(RecordCategory.class, id1)).thenReturn(entity1);
+        RecordCategory managed = monitor.startManagingEntity(entity2, id1, PersistOp.merge);
+        assertThat(managed).isSameAs(entity2);
+        verify(managedObjects).put(RecordCategory.class, id1, entity2);
         verifyMerge();
     }
     
@@ -179,44 +213,35 @@ public class ObjectMonitorTest
     public void test_start_managing_refresh_already_managed()
     {
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
-        Integer id1 = Integer.valueOf(1);
-        EntityKey key = new EntityKey(RecordCategory.class, id1);
-        when(removedObjects.containsKey(key)).thenReturn(false);
-        when(managedObjects.containsKey(entityKeyCaptor.capture())).thenReturn(true);
+        int id1 = 1;
+        when(removedObjects.containsKey(RecordCategory.class, id1)).thenReturn(false);
+        when(managedObjects.get(RecordCategory.class, id1)).thenReturn(entity1);
         assertThat(monitor.startManagingEntity(entity2, id1, PersistOp.refresh).equals(entity2));
-        verify(managedObjects).remove(entityKeyCaptor.getValue());
-        assertThat(entityKeyCaptor.getValue().entityClassHash).isEqualTo(RecordCategory.class.hashCode());
-        assertThat(entityKeyCaptor.getValue().primaryKeyHash).isEqualTo(id1.hashCode());
-        assertThat(entityKeyCaptor.getValue().isDirty()).isFalse();
-        verify(managedObjects).put(entityKeyCaptor.getValue(), entity2);
+        verify(managedObjects).put(RecordCategory.class, id1, entity2);
+        verify(managedObjects).setDirty(RecordCategory.class, id1, false);
     }
     
     @Test 
     public void test_start_managing_contains_already_managed()
     {
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
-        Integer id1 = Integer.valueOf(1);
-        EntityKey key = new EntityKey(RecordCategory.class, id1);
-        when(removedObjects.containsKey(key)).thenReturn(false);
-        when(managedObjects.containsKey(entityKeyCaptor.capture())).thenReturn(true);
-        when(managedObjects.get(key)).thenReturn(entity2);
+        int id1 = 1;
+        when(removedObjects.containsKey(RecordCategory.class, id1)).thenReturn(false);
+        when(managedObjects.get(RecordCategory.class, id1)).thenReturn(entity2);
         assertThat(monitor.startManagingEntity(entity1, id1, PersistOp.contains).equals(entity2));
-        verify(managedObjects).get(entityKeyCaptor.getValue());
-        assertThat(entityKeyCaptor.getValue().entityClassHash).isEqualTo(RecordCategory.class.hashCode());
-        assertThat(entityKeyCaptor.getValue().primaryKeyHash).isEqualTo(id1.hashCode());
-        assertThat(entityKeyCaptor.getValue().isDirty()).isFalse();
+        verify(managedObjects).get(RecordCategory.class, id1);
+        verify(managedObjects, never()).setDirty(any(), anyInt(), anyBoolean());
     }
     
     @Test 
     public void test_start_managing_persist_removed_object_match()
     {
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
-        Integer id1 = Integer.valueOf(1);
-        when(removedObjects.containsKey(entityKeyCaptor.capture())).thenReturn(true);
+        int id1 = 1;
+        when(removedObjects.containsKey(RecordCategory.class, id1)).thenReturn(true);
         assertThat(monitor.startManagingEntity(entity1, id1, PersistOp.persist) == null);
-        verify(removedObjects).remove(entityKeyCaptor.getValue());
-        assertThat(entityKeyCaptor.getValue().entityClassHash).isEqualTo(RecordCategory.class.hashCode());
-        assertThat(entityKeyCaptor.getValue().primaryKeyHash).isEqualTo(id1.hashCode());
+        verify(removedObjects).remove(RecordCategory.class, id1);
+        verify(managedObjects).put(RecordCategory.class, id1, entity1);
     }
     
     @Test 
@@ -224,7 +249,7 @@ public class ObjectMonitorTest
     {
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
         Integer id1 = Integer.valueOf(1);
-        when(removedObjects.containsKey(any())).thenReturn(true);
+        when(removedObjects.containsKey(any(), anyInt())).thenReturn(true);
         try
         {
             monitor.startManagingEntity(entity1, id1, PersistOp.merge);
@@ -242,7 +267,7 @@ public class ObjectMonitorTest
     {
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
         Integer id1 = Integer.valueOf(1);
-        when(removedObjects.containsKey(any())).thenReturn(true);
+        when(removedObjects.containsKey(any(), anyInt())).thenReturn(true);
         try
         {
             monitor.startManagingEntity(entity1, id1, PersistOp.refresh);
@@ -259,13 +284,11 @@ public class ObjectMonitorTest
     public void test_start_managing_consists_removed_object_match()
     {
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
-        Integer id1 = Integer.valueOf(1);
-        when(removedObjects.containsKey(entityKeyCaptor.capture())).thenReturn(true);
-        when(removedObjects.get(any(EntityKey.class))).thenReturn(entity2);
+        int id1 = 1;
+        when(removedObjects.containsKey(RecordCategory.class, id1)).thenReturn(true);
+        when(removedObjects.get(RecordCategory.class, id1)).thenReturn(entity2);
         assertThat(monitor.startManagingEntity(entity1, id1, PersistOp.contains).equals(entity2));
-        verify(removedObjects).get(entityKeyCaptor.getValue());
-        assertThat(entityKeyCaptor.getValue().entityClassHash).isEqualTo(RecordCategory.class.hashCode());
-        assertThat(entityKeyCaptor.getValue().primaryKeyHash).isEqualTo(id1.hashCode());
+        verify(removedObjects).get(RecordCategory.class, id1);
     }
  
     @Test
@@ -273,8 +296,7 @@ public class ObjectMonitorTest
     {
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
         Integer id = Integer.valueOf(1);
-        EntityKey key = new EntityKey(RecordCategory.class, id);
-        when(managedObjects.containsKey(key)).thenReturn(false, false);
+        when(managedObjects.containsKey(RecordCategory.class, id)).thenReturn(false);
         assertThat(monitor.monitorNewEntity(entity1, id, id)).isFalse();
     }
     
@@ -284,14 +306,12 @@ public class ObjectMonitorTest
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
         Integer id1 = Integer.valueOf(1);
         Integer id2 = Integer.valueOf(2);
-        EntityKey key1 = new EntityKey(RecordCategory.class, id1);
-        EntityKey key2 = new EntityKey(RecordCategory.class, id2);
-        when(managedObjects.containsKey(key2)).thenReturn(false, false);
-        when(managedObjects.containsKey(key1)).thenReturn(false);
+        when(managedObjects.containsKey(RecordCategory.class, id2)).thenReturn(false);
+        when(managedObjects.get(RecordCategory.class, id2)).thenReturn(null);
         assertThat(monitor.monitorNewEntity(entity1, id1, id2)).isTrue();
-        verify(managedObjects).put(entityKeyCaptor.capture(), eq(entity1));
-        assertThat(entityKeyCaptor.getValue().primaryKeyHash).isEqualTo(2);
-        assertThat(entityKeyCaptor.getValue().isDirty()).isFalse();
+        verify(managedObjects).remove(RecordCategory.class, id1);
+        verify(managedObjects).put(RecordCategory.class, id2, entity1);
+        verify(managedObjects, never()).setDirty(any(), anyInt(), anyBoolean());
     }
     
     @Test
@@ -300,16 +320,12 @@ public class ObjectMonitorTest
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
         Integer id1 = Integer.valueOf(1);
         Integer id2 = Integer.valueOf(2);
-        EntityKey key1 = new EntityKey(RecordCategory.class, id1);
-        EntityKey key2 = new EntityKey(RecordCategory.class, id2);
-        when(managedObjects.containsKey(key2)).thenReturn(false, false);
-        when(managedObjects.containsKey(key1)).thenReturn(true);
-        when(removedObjects.containsKey(key2)).thenReturn(false);
+        when(managedObjects.containsKey(RecordCategory.class, id2)).thenReturn(false);
+        when(managedObjects.remove(RecordCategory.class, id1)).thenReturn(entity1);
+        when(removedObjects.containsKey(RecordCategory.class, id2)).thenReturn(false);
         assertThat(monitor.monitorNewEntity(entity1, id1, id2)).isTrue();
-        verify(managedObjects).remove(key1);
-        verify(managedObjects).put(entityKeyCaptor.capture(), eq(entity1));
-        assertThat(entityKeyCaptor.getValue().primaryKeyHash).isEqualTo(2);
-        assertThat(entityKeyCaptor.getValue().isDirty()).isFalse();
+        verify(managedObjects).remove(RecordCategory.class, id1);
+        verify(managedObjects).put(RecordCategory.class, id2, entity1);
     }
     
     @Test
@@ -317,13 +333,11 @@ public class ObjectMonitorTest
     {
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
         Integer id2 = Integer.valueOf(1);
-        EntityKey key2 = new EntityKey(RecordCategory.class, id2);
-        when(managedObjects.containsKey(key2)).thenReturn(false, false);
-        when(removedObjects.containsKey(key2)).thenReturn(false);
+        when(managedObjects.containsKey(RecordCategory.class, id2)).thenReturn(false);
+        when(removedObjects.containsKey(RecordCategory.class, id2)).thenReturn(false);
         assertThat(monitor.monitorNewEntity(entity1, null, id2)).isTrue();
-        verify(managedObjects).put(entityKeyCaptor.capture(), eq(entity1));
-        assertThat(entityKeyCaptor.getValue().primaryKeyHash).isEqualTo(1);
-        assertThat(entityKeyCaptor.getValue().isDirty()).isFalse();
+        verify(managedObjects).put(RecordCategory.class, id2, entity1);
+        verify(managedObjects, never()).remove(any(), anyInt());
     }
       
     @Test
@@ -338,14 +352,10 @@ public class ObjectMonitorTest
     public void test_mark_for_removal()
     {
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
-        Integer id1 = Integer.valueOf(1);
-        EntityKey key = new EntityKey(RecordCategory.class, id1);
-        when(managedObjects.containsKey(key)).thenReturn(true);
-        when(managedObjects.remove(key)).thenReturn(entity1);
+        int id1 = 1;
+        when(managedObjects.remove(RecordCategory.class, id1)).thenReturn(entity1);
         monitor.markForRemoval(RecordCategory.class, id1);
-        verify(removedObjects).put(entityKeyCaptor.capture(), eq(entity1));
-        assertThat(entityKeyCaptor.getValue().primaryKeyHash).isEqualTo(1);
-        assertThat(entityKeyCaptor.getValue().isDirty()).isFalse();
+        verify(removedObjects).put(RecordCategory.class, id1, entity1);
     }
     
     @Test 
@@ -353,7 +363,7 @@ public class ObjectMonitorTest
     {
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
         Integer id1 = Integer.valueOf(1);
-        when(managedObjects.containsKey(entityKeyCaptor.capture())).thenReturn(false);
+        when(managedObjects.remove(RecordCategory.class, id1)).thenReturn(null);
         try
         {
             monitor.markForRemoval(RecordCategory.class, id1);
@@ -364,8 +374,7 @@ public class ObjectMonitorTest
             assertThat(e.getMessage()).contains(RecordCategory.class.getName());
             assertThat(e.getMessage()).contains(id1.toString());
         }
-        assertThat(entityKeyCaptor.getValue().entityClassHash).isEqualTo(RecordCategory.class.hashCode());
-        assertThat(entityKeyCaptor.getValue().primaryKeyHash).isEqualTo(id1.hashCode());
+        verify(removedObjects, never()).put(any(), anyInt(), any());
     }
 
     @Test
@@ -377,27 +386,164 @@ public class ObjectMonitorTest
         verify(removedObjects).release();
     }
      
+    @Test
+    public void test_detach_all()
+    {
+        OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
+        when(managedObjects.size()).thenReturn(2);
+        assertThat(monitor.getManagedCount()).isEqualTo(2);
+        monitor.detachAll();
+        verify(managedObjects).release();
+        verify(removedObjects, never()).release();
+    }
+
     @Test
     public void test_update_all_managed_objects()
     {
         OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
-        Integer id1 = Integer.valueOf(1);
-        Integer id2 = Integer.valueOf(2);
-        EntityKey key1 = new EntityKey(RecordCategory.class, id1);
-        EntityKey key2 = new EntityKey(RecordCategory.class, id2);
-        key1.setDirty(true);
-        key2.setDirty(true);
         List<OrmEntity> toUpdate = new ArrayList<>();
         toUpdate.add(entity1);
         toUpdate.add(entity2);
         when(managedObjects.getObjectsToUpdate()).thenReturn(toUpdate);
         when(persistenceConfig.getHelperFactory(RecordCategory.class)).thenReturn(ormDaoHelperFactory);
-        when(ormDaoHelperFactory.getOrmDaoHelper(connectionSource)).thenReturn(ormDaoHelper);
-        when(ormDaoHelper.update(entity1)).thenReturn(1);
-        when(ormDaoHelper.update(entity2)).thenReturn(1);
-        monitor.updateAllManagedObjects();
+        when(ormDaoHelperFactory.getRegisteredOrmDaoHelper(connectionSource)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.updateColumns(databaseConnection, toUpdate, null)).thenReturn(new int[] {1, 1});
+        monitor.updateAllManagedObjects(databaseConnection);
+    }
+
+    @Test
+    public void test_update_all_managed_objects_count_zero()
+    {
+        OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
+        List<OrmEntity> toUpdate = new ArrayList<>();
+        toUpdate.add(entity1);
+        toUpdate.add(entity2);
+        when(managedObjects.getObjectsToUpdate()).thenReturn(toUpdate);
+        when(persistenceConfig.getHelperFactory(RecordCategory.class)).thenReturn(ormDaoHelperFactory);
+        when(ormDaoHelperFactory.getRegisteredOrmDaoHelper(connectionSource)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.updateColumns(databaseConnection, toUpdate, null)).thenReturn(new int[] {1, 0});
+        try
+        {
+            monitor.updateAllManagedObjects(databaseConnection);
+            failBecauseExceptionWasNotThrown(PersistenceException.class);
+        }
+        catch (PersistenceException e)
+        {
+            assertThat(e.getMessage()).isEqualTo("update operation returned result count 0");
+        }
     }
     
+    @Test
+    public void test_update_all_managed_objects_cached()
+    {
+        EntityCache entityCache = new LruEntityCache(10);
+        when(persistenceConfig.getEntityCache()).thenReturn(entityCache);
+        OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
+        prepareMerge();
+        List<OrmEntity> toUpdate = new ArrayList<>();
+        toUpdate.add(entity2);
+        when(managedObjects.getObjectsToUpdate()).thenReturn(toUpdate);
+        when(persistenceConfig.getHelperFactory(RecordCategory.class)).thenReturn(ormDaoHelperFactory);
+        when(ormDaoHelperFactory.getRegisteredOrmDaoHelper(connectionSource)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.updateColumns(databaseConnection, toUpdate, null)).thenReturn(new int[] {1});
+        when(ormDaoHelper.extractId(entity2)).thenReturn(1);
+        monitor.updateAllManagedObjects(databaseConnection);
+        // Nothing is cached until commit
+        assertThat(entityCache.size()).isEqualTo(0);
+        monitor.afterCommit();
+        RecordCategory cached = entityCache.get(RecordCategory.class, 1);
+        assertThat(cached).isNotSameAs(entity2);
+        assertThat(cached.getDescription()).isEqualTo("new description");
+    }
+
+    @Test
+    public void test_find_cache_write_discarded()
+    {
+        EntityCache entityCache = new LruEntityCache(10);
+        when(persistenceConfig.getEntityCache()).thenReturn(entityCache);
+        OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
+        RecordCategory managed = monitor.startManagingEntity(entity1, 1, PersistOp.find);
+        assertThat(managed).isNull();
+        monitor.afterRollback();
+        monitor.afterCommit();
+        assertThat(entityCache.size()).isEqualTo(0);
+        managed = monitor.startManagingEntity(entity1, 1, PersistOp.find);
+        monitor.afterCommit();
+        assertThat(entityCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_merge_and_remove_invalidate_cache()
+    {
+        EntityCache entityCache = new LruEntityCache(10);
+        when(persistenceConfig.getEntityCache()).thenReturn(entityCache);
+        OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
+        entityCache.put(new RecordCategory(), 1);
+        entityCache.put(new RecordCategory(), 2);
+        RecordCategory managed = monitor.startManagingEntity(entity1, 1, PersistOp.merge);
+        assertThat(managed).isNull();
+        assertThat(entityCache.size()).isEqualTo(1);
+        when(managedObjects.remove(RecordCategory.class, 2)).thenReturn(entity2);
+        monitor.markForRemoval(RecordCategory.class, 2);
+        assertThat(entityCache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_get_cached_entity()
+    {
+        EntityCache entityCache = new LruEntityCache(10);
+        when(persistenceConfig.getEntityCache()).thenReturn(entityCache);
+        OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
+        RecordCategory cached = monitor.getCachedEntity(RecordCategory.class, 1);
+        assertThat(cached).isNull();
+        entityCache.put(entity1, 1);
+        cached = monitor.getCachedEntity(RecordCategory.class, 1);
+        assertThat(cached).isNotNull();
+        verify(managedObjects).put(RecordCategory.class, 1, cached);
+    }
+
+    @Test
+    public void test_update_changed_columns_only()
+    {
+        OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
+        List<OrmEntity> toUpdate = new ArrayList<>();
+        toUpdate.add(entity1);
+        when(managedObjects.getObjectsToUpdate()).thenReturn(toUpdate);
+        when(persistenceConfig.getHelperFactory(RecordCategory.class)).thenReturn(ormDaoHelperFactory);
+        when(ormDaoHelperFactory.getRegisteredOrmDaoHelper(connectionSource)).thenReturn(ormDaoHelper);
+        Object[] snapshot = new Object[] {"George", "original description"};
+        Object[] current = new Object[] {"George", "new description"};
+        when(ormDaoHelper.getColumnSnapshot(entity1)).thenReturn(snapshot, current);
+        when(ormDaoHelper.extractId(entity1)).thenReturn(1);
+        when(managedObjects.getSnapshot(RecordCategory.class, 1)).thenReturn(snapshot);
+        BitSet columns = new BitSet();
+        columns.set(1);
+        when(ormDaoHelper.updateColumns(databaseConnection, toUpdate, columns)).thenReturn(new int[] {1});
+        monitor.captureSnapshot(entity1, 1);
+        verify(managedObjects).setSnapshot(RecordCategory.class, 1, snapshot);
+        monitor.updateAllManagedObjects(databaseConnection);
+        verify(ormDaoHelper).updateColumns(databaseConnection, toUpdate, columns);
+        verify(managedObjects).setSnapshot(RecordCategory.class, 1, current);
+    }
+
+    @Test
+    public void test_update_unchanged_skipped()
+    {
+        OrmEntityMonitor monitor = new OrmEntityMonitor(connectionSource, persistenceConfig, managedObjects, removedObjects);
+        List<OrmEntity> toUpdate = new ArrayList<>();
+        toUpdate.add(entity1);
+        when(managedObjects.getObjectsToUpdate()).thenReturn(toUpdate);
+        when(persistenceConfig.getHelperFactory(RecordCategory.class)).thenReturn(ormDaoHelperFactory);
+        when(ormDaoHelperFactory.getRegisteredOrmDaoHelper(connectionSource)).thenReturn(ormDaoHelper);
+        Object[] snapshot = new Object[] {"George", "original description"};
+        when(ormDaoHelper.getColumnSnapshot(entity1)).thenReturn(snapshot);
+        when(ormDaoHelper.extractId(entity1)).thenReturn(1);
+        when(managedObjects.getSnapshot(RecordCategory.class, 1)).thenReturn(snapshot);
+        monitor.captureSnapshot(entity1, 1);
+        monitor.updateAllManagedObjects(databaseConnection);
+        verify(ormDaoHelper, never()).updateColumns(eq(databaseConnection), anyList(), any());
+    }
+
     private void prepareMerge()
     {
         entity1.set_id(1);
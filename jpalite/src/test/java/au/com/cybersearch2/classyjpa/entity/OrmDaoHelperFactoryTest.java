@@ -90,6 +90,33 @@ public class OrmDaoHelperFactoryTest
         assertThat(helperFactory.connectionSource).isEqualTo(connectionSource);
     }
     
+    @Test 
+    public void test_registered_helper_reused() throws Exception
+    {
+        TestOrmDaoHelperFactory helperFactory = new TestOrmDaoHelperFactory();
+        when(helperFactory.dao.isTableExists()).thenReturn(true);
+        ConnectionSource connectionSource = mock(ConnectionSource.class);
+        OrmDaoHelper<RecordCategory> ormDaoHelper = helperFactory.getRegisteredOrmDaoHelper(connectionSource);
+        assertThat(helperFactory.getRegisteredOrmDaoHelper(connectionSource)).isSameAs(ormDaoHelper);
+        assertThat(helperFactory.getRegisteredDao(connectionSource)).isSameAs(helperFactory.dao);
+        verify(helperFactory.dao, times(1)).isTableExists();
+        helperFactory.release(connectionSource);
+        assertThat(helperFactory.getRegisteredOrmDaoHelper(connectionSource)).isNotSameAs(ormDaoHelper);
+        verify(helperFactory.dao, times(2)).isTableExists();
+    }
+
+    @Test 
+    public void test_check_table_exists_registers_helper() throws Exception
+    {
+        TestOrmDaoHelperFactory helperFactory = new TestOrmDaoHelperFactory();
+        when(helperFactory.dao.isTableExists()).thenReturn(false);
+        ConnectionSource connectionSource = mock(ConnectionSource.class);
+        assertThat(helperFactory.checkTableExists(connectionSource)).isFalse();
+        assertThat(helperFactory.tableCreated).isTrue();
+        assertThat(helperFactory.getRegisteredOrmDaoHelper(connectionSource)).isNotNull();
+        verify(helperFactory.dao, times(1)).isTableExists();
+    }
+
     @Test 
     public void test_table_create_sql_exception() throws Exception
     {
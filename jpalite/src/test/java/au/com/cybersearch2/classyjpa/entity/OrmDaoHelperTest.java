@@ -16,12 +16,30 @@ package au.com.cybersearch2.classyjpa.entity;
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.field.DataType;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.DatabaseTable;
+import com.j256.ormlite.table.TableUtils;
+
 import au.com.cybersearch2.classyfy.data.alfresco.RecordCategory;
+import au.com.cybersearch2.classyjpa.entity.PersistenceDaoTest.Foo;
 
 /**
  * OrmDaoHelperTest
@@ -101,4 +119,206 @@ public class OrmDaoHelperTest
         when(dao.delete(entity1)).thenReturn(1);
         assertThat(helper.delete(entity1)).isEqualTo(1);
     }
+
+    @Test
+    public void test_update_all_no_connection() throws Exception
+    {
+        OrmDaoHelper<RecordCategory> helper = new OrmDaoHelper<RecordCategory>(dao);
+        RecordCategory entity1 = new RecordCategory();
+        when(dao.update(entity1)).thenReturn(1);
+        assertThat(helper.updateAll(null, Collections.singletonList(entity1))).containsExactly(1);
+    }
+
+    @Test
+    public void test_update_all_batch() throws Exception
+    {
+        DaoManager.clearCache();
+        ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:sqlite::memory:");
+        try
+        {
+            TableUtils.createTable(connectionSource, Foo.class);
+            PersistenceDao<Foo> fooDao = PersistenceDao.createDao(connectionSource, Foo.class);
+            Foo foo1 = new Foo();
+            Foo foo2 = new Foo();
+            fooDao.create(foo1);
+            fooDao.create(foo2);
+            foo1.val = 10;
+            foo1.stringField = "first";
+            foo2.val = 20;
+            Foo detached = new Foo();
+            detached.id = 99;
+            OrmDaoHelper<Foo> helper = new OrmDaoHelper<Foo>(fooDao);
+            DatabaseConnection connection = connectionSource.getReadWriteConnection(PersistenceDaoTest.FOO_TABLE_NAME);
+            try
+            {
+                assertThat(helper.updateAll(connection, Arrays.asList(foo1, foo2, detached))).containsExactly(1, 1, 0);
+            }
+            finally
+            {
+                connectionSource.releaseConnection(connection);
+            }
+            assertThat(fooDao.queryForId(foo1.id).val).isEqualTo(10);
+            assertThat(fooDao.queryForId(foo1.id).stringField).isEqualTo("first");
+            assertThat(fooDao.queryForId(foo2.id).val).isEqualTo(20);
+        }
+        finally
+        {
+            connectionSource.close();
+        }
+    }
+
+    @Test
+    public void test_update_changed_columns() throws Exception
+    {
+        DaoManager.clearCache();
+        ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:sqlite::memory:");
+        try
+        {
+            TableUtils.createTable(connectionSource, Foo.class);
+            PersistenceDao<Foo> fooDao = PersistenceDao.createDao(connectionSource, Foo.class);
+            Foo foo = new Foo();
+            foo.val = 1;
+            foo.stringField = "original";
+            fooDao.create(foo);
+            OrmDaoHelper<Foo> helper = new OrmDaoHelper<Foo>(fooDao);
+            Object[] snapshot = helper.getColumnSnapshot(foo);
+            foo.val = 2;
+            BitSet columns = OrmDaoHelper.getChangedColumns(snapshot, helper.getColumnSnapshot(foo));
+            // Updatable columns are val, equal and string
+            assertThat(columns.cardinality()).isEqualTo(1);
+            assertThat(columns.get(0)).isTrue();
+            // Change string field after diff so it is not written
+            foo.stringField = "changed";
+            DatabaseConnection connection = connectionSource.getReadWriteConnection(PersistenceDaoTest.FOO_TABLE_NAME);
+            try
+            {
+                assertThat(helper.updateColumns(connection, Collections.singletonList(foo), columns)).containsExactly(1);
+            }
+            finally
+            {
+                connectionSource.releaseConnection(connection);
+            }
+            Foo stored = fooDao.queryForId(foo.id);
+            assertThat(stored.val).isEqualTo(2);
+            assertThat(stored.stringField).isEqualTo("original");
+        }
+        finally
+        {
+            connectionSource.close();
+        }
+    }
+
+    @Test
+    public void test_snapshot_detects_in_place_changes() throws Exception
+    {
+        DaoManager.clearCache();
+        ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:sqlite::memory:");
+        try
+        {
+            TableUtils.createTable(connectionSource, Attachment.class);
+            PersistenceDao<Attachment> attachmentDao = PersistenceDao.createDao(connectionSource, Attachment.class);
+            Attachment attachment = new Attachment();
+            attachment.data = new byte[] { 1, 2, 3 };
+            attachment.tags = new ArrayList<>(Arrays.asList("first"));
+            attachmentDao.create(attachment);
+            OrmDaoHelper<Attachment> helper = new OrmDaoHelper<Attachment>(attachmentDao);
+            Object[] snapshot = helper.getColumnSnapshot(attachment);
+            assertThat(OrmDaoHelper.getChangedColumns(snapshot, helper.getColumnSnapshot(attachment)).isEmpty()).isTrue();
+            // Updatable columns are data and tags
+            attachment.data[0] = 9;
+            BitSet columns = OrmDaoHelper.getChangedColumns(snapshot, helper.getColumnSnapshot(attachment));
+            assertThat(columns.cardinality()).isEqualTo(1);
+            assertThat(columns.get(0)).isTrue();
+            attachment.tags.add("second");
+            columns = OrmDaoHelper.getChangedColumns(snapshot, helper.getColumnSnapshot(attachment));
+            assertThat(columns.cardinality()).isEqualTo(2);
+            DatabaseConnection connection = connectionSource.getReadWriteConnection("attachment");
+            try
+            {
+                assertThat(helper.updateColumns(connection, Collections.singletonList(attachment), columns)).containsExactly(1);
+            }
+            finally
+            {
+                connectionSource.releaseConnection(connection);
+            }
+            Attachment stored = attachmentDao.queryForId(attachment.id);
+            assertThat(stored.data).containsExactly(9, 2, 3);
+            assertThat(stored.tags).containsExactly("first", "second");
+        }
+        finally
+        {
+            connectionSource.close();
+        }
+    }
+
+    @Test
+    public void test_create_all_and_delete_ids() throws Exception
+    {
+        DaoManager.clearCache();
+        ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:sqlite::memory:");
+        try
+        {
+            TableUtils.createTable(connectionSource, Foo.class);
+            PersistenceDao<Foo> fooDao = PersistenceDao.createDao(connectionSource, Foo.class);
+            OrmDaoHelper<Foo> helper = new OrmDaoHelper<Foo>(fooDao);
+            List<Foo> foos = new ArrayList<>();
+            for (int i = 0; i < OrmDaoHelper.MAX_IDS_PER_QUERY + 10; i++)
+                foos.add(new Foo());
+            assertThat(helper.createAll(foos)).isEqualTo(foos.size());
+            Set<Integer> ids = new HashSet<>();
+            for (Foo foo: foos)
+                ids.add(foo.id);
+            assertThat(ids).hasSize(foos.size());
+            ids.add(Integer.valueOf(-1));
+            assertThat(helper.existingIds(ids)).hasSize(foos.size());
+            ids.remove(Integer.valueOf(-1));
+            assertThat(helper.deleteIds(ids)).isEqualTo(foos.size());
+            assertThat(fooDao.countOf()).isEqualTo(0);
+        }
+        finally
+        {
+            connectionSource.close();
+        }
+    }
+
+    @Test
+    public void test_create_reference() throws Exception
+    {
+        DaoManager.clearCache();
+        ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:sqlite::memory:");
+        try
+        {
+            TableUtils.createTable(connectionSource, Foo.class);
+            PersistenceDao<Foo> fooDao = PersistenceDao.createDao(connectionSource, Foo.class);
+            OrmDaoHelper<Foo> helper = new OrmDaoHelper<Foo>(fooDao);
+            Foo foo = new Foo();
+            foo.val = 42;
+            helper.create(foo);
+            Foo reference = helper.createReference(foo.id);
+            assertThat(reference.id).isEqualTo(foo.id);
+            assertThat(reference.val).isEqualTo(0);
+            assertThat(helper.refresh(reference)).isEqualTo(1);
+            assertThat(reference.val).isEqualTo(42);
+            assertThat(helper.refresh(helper.createReference(foo.id + 1))).isEqualTo(0);
+        }
+        finally
+        {
+            connectionSource.close();
+        }
+    }
+
+    @DatabaseTable(tableName = "attachment")
+    protected static class Attachment implements OrmEntity
+    {
+        @DatabaseField(generatedId = true)
+        public int id;
+        @DatabaseField(dataType = DataType.BYTE_ARRAY)
+        public byte[] data;
+        @DatabaseField(dataType = DataType.SERIALIZABLE)
+        public ArrayList<String> tags;
+
+        public Attachment()
+        {
+        }
+    }
 }
@@ -0,0 +1,287 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.classyjpa.entity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import javax.persistence.EntityExistsException;
+import javax.persistence.PersistenceException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import au.com.cybersearch2.classyfy.data.alfresco.RecordCategory;
+import au.com.cybersearch2.classyjpa.cache.EntityCache;
+import au.com.cybersearch2.classyjpa.persist.PersistenceConfig;
+
+/**
+ * StatelessEntityManagerTest
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class StatelessEntityManagerTest
+{
+    @Mock
+    private PersistenceConfig persistenceConfig;
+    @Mock
+    private OrmDaoHelper<RecordCategory> ormDaoHelper;
+    @Mock
+    private MonitoredTransaction transaction;
+    @Mock
+    private OrmEntityMonitor entityMonitor;
+    @Mock
+    private EntityCache entityCache;
+    private StatelessEntityManager entityManager;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        when(transaction.getEntityMonitor()).thenReturn(entityMonitor);
+        entityManager = new StatelessEntityManager(transaction, persistenceConfig);
+    }
+
+    @Test
+    public void test_persist() throws Exception
+    {
+        RecordCategory entity = new RecordCategory();
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.extractId(entity)).thenReturn(0);
+        when(transaction.isActive()).thenReturn(false);
+        when(ormDaoHelper.create(entity)).thenReturn(1);
+        entityManager.persist(entity);
+        verify(transaction).begin();
+        verify(transaction).acquireConnection();
+        verify(ormDaoHelper).setForeignCollections(entity);
+        verify(entityMonitor, never()).monitorNewEntity(entity, 0, 0);
+    }
+
+    @Test
+    public void test_persist_exists() throws Exception
+    {
+        RecordCategory entity = new RecordCategory();
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.extractId(entity)).thenReturn(1);
+        when(transaction.isActive()).thenReturn(true);
+        when(ormDaoHelper.entityExists(entity)).thenReturn(true);
+        try
+        {
+            entityManager.persist(entity);
+            failBecauseExceptionWasNotThrown(EntityExistsException.class);
+        }
+        catch (EntityExistsException e)
+        {
+            assertThat(e.getMessage()).contains("primary key 1 already exists");
+        }
+        verify(ormDaoHelper, never()).create(entity);
+    }
+
+    @Test
+    public void test_persist_all() throws Exception
+    {
+        RecordCategory entity1 = new RecordCategory();
+        RecordCategory entity2 = new RecordCategory();
+        List<RecordCategory> entities = Arrays.asList(entity1, entity2);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(transaction.isActive()).thenReturn(true);
+        when(ormDaoHelper.createAll(entities)).thenReturn(2);
+        entityManager.persistAll(entities);
+        verify(ormDaoHelper).setForeignCollections(entity1);
+        verify(ormDaoHelper).setForeignCollections(entity2);
+    }
+
+    @Test
+    public void test_merge_update() throws Exception
+    {
+        RecordCategory entity = new RecordCategory();
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(transaction.isActive()).thenReturn(true);
+        when(ormDaoHelper.update(entity)).thenReturn(1);
+        assertThat(entityManager.merge(entity)).isSameAs(entity);
+        verify(ormDaoHelper, never()).create(entity);
+    }
+
+    @Test
+    public void test_merge_insert() throws Exception
+    {
+        RecordCategory entity = new RecordCategory();
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(transaction.isActive()).thenReturn(true);
+        when(ormDaoHelper.update(entity)).thenReturn(0);
+        when(ormDaoHelper.create(entity)).thenReturn(1);
+        assertThat(entityManager.merge(entity)).isSameAs(entity);
+    }
+
+    @Test
+    public void test_merge_all() throws Exception
+    {
+        RecordCategory entity1 = new RecordCategory();
+        RecordCategory entity2 = new RecordCategory();
+        List<RecordCategory> entities = Arrays.asList(entity1, entity2);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(transaction.isActive()).thenReturn(true);
+        when(ormDaoHelper.updateAll(null, entities)).thenReturn(new int[] {1, 0});
+        when(ormDaoHelper.createAll(Collections.singletonList(entity2))).thenReturn(1);
+        entityManager.mergeAll(entities);
+        verify(ormDaoHelper).createAll(Collections.singletonList(entity2));
+    }
+
+    @Test
+    public void test_merge_evicts_cached() throws Exception
+    {
+        RecordCategory entity = new RecordCategory();
+        when(persistenceConfig.getEntityCache()).thenReturn(entityCache);
+        entityManager = new StatelessEntityManager(transaction, persistenceConfig);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(transaction.isActive()).thenReturn(true);
+        when(ormDaoHelper.update(entity)).thenReturn(1);
+        when(ormDaoHelper.extractId(entity)).thenReturn(1);
+        entityManager.merge(entity);
+        verify(entityCache).evict(RecordCategory.class, 1);
+    }
+
+    @Test
+    public void test_merge_all_evicts_cached() throws Exception
+    {
+        RecordCategory entity1 = new RecordCategory();
+        RecordCategory entity2 = new RecordCategory();
+        List<RecordCategory> entities = Arrays.asList(entity1, entity2);
+        when(persistenceConfig.getEntityCache()).thenReturn(entityCache);
+        entityManager = new StatelessEntityManager(transaction, persistenceConfig);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(transaction.isActive()).thenReturn(true);
+        when(ormDaoHelper.updateAll(null, entities)).thenReturn(new int[] {1, 0});
+        when(ormDaoHelper.createAll(Collections.singletonList(entity2))).thenReturn(1);
+        when(ormDaoHelper.extractId(entity1)).thenReturn(1);
+        when(ormDaoHelper.extractId(entity2)).thenReturn(2);
+        entityManager.mergeAll(entities);
+        verify(entityCache).evict(RecordCategory.class, 1);
+        verify(entityCache).evict(RecordCategory.class, 2);
+    }
+
+    @Test
+    public void test_remove_evicts_cached() throws Exception
+    {
+        RecordCategory entity = new RecordCategory();
+        when(persistenceConfig.getEntityCache()).thenReturn(entityCache);
+        entityManager = new StatelessEntityManager(transaction, persistenceConfig);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(transaction.isActive()).thenReturn(true);
+        when(ormDaoHelper.delete(entity)).thenReturn(1);
+        when(ormDaoHelper.extractId(entity)).thenReturn(1);
+        entityManager.remove(entity);
+        verify(entityCache).evict(RecordCategory.class, 1);
+    }
+
+    @Test
+    public void test_remove_all_evicts_cached() throws Exception
+    {
+        RecordCategory entity1 = new RecordCategory();
+        RecordCategory entity2 = new RecordCategory();
+        when(persistenceConfig.getEntityCache()).thenReturn(entityCache);
+        entityManager = new StatelessEntityManager(transaction, persistenceConfig);
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.extractId(entity1)).thenReturn(1);
+        when(ormDaoHelper.extractId(entity2)).thenReturn(2);
+        when(transaction.isActive()).thenReturn(true);
+        when(ormDaoHelper.deleteIds(new LinkedHashSet<>(Arrays.asList(1, 2)))).thenReturn(2);
+        entityManager.removeAll(Arrays.asList(entity1, entity2));
+        verify(entityCache).evict(RecordCategory.class, 1);
+        verify(entityCache).evict(RecordCategory.class, 2);
+    }
+
+    @Test
+    public void test_refresh_not_found() throws Exception
+    {
+        RecordCategory entity = new RecordCategory();
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.refresh(entity)).thenReturn(0);
+        try
+        {
+            entityManager.refresh(entity);
+            failBecauseExceptionWasNotThrown(PersistenceException.class);
+        }
+        catch (PersistenceException e)
+        {
+            assertThat(e.getMessage()).isEqualTo("refresh operation returned result count 0");
+        }
+        verify(transaction, never()).begin();
+    }
+
+    @Test
+    public void test_remove_all() throws Exception
+    {
+        RecordCategory entity1 = new RecordCategory();
+        RecordCategory entity2 = new RecordCategory();
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.extractId(entity1)).thenReturn(1);
+        when(ormDaoHelper.extractId(entity2)).thenReturn(2);
+        when(transaction.isActive()).thenReturn(false);
+        when(ormDaoHelper.deleteIds(new LinkedHashSet<>(Arrays.asList(1, 2)))).thenReturn(1);
+        try
+        {
+            entityManager.removeAll(Arrays.asList(entity1, entity2));
+            failBecauseExceptionWasNotThrown(PersistenceException.class);
+        }
+        catch (PersistenceException e)
+        {
+            assertThat(e.getMessage()).isEqualTo("remove operation returned result count 1, expected 2");
+        }
+        verify(transaction).begin();
+    }
+
+    @Test
+    public void test_find() throws Exception
+    {
+        RecordCategory entity = new RecordCategory();
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.queryForId(1)).thenReturn(entity);
+        assertThat(entityManager.find(RecordCategory.class, 1)).isSameAs(entity);
+        verify(entityMonitor, never()).startManagingEntity(entity, 1, PersistOp.find);
+    }
+
+    @Test
+    public void test_get_reference() throws Exception
+    {
+        RecordCategory entity = new RecordCategory();
+        when(entityMonitor.getOrmDaoHelperForClass(RecordCategory.class)).thenReturn(ormDaoHelper);
+        when(ormDaoHelper.createReference(1)).thenReturn(entity);
+        assertThat(entityManager.getReference(RecordCategory.class, 1)).isSameAs(entity);
+        verify(entityMonitor, never()).monitorReference(entity, 1);
+    }
+
+    @Test
+    public void test_contains_and_clear() throws Exception
+    {
+        assertThat(entityManager.contains(new RecordCategory())).isFalse();
+        entityManager.clear();
+        verify(transaction, never()).rollback();
+        // Only the flush settings and the entity cache are read, when the entity manager is constructed
+        verify(persistenceConfig).getFlushThreshold();
+        verify(persistenceConfig).getFlushHeapBudget();
+        verify(persistenceConfig).getEntityCache();
+        verifyNoMoreInteractions(persistenceConfig);
+    }
+}
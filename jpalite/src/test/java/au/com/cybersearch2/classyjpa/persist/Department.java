@@ -21,13 +21,15 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
 
+import au.com.cybersearch2.classyjpa.entity.OrmEntity;
+
 /**
  * Department
  * @author Andrew Bowley
  * 19/07/2014
  */
 @Entity
-public class Department
+public class Department implements OrmEntity
 {
     @Id @GeneratedValue
     protected int _id;
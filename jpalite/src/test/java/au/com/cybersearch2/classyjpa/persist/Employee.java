@@ -20,6 +20,8 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 
+import au.com.cybersearch2.classyjpa.entity.OrmEntity;
+
 /**
  * Employee
  * @author Andrew Bowley
@@ -27,7 +29,7 @@ import javax.persistence.ManyToOne;
  */
 
 @Entity
-public class Employee
+public class Employee implements OrmEntity
 {
     @Id @GeneratedValue
     protected int _id;
@@ -17,11 +17,22 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.j256.ormlite.h2.H2DatabaseType;
+
 import au.com.cybersearch2.classyfy.data.alfresco.RecordCategory;
+import au.com.cybersearch2.classyjpa.cache.EntityCache;
+import au.com.cybersearch2.classyjpa.cache.LruEntityCache;
+import au.com.cybersearch2.classyjpa.cache.TtlEntityCache;
+import au.com.cybersearch2.classyjpa.entity.EntityPropertyCopier;
 import au.com.cybersearch2.classyjpa.query.DaoQueryFactory;
 import au.com.cybersearch2.classyjpa.query.NamedDaoQuery;
 import au.com.cybersearch2.classyjpa.query.NamedSqlQuery;
@@ -29,6 +40,9 @@ import au.com.cybersearch2.classyjpa.query.QueryInfo;
 import au.com.cybersearch2.classyjpa.query.SqlQueryFactory;
 import au.com.cybersearch2.log.LogRecordHandler;
 import au.com.cybersearch2.log.TestLogHandler;
+import au.com.cybersearch2.container.JpaSetting;
+import au.com.cybersearch2.container.SettingsMap;
+import au.com.cybersearch2.service.BackpressurePolicy;
 
 /**
  * PersistenceConfigTest
@@ -104,4 +118,210 @@ public class PersistenceConfigTest
         }
         assertThat(logRecordHandler.match(0, QUERY_NAME_EXISTS)).isTrue();
      }
+
+    @Test
+    public void test_create_entity_cache()
+    {
+        SettingsMap settingsMap = new SettingsMap();
+        assertThat(PersistenceConfig.createEntityCache(settingsMap)).isNull();
+        settingsMap.put(JpaSetting.entity_cache, "LRU");
+        settingsMap.put(JpaSetting.entity_cache_size, "50");
+        EntityCache entityCache = PersistenceConfig.createEntityCache(settingsMap);
+        assertThat(entityCache).isInstanceOf(LruEntityCache.class);
+        assertThat(((LruEntityCache)entityCache).getMaxEntries()).isEqualTo(50);
+        settingsMap.put(JpaSetting.entity_cache, "ttl");
+        settingsMap.put(JpaSetting.entity_cache_ttl, "10");
+        entityCache = PersistenceConfig.createEntityCache(settingsMap);
+        assertThat(entityCache).isInstanceOf(TtlEntityCache.class);
+        assertThat(((TtlEntityCache)entityCache).getTtlMillis()).isEqualTo(10000L);
+    }
+
+    @Test
+    public void test_create_entity_cache_invalid()
+    {
+        SettingsMap settingsMap = new SettingsMap();
+        settingsMap.put(JpaSetting.entity_cache, "fifo");
+        assertThat(PersistenceConfig.createEntityCache(settingsMap)).isNull();
+        settingsMap.put(JpaSetting.entity_cache, "lru");
+        settingsMap.put(JpaSetting.entity_cache_size, "many");
+        EntityCache entityCache = PersistenceConfig.createEntityCache(settingsMap);
+        assertThat(((LruEntityCache)entityCache).getMaxEntries()).isEqualTo(PersistenceConfig.DEFAULT_ENTITY_CACHE_SIZE);
+    }
+
+    @Test
+    public void test_register_classes_property_copier()
+    {
+        PersistenceConfig persistenceConfig = new PersistenceConfig(new SqliteDatabaseType());
+        persistenceConfig.registerClasses(Collections.singleton(RecordCategory.class.getName()));
+        EntityPropertyCopier<RecordCategory> propertyCopier = persistenceConfig.getHelperFactory(RecordCategory.class).getPropertyCopier();
+        assertThat(propertyCopier).isNotNull();
+        RecordCategory orig = new RecordCategory();
+        orig.set_id(7);
+        orig.setDescription("new description");
+        orig.setCreated(new Date());
+        RecordCategory dest = new RecordCategory();
+        dest.setDescription("original description");
+        propertyCopier.copy(dest, orig);
+        assertThat(dest.get_id()).isEqualTo(7);
+        assertThat(dest.getDescription()).isEqualTo("new description");
+        assertThat(dest.getCreated()).isEqualTo(orig.getCreated());
+    }
+
+    @Test
+    public void test_register_classes_cache_copier()
+    {
+        PersistenceConfig persistenceConfig = new PersistenceConfig(new SqliteDatabaseType());
+        PersistenceUnitInfo puInfo = new PersistenceUnitInfo("cached");
+        puInfo.getSettingsMap().put(JpaSetting.entity_cache, "lru");
+        persistenceConfig.setPuInfo(puInfo);
+        persistenceConfig.registerClasses(Collections.singleton(RecordCategory.class.getName()));
+        EntityCache entityCache = persistenceConfig.getEntityCache();
+        RecordCategory orig = new RecordCategory();
+        orig.set_id(7);
+        orig.setDescription("description");
+        orig.setCreated(new Date());
+        RecordCategory copy = entityCache.getEntityCopier().copy(orig);
+        assertThat(copy).isNotSameAs(orig);
+        assertThat(copy.get_id()).isEqualTo(7);
+        assertThat(copy.getDescription()).isEqualTo("description");
+        // Mutable column values are not shared with the cache
+        assertThat(copy.getCreated()).isEqualTo(orig.getCreated()).isNotSameAs(orig.getCreated());
+    }
+
+    @Test
+    public void test_register_classes_cache_copier_foreign()
+    {
+        PersistenceConfig persistenceConfig = new PersistenceConfig(new SqliteDatabaseType());
+        PersistenceUnitInfo puInfo = new PersistenceUnitInfo("cached");
+        puInfo.getSettingsMap().put(JpaSetting.entity_cache, "lru");
+        persistenceConfig.setPuInfo(puInfo);
+        Set<String> managedClassNames = new HashSet<>();
+        managedClassNames.add(Employee.class.getName());
+        managedClassNames.add(Department.class.getName());
+        persistenceConfig.registerClasses(managedClassNames);
+        EntityCache entityCache = persistenceConfig.getEntityCache();
+        Department department = new Department();
+        department._id = 3;
+        department.setName("Sales");
+        department.employees = Collections.emptyList();
+        Employee orig = new Employee();
+        orig._id = 7;
+        orig.setName("Fred");
+        orig.setDepartment(department);
+        Employee copy = entityCache.getEntityCopier().copy(orig);
+        assertThat(copy.get_id()).isEqualTo(7);
+        assertThat(copy.getName()).isEqualTo("Fred");
+        // Foreign entity is copied down to its id, so it is not shared with the cache
+        assertThat(copy.getDepartment()).isNotSameAs(department);
+        assertThat(copy.getDepartment().get_id()).isEqualTo(3);
+        assertThat(copy.getDepartment().getName()).isNull();
+        // Foreign collections are not copied
+        assertThat(entityCache.getEntityCopier().copy(department).employees).isNull();
+        orig.setDepartment(null);
+        assertThat(entityCache.getEntityCopier().copy(orig).getDepartment()).isNull();
+    }
+
+    @Test
+    public void test_stateless_setting()
+    {
+        PersistenceConfig persistenceConfig = new PersistenceConfig(new SqliteDatabaseType());
+        PersistenceUnitInfo puInfo = new PersistenceUnitInfo("stateless");
+        persistenceConfig.setPuInfo(puInfo);
+        assertThat(persistenceConfig.isStateless()).isFalse();
+        puInfo.put(JpaSetting.stateless, "true");
+        persistenceConfig.setPuInfo(puInfo);
+        assertThat(persistenceConfig.isStateless()).isTrue();
+    }
+
+    @Test
+    public void test_flush_threshold_settings()
+    {
+        PersistenceConfig persistenceConfig = new PersistenceConfig(new SqliteDatabaseType());
+        PersistenceUnitInfo puInfo = new PersistenceUnitInfo("bulk");
+        persistenceConfig.setPuInfo(puInfo);
+        assertThat(persistenceConfig.getFlushThreshold()).isEqualTo(0);
+        assertThat(persistenceConfig.getFlushHeapBudget()).isEqualTo(0);
+        puInfo.put(JpaSetting.flush_threshold, "5000");
+        puInfo.put(JpaSetting.flush_heap_budget, "256");
+        persistenceConfig.setPuInfo(puInfo);
+        assertThat(persistenceConfig.getFlushThreshold()).isEqualTo(5000);
+        assertThat(persistenceConfig.getFlushHeapBudget()).isEqualTo(256L * 1024L * 1024L);
+        puInfo.put(JpaSetting.flush_threshold, "-1");
+        persistenceConfig.setPuInfo(puInfo);
+        assertThat(persistenceConfig.getFlushThreshold()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_group_commit_settings()
+    {
+        PersistenceConfig persistenceConfig = new PersistenceConfig(new SqliteDatabaseType());
+        PersistenceUnitInfo puInfo = new PersistenceUnitInfo("orders");
+        persistenceConfig.setPuInfo(puInfo);
+        assertThat(persistenceConfig.isGroupCommit()).isFalse();
+        assertThat(persistenceConfig.getGroupCommitWindow()).isEqualTo(PersistenceConfig.DEFAULT_GROUP_COMMIT_WINDOW);
+        assertThat(persistenceConfig.getGroupCommitMaxBatch()).isEqualTo(PersistenceConfig.DEFAULT_GROUP_COMMIT_MAX_BATCH);
+        puInfo.put(JpaSetting.group_commit, "true");
+        puInfo.put(JpaSetting.group_commit_window, "20");
+        puInfo.put(JpaSetting.group_commit_max_batch, "100");
+        persistenceConfig.setPuInfo(puInfo);
+        assertThat(persistenceConfig.isGroupCommit()).isTrue();
+        assertThat(persistenceConfig.getGroupCommitWindow()).isEqualTo(20);
+        assertThat(persistenceConfig.getGroupCommitMaxBatch()).isEqualTo(100);
+    }
+
+    @Test
+    public void test_process_timeout_setting()
+    {
+        PersistenceConfig persistenceConfig = new PersistenceConfig(new SqliteDatabaseType());
+        PersistenceUnitInfo puInfo = new PersistenceUnitInfo("orders");
+        persistenceConfig.setPuInfo(puInfo);
+        assertThat(persistenceConfig.getProcessTimeout()).isEqualTo(PersistenceConfig.DEFAULT_PROCESS_TIMEOUT);
+        puInfo.put(JpaSetting.process_timeout, "120");
+        persistenceConfig.setPuInfo(puInfo);
+        assertThat(persistenceConfig.getProcessTimeout()).isEqualTo(120);
+    }
+
+    @Test
+    public void test_max_concurrent_work_setting()
+    {
+        PersistenceConfig persistenceConfig = new PersistenceConfig(new SqliteDatabaseType());
+        PersistenceUnitInfo puInfo = new PersistenceUnitInfo("orders");
+        persistenceConfig.setPuInfo(puInfo);
+        // Not set, so the unit applies a default
+        assertThat(persistenceConfig.getMaxConcurrentWork()).isEqualTo(0);
+        puInfo.put(JpaSetting.max_concurrent_work, "20");
+        persistenceConfig.setPuInfo(puInfo);
+        assertThat(persistenceConfig.getMaxConcurrentWork()).isEqualTo(20);
+    }
+
+    @Test
+    public void test_worker_pool_settings()
+    {
+        PersistenceConfig persistenceConfig = new PersistenceConfig(new SqliteDatabaseType());
+        PersistenceUnitInfo puInfo = new PersistenceUnitInfo("orders");
+        persistenceConfig.setPuInfo(puInfo);
+        assertThat(persistenceConfig.getWorkerThreads()).isEqualTo(0);
+        assertThat(persistenceConfig.getWorkQueueCapacity()).isEqualTo(PersistenceConfig.DEFAULT_WORK_QUEUE_CAPACITY);
+        assertThat(persistenceConfig.getBackpressurePolicy()).isEqualTo(BackpressurePolicy.block);
+        puInfo.put(JpaSetting.worker_threads, "4");
+        puInfo.put(JpaSetting.work_queue_capacity, "16");
+        puInfo.put(JpaSetting.backpressure, "Fail");
+        persistenceConfig.setPuInfo(puInfo);
+        assertThat(persistenceConfig.getWorkerThreads()).isEqualTo(4);
+        assertThat(persistenceConfig.getWorkQueueCapacity()).isEqualTo(16);
+        assertThat(persistenceConfig.getBackpressurePolicy()).isEqualTo(BackpressurePolicy.fail);
+    }
+
+    @Test
+    public void test_single_writer_setting() throws Exception
+    {
+        PersistenceUnitInfo puInfo = new PersistenceUnitInfo("orders");
+        puInfo.put(JpaSetting.single_writer, "true");
+        PersistenceConfig persistenceConfig = new PersistenceConfig(new SqliteDatabaseType());
+        persistenceConfig.setPuInfo(puInfo);
+        assertThat(persistenceConfig.isSingleWriter()).isTrue();
+        persistenceConfig = new PersistenceConfig(new H2DatabaseType());
+        persistenceConfig.setPuInfo(puInfo);
+        assertThat(persistenceConfig.isSingleWriter()).isFalse();
+    }
 }
@@ -22,7 +22,9 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.persistence.FlushModeType;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceException;
 import javax.persistence.Query;
@@ -463,5 +465,22 @@ public class EntityQueryTest
         selectionArguments[1].setMetaInfo(CREATED_COLUMN_NAME);
         return selectionArguments;
     }
-    
+
+    @Test
+    public void test_EntityQuery_auto_flush()
+    {
+        AtomicInteger flushCount = new AtomicInteger();
+        EntityQuery<RecordCategory> query = new EntityQuery<RecordCategory>(RecordCategory.class, daoQuery);
+        assertThat(query.getFlushMode()).isEqualTo(FlushModeType.COMMIT);
+        query.setAutoFlush(FlushModeType.AUTO, () -> flushCount.incrementAndGet());
+        assertThat(query.getFlushMode()).isEqualTo(FlushModeType.AUTO);
+        assertThat(query.getResultList()).isEqualTo(results);
+        assertThat(flushCount.get()).isEqualTo(1);
+        // Flush mode set on query overrides entity manager flush mode
+        query = new EntityQuery<RecordCategory>(RecordCategory.class, daoQuery);
+        query.setAutoFlush(FlushModeType.AUTO, () -> flushCount.incrementAndGet());
+        query.setFlushMode(FlushModeType.COMMIT);
+        query.getSingleResult();
+        assertThat(flushCount.get()).isEqualTo(1);
+    }
 }
@@ -22,7 +22,9 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.persistence.FlushModeType;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceException;
 import javax.persistence.Query;
@@ -167,6 +169,23 @@ public class NativeQueryTest
     }
 
 
+    @Test
+    public void test_auto_flush()
+    {
+        AtomicInteger flushCount = new AtomicInteger();
+        RecordCategory recordCategory = new RecordCategory();
+        when(sqlQuery.getResultObject()).thenReturn(recordCategory);
+        nativeQuery.setAutoFlush(FlushModeType.AUTO, () -> flushCount.incrementAndGet());
+        assertThat(nativeQuery.getFlushMode()).isEqualTo(FlushModeType.AUTO);
+        assertThat(nativeQuery.getSingleResult()).isEqualTo(recordCategory);
+        assertThat(flushCount.get()).isEqualTo(1);
+        // No flush when flush mode is COMMIT
+        nativeQuery = new NativeQuery<>(sqlQuery);
+        nativeQuery.setAutoFlush(FlushModeType.COMMIT, () -> flushCount.incrementAndGet());
+        nativeQuery.getResultList();
+        assertThat(flushCount.get()).isEqualTo(1);
+    }
+
     @Test
     public void test_executeUpdate() throws SQLException
     {
@@ -73,16 +73,64 @@ public class TransactionConnectionTest {
         when(connectionSource.saveSpecialConnection(connection)).thenReturn(true);
         when(connection.isAutoCommitSupported()).thenReturn(true);
         when(connection.isAutoCommit()).thenReturn(true);
-        when(connection.setSavePoint(isA(String.class))).thenReturn(savePoint);
-        TransactionConnection transactionConn = new TransactionConnection(connectionSource, transactionId);
+        TransactionMetrics transactionMetrics = new TransactionMetrics();
+        TransactionConnection transactionConn = new TransactionConnection(connectionSource, false, transactionMetrics);
+        transactionConn.activate(transactionId);
         verify(connectionSource).saveSpecialConnection(connection);
         verify(connection).setAutoCommit(false);
+        verify(connection, times(0)).setSavePoint(isA(String.class));
+        assertThat(transactionConn.getHasSavePoint()).isFalse();
+        assertThat(transactionConn.getSavePointName()).isNull();
+        assertThat(transactionConn.excludeAutoCommit()).isTrue();
+        assertThat(transactionConn.isActive()).isTrue();
+        assertThat(transactionConn.isNested()).isFalse();
+        assertThat(transactionMetrics.getTopLevelCount()).isEqualTo(1);
+        assertThat(transactionMetrics.getSavePointCount()).isEqualTo(0);
+        assertThat(logRecordHandler.match(0, "Had to set auto-commit to false")).isTrue();
+    }
+
+    @Test
+    public void test_create_nested() throws Exception
+    {
+        transactionId += 1;
+        String savepointName = "ORMLITE" + transactionId;
+        when(databaseType.isNestedSavePointsSupported()).thenReturn(true);
+        when(connectionSource.getDatabaseType()).thenReturn(databaseType);
+        when(connectionSource.getReadWriteConnection("")).thenReturn(connection);
+        // Special connection already saved by enclosing transaction
+        when(connectionSource.saveSpecialConnection(connection)).thenReturn(false);
+        when(connection.isAutoCommitSupported()).thenReturn(true);
+        when(connection.isAutoCommit()).thenReturn(false);
+        when(connection.setSavePoint(savepointName)).thenReturn(savePoint);
+        TransactionMetrics transactionMetrics = new TransactionMetrics();
+        TransactionConnection transactionConn = new TransactionConnection(connectionSource, false, transactionMetrics);
+        transactionConn.activate(transactionId);
+        verify(connection, times(0)).setAutoCommit(false);
         assertThat(transactionConn.getHasSavePoint()).isTrue();
         assertThat(transactionConn.getSavePointName()).isEqualTo(savepointName);
-        assertThat(transactionConn.excludeAutoCommit()).isTrue();
+        assertThat(transactionConn.isNested()).isTrue();
+        assertThat(transactionMetrics.getTopLevelCount()).isEqualTo(0);
+        assertThat(transactionMetrics.getSavePointCount()).isEqualTo(1);
+        transactionConn.rollback();
+        verify(connection).rollback(savePoint);
         String logMessage = String.format("Started savePoint transaction ORMLITE%d", transactionId);
-        assertThat(logRecordHandler.match(0, "Had to set auto-commit to false")).isTrue();
-        assertThat(logRecordHandler.match(1, logMessage)).isTrue();
+        assertThat(logRecordHandler.match(0, logMessage)).isTrue();
+    }
+
+    @Test
+    public void test_create_read_only() throws Exception
+    {
+        transactionId += 1;
+        when(connectionSource.getReadOnlyConnection("")).thenReturn(connection);
+        TransactionMetrics transactionMetrics = new TransactionMetrics();
+        TransactionConnection transactionConn = new TransactionConnection(connectionSource, true, transactionMetrics);
+        transactionConn.activate(transactionId);
+        assertThat(transactionConn.isActive()).isTrue();
+        assertThat(transactionMetrics.getReadOnlyCount()).isEqualTo(1);
+        verify(connectionSource, times(0)).saveSpecialConnection(connection);
+        transactionConn.release();
+        verify(connectionSource).releaseConnection(connection);
+        assertThat(transactionConn.isActive()).isFalse();
     }
 
     @Test
@@ -188,7 +236,8 @@ public class TransactionConnectionTest {
         }
         verify(connection).setAutoCommit(false);
         verify(connection).setAutoCommit(true);
-        verify(connectionSource, times(0)).clearSpecialConnection(connection);
+        // The connection source counts nested saves, so the connection is cleared even though it was already saved
+        verify(connectionSource).clearSpecialConnection(connection);
         assertThat(logRecordHandler.match(0, "Had to set auto-commit to false")).isTrue();
         assertThat(logRecordHandler.match(1, "restored auto-commit to true")).isTrue();
    }
@@ -203,30 +252,20 @@ public class TransactionConnectionTest {
         when(connectionSource.saveSpecialConnection(connection)).thenReturn(true);
         when(connection.isAutoCommitSupported()).thenReturn(true);
         when(connection.isAutoCommit()).thenReturn(true, false);
-        when(connection.setSavePoint(isA(String.class))).thenReturn(savePoint);
         TransactionConnection transConnection = new TransactionConnection(connectionSource, transactionId);
         verify(connectionSource).saveSpecialConnection(connection);
         verify(connection).setAutoCommit(false);
         assertThat(transConnection.canCommit()).isTrue();
         transConnection.commit();
-        verify(connection).commit(savePoint);
+        verify(connection).commit(null);
         assertThat(transConnection.isActive()).isTrue();
-        String logMessage = String.format("Started savePoint transaction ORMLITE%d", transactionId);
         assertThat(logRecordHandler.match(0, "Had to set auto-commit to false")).isTrue();
-        assertThat(logRecordHandler.match(1, logMessage)).isTrue();
         transConnection.release();
-        assertThat(logRecordHandler.match(2, "restored auto-commit to true")).isTrue();
+        assertThat(logRecordHandler.match(1, "restored auto-commit to true")).isTrue();
         verify(connection).setAutoCommit(true);
         assertThat(transConnection.isActive()).isFalse();
         transactionId += 1;
-        String savepointName = "ORMLITE" + transactionId;
-        when(databaseType.isNestedSavePointsSupported()).thenReturn(false);
-        when(connectionSource.getDatabaseType()).thenReturn(databaseType);
-        when(connectionSource.getReadWriteConnection("")).thenReturn(connection);
-        when(connectionSource.saveSpecialConnection(connection)).thenReturn(true);
-        when(connection.isAutoCommitSupported()).thenReturn(true);
-        when(connection.isAutoCommit()).thenReturn(true);
-        when(connection.setSavePoint(savepointName)).thenThrow(new SQLException("setSavePoint failed"));
+        when(connection.isAutoCommit()).thenThrow(new SQLException("isAutoCommit failed"));
         doThrow(new SQLException("releaseConnection failed")).when(connectionSource).releaseConnection(connection);
         try
         {
@@ -235,78 +274,67 @@ public class TransactionConnectionTest {
         }
         catch(SQLException e)
         {
-            assertThat(e.getMessage()).contains("setSavePoint failed");
+            assertThat(e.getMessage()).contains("isAutoCommit failed");
         }
-        verify(connection, times(2)).setAutoCommit(false);
+        verify(connection, times(1)).setAutoCommit(false);
         verify(connectionSource, times(2)).clearSpecialConnection(connection);
-        assertThat(logRecordHandler.match(3, "Had to set auto-commit to false")).isTrue();
-        assertThat(logRecordHandler.match(4, "restored auto-commit to true")).isTrue();
-        assertThat(logRecordHandler.match(5, "releaseConnection() failed - \"releaseConnection failed\"")).isTrue();
+        assertThat(logRecordHandler.match(2, "releaseConnection() failed - \"releaseConnection failed\"")).isTrue();
+        assertThat(transConnection.isActive()).isFalse();
     }
 
     @Test
     public void test_commit() throws Exception
     {
         transactionId += 1;
-        String savepointName = "ORMLITE" + transactionId;
         when(connectionSource.getDatabaseType()).thenReturn(databaseType);
         when(databaseType.isNestedSavePointsSupported()).thenReturn(false);
         when(connectionSource.getReadWriteConnection("")).thenReturn(connection);
         when(connectionSource.saveSpecialConnection(connection)).thenReturn(true);
         when(connection.isAutoCommitSupported()).thenReturn(true);
         when(connection.isAutoCommit()).thenReturn(true, false);
-        when(connection.setSavePoint(savepointName)).thenReturn(savePoint);
         TransactionConnection transConnection = new TransactionConnection(connectionSource, transactionId);
         verify(connectionSource).saveSpecialConnection(connection);
         verify(connection).setAutoCommit(false);
         assertThat(transConnection.canCommit()).isTrue();
         transConnection.commit();
-        verify(connection).commit(savePoint);
+        verify(connection).commit(null);
         assertThat(transConnection.isActive()).isTrue();
-        String logMessage = String.format("Started savePoint transaction ORMLITE%d", transactionId);
         assertThat(logRecordHandler.match(0, "Had to set auto-commit to false")).isTrue();
-        assertThat(logRecordHandler.match(1, logMessage)).isTrue();
     }
 
     @Test
     public void test_rollback() throws Exception
     {
         transactionId += 1;
-        String savepointName = "ORMLITE" + transactionId;
         when(connectionSource.getDatabaseType()).thenReturn(databaseType);
         when(databaseType.isNestedSavePointsSupported()).thenReturn(false);
         when(connectionSource.getReadWriteConnection("")).thenReturn(connection);
         when(connectionSource.saveSpecialConnection(connection)).thenReturn(true);
         when(connection.isAutoCommitSupported()).thenReturn(true);
         when(connection.isAutoCommit()).thenReturn(true, false);
-        when(connection.setSavePoint(savepointName)).thenReturn(savePoint);
         TransactionConnection transConnection = new TransactionConnection(connectionSource, transactionId);
         verify(connectionSource).saveSpecialConnection(connection);
         verify(connection).setAutoCommit(false);
         transConnection.rollback();
-        verify(connection).rollback(savePoint);
+        verify(connection).rollback(null);
         assertThat(transConnection.isActive()).isTrue();
-        String logMessage = String.format("Started savePoint transaction ORMLITE%d", transactionId);
         assertThat(logRecordHandler.match(0, "Had to set auto-commit to false")).isTrue();
-        assertThat(logRecordHandler.match(1, logMessage)).isTrue();
     }
 
     @Test
     public void test_commit_rollback() throws Exception
     {
         transactionId += 1;
-        String savepointName = "ORMLITE" + transactionId;
         when(connectionSource.getDatabaseType()).thenReturn(databaseType);
         when(databaseType.isNestedSavePointsSupported()).thenReturn(false);
         when(connectionSource.getReadWriteConnection("")).thenReturn(connection);
         when(connectionSource.saveSpecialConnection(connection)).thenReturn(true);
         when(connection.isAutoCommitSupported()).thenReturn(true);
         when(connection.isAutoCommit()).thenReturn(true, false);
-        when(connection.setSavePoint(savepointName)).thenReturn(savePoint);
         TransactionConnection transConnection = new TransactionConnection(connectionSource, transactionId);
         verify(connectionSource).saveSpecialConnection(connection);
         verify(connection).setAutoCommit(false);
-        doThrow(new SQLException("doCommit failed")).when(connection).commit(savePoint);
+        doThrow(new SQLException("doCommit failed")).when(connection).commit(null);
         try
         {
             assertThat(transConnection.canCommit()).isTrue();
@@ -317,9 +345,9 @@ public class TransactionConnectionTest {
         {
             assertThat(e.getMessage()).contains("doCommit failed");
         }
-        assertThat(transConnection.getHasSavePoint()).isTrue();
+        assertThat(transConnection.getHasSavePoint()).isFalse();
         transConnection.rollback();
-        verify(connection).rollback(savePoint);
+        verify(connection).rollback(null);
         assertThat(transConnection.isActive()).isTrue();
     }
 }
@@ -16,11 +16,15 @@ package au.com.cybersearch2.classyjpa.transaction;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import java.sql.SQLException;
 
+import javax.persistence.PersistenceException;
+
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -128,4 +132,57 @@ public class TransactionStateTest
         String logMessage = String.format("Rolled back transaction id %d - \"doCommit failed\"", transactionId);
         assertThat(logRecordHandler.match(0, logMessage)).isTrue();
     }
+
+    @Test
+    public void test_lazy_connect() throws Exception
+    {
+       	transactionId += 1;
+        TransactionState transactionState = new TransactionState(transConnection, transactionId, false);
+        assertThat(transactionState.isConnected()).isFalse();
+        assertThat(transactionState.isActive()).isTrue();
+        transactionState.getDatabaseConnection();
+        transactionState.connect();
+        assertThat(transactionState.isConnected()).isTrue();
+        verify(transConnection).activate(transactionId);
+    }
+
+    @Test
+    public void test_lazy_connect_fail() throws Exception
+    {
+       	transactionId += 1;
+        TransactionState transactionState = new TransactionState(transConnection, transactionId, false);
+        doThrow(new SQLException("No connection")).when(transConnection).activate(transactionId);
+        try
+        {
+            transactionState.connect();
+            failBecauseExceptionWasNotThrown(PersistenceException.class);
+        }
+        catch (PersistenceException e)
+        {
+            assertThat(e.getMessage()).isEqualTo(String.format("SQL error while creating transaction %d connection", transactionId));
+        }
+        assertThat(transactionState.isConnected()).isFalse();
+    }
+
+    @Test
+    public void test_commit_not_connected() throws Exception
+    {
+       	transactionId += 1;
+        TransactionState transactionState = new TransactionState(transConnection, transactionId, false);
+        transactionState.doCommit();
+        transactionState.doRollback();
+        verifyNoInteractions(transConnection);
+    }
+
+    @Test
+    public void test_read_only_commit() throws Exception
+    {
+       	transactionId += 1;
+        TransactionState transactionState = new TransactionState(transConnection, transactionId);
+        when(transConnection.isReadOnly()).thenReturn(true);
+        transactionState.doCommit();
+        verify(transConnection).release();
+        verify(transConnection, never()).commit();
+        verify(transConnection, never()).canCommit();
+    }
 }
@@ -0,0 +1,224 @@
+/** Copyright 2023 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.container;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.j256.ormlite.jdbc.db.SqliteDatabaseType;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+
+import au.com.cybersearch2.classydb.PoolConfig;
+import au.com.cybersearch2.classydb.PooledConnectionSource;
+import au.com.cybersearch2.classydb.SqliteWalConnectionSource;
+import au.com.cybersearch2.classyjpa.EntityManagerLite;
+import au.com.cybersearch2.classyjpa.entity.EntityManagerImpl;
+import au.com.cybersearch2.classyjpa.entity.JavaPersistenceContext;
+import au.com.cybersearch2.classyjpa.entity.MonitoredTransaction;
+import au.com.cybersearch2.classyjpa.entity.OrmEntityMonitor;
+import au.com.cybersearch2.classyjpa.entity.PersistenceWork;
+import au.com.cybersearch2.classyjpa.persist.PersistenceConfig;
+import au.com.cybersearch2.classyjpa.persist.PersistenceUnitInfo;
+import au.com.cybersearch2.classyjpa.transaction.TransactionMetrics;
+import au.com.cybersearch2.classyjpa.transaction.TransactionStateFactory;
+
+/**
+ * GroupCommitIntegrationTest - group commit on SQLite connection sources which supply more than one connection
+ */
+public class GroupCommitIntegrationTest
+{
+    private static final String INSERT_ITEM = "INSERT INTO item (name) VALUES ('%s')";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String url;
+    private PersistenceConfig persistenceConfig;
+    private TransactionMetrics transactionMetrics;
+    private ConnectionSource connectionSource;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        url = "jdbc:sqlite:" + new File(folder.getRoot(), "items.db").getAbsolutePath();
+        try (java.sql.Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement())
+        {
+            statement.executeUpdate("CREATE TABLE item (id INTEGER PRIMARY KEY, name TEXT)");
+        }
+        persistenceConfig = new PersistenceConfig(new SqliteDatabaseType());
+        persistenceConfig.setPuInfo(new PersistenceUnitInfo("items"));
+        transactionMetrics = new TransactionMetrics();
+    }
+
+    @After
+    public void tearDown()
+    {
+        if (connectionSource != null)
+            connectionSource.closeQuietly();
+    }
+
+    @Test
+    public void test_execute_groups_pooled() throws Exception
+    {
+        PooledConnectionSource pooledConnectionSource =
+            new PooledConnectionSource("items", () -> DriverManager.getConnection(url), new SqliteDatabaseType(), poolConfig(2));
+        connectionSource = pooledConnectionSource;
+        executeGroups();
+        // The group connection is returned to the pool after each group
+        assertThat(pooledConnectionSource.getBorrowedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_execute_groups_wal() throws Exception
+    {
+        connectionSource = new SqliteWalConnectionSource("items", url, new Properties(), new SqliteDatabaseType(), poolConfig(2));
+        executeGroups();
+    }
+
+    @Test
+    public void test_single_writer_batches_wal() throws Exception
+    {
+        connectionSource = new SqliteWalConnectionSource("items", url, new Properties(), new SqliteDatabaseType(), poolConfig(2));
+        SingleWriterScheduler scheduler = new SingleWriterScheduler("items", connectionSource, 20, 10, transactionMetrics);
+        try
+        {
+            for (int batch = 0; batch < 3; ++batch)
+            {
+                List<CompletableFuture<WorkStatus>> futures = new ArrayList<>();
+                for (int i = 0; i < 3; ++i)
+                    futures.add(scheduler.submit(insertContext(String.format("item%d_%d", batch, i))));
+                for (CompletableFuture<WorkStatus> future: futures)
+                    assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo(WorkStatus.FINISHED);
+                assertThat(countItems()).isEqualTo((batch + 1) * 3);
+            }
+        }
+        finally
+        {
+            scheduler.close(5L);
+        }
+        assertThat(transactionMetrics.getGroupCommitCount()).isGreaterThanOrEqualTo(3);
+        assertThat(transactionMetrics.getGroupedWorkCount()).isEqualTo(9);
+    }
+
+    /**
+     * Commit several groups in turn on the calling thread, checking each leaves no special connection saved
+     */
+    private void executeGroups() throws Exception
+    {
+        GroupCommitScheduler scheduler = new GroupCommitScheduler(connectionSource, 1, 10, transactionMetrics);
+        for (int round = 0; round < 3; ++round)
+        {
+            assertThat(scheduler.execute(insertContext("item" + round))).isEqualTo(WorkStatus.FINISHED);
+            assertThat(connectionSource.getSpecialConnection("")).isNull();
+            assertThat(countItems()).isEqualTo(round + 1);
+        }
+        assertThat(transactionMetrics.getGroupCommitCount()).isEqualTo(3);
+    }
+
+    /**
+     * Returns persistence context for work which inserts an item in its own transaction, nested in the group transaction
+     */
+    private JavaPersistenceContext insertContext(String name)
+    {
+        OrmEntityMonitor entityMonitor = new OrmEntityMonitor(connectionSource, persistenceConfig);
+        MonitoredTransaction transaction = new MonitoredTransaction(new TransactionStateFactory(connectionSource), entityMonitor);
+        PersistenceWork persistenceWork = new PersistenceWork()
+        {
+            @Override
+            public void doTask(EntityManagerLite entityManager)
+            {
+                transaction.acquireConnection();
+                try
+                {
+                    DatabaseConnection connection = connectionSource.getReadWriteConnection("");
+                    try
+                    {
+                        connection.executeStatement(String.format(INSERT_ITEM, name), DatabaseConnection.DEFAULT_RESULT_FLAGS);
+                    }
+                    finally
+                    {
+                        connectionSource.releaseConnection(connection);
+                    }
+                }
+                catch (SQLException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void onPostExecute(boolean success)
+            {
+            }
+
+            @Override
+            public void onRollback(Throwable rollbackException)
+            {
+            }
+        };
+        return new JavaPersistenceContext(persistenceWork, new JavaPersistenceContext.EntityManagerProvider()
+        {
+            @Override
+            public EntityManagerLite entityManagerInstance()
+            {
+                return new EntityManagerImpl(transaction, persistenceConfig);
+            }
+
+            @Override
+            public EntityManagerLite entityManagerInstance(ConnectionSource connectionSource)
+            {
+                return entityManagerInstance();
+            }
+        });
+    }
+
+    /**
+     * Returns number of committed items, read on a separate connection
+     */
+    private int countItems() throws SQLException
+    {
+        try (java.sql.Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM item"))
+        {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static PoolConfig poolConfig(int maxSize)
+    {
+        Properties properties = new Properties();
+        properties.setProperty(PoolConfig.MAX_SIZE, Integer.toString(maxSize));
+        return new PoolConfig(properties);
+    }
+}
@@ -0,0 +1,309 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.container;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+
+import au.com.cybersearch2.classyfy.data.alfresco.RecordCategory;
+import au.com.cybersearch2.classyjpa.EntityManagerLite;
+import au.com.cybersearch2.classyjpa.cache.EntityCache;
+import au.com.cybersearch2.classyjpa.cache.LruEntityCache;
+import au.com.cybersearch2.classyjpa.entity.EntityManagerImpl;
+import au.com.cybersearch2.classyjpa.entity.JavaPersistenceContext;
+import au.com.cybersearch2.classyjpa.entity.MonitoredTransaction;
+import au.com.cybersearch2.classyjpa.entity.OrmEntityMonitor;
+import au.com.cybersearch2.classyjpa.entity.PersistOp;
+import au.com.cybersearch2.classyjpa.entity.PersistenceWork;
+import au.com.cybersearch2.classyjpa.persist.PersistenceConfig;
+import au.com.cybersearch2.classyjpa.transaction.TransactionMetrics;
+import au.com.cybersearch2.classyjpa.transaction.TransactionStateFactory;
+
+/**
+ * GroupCommitSchedulerTest
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class GroupCommitSchedulerTest
+{
+    @Mock
+    private ConnectionSource connectionSource;
+    @Mock
+    private DatabaseConnection connection;
+    @Mock
+    private DatabaseType databaseType;
+    @Mock
+    private Savepoint savePoint1;
+    @Mock
+    private JavaPersistenceContext persistenceContext1;
+    @Mock
+    private JavaPersistenceContext persistenceContext2;
+    @Mock
+    private PersistenceConfig persistenceConfig;
+    private TransactionMetrics transactionMetrics;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        transactionMetrics = new TransactionMetrics();
+        when(connectionSource.getReadWriteConnection("")).thenReturn(connection);
+        when(connectionSource.saveSpecialConnection(connection)).thenReturn(true);
+        when(connectionSource.getDatabaseType()).thenReturn(databaseType);
+        when(connection.isAutoCommitSupported()).thenReturn(true);
+        when(connection.isAutoCommit()).thenReturn(true);
+    }
+
+    @Test
+    public void test_execute() throws Exception
+    {
+        when(connection.setSavePoint(isA(String.class))).thenReturn(savePoint1);
+        when(persistenceContext1.doTask()).thenReturn(Boolean.TRUE);
+        when(persistenceContext1.getWorkStatus()).thenReturn(WorkStatus.FINISHED);
+        GroupCommitScheduler scheduler = new GroupCommitScheduler(connectionSource, 1, 10, transactionMetrics);
+        assertThat(scheduler.execute(persistenceContext1)).isEqualTo(WorkStatus.FINISHED);
+        verify(connection).releaseSavePoint(savePoint1);
+        verify(connection).commit(null);
+        verify(persistenceContext1).onPostExecute(Boolean.TRUE);
+        verify(connectionSource).clearSpecialConnection(connection);
+        assertThat(transactionMetrics.getGroupCommitCount()).isEqualTo(1);
+        assertThat(transactionMetrics.getGroupedWorkCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_execute_group() throws Exception
+    {
+        when(connection.setSavePoint(isA(String.class))).thenReturn(savePoint1);
+        when(persistenceContext1.doTask()).thenReturn(Boolean.TRUE);
+        when(persistenceContext1.getWorkStatus()).thenReturn(WorkStatus.FINISHED);
+        when(persistenceContext2.doTask()).thenReturn(Boolean.FALSE);
+        when(persistenceContext2.getWorkStatus()).thenReturn(WorkStatus.FAILED);
+        // Long window so the group is only released when the maximum batch is reached
+        GroupCommitScheduler scheduler = new GroupCommitScheduler(connectionSource, 60000, 2, transactionMetrics);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            // Either thread may lead the group, which is not committed until both items are submitted
+            Future<WorkStatus> future1 = executor.submit(() -> scheduler.execute(persistenceContext1));
+            assertThat(scheduler.execute(persistenceContext2)).isEqualTo(WorkStatus.FAILED);
+            assertThat(future1.get()).isEqualTo(WorkStatus.FINISHED);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        verify(connection).releaseSavePoint(savePoint1);
+        verify(connection).rollback(savePoint1);
+        verify(connection, times(1)).commit(null);
+        verify(persistenceContext1).onPostExecute(Boolean.TRUE);
+        verify(persistenceContext2).onPostExecute(Boolean.FALSE);
+        assertThat(transactionMetrics.getGroupCommitCount()).isEqualTo(1);
+        assertThat(transactionMetrics.getGroupedWorkCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void test_execute_leader_returns_under_steady_load() throws Exception
+    {
+        when(connection.setSavePoint(isA(String.class))).thenReturn(savePoint1);
+        when(persistenceContext1.getWorkStatus()).thenReturn(WorkStatus.FINISHED);
+        GroupCommitScheduler scheduler = new GroupCommitScheduler(connectionSource, 1, 10, transactionMetrics);
+        AtomicBoolean isRunning = new AtomicBoolean(true);
+        ExecutorService leaderExecutor = Executors.newSingleThreadExecutor();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        // Every work item submits another while it runs, so work is always pending when a group completes
+        when(persistenceContext1.doTask()).thenAnswer(invocation -> {
+            scheduler.submit(persistenceContext2, leaderExecutor);
+            return Boolean.TRUE;
+        });
+        when(persistenceContext2.doTask()).thenAnswer(invocation -> {
+            if (isRunning.get())
+                scheduler.submit(persistenceContext2, leaderExecutor);
+            return Boolean.TRUE;
+        });
+        try
+        {
+            Future<WorkStatus> leader = executor.submit(() -> scheduler.execute(persistenceContext1));
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(WorkStatus.FINISHED);
+        }
+        finally
+        {
+            isRunning.set(false);
+            executor.shutdownNow();
+            leaderExecutor.shutdown();
+            leaderExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        verify(persistenceContext1).onPostExecute(Boolean.TRUE);
+        verify(persistenceContext2, atLeastOnce()).onPostExecute(Boolean.TRUE);
+    }
+
+    @Test
+    public void test_execute_commit_fails() throws Exception
+    {
+        when(connection.setSavePoint(isA(String.class))).thenReturn(savePoint1);
+        when(persistenceContext1.doTask()).thenReturn(Boolean.TRUE);
+        when(persistenceContext1.getWorkStatus()).thenReturn(WorkStatus.FAILED);
+        doThrow(new SQLException("Commit failed")).when(connection).commit(null);
+        GroupCommitScheduler scheduler = new GroupCommitScheduler(connectionSource, 1, 10, transactionMetrics);
+        assertThat(scheduler.execute(persistenceContext1)).isEqualTo(WorkStatus.FAILED);
+        verify(persistenceContext1).setExecutionException(any(ExecutionException.class));
+        verify(connection).rollback(null);
+        verify(persistenceContext1).onPostExecute(Boolean.TRUE);
+        assertThat(transactionMetrics.getGroupCommitCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void test_execute_group_rollback_discards_cache_writes() throws Exception
+    {
+        EntityCache entityCache = new LruEntityCache(10);
+        when(persistenceConfig.getEntityCache()).thenReturn(entityCache);
+        // The group transaction holds the special connection while work is performed
+        when(connectionSource.getSpecialConnection("")).thenReturn(connection);
+        doThrow(new SQLException("Commit failed")).doNothing().when(connection).commit(null);
+        GroupCommitScheduler scheduler = new GroupCommitScheduler(connectionSource, 1, 10, transactionMetrics);
+        assertThat(scheduler.execute(cachingPersistenceContext())).isEqualTo(WorkStatus.FAILED);
+        // Nothing is cached as the group rolled back
+        verify(connection).rollback(null);
+        assertThat(entityCache.size()).isEqualTo(0);
+        assertThat(scheduler.execute(cachingPersistenceContext())).isEqualTo(WorkStatus.FINISHED);
+        assertThat(entityCache.get(RecordCategory.class, 1)).isNotNull();
+    }
+
+    /**
+     * Returns persistence context for work which loads an entity, staging it for the second-level cache
+     */
+    private JavaPersistenceContext cachingPersistenceContext()
+    {
+        OrmEntityMonitor entityMonitor = new OrmEntityMonitor(connectionSource, persistenceConfig);
+        MonitoredTransaction transaction = new MonitoredTransaction(new TransactionStateFactory(connectionSource), entityMonitor);
+        PersistenceWork persistenceWork = new PersistenceWork() 
+        {
+            @Override
+            public void doTask(EntityManagerLite entityManager)
+            {
+                entityMonitor.startManagingEntity(new RecordCategory(), 1, PersistOp.find);
+            }
+
+            @Override
+            public void onPostExecute(boolean success)
+            {
+            }
+
+            @Override
+            public void onRollback(Throwable rollbackException)
+            {
+            }
+        };
+        return new JavaPersistenceContext(persistenceWork, new JavaPersistenceContext.EntityManagerProvider()
+        {
+            @Override
+            public EntityManagerLite entityManagerInstance()
+            {
+                return new EntityManagerImpl(transaction, persistenceConfig);
+            }
+
+            @Override
+            public EntityManagerLite entityManagerInstance(ConnectionSource connectionSource)
+            {
+                return entityManagerInstance();
+            }
+        });
+    }
+
+    @Test
+    public void test_submit_led_by_executor() throws Exception
+    {
+        when(connection.setSavePoint(isA(String.class))).thenReturn(savePoint1);
+        when(persistenceContext1.getWorkStatus()).thenReturn(WorkStatus.FINISHED);
+        AtomicReference<String> workThread = new AtomicReference<>();
+        when(persistenceContext1.doTask()).thenAnswer(invocation -> {
+            workThread.set(Thread.currentThread().getName());
+            return Boolean.TRUE;
+        });
+        SingleWriterScheduler scheduler = new SingleWriterScheduler("orders", connectionSource, 0, 10, transactionMetrics);
+        try
+        {
+            assertThat(scheduler.submit(persistenceContext1).get(5, TimeUnit.SECONDS)).isEqualTo(WorkStatus.FINISHED);
+        }
+        finally
+        {
+            scheduler.close(5L);
+        }
+        assertThat(workThread.get()).isEqualTo("orders-writer");
+        verify(connection).releaseSavePoint(savePoint1);
+        verify(connection).commit(null);
+        verify(persistenceContext1).onPostExecute(Boolean.TRUE);
+        assertThat(transactionMetrics.getGroupCommitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_submit_rejected_fails_pending_work() throws Exception
+    {
+        GroupCommitScheduler scheduler = new GroupCommitScheduler(connectionSource, 1, 10, transactionMetrics);
+        RejectedExecutionException rejection = new RejectedExecutionException("Executor shut down");
+        AtomicReference<CompletableFuture<WorkStatus>> waiting = new AtomicReference<>();
+        // Other work is submitted after the leader is chosen, but before the leader task is rejected
+        Executor rejectingExecutor = command -> {
+            waiting.set(scheduler.submit(persistenceContext2, runnable -> {}));
+            throw rejection;
+        };
+        try
+        {
+            scheduler.submit(persistenceContext1, rejectingExecutor);
+            failBecauseExceptionWasNotThrown(RejectedExecutionException.class);
+        }
+        catch (RejectedExecutionException e)
+        {
+            assertThat(e).isSameAs(rejection);
+        }
+        assertThat(waiting.get()).isCompletedExceptionally();
+        try
+        {
+            waiting.get().get(5, TimeUnit.SECONDS);
+            failBecauseExceptionWasNotThrown(ExecutionException.class);
+        }
+        catch (ExecutionException e)
+        {
+            assertThat(e.getCause()).isSameAs(rejection);
+        }
+        verify(persistenceContext2, times(0)).doTask();
+    }
+}
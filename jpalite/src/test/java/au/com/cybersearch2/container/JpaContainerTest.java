@@ -1,7 +1,7 @@
 package au.com.cybersearch2.container;
 
 import static org.assertj.core.api.Assertions.assertThat;
-//import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -10,6 +10,11 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 
@@ -31,7 +36,8 @@ public class JpaContainerTest {
 			"      \"au.com.cybersearch2.classyfy.data.alfresco.RecordCategory\"",
 			"     ]",
 			"     \"settings\":[",
-			"      \"databaseName = categories\"",
+			"      \"databaseName = categories\",",
+			"      \"processTimeout = 1\"",
 			"     ]",
 			"    }",
 			"]}"
@@ -71,6 +77,92 @@ public class JpaContainerTest {
 		JpaProcess process = jpaContainer.execute(persistenceWork);
 		assertThat(process.exitValue()).isEqualTo(WorkStatus.FINISHED);
 	}
+	@Test
+	public void test_execute_async() throws Exception {
+		JpaContainer jpaContainer = initializeContainer();
+		AtomicReference<Boolean> outcome = new AtomicReference<>();
+		JpaProcess process = jpaContainer.executeAsync(new TestWork() {
+
+			@Override
+			public void onPostExecute(boolean success) {
+				outcome.set(success);
+			}}).get(5, TimeUnit.SECONDS);
+		assertThat(process.exitValue()).isEqualTo(WorkStatus.FINISHED);
+		assertThat(outcome.get()).isTrue();
+	}
+
+	@Test
+	public void test_execute_async_timeout() throws Exception {
+		JpaContainer jpaContainer = initializeContainer();
+		CountDownLatch rolledBack = new CountDownLatch(1);
+		AtomicReference<Throwable> rollbackCause = new AtomicReference<>();
+		try {
+			// Work takes longer than the 1 second process timeout
+			jpaContainer.executeAsync(new TestWork() {
+
+				@Override
+				public void doTask(EntityManagerLite entityManager) {
+					try {
+						Thread.sleep(2000L);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+
+				@Override
+				public void onRollback(Throwable rollbackException) {
+					rollbackCause.set(rollbackException);
+					rolledBack.countDown();
+				}}).get(5, TimeUnit.SECONDS);
+			failBecauseExceptionWasNotThrown(ExecutionException.class);
+		} catch (ExecutionException e) {
+			assertThat(e.getCause()).isInstanceOf(TimeoutException.class);
+		}
+		// The work is cancelled, so it rolls back when it finishes
+		assertThat(rolledBack.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(rollbackCause.get().getMessage()).isEqualTo("Persistence work cancelled");
+	}
+
+	@Test
+	public void test_execute_async_failure() throws Exception {
+		JpaContainer jpaContainer = initializeContainer();
+		IllegalMonitorStateException failure = new IllegalMonitorStateException("Work failed");
+		try {
+			jpaContainer.executeAsync(new TestWork() {
+
+				@Override
+				public void doTask(EntityManagerLite entityManager) {
+					throw failure;
+				}}).get(5, TimeUnit.SECONDS);
+			failBecauseExceptionWasNotThrown(ExecutionException.class);
+		} catch (ExecutionException e) {
+			assertThat(e.getCause()).isInstanceOf(JpaliteException.class);
+			assertThat(e.getCause().getCause()).isSameAs(failure);
+		}
+	}
+
+	private JpaContainer initializeContainer() {
+		System.setProperty("jpalite.resource-path", RESOURCE_FILE);
+		JpaContainer jpaContainer = new JpaContainer();
+		jpaContainer.initialize();
+		return jpaContainer;
+	}
+
+	/** Persistence work which does nothing, to be overridden as required */
+	private static class TestWork implements PersistenceWork {
+
+		@Override
+		public void doTask(EntityManagerLite entityManager) {
+		}
+
+		@Override
+		public void onPostExecute(boolean success) {
+		}
+
+		@Override
+		public void onRollback(Throwable rollbackException) {
+		}
+	}
 /*	
 	@Test
 	public void test_no_resource_path() {
@@ -0,0 +1,137 @@
+/** Copyright 2023 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.container;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.j256.ormlite.support.ConnectionSource;
+
+import au.com.cybersearch2.classydb.PoolConfig;
+import au.com.cybersearch2.classydb.PooledConnectionSource;
+import au.com.cybersearch2.classyjpa.persist.PersistenceAdmin;
+import au.com.cybersearch2.classyjpa.persist.PersistenceConfig;
+
+/**
+ * PersistenceUnitTest
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PersistenceUnitTest
+{
+    @Mock
+    private PersistenceAdmin persistenceAdmin;
+    @Mock
+    private PersistenceConfig persistenceConfig;
+    @Mock
+    private ConnectionSource connectionSource;
+    @Mock
+    private PooledConnectionSource pooledConnectionSource;
+
+    @Test
+    public void test_work_permits_setting()
+    {
+        when(persistenceConfig.getMaxConcurrentWork()).thenReturn(20);
+        PersistenceUnit unit = new PersistenceUnit("orders", null, persistenceAdmin, persistenceConfig);
+        Semaphore workPermits = unit.getWorkPermits();
+        assertThat(workPermits.availablePermits()).isEqualTo(20);
+        assertThat(workPermits.isFair()).isTrue();
+        assertThat(unit.getWorkPermits()).isSameAs(workPermits);
+    }
+
+    @Test
+    public void test_work_permits_pool_size()
+    {
+        Properties properties = new Properties();
+        properties.setProperty(PoolConfig.MAX_SIZE, "8");
+        when(pooledConnectionSource.getPoolConfig()).thenReturn(new PoolConfig(properties));
+        when(persistenceAdmin.getConnectionSource()).thenReturn(pooledConnectionSource);
+        PersistenceUnit unit = new PersistenceUnit("orders", null, persistenceAdmin, persistenceConfig);
+        assertThat(unit.getWorkPermits().availablePermits()).isEqualTo(8);
+    }
+
+    @Test
+    public void test_work_permits_default()
+    {
+        when(persistenceAdmin.getConnectionSource()).thenReturn(connectionSource);
+        PersistenceUnit unit = new PersistenceUnit("orders", null, persistenceAdmin, persistenceConfig);
+        assertThat(unit.getWorkPermits().availablePermits()).isEqualTo(PersistenceConfig.DEFAULT_MAX_CONCURRENT_WORK);
+    }
+
+    @Test
+    public void test_work_permits_throttle() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty(PoolConfig.MAX_SIZE, "2");
+        when(pooledConnectionSource.getPoolConfig()).thenReturn(new PoolConfig(properties));
+        when(persistenceAdmin.getConnectionSource()).thenReturn(pooledConnectionSource);
+        PersistenceUnit unit = new PersistenceUnit("orders", null, persistenceAdmin, persistenceConfig);
+        Semaphore workPermits = unit.getWorkPermits();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; ++i)
+                futures.add(executorService.submit(() -> {
+                    workPermits.acquire();
+                    try
+                    {
+                        peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                        release.await();
+                        active.decrementAndGet();
+                    }
+                    finally
+                    {
+                        workPermits.release();
+                    }
+                    return null;
+                }));
+            long deadline = System.currentTimeMillis() + 5000L;
+            while ((workPermits.getQueueLength() < 2) && (System.currentTimeMillis() < deadline))
+                Thread.sleep(10L);
+            // Work beyond the pool size waits for a permit
+            assertThat(workPermits.getQueueLength()).isEqualTo(2);
+            assertThat(workPermits.availablePermits()).isEqualTo(0);
+            assertThat(active.get()).isEqualTo(2);
+            release.countDown();
+            for (Future<?> future: futures)
+                future.get(5, TimeUnit.SECONDS);
+            assertThat(peak.get()).isEqualTo(2);
+            assertThat(workPermits.availablePermits()).isEqualTo(2);
+        }
+        finally
+        {
+            release.countDown();
+            executorService.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/** Copyright 2022 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * UnitWorkerPoolTest
+ */
+public class UnitWorkerPoolTest
+{
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private UnitWorkerPool workerPool;
+
+    @After
+    public void tearDown()
+    {
+        release.countDown();
+        if (workerPool != null)
+            workerPool.close(5L);
+    }
+
+    @Test
+    public void test_submit() throws Exception
+    {
+        workerPool = new UnitWorkerPool("orders", 2, 4, BackpressurePolicy.block);
+        CompletableFuture<String> future = workerPool.submit(() -> Thread.currentThread().getName());
+        assertThat(future.get(5, TimeUnit.SECONDS)).startsWith("orders-worker-");
+        WorkQueueMetrics metrics = workerPool.getMetrics();
+        assertThat(metrics.getSubmittedCount()).isEqualTo(1);
+        assertThat(metrics.getRejectedCount()).isEqualTo(0);
+        assertThat(metrics.getMaxWaitMillis()).isGreaterThanOrEqualTo(0.0);
+    }
+
+    @Test
+    public void test_submit_fail_when_full() throws Exception
+    {
+        workerPool = new UnitWorkerPool("orders", 1, 1, BackpressurePolicy.fail);
+        fillQueue();
+        try
+        {
+            workerPool.submit(() -> "rejected");
+            failBecauseExceptionWasNotThrown(RejectedExecutionException.class);
+        }
+        catch (RejectedExecutionException e)
+        {
+            assertThat(e.getMessage()).isEqualTo("Work queue of persistence unit 'orders' is full");
+        }
+        assertThat(workerPool.getMetrics().getRejectedCount()).isEqualTo(1);
+        assertThat(workerPool.getMetrics().getPeakDepth()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_submit_caller_runs_when_full() throws Exception
+    {
+        workerPool = new UnitWorkerPool("orders", 1, 1, BackpressurePolicy.caller);
+        fillQueue();
+        CompletableFuture<String> future = workerPool.submit(() -> Thread.currentThread().getName());
+        assertThat(future.isDone()).isTrue();
+        assertThat(future.get()).isEqualTo(Thread.currentThread().getName());
+        assertThat(workerPool.getMetrics().getCallerRunsCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_submit_block_when_full() throws Exception
+    {
+        workerPool = new UnitWorkerPool("orders", 1, 1, BackpressurePolicy.block);
+        fillQueue();
+        CompletableFuture<CompletableFuture<String>> blocked = 
+            CompletableFuture.supplyAsync(() -> workerPool.submit(() -> "unblocked"));
+        Thread.sleep(100L);
+        assertThat(blocked.isDone()).isFalse();
+        release.countDown();
+        assertThat(blocked.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS)).isEqualTo("unblocked");
+    }
+
+    @Test
+    public void test_submit_failed_work() throws Exception
+    {
+        workerPool = new UnitWorkerPool("orders", 1, 1, BackpressurePolicy.block);
+        CompletableFuture<String> future = workerPool.submit(() -> { throw new IllegalStateException("Work failed"); });
+        try
+        {
+            future.join();
+            failBecauseExceptionWasNotThrown(RuntimeException.class);
+        }
+        catch (RuntimeException e)
+        {
+            assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    /**
+     * Occupy the single worker thread and fill the queue with one waiting item
+     */
+    private void fillQueue() throws InterruptedException
+    {
+        workerPool.submit(() -> { started.countDown(); return release.await(5, TimeUnit.SECONDS); });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        workerPool.submit(() -> "queued");
+        assertThat(workerPool.getQueueDepth()).isEqualTo(1);
+    }
+}
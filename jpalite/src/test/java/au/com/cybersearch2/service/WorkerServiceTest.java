@@ -0,0 +1,150 @@
+/** Copyright 2023 Andrew J Bowley
+
+    Licensed under the Apache License, Version 2.0 (the "License");
+    you may not use this file except in compliance with the License.
+    You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing, software
+    distributed under the License is distributed on an "AS IS" BASIS,
+    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+    See the License for the specific language governing permissions and
+    limitations under the License. */
+package au.com.cybersearch2.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import au.com.cybersearch2.container.WorkStatus;
+
+/**
+ * WorkerServiceTest
+ */
+public class WorkerServiceTest
+{
+    private final AtomicReference<Thread> workThread = new AtomicReference<>();
+    private WorkerService workerService;
+
+    @After
+    public void tearDown()
+    {
+        if (workerService != null)
+            workerService.shutdown(2L);
+    }
+
+    @Test
+    public void test_platform_threads_selected() throws Exception
+    {
+        workerService = new WorkerService(false);
+        workerService.activate();
+        assertThat(workerService.isVirtual()).isFalse();
+        assertThat(workerService.submit(this::recordThread)).isEqualTo(WorkStatus.FINISHED);
+        assertThat(workThread.get()).isNotSameAs(Thread.currentThread());
+    }
+
+    @Test
+    public void test_virtual_threads_selected() throws Exception
+    {
+        ExecutorService virtualExecutor = Executors.newCachedThreadPool();
+        workerService = new WorkerService(true)
+        {
+            @Override
+            ExecutorService newVirtualThreadExecutor()
+            {
+                return virtualExecutor;
+            }
+        };
+        workerService.activate();
+        assertThat(workerService.isVirtual()).isTrue();
+        // Synchronous work is performed on the calling thread instead of blocking it
+        assertThat(workerService.submit(this::recordThread)).isEqualTo(WorkStatus.FINISHED);
+        assertThat(workThread.get()).isSameAs(Thread.currentThread());
+        // Asynchronous work is handed to the virtual thread executor
+        assertThat(workerService.submitAsync(this::recordThread).get(5, TimeUnit.SECONDS)).isEqualTo(WorkStatus.FINISHED);
+        assertThat(workThread.get()).isNotSameAs(Thread.currentThread());
+        workerService.shutdown(2L);
+        assertThat(virtualExecutor.isShutdown()).isTrue();
+    }
+
+    @Test
+    public void test_virtual_threads_submit_failure() throws Exception
+    {
+        workerService = new WorkerService(true)
+        {
+            @Override
+            ExecutorService newVirtualThreadExecutor()
+            {
+                return Executors.newCachedThreadPool();
+            }
+        };
+        workerService.activate();
+        try
+        {
+            workerService.submit(() -> { throw new IllegalStateException("Work failed"); });
+            failBecauseExceptionWasNotThrown(ExecutionException.class);
+        }
+        catch (ExecutionException e)
+        {
+            assertThat(e.getCause()).isInstanceOf(IllegalStateException.class).hasMessage("Work failed");
+        }
+    }
+
+    @Test
+    public void test_virtual_threads_not_supported() throws Exception
+    {
+        Assume.assumeFalse(isVirtualThreadsSupported());
+        workerService = new WorkerService(true);
+        workerService.activate();
+        // Falls back to the platform thread pool
+        assertThat(workerService.isVirtual()).isFalse();
+        assertThat(workerService.submit(this::recordThread)).isEqualTo(WorkStatus.FINISHED);
+        assertThat(workThread.get()).isNotSameAs(Thread.currentThread());
+    }
+
+    @Test
+    public void test_virtual_threads_unavailable() throws Exception
+    {
+        workerService = new WorkerService(true)
+        {
+            @Override
+            ExecutorService newVirtualThreadExecutor()
+            {
+                return null;
+            }
+        };
+        workerService.activate();
+        assertThat(workerService.isVirtual()).isFalse();
+        assertThat(workerService.submitAsync(this::recordThread).get(5, TimeUnit.SECONDS)).isEqualTo(WorkStatus.FINISHED);
+        assertThat(workThread.get()).isNotSameAs(Thread.currentThread());
+    }
+
+    private WorkStatus recordThread()
+    {
+        workThread.set(Thread.currentThread());
+        return WorkStatus.FINISHED;
+    }
+
+    private static boolean isVirtualThreadsSupported()
+    {
+        try
+        {
+            ((ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null)).shutdown();
+            return true;
+        }
+        catch (ReflectiveOperationException | UnsupportedOperationException e)
+        {
+            return false;
+        }
+    }
+}